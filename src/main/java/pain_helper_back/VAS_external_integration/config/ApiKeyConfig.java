@@ -0,0 +1,29 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация проверки API ключей внешних систем
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.api-key")
+@Getter
+@Setter
+public class ApiKeyConfig {
+    /**
+     * Время жизни проверенного ключа в кэше (секунды).
+     * Деактивация и изменение ключа через ApiKeyService сбрасывают кэш сразу.
+     */
+    private long cacheTtlSeconds = 30;
+    /**
+     * Максимальное число ключей в кэше
+     */
+    private int cacheMaxSize = 10_000;
+    /**
+     * Интервал записи счетчиков использования в БД (миллисекунды)
+     */
+    private long usageFlushIntervalMs = 10_000;
+}
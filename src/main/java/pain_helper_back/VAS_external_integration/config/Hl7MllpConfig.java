@@ -0,0 +1,43 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация встроенного HL7 v2 MLLP сервера для bedside мониторов
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.mllp")
+@Getter
+@Setter
+public class Hl7MllpConfig {
+    /**
+     * Включение сервера (по умолчанию выключен)
+     */
+    private boolean enabled = false;
+    /**
+     * Адрес для прослушивания (по умолчанию только loopback).
+     * Для приема от мониторов задается явно адрес интерфейса сети отделения.
+     */
+    private String bindAddress = "127.0.0.1";
+    /**
+     * IP адреса и CIDR блоки мониторов, с которых принимаются соединения (через запятую).
+     * Пусто - без ограничения по источнику; соединения с других адресов закрываются сразу.
+     */
+    private String allowedSources = "";
+    /**
+     * TCP порт (2575 - стандартный порт HL7 MLLP; 0 - любой свободный, для тестов)
+     */
+    private int port = 2575;
+    /**
+     * Максимальный размер одного HL7 сообщения в байтах.
+     * Соединение с более длинным сообщением получает NAK и закрывается.
+     */
+    private int maxMessageBytes = 64 * 1024;
+    /**
+     * Кодировка сообщений
+     */
+    private String charset = "UTF-8";
+}
@@ -0,0 +1,35 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация подавления повторно присланных VAS записей (VasDeduplicationService)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.dedup")
+@Getter
+@Setter
+public class VasDedupConfig {
+    /**
+     * Включить проверку дубликатов
+     */
+    private boolean enabled = true;
+    /**
+     * Период смены поколения Bloom фильтра (минуты).
+     * Запись помнится в памяти от одного до двух периодов, дальше - только уникальный ключ в БД.
+     */
+    private long windowMinutes = 60;
+    /**
+     * Ожидаемое число записей за период (размер фильтра).
+     * При превышении поколение сменяется досрочно, чтобы не росла доля ложных срабатываний.
+     */
+    private int expectedReadingsPerWindow = 1_000_000;
+    /**
+     * Целевая доля ложных срабатываний одного поколения.
+     * Ложное срабатывание стоит одного запроса к БД, запись не теряется.
+     */
+    private double falsePositiveRate = 0.001;
+}
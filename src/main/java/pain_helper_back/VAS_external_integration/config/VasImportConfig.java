@@ -0,0 +1,36 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация потокового batch импорта CSV/XML/FHIR (POST /api/external/vas/batch)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.import")
+@Getter
+@Setter
+public class VasImportConfig {
+    /**
+     * Количество строк, сохраняемых в одной транзакции (по умолчанию 500)
+     */
+    private int chunkSize = 500;
+    /**
+     * Максимальное количество ошибок строк в итоговом отчете
+     */
+    private int maxReportedErrors = 1000;
+    /**
+     * Максимальное количество ID созданных VAS записей в итоговом отчете
+     */
+    private int maxReportedIds = 1000;
+    /**
+     * Максимальное количество результатов по entry в отчете FHIR импорта (outcomes)
+     */
+    private int maxReportedOutcomes = 10_000;
+    /**
+     * Сколько завершенных импортов хранить для GET /batch/imports
+     */
+    private int progressRetention = 100;
+}
@@ -0,0 +1,28 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class VasIngestAsyncConfig {
+    /*
+     * Пул для асинхронной генерации рекомендаций после сохранения VAS батча.
+     * При переполнении задача выполняется в потоке-обработчике очереди (CallerRuns),
+     * что естественно замедляет разбор очереди вместо потери рекомендаций.
+     */
+    @Bean(name = "vasRecommendationExecutor")
+    public Executor vasRecommendationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(500);
+        executor.setThreadNamePrefix("VasRecommendation-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,41 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация асинхронного приема VAS данных (POST /api/external/vas/ingest)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.ingest")
+@Getter
+@Setter
+public class VasIngestConfig {
+    /**
+     * Емкость очереди приема (по умолчанию 10000 записей).
+     * При заполнении endpoint отвечает 503 + Retry-After.
+     */
+    private int queueCapacity = 10_000;
+    /**
+     * Количество потоков-обработчиков очереди (по умолчанию 2, пул Hikari всего 5)
+     */
+    private int workerCount = 2;
+    /**
+     * Максимальный размер микро-батча, сохраняемого в одной транзакции
+     */
+    private int batchSize = 100;
+    /**
+     * Максимальное ожидание первой записи батча в миллисекундах
+     */
+    private long pollTimeoutMs = 200;
+    /**
+     * Сколько статусов по trackingId хранить в памяти
+     */
+    private int statusRetention = 50_000;
+    /**
+     * Значение заголовка Retry-After при переполнении очереди (секунды)
+     */
+    private int retryAfterSeconds = 1;
+}
@@ -0,0 +1,34 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация ограничения частоты запросов к /api/external/vas/**
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.rate-limit")
+@Getter
+@Setter
+public class VasRateLimitConfig {
+    /**
+     * Включение ограничения по ApiKey.rateLimitPerMinute
+     */
+    private boolean enabled = true;
+    /**
+     * Лимит запросов в минуту с одного IP независимо от ключа (0 - без ограничения по IP)
+     */
+    private int ipRequestsPerMinute = 0;
+    /**
+     * Через сколько секунд простоя bucket удаляется из памяти
+     */
+    private long idleEvictionSeconds = 300;
+    /**
+     * IP адреса и CIDR блоки reverse proxy, которым доверяется X-Forwarded-For (через запятую).
+     * Пусто - заголовок игнорируется, клиент определяется по адресу TCP соединения.
+     * Тот же адрес клиента используется для IP whitelist API ключа.
+     */
+    private String trustedProxies = "";
+}
@@ -0,0 +1,21 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import pain_helper_back.VAS_external_integration.interceptor.VasRateLimitInterceptor;
+
+/**
+ * Подключение rate limiting к внешнему VAS API
+ */
+@Configuration
+@RequiredArgsConstructor
+public class VasRateLimitWebConfig implements WebMvcConfigurer {
+    private final VasRateLimitInterceptor rateLimitInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns("/api/external/vas/**");
+    }
+}
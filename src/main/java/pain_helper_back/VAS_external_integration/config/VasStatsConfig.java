@@ -0,0 +1,33 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация инкрементальной статистики внешних VAS записей (VasStatisticsService)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.stats")
+@Getter
+@Setter
+public class VasStatsConfig {
+    /**
+     * Интервал записи изменившихся часовых bucket в таблицу vas_stats_buckets (миллисекунды)
+     */
+    private long flushIntervalMs = 60_000;
+    /**
+     * Сколько часов bucket хранятся в памяти (не меньше суток - статистика за сегодня)
+     */
+    private int memoryRetentionHours = 48;
+    /**
+     * Сколько дней хранятся строки vas_stats_buckets
+     */
+    private int persistedRetentionDays = 90;
+    /**
+     * Запас времени на долгие транзакции при определении полностью записанных часов (минуты).
+     * Часы, закончившиеся позже (последний flush - запас), при старте пересчитываются из таблицы vas.
+     */
+    private int rebuildGraceMinutes = 5;
+}
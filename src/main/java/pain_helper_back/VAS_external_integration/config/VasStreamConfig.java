@@ -0,0 +1,28 @@
+package pain_helper_back.VAS_external_integration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация real-time потока внешних VAS записей (VasStreamService)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "vas.stream")
+@Getter
+@Setter
+public class VasStreamConfig {
+    /**
+     * Публикация в /topic/vas/stream
+     */
+    private boolean enabled = true;
+    /**
+     * Длина окна склейки записей в один кадр (мс)
+     */
+    private long frameIntervalMs = 250;
+    /**
+     * Дополнительная публикация кадров по отделениям в /topic/vas/stream/{ward}
+     */
+    private boolean wardTopics = true;
+}
@@ -4,20 +4,37 @@ package pain_helper_back.VAS_external_integration.controller;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordResponseDTO;
+import pain_helper_back.VAS_external_integration.dto.VasDedupStatsDTO;
+import pain_helper_back.VAS_external_integration.dto.VasImportProgressDTO;
+import pain_helper_back.VAS_external_integration.dto.VasIngestStatsDTO;
+import pain_helper_back.VAS_external_integration.dto.VasIngestStatusDTO;
 import pain_helper_back.VAS_external_integration.dto.VasMonitorStatsDTO;
 import pain_helper_back.VAS_external_integration.parser.VasFormatParser;
 import pain_helper_back.VAS_external_integration.service.ApiKeyService;
+import pain_helper_back.VAS_external_integration.service.ClientIpResolver;
 import pain_helper_back.VAS_external_integration.service.ExternalVasIntegrationService;
+import pain_helper_back.VAS_external_integration.service.VasBatchImportService;
+import pain_helper_back.VAS_external_integration.service.VasDeduplicationService;
+import pain_helper_back.VAS_external_integration.service.VasIngestPipeline;
 import pain_helper_back.VAS_external_integration.service.VasParserFactory;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/external/vas")
@@ -29,10 +46,24 @@ public class ExternalVasIntegrationController {
     private final ApiKeyService apiKeyService;
     private final VasParserFactory parserFactory;
     private final ExternalVasIntegrationService integrationService;
+    private final VasIngestPipeline ingestPipeline;
+    private final VasBatchImportService batchImportService;
+    private final VasDeduplicationService deduplicationService;
+    private final ClientIpResolver clientIpResolver;
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Синхронный прием VAS записи.
+     *
+     * - Idempotency-Key (опционально): повтор запроса с тем же ключом не создает новую запись
+     * - Без ключа повтором считается запись с тем же источником, устройством, MRN, временем и уровнем VAS
+     * - Ответ на повтор: 200 OK, status=duplicate и ID ранее сохраненной записи
+     */
     @PostMapping("/record")
     public ResponseEntity<?> recordVas(
             @RequestHeader("X-API-Key") String apiKey,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @RequestHeader(value = "Content-Type", required = false) String contentType,
             @RequestBody String rawData,
             HttpServletRequest request) {
@@ -42,16 +73,33 @@ public class ExternalVasIntegrationController {
 
         try {
             // Валидация API ключа
-            if (!apiKeyService.validateApiKey(apiKey, getClientIp(request))) {
+            if (!apiKeyService.validateApiKey(apiKey, clientIpResolver.resolve(request))) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("error", "Invalid API key or IP not whitelisted"));
             }
 
             // Парсинг данных
             ExternalVasRecordRequestDTO vas = parserFactory.parse(contentType, rawData);
+            applyIdempotencyKey(vas, apiKey, idempotencyKey);
+
+            // Повтор уже сохраненной записи
+            Optional<Long> duplicateOf = deduplicationService.findDuplicate(vas);
+            if (duplicateOf.isPresent()) {
+                return duplicateResponse(duplicateOf.get(), vas);
+            }
 
             // Обработка VAS
-            Long vasId = integrationService.processExternalVasRecord(vas);
+            Long vasId;
+            try {
+                vasId = integrationService.processExternalVasRecord(vas);
+            } catch (DataIntegrityViolationException e) {
+                // Одновременный повтор успел сохраниться первым
+                Optional<Long> persisted = deduplicationService.findPersisted(vas.getDedupKey());
+                if (persisted.isEmpty()) {
+                    throw e;
+                }
+                return duplicateResponse(persisted.get(), vas);
+            }
 
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(Map.of(
@@ -72,27 +120,151 @@ public class ExternalVasIntegrationController {
         }
     }
 
+    /**
+     * Асинхронный прием VAS записи (для bedside мониторов с высокой частотой отправки).
+     *
+     * ОТЛИЧИЯ ОТ /record:
+     * - Запись только валидируется и ставится в очередь, ответ 202 Accepted + trackingId
+     * - Сохранение выполняется микро-батчами в фоне, рекомендации генерируются асинхронно
+     * - Статус: GET /api/external/vas/ingest/{trackingId}
+     * - При переполнении очереди: 503 Service Unavailable + Retry-After
+     * - Повтор уже сохраненной записи (Idempotency-Key или те же данные): 200 OK, status=duplicate
+     */
+    @PostMapping("/ingest")
+    public ResponseEntity<?> ingestVas(
+            @RequestHeader("X-API-Key") String apiKey,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = "Content-Type", required = false) String contentType,
+            @RequestBody String rawData,
+            HttpServletRequest request) {
+
+        try {
+            if (!apiKeyService.validateApiKey(apiKey, clientIpResolver.resolve(request))) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(Map.of("error", "Invalid API key or IP not whitelisted"));
+            }
+
+            ExternalVasRecordRequestDTO vas = parserFactory.parse(contentType, rawData);
+            String validationError = validateForIngest(vas);
+            if (validationError != null) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Validation error", "message", validationError));
+            }
+
+            applyIdempotencyKey(vas, apiKey, idempotencyKey);
+            Optional<Long> duplicateOf = deduplicationService.findDuplicate(vas);
+            if (duplicateOf.isPresent()) {
+                return duplicateResponse(duplicateOf.get(), vas);
+            }
+
+            Optional<String> trackingId = ingestPipeline.submit(vas);
+            if (trackingId.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(ingestPipeline.getRetryAfterSeconds()))
+                        .body(Map.of("error", "Ingest queue is full, retry later"));
+            }
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of(
+                            "status", "accepted",
+                            "trackingId", trackingId.get(),
+                            "patientMrn", vas.getPatientMrn(),
+                            "format", vas.getFormat().toString()
+                    ));
+
+        } catch (VasFormatParser.ParseException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Parse error", "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Статус записи, принятой через /ingest
+     */
+    @GetMapping("/ingest/{trackingId}")
+    public ResponseEntity<VasIngestStatusDTO> getIngestStatus(@PathVariable String trackingId) {
+        return ingestPipeline.getStatus(trackingId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Метрики ingest pipeline: глубина очереди, отказы, латентность p50/p99
+     */
+    @GetMapping("/ingest/stats")
+    public ResponseEntity<VasIngestStatsDTO> getIngestStats() {
+        return ResponseEntity.ok(ingestPipeline.getStats());
+    }
+
+    /**
+     * Метрики подавления дубликатов: память Bloom фильтра, расчетная и наблюдаемая доля ложных срабатываний
+     */
+    @GetMapping("/dedup/stats")
+    public ResponseEntity<VasDedupStatsDTO> getDedupStats() {
+        return ResponseEntity.ok(deduplicationService.getStats());
+    }
+
+    /**
+     * Потоковый batch импорт CSV, XML (Content-Type: application/xml, корневой элемент vasRecords),
+     * FHIR Bundle (application/fhir+json) или FHIR NDJSON (application/fhir+ndjson).
+     *
+     * - Тело запроса читается по записям, файл целиком в память не загружается
+     * - Каждые vas.import.chunk-size записей сохраняются в отдельной транзакции
+     * - X-Import-Id (опционально): ID для отслеживания прогресса через GET /batch/imports/{importId}
+     * - Ответ: итоговый отчет с ошибками по номерам строк; для FHIR - outcomes по каждому entry
+     */
     @PostMapping("/batch")
     public ResponseEntity<?> batchImport(
             @RequestHeader("X-API-Key") String apiKey,
-            @RequestBody String csvData,
+            @RequestHeader(value = "X-Import-Id", required = false) String importId,
+            @RequestHeader(value = "Content-Type", required = false) String contentType,
             HttpServletRequest request) {
 
         try {
-            if (!apiKeyService.validateApiKey(apiKey, getClientIp(request))) {
+            if (!apiKeyService.validateApiKey(apiKey, clientIpResolver.resolve(request))) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(Map.of("error", "Invalid API key"));
             }
 
-            Map<String, Object> result = integrationService.processBatchVasRecords(csvData);
+            String id = importId != null && !importId.isBlank() ? importId : UUID.randomUUID().toString();
+            Charset charset = request.getCharacterEncoding() != null
+                    ? Charset.forName(request.getCharacterEncoding())
+                    : StandardCharsets.UTF_8;
+            Map<String, Object> result = batchImportService.importBatch(id, contentType,
+                    new BufferedReader(new InputStreamReader(request.getInputStream(), charset)));
             return ResponseEntity.ok(result);
 
+        } catch (VasFormatParser.ParseException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Parse error", "message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Прогресс последних batch импортов
+     */
+    @GetMapping("/batch/imports")
+    public ResponseEntity<List<VasImportProgressDTO>> getImports() {
+        return ResponseEntity.ok(batchImportService.getRecentImports());
+    }
+
+    /**
+     * Прогресс конкретного batch импорта
+     */
+    @GetMapping("/batch/imports/{importId}")
+    public ResponseEntity<VasImportProgressDTO> getImportProgress(@PathVariable String importId) {
+        return batchImportService.getProgress(importId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/health")
     public ResponseEntity<?> health() {
         return ResponseEntity.ok(Map.of(
@@ -111,11 +283,16 @@ public class ExternalVasIntegrationController {
      * 
      * ФИЛЬТРЫ:
      * - deviceId: фильтр по ID устройства (MONITOR-001, TABLET-WARD-A)
-     * - location: фильтр по локации (Ward A, ICU-1)
+     * - location: начало локации (Ward A - все койки "Ward A, Bed N"; ICU-1)
      * - timeRange: временной диапазон (1h, 6h, 24h, 7d)
      * - vasLevelMin/Max: диапазон уровня боли (0-10)
      * 
-     * @return Список VAS записей с данными пациентов
+     * ПАГИНАЦИЯ (обязательная, сортировка createdAt DESC):
+     * - page / size (по умолчанию 0 / 50, size не больше 500)
+     * - Заголовки ответа: X-Page, X-Page-Size, X-Has-Next
+     * - X-Total-Count - только при includeTotal=true (отдельный COUNT запрос)
+     * 
+     * @return Страница VAS записей с данными пациентов
      */
     @GetMapping("/records")
     public ResponseEntity<List<ExternalVasRecordResponseDTO>> getRecords(
@@ -123,16 +300,28 @@ public class ExternalVasIntegrationController {
             @RequestParam(required = false) String location,
             @RequestParam(required = false) String timeRange,
             @RequestParam(required = false) Integer vasLevelMin,
-            @RequestParam(required = false) Integer vasLevelMax) {
+            @RequestParam(required = false) Integer vasLevelMax,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
-        log.info("GET /api/external/vas/records - deviceId={}, location={}, timeRange={}, vasRange={}-{}",
-                deviceId, location, timeRange, vasLevelMin, vasLevelMax);
+        log.info("GET /api/external/vas/records - deviceId={}, location={}, timeRange={}, vasRange={}-{}, page={}, size={}",
+                deviceId, location, timeRange, vasLevelMin, vasLevelMax, page, size);
 
-        List<ExternalVasRecordResponseDTO> records = integrationService.getVasRecords(
-                deviceId, location, timeRange, vasLevelMin, vasLevelMax);
+        Slice<ExternalVasRecordResponseDTO> records = integrationService.getVasRecords(
+                deviceId, location, timeRange, vasLevelMin, vasLevelMax, page, size);
 
-        log.info("Returning {} VAS records", records.size());
-        return ResponseEntity.ok(records);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header("X-Page", String.valueOf(records.getNumber()))
+                .header("X-Page-Size", String.valueOf(records.getSize()))
+                .header("X-Has-Next", String.valueOf(records.hasNext()));
+        if (includeTotal) {
+            response.header("X-Total-Count", String.valueOf(integrationService.countVasRecords(
+                    deviceId, location, timeRange, vasLevelMin, vasLevelMax)));
+        }
+
+        log.info("Returning {} VAS records", records.getNumberOfElements());
+        return response.body(records.getContent());
     }
 
     /**
@@ -163,9 +352,32 @@ public class ExternalVasIntegrationController {
         return ResponseEntity.ok(stats);
     }
 
-    private String getClientIp(HttpServletRequest request) {
-        String xff = request.getHeader("X-Forwarded-For");
-        return xff != null ? xff.split(",")[0].trim() : request.getRemoteAddr();
+    private String validateForIngest(ExternalVasRecordRequestDTO vas) {
+        if (vas.getPatientMrn() == null || vas.getPatientMrn().isBlank()) {
+            return "patientMrn is required";
+        }
+        if (vas.getVasLevel() == null || vas.getVasLevel() < 0 || vas.getVasLevel() > 10) {
+            return "vasLevel must be between 0 and 10";
+        }
+        return null;
+    }
+
+    /*
+     * Idempotency-Key привязывается к API ключу: одинаковые ключи разных клиентов не пересекаются
+     */
+    private void applyIdempotencyKey(ExternalVasRecordRequestDTO vas, String apiKey, String idempotencyKey) {
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            vas.setIdempotencyKey(apiKey + ":" + idempotencyKey.trim());
+        }
+    }
+
+    private ResponseEntity<?> duplicateResponse(Long existingVasId, ExternalVasRecordRequestDTO vas) {
+        return ResponseEntity.ok(Map.of(
+                "status", "duplicate",
+                "vasId", existingVasId,
+                "patientMrn", vas.getPatientMrn(),
+                "format", vas.getFormat().toString()
+        ));
     }
 
     private String maskApiKey(String apiKey) {
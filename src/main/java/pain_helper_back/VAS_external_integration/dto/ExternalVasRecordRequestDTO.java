@@ -1,6 +1,7 @@
 package pain_helper_back.VAS_external_integration.dto;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -74,6 +75,18 @@ public class ExternalVasRecordRequestDTO {
      */
     private DataFormat format;
 
+    /**
+     * Значение заголовка Idempotency-Key (с привязкой к API ключу), заполняет controller
+     */
+    @JsonIgnore
+    private String idempotencyKey;
+
+    /**
+     * Ключ дубликата (VasDeduplicationService.keyOf), сохраняется в Vas.dedupKey
+     */
+    @JsonIgnore
+    private String dedupKey;
+
     public enum DataFormat {
         JSON,
         XML,
@@ -0,0 +1,55 @@
+package pain_helper_back.VAS_external_integration.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Метрики подавления дубликатов внешних VAS записей.
+ *
+ * ИСПОЛЬЗУЕТСЯ В:
+ * - GET /api/external/vas/dedup/stats
+ *
+ * ЛОЖНЫЕ СРАБАТЫВАНИЯ:
+ * - estimatedFalsePositiveRate - расчет по заполнению Bloom фильтра
+ * - observedFalsePositiveRate - срабатывания фильтра, не подтвержденные БД, среди новых записей
+ *   (включает повторы записей, еще стоящих в очереди ingest)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VasDedupStatsDTO {
+    private Boolean enabled;
+    private Long windowMinutes;
+    private Long memoryBytes;
+    private Long bitsPerGeneration;
+    private Integer hashFunctions;
+    private Long currentGenerationReadings;
+    private Long previousGenerationReadings;
+    private Long rotations;
+    private Double configuredFalsePositiveRate;
+    private Double estimatedFalsePositiveRate;
+    private Double observedFalsePositiveRate;
+    /**
+     * Проверок до обработки (/record, /ingest)
+     */
+    private Long checks;
+    /**
+     * Срабатываний Bloom фильтра (каждое проверяется запросом к БД)
+     */
+    private Long filterHits;
+    /**
+     * Дубликатов, отклоненных до обработки
+     */
+    private Long duplicatesRejected;
+    /**
+     * Срабатываний фильтра без записи в БД
+     */
+    private Long falsePositives;
+    /**
+     * Дубликатов, отклоненных при сохранении батча (ingest очередь, batch импорт, HL7 MLLP)
+     */
+    private Long batchDuplicatesSkipped;
+}
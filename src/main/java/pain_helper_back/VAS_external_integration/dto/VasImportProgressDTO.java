@@ -0,0 +1,37 @@
+package pain_helper_back.VAS_external_integration.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Прогресс потокового batch импорта (CSV, XML).
+ *
+ * ИСПОЛЬЗУЕТСЯ В:
+ * - GET /api/external/vas/batch/imports
+ * - GET /api/external/vas/batch/imports/{importId}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VasImportProgressDTO {
+    private String importId;
+    /**
+     * CSV, XML
+     */
+    private String format;
+    /**
+     * RUNNING, COMPLETED, FAILED
+     */
+    private String status;
+    private Integer rowsRead;
+    private Integer success;
+    private Integer failed;
+    private Integer chunksCommitted;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,35 @@
+package pain_helper_back.VAS_external_integration.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Метрики асинхронного ingest pipeline.
+ *
+ * ИСПОЛЬЗУЕТСЯ В:
+ * - GET /api/external/vas/ingest/stats
+ *
+ * ЛАТЕНТНОСТЬ:
+ * - Время от постановки в очередь до коммита батча
+ * - Перцентили считаются по последним 4096 записям
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VasIngestStatsDTO {
+    private Integer queueDepth;
+    private Integer queueCapacity;
+    private Long accepted;
+    private Long rejected;
+    private Long persisted;
+    private Long duplicates;
+    private Long failed;
+    private Long batches;
+    private Double averageBatchSize;
+    private Long latencyP50Ms;
+    private Long latencyP99Ms;
+    private Long latencyMaxMs;
+}
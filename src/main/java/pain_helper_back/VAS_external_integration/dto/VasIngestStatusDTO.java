@@ -0,0 +1,32 @@
+package pain_helper_back.VAS_external_integration.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pain_helper_back.enums.VasIngestStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Статус VAS записи, принятой через асинхронный ingest.
+ *
+ * ИСПОЛЬЗУЕТСЯ В:
+ * - GET /api/external/vas/ingest/{trackingId}
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VasIngestStatusDTO {
+    private String trackingId;
+    private VasIngestStatus status;
+    private String patientMrn;
+    /**
+     * ID созданной VAS записи (после PERSISTED)
+     */
+    private Long vasId;
+    private String errorMessage;
+    private LocalDateTime queuedAt;
+    private LocalDateTime processedAt;
+}
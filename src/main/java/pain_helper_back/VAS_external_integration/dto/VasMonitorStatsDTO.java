@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+
 /**
  * Статистика для VAS Monitor Dashboard.
  * 
@@ -15,6 +17,7 @@ import lombok.NoArgsConstructor;
  * РАСЧЕТ:
  * - Все метрики за текущий день (с 00:00)
  * - Только внешние источники (recordedBy LIKE 'EXTERNAL_%')
+ * - Источник: часовые bucket VasStatisticsService (без чтения таблицы vas)
  */
 @Data
 @Builder
@@ -43,4 +46,14 @@ public class VasMonitorStatsDTO {
      * COUNT DISTINCT deviceId
      */
     private Integer activeDevices;
+
+    /**
+     * Количество записей за сегодня по устройствам (источникам)
+     */
+    private Map<String, Long> recordsByDevice;
+
+    /**
+     * Количество записей за сегодня по локациям ("UNKNOWN" - локация не указана)
+     */
+    private Map<String, Long> recordsByLocation;
 }
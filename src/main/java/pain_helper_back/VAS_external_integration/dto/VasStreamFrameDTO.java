@@ -0,0 +1,40 @@
+package pain_helper_back.VAS_external_integration.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Кадр real-time потока внешних VAS записей.
+ *
+ * ИСПОЛЬЗУЕТСЯ В:
+ * - /topic/vas/stream - все отделения
+ * - /topic/vas/stream/{ward} - одно отделение
+ *
+ * Кадр содержит по одной (последней) записи на пациента за окно vas.stream.frame-interval-ms.
+ * Пропуск sequence на общем топике означает потерянный кадр - стоит перечитать /records.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VasStreamFrameDTO {
+    /**
+     * Номер окна; кадры отделений одного окна имеют тот же номер, что и кадр общего топика
+     */
+    private Long sequence;
+    /**
+     * Отделение (null для общего топика)
+     */
+    private String ward;
+    private LocalDateTime sentAt;
+    /**
+     * Записей за окно до склейки
+     */
+    private Integer readingsReceived;
+    private List<VasStreamReadingDTO> readings;
+}
@@ -0,0 +1,29 @@
+package pain_helper_back.VAS_external_integration.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Последняя VAS запись пациента в кадре потока /topic/vas/stream
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VasStreamReadingDTO {
+    private Long vasId;
+    private String patientMrn;
+    private Integer vasLevel;
+    private String location;
+    private String source;
+    private LocalDateTime recordedAt;
+    private LocalDateTime createdAt;
+    /**
+     * Сколько записей пациента пришло за окно кадра (1 - без склейки)
+     */
+    private Integer coalescedReadings;
+}
@@ -54,8 +54,8 @@ public class ApiKey {
     @Column(name = "expires_at")
     private LocalDateTime expiresAt;
     /*
-     * IP whitelist (разделенные запятыми)
-     * Примеры: "192.168.1.100,192.168.1.101" или "*" для любого IP
+     * IP whitelist (разделенные запятыми IP адреса и CIDR блоки IPv4/IPv6)
+     * Примеры: "192.168.1.100,10.20.0.0/16,2001:db8::/32" или "*" для любого IP
      */
     @Column(name = "ip_whitelist", length = 500)
     private String ipWhitelist;
@@ -67,13 +67,15 @@ public class ApiKey {
     private Integer rateLimitPerMinute;
     /*
      * Последнее использование ключа
+     * Обновляется только ApiKeyUsageTracker (UPDATE ... usage_count + ?), сохранение сущности
+     * не перезаписывает накопленные значения
      */
-    @Column(name = "last_used_at")
+    @Column(name = "last_used_at", updatable = false)
     private LocalDateTime lastUsedAt;
     /*
      * Количество использований
      */
-    @Column(name = "usage_count")
+    @Column(name = "usage_count", updatable = false)
     private Long usageCount = 0L;
     /*
      * Кто создал ключ (для аудита)
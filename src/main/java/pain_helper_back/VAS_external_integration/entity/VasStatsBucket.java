@@ -0,0 +1,64 @@
+package pain_helper_back.VAS_external_integration.entity;
+
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/*
+ * Часовой bucket статистики внешних VAS записей.
+ *
+ * НАЗНАЧЕНИЕ:
+ * - Снимок счетчиков VasStatisticsService, записывается периодически
+ * - При старте закрытые часы загружаются отсюда, а не пересчитываются по таблице vas
+ *
+ * КЛЮЧ: начало часа (по createdAt записи) + источник (deviceId) + локация
+ */
+@Entity
+@Table(name = "vas_stats_buckets",
+        uniqueConstraints = @UniqueConstraint(name = "uk_vas_stats_bucket",
+                columnNames = {"bucket_start", "source", "location"}),
+        indexes = @Index(name = "idx_vas_stats_updated_at", columnList = "updated_at"))
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VasStatsBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    /*
+     * Начало часа
+     */
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    /*
+     * Источник записи (recordedBy без префикса EXTERNAL_)
+     */
+    @Column(name = "source", length = 100, nullable = false)
+    private String source;
+
+    @Column(name = "location", length = 255, nullable = false)
+    private String location;
+
+    @Column(name = "record_count", nullable = false)
+    private long recordCount;
+    /*
+     * Сумма уровней VAS (для среднего)
+     */
+    @Column(name = "vas_sum", nullable = false)
+    private long vasSum;
+    /*
+     * Записи с VAS >= 7
+     */
+    @Column(name = "high_pain_count", nullable = false)
+    private long highPainCount;
+    /*
+     * Время последней записи bucket (flush)
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,109 @@
+package pain_helper_back.VAS_external_integration.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import pain_helper_back.VAS_external_integration.config.VasRateLimitConfig;
+import pain_helper_back.VAS_external_integration.service.ApiKeyService;
+import pain_helper_back.VAS_external_integration.service.ClientIpResolver;
+import pain_helper_back.VAS_external_integration.service.VasRateLimiter;
+
+import java.util.Map;
+
+/*
+ * Ограничение частоты запросов к /api/external/vas/** до вызова ExternalVasIntegrationController.
+ *
+ * ПОРЯДОК ПРОВЕРОК:
+ * 1. Per-IP лимит (vas.rate-limit.ip-requests-per-minute, если > 0) - в том числе для запросов
+ *    с неизвестным ключом, чтобы перебор ключей не нагружал БД. Адрес клиента - ClientIpResolver
+ *    (X-Forwarded-For только от vas.rate-limit.trusted-proxies)
+ * 2. Per-key лимит из ApiKey.rateLimitPerMinute (ключ берется из кэша ApiKeyService)
+ *
+ * ОТВЕТ:
+ * - Заголовки X-RateLimit-Limit / X-RateLimit-Remaining / X-RateLimit-Reset на каждый ответ
+ * - При превышении: 429 Too Many Requests + Retry-After
+ * - Запрос без ключа или с неизвестным ключом пропускается - его отклонит controller (401)
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class VasRateLimitInterceptor implements HandlerInterceptor {
+    public static final String HEADER_LIMIT = "X-RateLimit-Limit";
+    public static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+    public static final String HEADER_RESET = "X-RateLimit-Reset";
+
+    private final VasRateLimiter rateLimiter;
+    private final ApiKeyService apiKeyService;
+    private final VasRateLimitConfig config;
+    private final ObjectMapper objectMapper;
+    private final ClientIpResolver clientIpResolver;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!config.isEnabled()) {
+            return true;
+        }
+
+        if (config.getIpRequestsPerMinute() > 0) {
+            String clientIp = clientIpResolver.resolve(request);
+            VasRateLimiter.RateLimitDecision ipDecision =
+                    rateLimiter.tryAcquire("ip:" + clientIp, config.getIpRequestsPerMinute());
+            if (!ipDecision.allowed()) {
+                log.warn("Rate limit exceeded for IP {}", clientIp);
+                reject(response, ipDecision, "Too many requests from this IP address");
+                return false;
+            }
+        }
+
+        String apiKey = request.getHeader("X-API-Key");
+        if (apiKey == null || apiKey.isBlank()) {
+            return true;
+        }
+        Integer limit = apiKeyService.getActiveKey(apiKey)
+                .map(ApiKeyService.CachedApiKey::rateLimitPerMinute)
+                .orElse(null);
+        if (limit == null) {
+            return true;
+        }
+
+        VasRateLimiter.RateLimitDecision decision = rateLimiter.tryAcquire("key:" + apiKey, limit);
+        if (!decision.isLimited()) {
+            return true;
+        }
+        writeHeaders(response, decision);
+        if (!decision.allowed()) {
+            log.warn("Rate limit exceeded for API key {}****: {} requests/minute",
+                    apiKey.length() >= 8 ? apiKey.substring(0, 8) : "", limit);
+            reject(response, decision, "API key rate limit exceeded");
+            return false;
+        }
+        return true;
+    }
+
+    private void reject(HttpServletResponse response, VasRateLimiter.RateLimitDecision decision, String message)
+            throws Exception {
+        writeHeaders(response, decision);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, decision.retryAfterSeconds())));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), Map.of(
+                "error", "Rate limit exceeded",
+                "message", message,
+                "limitPerMinute", decision.limit(),
+                "retryAfterSeconds", Math.max(1, decision.retryAfterSeconds())
+        ));
+    }
+
+    private void writeHeaders(HttpServletResponse response, VasRateLimiter.RateLimitDecision decision) {
+        response.setHeader(HEADER_LIMIT, String.valueOf(decision.limit()));
+        response.setHeader(HEADER_REMAINING, String.valueOf(decision.remaining()));
+        response.setHeader(HEADER_RESET, String.valueOf(decision.resetSeconds()));
+    }
+}
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
 
+import java.io.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -24,6 +25,7 @@ import java.util.List;
  * - Поддержка кавычек для значений с запятыми
  * - Возвращает ПЕРВУЮ запись (для single record endpoint)
  * - Для batch импорта используйте parseMultiple()
+ * - Для больших файлов используйте openReader() - построчное чтение без загрузки файла в память
  */
 @Component
 @Slf4j
@@ -33,14 +35,8 @@ public class CsvVasParser implements VasFormatParser {
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
     @Override
-    public boolean canParse(String contentType, String rawData) {
-        if (contentType != null && contentType.toLowerCase().contains("csv")) {
-            return true;
-        }
-
-        // Автоопределение CSV по структуре (заголовки)
-        String firstLine = rawData.split("\n")[0].toLowerCase();
-        return firstLine.contains("patientmrn") && firstLine.contains("vaslevel");
+    public ExternalVasRecordRequestDTO.DataFormat getFormat() {
+        return ExternalVasRecordRequestDTO.DataFormat.CSV;
     }
 
     @Override
@@ -67,26 +63,90 @@ public class CsvVasParser implements VasFormatParser {
         log.debug("Parsing CSV VAS data (multiple records)");
 
         List<ExternalVasRecordRequestDTO> records = new ArrayList<>();
+        int dataRows = 0;
+
+        try (CsvRowReader reader = openReader(new StringReader(rawData))) {
+            VasRecordRow row;
+            while ((row = reader.next()) != null) {
+                dataRows++;
+                if (row.isValid()) {
+                    records.add(row.record());
+                }
+                // Невалидные строки пропускаются (залогированы в next())
+            }
+        } catch (ParseException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to parse CSV VAS data: {}", e.getMessage());
+            throw new ParseException("Invalid CSV format: " + e.getMessage(), e);
+        }
 
-        try {
-            String[] lines = rawData.split("\n");
+        if (dataRows == 0) {
+            throw new ParseException("CSV must have at least 2 lines (header + data)");
+        }
+        log.info("Successfully parsed {} VAS records from CSV", records.size());
+        return records;
+    }
 
-            if (lines.length < 2) {
+    /*
+     * Открывает потоковое чтение CSV (для импорта больших файлов).
+     * Заголовок читается сразу, строки данных - по одной через next().
+     * В памяти находится только текущая строка.
+     *
+     * @param source Источник CSV (например, InputStream запроса)
+     * @return Reader строк; закрывает source при close()
+     * @throws ParseException если нет заголовка или обязательных колонок
+     */
+    public CsvRowReader openReader(Reader source) throws ParseException {
+        BufferedReader reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source);
+        try {
+            String headerLine = reader.readLine();
+            if (headerLine == null || headerLine.isBlank()) {
                 throw new ParseException("CSV must have at least 2 lines (header + data)");
             }
+            String[] headers = parseCsvLine(headerLine.trim());
+            CsvRowReader rowReader = new CsvRowReader(reader, headers);
+            if (rowReader.patientMrnIndex < 0 || rowReader.vasLevelIndex < 0) {
+                throw new ParseException("CSV header must contain PatientMRN and VASLevel columns");
+            }
+            return rowReader;
+        } catch (IOException e) {
+            throw new ParseException("Failed to read CSV header: " + e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Построчное чтение CSV с разбором каждой строки в ExternalVasRecordRequestDTO
+     */
+    public class CsvRowReader implements VasRecordReader {
+        private final BufferedReader reader;
+        private final int patientMrnIndex;
+        private final int vasLevelIndex;
+        private final int deviceIdIndex;
+        private final int locationIndex;
+        private final int timestampIndex;
+        private final int notesIndex;
+        private int lineNumber = 1;
+
+        private CsvRowReader(BufferedReader reader, String[] headers) {
+            this.reader = reader;
+            this.patientMrnIndex = findColumnIndex(headers, "PatientMRN");
+            this.vasLevelIndex = findColumnIndex(headers, "VASLevel");
+            this.deviceIdIndex = findColumnIndex(headers, "DeviceID");
+            this.locationIndex = findColumnIndex(headers, "Location");
+            this.timestampIndex = findColumnIndex(headers, "Timestamp");
+            this.notesIndex = findColumnIndex(headers, "Notes");
+        }
 
-            // Парсинг заголовков
-            String[] headers = parseCsvLine(lines[0]);
-            int patientMrnIndex = findColumnIndex(headers, "PatientMRN");
-            int vasLevelIndex = findColumnIndex(headers, "VASLevel");
-            int deviceIdIndex = findColumnIndex(headers, "DeviceID");
-            int locationIndex = findColumnIndex(headers, "Location");
-            int timestampIndex = findColumnIndex(headers, "Timestamp");
-            int notesIndex = findColumnIndex(headers, "Notes");
-
-            // Парсинг данных
-            for (int i = 1; i < lines.length; i++) {
-                String line = lines[i].trim();
+        /*
+         * @return следующая непустая строка или null в конце файла
+         */
+        @Override
+        public VasRecordRow next() throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
                 if (line.isEmpty()) continue;
 
                 try {
@@ -111,26 +171,20 @@ public class CsvVasParser implements VasFormatParser {
                     // Валидация
                     validateRequest(request);
 
-                    records.add(request);
+                    return new VasRecordRow(lineNumber, request, null);
 
                 } catch (Exception e) {
-                    log.warn("Failed to parse CSV line {}: {}", i + 1, e.getMessage());
-                    // Продолжаем парсинг остальных строк
+                    log.warn("Failed to parse CSV line {}: {}", lineNumber, e.getMessage());
+                    return new VasRecordRow(lineNumber, null, e.getMessage());
                 }
             }
-
-            log.info("Successfully parsed {} VAS records from CSV", records.size());
-            return records;
-
-        } catch (Exception e) {
-            log.error("Failed to parse CSV VAS data: {}", e.getMessage());
-            throw new ParseException("Invalid CSV format: " + e.getMessage(), e);
+            return null;
         }
-    }
 
-    @Override
-    public int getPriority() {
-        return 4; // Низкий приоритет (batch формат)
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
     }
 
     /**
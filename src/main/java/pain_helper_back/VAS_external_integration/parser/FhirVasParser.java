@@ -1,6 +1,9 @@
 package pain_helper_back.VAS_external_integration.parser;
 
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -8,8 +11,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 /**
  *
@@ -36,10 +50,24 @@ import java.time.format.DateTimeFormatter;
  *   }
  * }
  *
- * LOINC КОДЫ ДЛЯ БОЛИ:
+ * LOINC КОДЫ ДЛЯ БОЛИ (значение приводится к VAS 0-10):
  * - 38208-5: Pain severity
  * - 72514-3: Pain severity - 0-10 verbal numeric rating
  * - 38221-8: Pain severity Wong-Baker FACES Scale
+ * - 38214-3: Pain severity Visual analog score (шкала 0-100 мм: valueInteger и valueQuantity делятся на 10;
+ *   valueQuantity с unit "cm" - шкала 0-10)
+ *
+ * BATCH ИМПОРТ (POST /api/external/vas/batch):
+ * - openBundleReader() - Bundle (transaction, batch, collection): entry читаются по одному
+ *   потоковым JSON парсером, дерево строится только для текущего entry
+ * - openNdjsonReader() - NDJSON ($export): один ресурс на строку
+ * - Не-болевые ресурсы пропускаются (SKIPPED), ссылки subject на Patient из того же Bundle
+ *   (urn:uuid:...) разрешаются в MRN по Patient.identifier; Patient должен идти раньше Observation,
+ *   иначе запись отклоняется (неразрешенная urn: ссылка не может быть MRN)
+ * - Нераспознанный effectiveDateTime - ошибка записи (а не текущее время: иначе повторный импорт
+ *   той же выгрузки дает другой ключ дедупликации)
+ *
+ * ВРЕМЯ: effectiveDateTime со смещением (Z, +03:00, -05:00) переводится в часовой пояс сервера
  */
 @Component
 @Slf4j
@@ -49,51 +77,104 @@ public class FhirVasParser implements VasFormatParser {
 
     private static final DateTimeFormatter FHIR_DATETIME = DateTimeFormatter.ISO_DATE_TIME;
 
-    // LOINC коды для боли
-    private static final String[] PAIN_LOINC_CODES = {
-            "38208-5",  // Pain severity
-            "72514-3",  // Pain severity - 0-10 verbal numeric rating
-            "38221-8"   // Pain severity Wong-Baker FACES Scale
-    };
+    private static final String IMPORT_SOURCE = "FHIR_R4_IMPORT";
+    private static final int VAS_MAX = 10;
+    private static final int VAS_MM_MAX = 100;
+
+    // LOINC коды для боли -> максимум шкалы значения (valueQuantity с unit mm/cm - по unit)
+    private static final Map<String, Integer> PAIN_LOINC_SCALES = Map.of(
+            "38208-5", VAS_MAX,     // Pain severity
+            "72514-3", VAS_MAX,     // Pain severity - 0-10 verbal numeric rating
+            "38221-8", VAS_MAX,     // Pain severity Wong-Baker FACES Scale (0, 2, 4, 6, 8, 10)
+            "38214-3", VAS_MM_MAX   // Pain severity Visual analog score (линия 100 мм)
+    );
+
+    // Наблюдения с этими статусами не импортируются
+    private static final Set<String> IGNORED_STATUSES = Set.of("entered-in-error", "cancelled");
 
     @Override
-    public boolean canParse(String contentType, String rawData) {
-        if (contentType != null && contentType.toLowerCase().contains("fhir")) {
-            return true;
-        }
+    public ExternalVasRecordRequestDTO.DataFormat getFormat() {
+        return ExternalVasRecordRequestDTO.DataFormat.FHIR;
+    }
 
-        // Автоопределение FHIR по структуре
+    @Override
+    public ExternalVasRecordRequestDTO parse(String rawData) throws ParseException {
+        log.debug("Parsing FHIR VAS data");
         try {
-            JsonNode root = objectMapper.readTree(rawData);
-            return root.has("resourceType") &&
-                    "Observation".equals(root.get("resourceType").asText());
+            return logParsed(parseTree(objectMapper.readTree(rawData), Map.of(), false));
+        } catch (ParseException e) {
+            throw e;
         } catch (Exception e) {
-            return false;
+            log.error("Failed to parse FHIR VAS data: {}", e.getMessage());
+            throw new ParseException("Invalid FHIR format: " + e.getMessage(), e);
         }
     }
 
+    /*
+     * Дерево уже разобрано VasParserFactory при определении формата - повторно не парсим
+     */
     @Override
-    public ExternalVasRecordRequestDTO parse(String rawData) throws ParseException {
-        log.debug("Parsing FHIR VAS data");
+    public ExternalVasRecordRequestDTO parse(VasPayload payload) throws ParseException {
+        if (payload.getJsonTree() == null) {
+            return parse(payload.getRawData());
+        }
+        return logParsed(parseTree(payload.getJsonTree(), Map.of(), false));
+    }
 
+    /*
+     * Открывает потоковое чтение FHIR Bundle для batch импорта
+     *
+     * @param source Тело запроса; закрывается при close()
+     */
+    public VasRecordReader openBundleReader(Reader source) throws ParseException {
         try {
-            JsonNode root = objectMapper.readTree(rawData);
+            return new BundleEntryReader(objectMapper.createParser(source));
+        } catch (IOException e) {
+            throw new ParseException("Invalid FHIR Bundle: " + e.getMessage(), e);
+        }
+    }
+
+    /*
+     * Открывает построчное чтение FHIR NDJSON для batch импорта.
+     * Поврежденная строка дает ошибку этой записи, чтение продолжается со следующей строки.
+     */
+    public VasRecordReader openNdjsonReader(Reader source) {
+        return new NdjsonResourceReader(source instanceof BufferedReader buffered ? buffered : new BufferedReader(source));
+    }
 
+    private ExternalVasRecordRequestDTO logParsed(ExternalVasRecordRequestDTO request) {
+        log.info("Successfully parsed FHIR VAS record: patientMrn={}, vasLevel={}",
+                request.getPatientMrn(), request.getVasLevel());
+        return request;
+    }
+
+    /*
+     * @param patientReferences fullUrl Patient ресурсов того же Bundle -> MRN
+     * @param batch             batch импорт: нераспознанный effectiveDateTime - ошибка записи
+     */
+    private ExternalVasRecordRequestDTO parseTree(JsonNode root, Map<String, String> patientReferences,
+                                                  boolean batch) throws ParseException {
+        try {
             // Валидация resourceType
-            if (!"Observation".equals(root.path("resourceType").asText())) {
-                throw new ParseException("Expected resourceType 'Observation', got: " +
-                        root.path("resourceType").asText());
+            String resourceType = root.path("resourceType").asText();
+            if ("Bundle".equals(resourceType)) {
+                throw new ParseException("FHIR Bundle is not accepted here, use POST /api/external/vas/batch "
+                        + "with Content-Type application/fhir+json");
+            }
+            if (!"Observation".equals(resourceType)) {
+                throw new ParseException("Expected resourceType 'Observation', got: " + resourceType);
             }
 
             // Проверка, что это VAS observation (по LOINC коду)
-            if (!isPainObservation(root)) {
+            Integer scaleMax = painScaleMax(root);
+            if (scaleMax == null) {
                 throw new ParseException("Not a pain/VAS observation (LOINC code not found)");
             }
 
             // Извлечение данных
-            String patientMrn = extractPatientMrn(root);
-            Integer vasLevel = extractVasLevel(root);
-            LocalDateTime timestamp = extractTimestamp(root);
+            String patientMrn = extractPatientMrn(root, patientReferences);
+            Integer vasLevel = extractVasLevel(root, scaleMax);
+            LocalDateTime timestamp = extractTimestamp(root, batch);
             String deviceId = extractDeviceId(root);
 
             ExternalVasRecordRequestDTO request = ExternalVasRecordRequestDTO.builder()
@@ -101,16 +182,12 @@ public class FhirVasParser implements VasFormatParser {
                     .vasLevel(vasLevel)
                     .deviceId(deviceId)
                     .timestamp(timestamp != null ? timestamp : LocalDateTime.now())
-                    .source("FHIR_R4_IMPORT")
+                    .source(IMPORT_SOURCE)
                     .format(ExternalVasRecordRequestDTO.DataFormat.FHIR)
                     .build();
 
             // Валидация
             validateRequest(request);
-
-            log.info("Successfully parsed FHIR VAS record: patientMrn={}, vasLevel={}",
-                    request.getPatientMrn(), request.getVasLevel());
-
             return request;
 
         } catch (ParseException e) {
@@ -121,38 +198,41 @@ public class FhirVasParser implements VasFormatParser {
         }
     }
 
-    @Override
-    public int getPriority() {
-        return 1; // Высокий приоритет (FHIR - современный стандарт)
-    }
-
     /**
      * Проверяет, является ли observation записью о боли
+     *
+     * @return максимум шкалы по LOINC коду или null, если код не болевой
      */
-    private boolean isPainObservation(JsonNode root) {
+    private Integer painScaleMax(JsonNode root) {
         JsonNode coding = root.path("code").path("coding");
-        if (!coding.isArray()) return false;
+        if (!coding.isArray()) return null;
 
         for (JsonNode code : coding) {
-            String loincCode = code.path("code").asText();
-            for (String painCode : PAIN_LOINC_CODES) {
-                if (painCode.equals(loincCode)) {
-                    return true;
-                }
+            Integer scaleMax = PAIN_LOINC_SCALES.get(code.path("code").asText());
+            if (scaleMax != null) {
+                return scaleMax;
             }
         }
-        return false;
+        return null;
     }
 
     /**
      * Извлекает MRN пациента из subject.reference
-     * Формат: "Patient/EMR-12345678" → "EMR-12345678"
+     * Формат: "Patient/EMR-12345678" → "EMR-12345678"; "urn:uuid:..." - Patient из того же Bundle
      */
-    private String extractPatientMrn(JsonNode root) throws ParseException {
+    private String extractPatientMrn(JsonNode root, Map<String, String> patientReferences) throws ParseException {
         String reference = root.path("subject").path("reference").asText();
         if (reference.isEmpty()) {
             throw new ParseException("Patient reference not found in FHIR Observation");
         }
+        String bundlePatientMrn = patientReferences.get(reference);
+        if (bundlePatientMrn != null) {
+            return bundlePatientMrn;
+        }
+        if (reference.startsWith("urn:")) {
+            throw new ParseException("Unresolved patient reference " + reference
+                    + " (the Patient entry must precede the Observation in the Bundle)");
+        }
 
         // Извлекаем ID из "Patient/EMR-12345678"
         if (reference.contains("/")) {
@@ -162,49 +242,72 @@ public class FhirVasParser implements VasFormatParser {
     }
 
     /**
-     * Извлекает уровень боли из valueInteger или valueQuantity
+     * Извлекает уровень боли из valueInteger или valueQuantity и приводит к VAS 0-10
+     *
+     * @param scaleMax Максимум шкалы LOINC кода
      */
-    private Integer extractVasLevel(JsonNode root) throws ParseException {
-        // Вариант 1: valueInteger
+    private Integer extractVasLevel(JsonNode root, int scaleMax) throws ParseException {
+        // Вариант 1: valueInteger (на шкале LOINC кода)
         if (root.has("valueInteger")) {
-            return root.get("valueInteger").asInt();
+            return toVas(root.get("valueInteger").asInt(), scaleMax);
         }
 
-        // Вариант 2: valueQuantity.value
+        // Вариант 2: valueQuantity.value (шкала по unit: mm - 0-100, cm - 0-10, иначе шкала LOINC кода)
         if (root.has("valueQuantity")) {
             JsonNode quantity = root.get("valueQuantity");
             if (quantity.has("value")) {
-                return quantity.get("value").asInt();
+                String unit = quantity.path("code").asText(quantity.path("unit").asText());
+                int max = "mm".equalsIgnoreCase(unit) ? VAS_MM_MAX
+                        : "cm".equalsIgnoreCase(unit) ? VAS_MAX
+                        : scaleMax;
+                return toVas(quantity.get("value").asDouble(), max);
             }
         }
 
         throw new ParseException("VAS level not found (expected valueInteger or valueQuantity)");
     }
 
+    private static int toVas(double value, int scaleMax) {
+        return (int) Math.round(value * VAS_MAX / scaleMax);
+    }
+
     /**
-     * Извлекает временную метку из effectiveDateTime
+     * Извлекает временную метку из effectiveDateTime (в часовом поясе сервера)
+     *
+     * @param strict true - нераспознанное значение является ошибкой, иначе null (текущее время)
      */
-    private LocalDateTime extractTimestamp(JsonNode root) {
+    private LocalDateTime extractTimestamp(JsonNode root, boolean strict) throws ParseException {
         String dateTimeStr = root.path("effectiveDateTime").asText();
         if (dateTimeStr.isEmpty()) {
             return null;
         }
 
         try {
-            // FHIR использует ISO 8601 с timezone
-            // Убираем timezone для LocalDateTime
-            if (dateTimeStr.contains("Z")) {
-                dateTimeStr = dateTimeStr.replace("Z", "");
-            } else if (dateTimeStr.contains("+")) {
-                dateTimeStr = dateTimeStr.substring(0, dateTimeStr.indexOf("+"));
+            return parseDateTime(dateTimeStr);
+        } catch (DateTimeParseException e) {
+            if (strict) {
+                throw new ParseException("Invalid effectiveDateTime: " + dateTimeStr);
             }
-            return LocalDateTime.parse(dateTimeStr);
-        } catch (Exception e) {
             log.warn("Failed to parse FHIR timestamp: {}, using current time", dateTimeStr);
             return null;
         }
     }
 
+    /*
+     * FHIR dateTime: со смещением - момент времени в часовом поясе сервера,
+     * без смещения - как есть, дата без времени - начало дня
+     */
+    private static LocalDateTime parseDateTime(String value) {
+        if (value.indexOf('T') < 0) {
+            return LocalDate.parse(value).atStartOfDay();
+        }
+        TemporalAccessor parsed = FHIR_DATETIME.parseBest(value, OffsetDateTime::from, LocalDateTime::from);
+        if (parsed instanceof OffsetDateTime offsetDateTime) {
+            return offsetDateTime.atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        }
+        return (LocalDateTime) parsed;
+    }
+
     /*
      * Извлекает ID устройства из device.display
      */
@@ -225,4 +328,169 @@ public class FhirVasParser implements VasFormatParser {
             throw new ParseException("VAS level must be between 0 and 10, got: " + request.getVasLevel());
         }
     }
+
+    /*
+     * Разбор ресурса из Bundle или NDJSON в строку импорта
+     *
+     * @param entryNumber Номер entry в Bundle (с 1) или номер строки NDJSON
+     * @param fullUrl     entry.fullUrl (для ссылок на Patient внутри Bundle)
+     */
+    private VasRecordRow toRow(int entryNumber, JsonNode resource, String fullUrl,
+                               Map<String, String> patientReferences) {
+        String resourceType = resource.path("resourceType").asText();
+        if ("Patient".equals(resourceType)) {
+            String mrn = patientMrnOf(resource);
+            if (mrn != null) {
+                if (fullUrl != null) {
+                    patientReferences.put(fullUrl, mrn);
+                }
+                if (resource.hasNonNull("id")) {
+                    patientReferences.put("Patient/" + resource.get("id").asText(), mrn);
+                }
+            }
+            return VasRecordRow.skipped(entryNumber, "Patient resource");
+        }
+        if (!"Observation".equals(resourceType)) {
+            return VasRecordRow.skipped(entryNumber, "Not an Observation: " + resourceType);
+        }
+        if (painScaleMax(resource) == null) {
+            return VasRecordRow.skipped(entryNumber, "Not a pain Observation (LOINC code not mapped)");
+        }
+        String status = resource.path("status").asText();
+        if (IGNORED_STATUSES.contains(status)) {
+            return VasRecordRow.skipped(entryNumber, "Observation status " + status);
+        }
+        try {
+            return new VasRecordRow(entryNumber, parseTree(resource, patientReferences, true), null);
+        } catch (ParseException e) {
+            return new VasRecordRow(entryNumber, null, e.getMessage());
+        }
+    }
+
+    /*
+     * MRN пациента: identifier с типом MR, иначе первый identifier, иначе id ресурса
+     */
+    private static String patientMrnOf(JsonNode patient) {
+        String first = null;
+        for (JsonNode identifier : patient.path("identifier")) {
+            String value = identifier.path("value").asText(null);
+            if (value == null) continue;
+            for (JsonNode coding : identifier.path("type").path("coding")) {
+                if ("MR".equals(coding.path("code").asText())) {
+                    return value;
+                }
+            }
+            if (first == null) first = value;
+        }
+        return first != null ? first : patient.path("id").asText(null);
+    }
+
+    /*
+     * Чтение entry[].resource из Bundle: поля Bundle пропускаются, в памяти только текущий entry
+     */
+    private class BundleEntryReader implements VasRecordReader {
+        private final JsonParser parser;
+        private final Map<String, String> patientReferences = new HashMap<>();
+        private boolean inEntries;
+        private int entryNumber;
+
+        private BundleEntryReader(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public VasRecordRow next() throws IOException, ParseException {
+            try {
+                if (!inEntries && !seekEntries()) {
+                    return null;
+                }
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY) {
+                    inEntries = false;
+                    return next(); // После entry могут идти другие поля Bundle
+                }
+                if (token != JsonToken.START_OBJECT) {
+                    throw new ParseException("Invalid FHIR Bundle: entry " + (entryNumber + 1) + " is not an object");
+                }
+                entryNumber++;
+                JsonNode entry = parser.readValueAsTree();
+                JsonNode resource = entry.path("resource");
+                if (!resource.isObject()) {
+                    return new VasRecordRow(entryNumber, null, "Bundle entry has no resource");
+                }
+                return toRow(entryNumber, resource, entry.path("fullUrl").asText(null), patientReferences);
+            } catch (JsonProcessingException e) {
+                // Поврежденный JSON: дальше читать нельзя
+                throw new ParseException("Invalid FHIR Bundle: " + e.getOriginalMessage(), e);
+            }
+        }
+
+        /*
+         * Переход к массиву entry корневого Bundle
+         *
+         * @return false если Bundle закончился
+         */
+        private boolean seekEntries() throws IOException, ParseException {
+            if (parser.currentToken() == null && parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ParseException("Invalid FHIR Bundle: expected a JSON object");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                token = parser.nextToken();
+                if ("resourceType".equals(field) && !"Bundle".equals(parser.getValueAsString())) {
+                    throw new ParseException("Expected resourceType 'Bundle', got: " + parser.getValueAsString());
+                }
+                if ("entry".equals(field) && token == JsonToken.START_ARRAY) {
+                    inEntries = true;
+                    return true;
+                }
+                parser.skipChildren();
+            }
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    /*
+     * Чтение NDJSON: один FHIR ресурс на строку, пустые строки пропускаются
+     */
+    private class NdjsonResourceReader implements VasRecordReader {
+        private final BufferedReader source;
+        private final Map<String, String> patientReferences = new HashMap<>();
+        private int lineNumber;
+
+        private NdjsonResourceReader(BufferedReader source) {
+            this.source = source;
+        }
+
+        @Override
+        public VasRecordRow next() throws IOException {
+            String line;
+            while ((line = source.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                JsonNode resource;
+                try {
+                    resource = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    return new VasRecordRow(lineNumber, null, "Invalid JSON: " + e.getOriginalMessage());
+                }
+                if (!resource.isObject()) {
+                    return new VasRecordRow(lineNumber, null, "Expected a FHIR resource object");
+                }
+                return toRow(lineNumber, resource, null, patientReferences);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
 }
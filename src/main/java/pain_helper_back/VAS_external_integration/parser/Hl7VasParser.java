@@ -31,13 +31,8 @@ public class Hl7VasParser implements VasFormatParser {
     private static final DateTimeFormatter HL7_DATETIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 
     @Override
-    public boolean canParse(String contentType, String rawData) {
-        if (contentType != null && contentType.toLowerCase().contains("hl7")) {
-            return true;
-        }
-
-        // Автоопределение HL7 по структуре (начинается с MSH)
-        return rawData.trim().startsWith("MSH|");
+    public ExternalVasRecordRequestDTO.DataFormat getFormat() {
+        return ExternalVasRecordRequestDTO.DataFormat.HL7_V2;
     }
 
     @Override
@@ -62,8 +57,9 @@ public class Hl7VasParser implements VasFormatParser {
                         if (mshFields.length > 3) {
                             deviceId = mshFields[3]; // Sending Application
                         }
-                        if (mshFields.length > 7) {
-                            timestamp = parseHl7DateTime(mshFields[7]);
+                        if (mshFields.length > 6) {
+                            // MSH-7: Date/Time of Message (MSH-1 - сам разделитель, поэтому индекс 6)
+                            timestamp = parseHl7DateTime(mshFields[6]);
                         }
                         break;
 
@@ -112,11 +108,6 @@ public class Hl7VasParser implements VasFormatParser {
         }
     }
 
-    @Override
-    public int getPriority() {
-        return 3; // Низкий приоритет (специфичный формат)
-    }
-
     private LocalDateTime parseHl7DateTime(String hl7DateTime) {
         try {
             return LocalDateTime.parse(hl7DateTime, HL7_DATETIME);
@@ -1,5 +1,6 @@
 package pain_helper_back.VAS_external_integration.parser;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,23 +30,38 @@ public class JsonVasParser implements VasFormatParser {
     private final ObjectMapper objectMapper;
 
     @Override
-    public boolean canParse(String contentType, String rawData) {
-        if (contentType != null && contentType.toLowerCase().contains("json")) {
-            return true;
-        }
-
-        // Автоопределение JSON по структуре
-        String trimmed = rawData.trim();
-        return trimmed.startsWith("{") && trimmed.endsWith("}");
+    public ExternalVasRecordRequestDTO.DataFormat getFormat() {
+        return ExternalVasRecordRequestDTO.DataFormat.JSON;
     }
 
     @Override
     public ExternalVasRecordRequestDTO parse(String rawData) throws ParseException {
         log.debug("Parsing JSON VAS data: {}", rawData);
+        try {
+            return parseTree(objectMapper.readTree(rawData));
+        } catch (ParseException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to parse JSON VAS data: {}", e.getMessage());
+            throw new ParseException("Invalid JSON format: " + e.getMessage(), e);
+        }
+    }
 
+    /*
+     * Дерево уже разобрано VasParserFactory при определении формата - повторно не парсим
+     */
+    @Override
+    public ExternalVasRecordRequestDTO parse(VasPayload payload) throws ParseException {
+        if (payload.getJsonTree() == null) {
+            return parse(payload.getRawData());
+        }
+        return parseTree(payload.getJsonTree());
+    }
+
+    private ExternalVasRecordRequestDTO parseTree(JsonNode root) throws ParseException {
         try {
-            // Прямой парсинг в DTO
-            ExternalVasRecordRequestDTO request = objectMapper.readValue(rawData, ExternalVasRecordRequestDTO.class);
+            // Прямое преобразование дерева в DTO
+            ExternalVasRecordRequestDTO request = objectMapper.treeToValue(root, ExternalVasRecordRequestDTO.class);
 
             // Установка формата
             request.setFormat(ExternalVasRecordRequestDTO.DataFormat.JSON);
@@ -63,17 +79,14 @@ public class JsonVasParser implements VasFormatParser {
 
             return request;
 
+        } catch (ParseException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to parse JSON VAS data: {}", e.getMessage());
             throw new ParseException("Invalid JSON format: " + e.getMessage(), e);
         }
     }
 
-    @Override
-    public int getPriority() {
-        return 1; // Высокий приоритет (JSON - стандарт)
-    }
-
     private void validateRequest(ExternalVasRecordRequestDTO request) throws ParseException {
         if (request.getPatientMrn() == null || request.getPatientMrn().trim().isEmpty()) {
             throw new ParseException("patientMrn is required");
@@ -10,13 +10,9 @@ import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO
  */
 public interface VasFormatParser {
     /*
-     * Проверяет, может ли парсер обработать данный формат
-     *
-     * @param contentType Content-Type из HTTP заголовка
-     * @param rawData Сырые данные
-     * @return true если парсер поддерживает этот формат
+     * Формат, который обрабатывает парсер (VasParserFactory выбирает парсер по формату)
      */
-    boolean canParse(String contentType, String rawData);
+    ExternalVasRecordRequestDTO.DataFormat getFormat();
     /*
      * Парсит данные в унифицированный DTO
      *
@@ -26,10 +22,13 @@ public interface VasFormatParser {
      */
     ExternalVasRecordRequestDTO parse(String rawData)throws ParseException;
     /*
-     * Возвращает приоритет парсера (чем меньше, тем выше)
-     * Используется когда несколько парсеров могут обработать формат
+     * Парсит данные, для которых VasParserFactory уже определил формат.
+     * Парсеры, которым достаточно уже разобранного при определении формата
+     * (например, JSON дерева), переопределяют метод и не разбирают данные повторно.
      */
-    int getPriority();
+    default ExternalVasRecordRequestDTO parse(VasPayload payload) throws ParseException {
+        return parse(payload.getRawData());
+    }
 
     class ParseException extends Exception {
         public ParseException(String message) {
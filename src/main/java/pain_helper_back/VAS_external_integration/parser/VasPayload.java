@@ -0,0 +1,80 @@
+package pain_helper_back.VAS_external_integration.parser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/*
+ * Входящие VAS данные вместе с результатами определения формата.
+ *
+ * НАЗНАЧЕНИЕ:
+ * - VasParserFactory один раз смотрит на Content-Type и первые непробельные символы
+ * - Если для определения формата пришлось разобрать JSON (JSON vs FHIR),
+ *   дерево сохраняется здесь и парсер использует его вместо повторного разбора
+ */
+public final class VasPayload {
+    private final String contentType;
+    private final String rawData;
+    private final int contentStart;
+    private JsonNode jsonTree;
+
+    public VasPayload(String contentType, String rawData) {
+        this.contentType = contentType != null ? contentType.toLowerCase() : null;
+        this.rawData = rawData != null ? rawData : "";
+        this.contentStart = firstNonWhitespace(this.rawData);
+    }
+
+    /*
+     * Content-Type в нижнем регистре (null если заголовок не передан)
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getRawData() {
+        return rawData;
+    }
+
+    public boolean isBlank() {
+        return contentStart == rawData.length();
+    }
+
+    /*
+     * Первый непробельный символ данных (0 для пустых данных)
+     */
+    public char firstChar() {
+        return isBlank() ? 0 : rawData.charAt(contentStart);
+    }
+
+    /*
+     * Начинаются ли данные (без ведущих пробелов) с указанного префикса
+     */
+    public boolean startsWith(String prefix) {
+        return rawData.startsWith(prefix, contentStart);
+    }
+
+    /*
+     * Первая непустая строка данных в нижнем регистре (заголовок CSV)
+     */
+    public String firstLine() {
+        int end = rawData.indexOf('\n', contentStart);
+        return rawData.substring(contentStart, end < 0 ? rawData.length() : end).trim().toLowerCase();
+    }
+
+    /*
+     * JSON дерево, разобранное при определении формата (null если не разбиралось)
+     */
+    public JsonNode getJsonTree() {
+        return jsonTree;
+    }
+
+    public void setJsonTree(JsonNode jsonTree) {
+        this.jsonTree = jsonTree;
+    }
+
+    private static int firstNonWhitespace(String data) {
+        int i = 0;
+        // BOM от некоторых устройств не считается содержимым
+        if (!data.isEmpty() && data.charAt(0) == '\uFEFF') i++;
+        while (i < data.length() && Character.isWhitespace(data.charAt(i))) i++;
+        return i;
+    }
+}
@@ -0,0 +1,23 @@
+package pain_helper_back.VAS_external_integration.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+ * Потоковое чтение VAS записей для batch импорта.
+ *
+ * РЕАЛИЗАЦИИ:
+ * - CsvVasParser.CsvRowReader - построчно
+ * - XmlVasParser.XmlRecordReader - по элементам VASRecord (StAX)
+ * - FhirVasParser.BundleEntryReader - по entry FHIR Bundle (потоковый JSON парсер)
+ * - FhirVasParser.NdjsonResourceReader - по строкам FHIR NDJSON
+ *
+ * В памяти находится только текущая запись.
+ */
+public interface VasRecordReader extends Closeable {
+    /*
+     * @return следующая запись (валидная или с ошибкой) или null в конце данных
+     * @throws VasFormatParser.ParseException если данные повреждены и чтение продолжить нельзя
+     */
+    VasRecordRow next() throws IOException, VasFormatParser.ParseException;
+}
@@ -0,0 +1,25 @@
+package pain_helper_back.VAS_external_integration.parser;
+
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+
+/*
+ * Результат разбора одной записи потокового импорта (CSV строка, XML элемент VASRecord,
+ * FHIR entry): запись, ошибка или пропущенный ресурс без VAS данных
+ *
+ * @param lineNumber Номер строки в файле, с которой начинается запись (для FHIR Bundle - номер entry)
+ * @param skipped    Ресурс не содержит VAS данных (например, Patient в FHIR Bundle) - не ошибка
+ */
+public record VasRecordRow(int lineNumber, ExternalVasRecordRequestDTO record, String error, boolean skipped) {
+
+    public VasRecordRow(int lineNumber, ExternalVasRecordRequestDTO record, String error) {
+        this(lineNumber, record, error, false);
+    }
+
+    public static VasRecordRow skipped(int lineNumber, String reason) {
+        return new VasRecordRow(lineNumber, null, reason, true);
+    }
+
+    public boolean isValid() {
+        return record != null;
+    }
+}
@@ -2,20 +2,25 @@ package pain_helper_back.VAS_external_integration.parser;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
 
 /*
- * Парсер для XML формата VAS данных.
+ * Парсер для XML формата VAS данных (StAX, потоковое чтение).
  *
- * ПОДДЕРЖИВАЕМЫЙ ФОРМАТ:
+ * ПОДДЕРЖИВАЕМЫЕ ФОРМАТЫ:
+ * 1. Одна запись:
  * <?xml version="1.0" encoding="UTF-8"?>
  * <VASRecord>
  *   <PatientMRN>EMR-12345678</PatientMRN>
@@ -25,95 +30,216 @@ import java.time.format.DateTimeFormatter;
  *   <Timestamp>2025-10-20T15:30:00</Timestamp>
  *   <Notes>Patient reports sharp pain</Notes>
  * </VASRecord>
+ *
+ * 2. Несколько записей (batch импорт):
+ * <vasRecords>
+ *   <VASRecord>...</VASRecord>
+ *   <VASRecord>...</VASRecord>
+ * </vasRecords>
+ *
+ * ОСОБЕННОСТИ:
+ * - parse() возвращает ПЕРВУЮ запись (для single record endpoint)
+ * - openReader() читает записи по одной, документ целиком в память не загружается
+ * - Фабрика StAX создается один раз; DTD и внешние сущности запрещены (защита от XXE)
  */
 @Component
 @Slf4j
 public class XmlVasParser implements VasFormatParser {
 
     private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final String RECORD_ELEMENT = "VASRecord";
 
-    @Override
-    public boolean canParse(String contentType, String rawData) {
-        if (contentType != null && contentType.toLowerCase().contains("xml")) {
-            return true;
-        }
+    /*
+     * Настроенная фабрика только создает readers и после инициализации не меняется,
+     * поэтому один экземпляр используется всеми потоками
+     */
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
 
-        // Автоопределение XML по структуре
-        String trimmed = rawData.trim();
-        return trimmed.startsWith("<?xml") || trimmed.startsWith("<VASRecord");
+    @Override
+    public ExternalVasRecordRequestDTO.DataFormat getFormat() {
+        return ExternalVasRecordRequestDTO.DataFormat.XML;
     }
 
     @Override
     public ExternalVasRecordRequestDTO parse(String rawData) throws ParseException {
         log.debug("Parsing XML VAS data");
 
-        try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(new ByteArrayInputStream(rawData.getBytes()));
-
-            Element root = doc.getDocumentElement();
-
-            ExternalVasRecordRequestDTO request = ExternalVasRecordRequestDTO.builder()
-                    .patientMrn(getElementText(root, "PatientMRN"))
-                    .vasLevel(getElementInt(root, "VASLevel"))
-                    .deviceId(getElementText(root, "DeviceID"))
-                    .location(getElementText(root, "Location"))
-                    .timestamp(getElementDateTime(root, "Timestamp"))
-                    .notes(getElementText(root, "Notes"))
-                    .source("XML_IMPORT")
-                    .format(ExternalVasRecordRequestDTO.DataFormat.XML)
-                    .build();
-
-            // Установка timestamp если отсутствует
-            if (request.getTimestamp() == null) {
-                request.setTimestamp(LocalDateTime.now());
+        try (XmlRecordReader reader = openReader(new StringReader(rawData))) {
+            VasRecordRow row = reader.next();
+            if (row == null) {
+                throw new ParseException("Invalid XML format: no " + RECORD_ELEMENT + " element found");
+            }
+            if (!row.isValid()) {
+                throw new ParseException("Invalid XML format: " + row.error());
             }
 
-            // Валидация
-            validateRequest(request);
-
+            ExternalVasRecordRequestDTO request = row.record();
             log.info("Successfully parsed XML VAS record: patientMrn={}, vasLevel={}",
                     request.getPatientMrn(), request.getVasLevel());
-
             return request;
 
+        } catch (ParseException e) {
+            log.error("Failed to parse XML VAS data: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Failed to parse XML VAS data: {}", e.getMessage());
             throw new ParseException("Invalid XML format: " + e.getMessage(), e);
         }
     }
 
-    @Override
-    public int getPriority() {
-        return 2; // Средний приоритет
+    /*
+     * Открывает потоковое чтение XML (для импорта больших документов).
+     * Записи VASRecord читаются по одной через next(), в памяти только текущая запись.
+     *
+     * @param source Источник XML (например, InputStream запроса)
+     * @return Reader записей; закрывает source при close()
+     */
+    public XmlRecordReader openReader(Reader source) throws ParseException {
+        try {
+            return new XmlRecordReader(INPUT_FACTORY.createXMLStreamReader(source), source);
+        } catch (XMLStreamException e) {
+            throw new ParseException("Invalid XML format: " + e.getMessage(), e);
+        }
     }
 
-    private String getElementText(Element parent, String tagName) {
-        try {
-            return parent.getElementsByTagName(tagName).item(0).getTextContent();
-        } catch (Exception e) {
-            return null;
+    /*
+     * Чтение элементов VASRecord на любой глубине документа
+     */
+    public class XmlRecordReader implements VasRecordReader {
+        private final XMLStreamReader reader;
+        private final Reader source;
+
+        private XmlRecordReader(XMLStreamReader reader, Reader source) {
+            this.reader = reader;
+            this.source = source;
         }
+
+        @Override
+        public VasRecordRow next() throws ParseException {
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.DTD) {
+                        // Фабрика не обрабатывает DTD, но документ с DOCTYPE отклоняем явно
+                        throw new ParseException("Invalid XML format: DOCTYPE is not allowed");
+                    }
+                    if (event == XMLStreamConstants.START_ELEMENT
+                            && RECORD_ELEMENT.equalsIgnoreCase(reader.getLocalName())) {
+                        int lineNumber = reader.getLocation().getLineNumber();
+                        Map<String, String> fields = readRecordFields();
+                        try {
+                            return new VasRecordRow(lineNumber, toRequest(fields), null);
+                        } catch (ParseException e) {
+                            log.warn("Failed to parse XML record at line {}: {}", lineNumber, e.getMessage());
+                            return new VasRecordRow(lineNumber, null, e.getMessage());
+                        }
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                // Поврежденный документ: дальше читать нельзя
+                throw new ParseException("Invalid XML format: " + e.getMessage(), e);
+            }
+        }
+
+        /*
+         * Читает текстовые поля текущего VASRecord до его закрывающего тега.
+         * Вложенные элементы без текста пропускаются.
+         */
+        private Map<String, String> readRecordFields() throws XMLStreamException {
+            Map<String, String> fields = new HashMap<>();
+            int depth = 1;
+            String currentField = null;
+            StringBuilder text = new StringBuilder();
+
+            while (depth > 0 && reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        depth++;
+                        currentField = reader.getLocalName().toLowerCase();
+                        text.setLength(0);
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                        if (currentField != null) text.append(reader.getText());
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        depth--;
+                        if (currentField != null) {
+                            fields.putIfAbsent(currentField, text.toString());
+                            currentField = null;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                log.debug("Failed to close XML stream reader: {}", e.getMessage());
+            } finally {
+                source.close();
+            }
+        }
+    }
+
+    private ExternalVasRecordRequestDTO toRequest(Map<String, String> fields) throws ParseException {
+        ExternalVasRecordRequestDTO request = ExternalVasRecordRequestDTO.builder()
+                .patientMrn(getText(fields, "PatientMRN"))
+                .vasLevel(getInt(fields, "VASLevel"))
+                .deviceId(getText(fields, "DeviceID"))
+                .location(getText(fields, "Location"))
+                .timestamp(getDateTime(fields, "Timestamp"))
+                .notes(getText(fields, "Notes"))
+                .source("XML_IMPORT")
+                .format(ExternalVasRecordRequestDTO.DataFormat.XML)
+                .build();
+
+        // Установка timestamp если отсутствует
+        if (request.getTimestamp() == null) {
+            request.setTimestamp(LocalDateTime.now());
+        }
+
+        // Валидация
+        validateRequest(request);
+        return request;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        return factory;
+    }
+
+    private String getText(Map<String, String> fields, String tagName) {
+        String text = fields.get(tagName.toLowerCase());
+        return text != null && !text.isBlank() ? text.trim() : null;
     }
 
-    private Integer getElementInt(Element parent, String tagName) throws ParseException {
-        String text = getElementText(parent, tagName);
+    private Integer getInt(Map<String, String> fields, String tagName) throws ParseException {
+        String text = getText(fields, tagName);
         if (text == null) return null;
 
         try {
-            return Integer.parseInt(text.trim());
+            return Integer.parseInt(text);
         } catch (NumberFormatException e) {
             throw new ParseException("Invalid integer value for " + tagName + ": " + text);
         }
     }
 
-    private LocalDateTime getElementDateTime(Element parent, String tagName) {
-        String text = getElementText(parent, tagName);
+    private LocalDateTime getDateTime(Map<String, String> fields, String tagName) {
+        String text = getText(fields, tagName);
         if (text == null) return null;
 
         try {
-            return LocalDateTime.parse(text.trim(), ISO_FORMATTER);
+            return LocalDateTime.parse(text, ISO_FORMATTER);
         } catch (Exception e) {
             log.warn("Failed to parse timestamp: {}, using current time", text);
             return null;
@@ -133,4 +259,4 @@ public class XmlVasParser implements VasFormatParser {
             throw new ParseException("VASLevel must be between 0 and 10, got: " + request.getVasLevel());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,9 @@
 package pain_helper_back.VAS_external_integration.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pain_helper_back.VAS_external_integration.entity.ApiKey;
 
@@ -38,4 +41,19 @@ public interface ApiKeyRepository extends JpaRepository<ApiKey, String> {
      * Найти истекшие ключи
      */
     List<ApiKey> findByExpiresAtBefore(LocalDateTime dateTime);
+
+    /*
+     * Точечные UPDATE настроек ключа: usage_count и last_used_at (ApiKeyUsageTracker) не трогаются
+     */
+    @Modifying
+    @Query("UPDATE ApiKey k SET k.active = false WHERE k.apiKey = :apiKey")
+    int deactivate(@Param("apiKey") String apiKey);
+
+    @Modifying
+    @Query("UPDATE ApiKey k SET k.ipWhitelist = :ipWhitelist WHERE k.apiKey = :apiKey")
+    int updateIpWhitelist(@Param("apiKey") String apiKey, @Param("ipWhitelist") String ipWhitelist);
+
+    @Modifying
+    @Query("UPDATE ApiKey k SET k.rateLimitPerMinute = :rateLimitPerMinute WHERE k.apiKey = :apiKey")
+    int updateRateLimit(@Param("apiKey") String apiKey, @Param("rateLimitPerMinute") Integer rateLimitPerMinute);
 }
\ No newline at end of file
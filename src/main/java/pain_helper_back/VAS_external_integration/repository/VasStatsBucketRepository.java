@@ -0,0 +1,42 @@
+package pain_helper_back.VAS_external_integration.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import pain_helper_back.VAS_external_integration.entity.VasStatsBucket;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Repository для часовых bucket статистики внешних VAS записей
+ */
+@Repository
+public interface VasStatsBucketRepository extends JpaRepository<VasStatsBucket, Long> {
+
+    /**
+     * Bucket за период [from, to)
+     */
+    List<VasStatsBucket> findByBucketStartGreaterThanEqualAndBucketStartLessThan(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Bucket указанных часов (обновление при flush)
+     */
+    List<VasStatsBucket> findByBucketStartIn(Collection<LocalDateTime> bucketStarts);
+
+    /**
+     * Время последнего успешного flush
+     */
+    @Query("SELECT MAX(b.updatedAt) FROM VasStatsBucket b")
+    LocalDateTime findLastUpdatedAt();
+
+    /**
+     * Удаление устаревших bucket
+     */
+    @Modifying
+    @Query("DELETE FROM VasStatsBucket b WHERE b.bucketStart < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
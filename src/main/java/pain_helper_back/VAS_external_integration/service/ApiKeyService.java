@@ -4,13 +4,21 @@ package pain_helper_back.VAS_external_integration.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.VAS_external_integration.config.ApiKeyConfig;
 import pain_helper_back.VAS_external_integration.entity.ApiKey;
 import pain_helper_back.VAS_external_integration.repository.ApiKeyRepository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /*
  * Сервис для управления API ключами внешних систем.
@@ -18,9 +26,16 @@ import java.util.UUID;
  * ФУНКЦИИ:
  * - Генерация новых API ключей
  * - Валидация ключей
- * - IP whitelist проверка
+ * - IP whitelist проверка (адреса и CIDR блоки IPv4/IPv6, см. IpWhitelist)
  * - Rate limiting
  * - Статистика использования
+ *
+ * КЭШ:
+ * - Проверенные активные ключи хранятся в памяти vas.api-key.cache-ttl-seconds,
+ *   повторные запросы устройства не обращаются к БД
+ * - deactivateKey / updateIpWhitelist / updateRateLimit / cleanupExpiredKeys
+ *   сбрасывают ключ из кэша сразу (и повторно после коммита транзакции)
+ * - Счетчики использования ведет ApiKeyUsageTracker и записывает в БД пакетно
  */
 @Service
 @Slf4j
@@ -29,6 +44,10 @@ import java.util.UUID;
 public class ApiKeyService {
 
     private final ApiKeyRepository apiKeyRepository;
+    private final ApiKeyUsageTracker usageTracker;
+    private final ApiKeyConfig apiKeyConfig;
+
+    private final Map<String, CachedApiKey> keyCache = new ConcurrentHashMap<>();
 
     /*
      * Генерация нового API ключа для внешней системы
@@ -70,15 +89,17 @@ public class ApiKeyService {
     /*
      * Валидация API ключа
      *
+     * Вне транзакции: при попадании в кэш соединение из пула не занимается.
+     *
      * @param apiKey API ключ
      * @param clientIp IP адрес клиента
      * @return true если ключ валиден
      */
-
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public boolean validateApiKey(String apiKey, String clientIp) {
         log.debug("Validating API key: {} from IP: {}", maskApiKey(apiKey), clientIp);
-        // Поиск ключа
-        ApiKey key = apiKeyRepository.findByApiKeyAndActiveTrue(apiKey).orElse(null);
+        // Поиск ключа (кэш, затем БД)
+        CachedApiKey key = getActiveKey(apiKey).orElse(null);
 
         if (key == null) {
             log.warn("API key not found or inactive: {}", maskApiKey(apiKey));
@@ -86,52 +107,91 @@ public class ApiKeyService {
         }
         // Проверка срока действия
         if (key.isExpired()) {
-            log.warn("API key expired: {}, expiresAt: {}", maskApiKey(apiKey), key.getExpiresAt());
+            log.warn("API key expired: {}, expiresAt: {}", maskApiKey(apiKey), key.expiresAt());
             return false;
         }
         // Проверка IP whitelist
-        if (!isIpAllowed(key.getIpWhitelist(), clientIp)) {
+        if (!key.ipWhitelist().matches(clientIp)) {
             log.warn("IP not whitelisted: {} for API key: {}", clientIp, maskApiKey(apiKey));
             return false;
         }
-        // Обновление статистики использования
-        updateUsageStats(key);
+        // Обновление статистики использования (в памяти, запись в БД - ApiKeyUsageTracker)
+        usageTracker.recordUsage(apiKey);
 
         log.debug("API key validated successfully: {}", maskApiKey(apiKey));
         return true;
     }
     /*
-     * Проверка IP whitelist
+     * Активный ключ из кэша; при промахе или истекшем TTL - из БД
      *
-     * @param whitelist Whitelist (разделенные запятыми IP или "*")
-     * @param clientIp IP клиента
-     * @return true если IP разрешен
+     * @return Снимок ключа или пустой Optional, если ключ не найден или неактивен
      */
-
-    private boolean isIpAllowed(String whitelist, String clientIp) {
-        if (whitelist == null || whitelist.trim().isEmpty()) {
-            return true; // Нет whitelist - разрешаем всем
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Optional<CachedApiKey> getActiveKey(String apiKey) {
+        if (apiKey == null) {
+            return Optional.empty();
         }
-        if ("*".equals(whitelist.trim())) {
-            return true; // Wildcard - разрешаем всем
+        long now = System.nanoTime();
+        CachedApiKey cached = keyCache.get(apiKey);
+        if (cached != null && now - cached.loadedAtNanos() < TimeUnit.SECONDS.toNanos(apiKeyConfig.getCacheTtlSeconds())) {
+            return Optional.of(cached);
         }
-        // Проверка списка IP
-        String[] allowedIps = whitelist.split(",");
-        for (String allowedIp : allowedIps) {
-            if (allowedIp.trim().equals(clientIp)) {
-                return true;
+
+        Optional<CachedApiKey> loaded = apiKeyRepository.findByApiKeyAndActiveTrue(apiKey)
+                .map(key -> CachedApiKey.of(key, now));
+        if (loaded.isPresent()) {
+            if (keyCache.size() >= apiKeyConfig.getCacheMaxSize()) {
+                evictStaleKeys(now);
             }
+            keyCache.put(apiKey, loaded.get());
+        } else {
+            keyCache.remove(apiKey);
         }
-        return false;
+        return loaded;
     }
 
     /*
-     * Обновление статистики использования ключа
+     * Сброс ключа из кэша сейчас и после коммита текущей транзакции
+     * (иначе параллельный запрос мог бы закэшировать еще не измененную строку)
      */
-    public void updateUsageStats(ApiKey key) {
-        key.setLastUsedAt(LocalDateTime.now());
-        key.setUsageCount(key.getUsageCount() + 1);
-        apiKeyRepository.save(key);
+    private void invalidateCachedKey(String apiKey) {
+        keyCache.remove(apiKey);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keyCache.remove(apiKey);
+                }
+            });
+        }
+    }
+
+    private void evictStaleKeys(long now) {
+        long ttlNanos = TimeUnit.SECONDS.toNanos(apiKeyConfig.getCacheTtlSeconds());
+        keyCache.values().removeIf(entry -> now - entry.loadedAtNanos() >= ttlNanos);
+        if (keyCache.size() >= apiKeyConfig.getCacheMaxSize()) {
+            keyCache.clear();
+        }
+    }
+
+    /*
+     * Неизменяемый снимок активного API ключа для проверок без обращения к БД.
+     * Whitelist компилируется один раз при загрузке ключа в кэш.
+     */
+    public record CachedApiKey(String apiKey,
+                               LocalDateTime expiresAt,
+                               IpWhitelist ipWhitelist,
+                               Integer rateLimitPerMinute,
+                               long loadedAtNanos) {
+
+        static CachedApiKey of(ApiKey key, long loadedAtNanos) {
+            return new CachedApiKey(key.getApiKey(), key.getExpiresAt(), IpWhitelist.compile(key.getIpWhitelist()),
+                    key.getRateLimitPerMinute(), loadedAtNanos);
+        }
+
+        public boolean isExpired() {
+            return expiresAt != null && LocalDateTime.now().isAfter(expiresAt);
+        }
     }
 
     /*
@@ -140,10 +200,8 @@ public class ApiKeyService {
     public void deactivateKey(String apiKey) {
         log.info("Deactivating API key: {}", maskApiKey(apiKey));
 
-        ApiKey key = apiKeyRepository.findById(apiKey).orElse(null);
-        if (key != null) {
-            key.setActive(false);
-            apiKeyRepository.save(key);
+        if (apiKeyRepository.deactivate(apiKey) > 0) {
+            invalidateCachedKey(apiKey);
             log.info("API key deactivated: {}", maskApiKey(apiKey));
         }
     }
@@ -166,14 +224,16 @@ public class ApiKeyService {
 
     /*
      * Обновить IP whitelist
+     *
+     * @param ipWhitelist "*" или список IP адресов и CIDR блоков IPv4/IPv6 через запятую
+     * @throws IllegalArgumentException если список содержит некорректные записи
      */
     public void updateIpWhitelist(String apiKey, String ipWhitelist) {
         log.info("Updating IP whitelist for API key: {}", maskApiKey(apiKey));
+        IpWhitelist.validate(ipWhitelist);
 
-        ApiKey key = apiKeyRepository.findById(apiKey).orElse(null);
-        if (key != null) {
-            key.setIpWhitelist(ipWhitelist);
-            apiKeyRepository.save(key);
+        if (apiKeyRepository.updateIpWhitelist(apiKey, ipWhitelist) > 0) {
+            invalidateCachedKey(apiKey);
             log.info("IP whitelist updated: {}", ipWhitelist);
         }
     }
@@ -184,10 +244,8 @@ public class ApiKeyService {
     public void updateRateLimit(String apiKey, Integer rateLimitPerMinute) {
         log.info("Updating rate limit for API key: {}", maskApiKey(apiKey));
 
-        ApiKey key = apiKeyRepository.findById(apiKey).orElse(null);
-        if (key != null) {
-            key.setRateLimitPerMinute(rateLimitPerMinute);
-            apiKeyRepository.save(key);
+        if (apiKeyRepository.updateRateLimit(apiKey, rateLimitPerMinute) > 0) {
+            invalidateCachedKey(apiKey);
             log.info("Rate limit updated: {}", rateLimitPerMinute);
         }
     }
@@ -212,8 +270,8 @@ public class ApiKeyService {
 
         for(ApiKey key:expiredKeys){
             if(key.getActive()){
-                key.setActive(false);
-                apiKeyRepository.save(key);
+                apiKeyRepository.deactivate(key.getApiKey());
+                invalidateCachedKey(key.getApiKey());
                 log.info("Deactivated expired API key: {}", maskApiKey(key.getApiKey()));
             }
         }
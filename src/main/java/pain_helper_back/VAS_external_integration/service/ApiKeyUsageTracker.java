@@ -0,0 +1,94 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Учет использования API ключей в памяти с периодической записью в БД.
+ *
+ * НАЗНАЧЕНИЕ:
+ * - Раньше каждый запрос делал save() ApiKey ради usageCount/lastUsedAt:
+ *   запись в одну и ту же строку от всех устройств с общим ключом
+ * - Теперь запрос только увеличивает LongAdder, а flush() раз в
+ *   vas.api-key.usage-flush-interval-ms пишет накопленные приращения одним JDBC batch
+ *
+ * usageCount/lastUsedAt в БД отстают от реальных не больше чем на интервал записи.
+ * Счетчики не удаляются: их число ограничено числом ключей.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ApiKeyUsageTracker {
+    private static final String UPDATE_USAGE_SQL =
+            "UPDATE api_keys SET usage_count = COALESCE(usage_count, 0) + ?, last_used_at = ? WHERE api_key = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, UsageCounter> counters = new ConcurrentHashMap<>();
+
+    /*
+     * Регистрация одного использования ключа (без обращения к БД)
+     */
+    public void recordUsage(String apiKey) {
+        UsageCounter counter = counters.computeIfAbsent(apiKey, k -> new UsageCounter());
+        counter.count.increment();
+        counter.lastUsedAtMillis.accumulateAndGet(System.currentTimeMillis(), Math::max);
+    }
+
+    /*
+     * Незаписанное в БД число использований ключа
+     */
+    public long getPendingUsage(String apiKey) {
+        UsageCounter counter = counters.get(apiKey);
+        return counter != null ? counter.count.sum() : 0L;
+    }
+
+    @Scheduled(fixedDelayString = "${vas.api-key.usage-flush-interval-ms:10000}")
+    public synchronized void flush() {
+        List<Object[]> updates = new ArrayList<>();
+        for (Map.Entry<String, UsageCounter> entry : counters.entrySet()) {
+            UsageCounter counter = entry.getValue();
+            long delta = counter.count.sumThenReset();
+            if (delta == 0) {
+                continue;
+            }
+            updates.add(new Object[]{delta, new Timestamp(counter.lastUsedAtMillis.get()), entry.getKey()});
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_USAGE_SQL, updates);
+            log.debug("Flushed API key usage for {} keys", updates.size());
+        } catch (Exception e) {
+            // Не теряем приращения: вернем их в счетчики до следующей попытки
+            log.error("Failed to flush API key usage for {} keys: {}", updates.size(), e.getMessage());
+            for (Object[] update : updates) {
+                counters.get((String) update[2]).count.add((Long) update[0]);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static final class UsageCounter {
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong lastUsedAtMillis = new AtomicLong();
+    }
+}
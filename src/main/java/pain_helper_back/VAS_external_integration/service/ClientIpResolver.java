@@ -0,0 +1,57 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+import pain_helper_back.VAS_external_integration.config.VasRateLimitConfig;
+
+/*
+ * Адрес клиента запроса к /api/external/vas/** (per-IP лимит, IP whitelist API ключа).
+ *
+ * АЛГОРИТМ:
+ * - X-Forwarded-For учитывается, только если запрос пришел от доверенного proxy
+ *   (vas.rate-limit.trusted-proxies), иначе клиент мог бы подставить любой адрес
+ * - Цепочка X-Forwarded-For читается справа налево, доверенные proxy пропускаются;
+ *   клиент - первый адрес, не являющийся доверенным proxy
+ * - Без доверенных proxy - всегда getRemoteAddr()
+ */
+@Component
+public class ClientIpResolver {
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    // null - доверенных proxy нет (IpWhitelist.compile пустого списка разрешает все адреса)
+    private final IpWhitelist trustedProxies;
+
+    public ClientIpResolver(VasRateLimitConfig config) {
+        String proxies = config.getTrustedProxies();
+        if (proxies == null || proxies.isBlank()) {
+            this.trustedProxies = null;
+        } else {
+            IpWhitelist.validate(proxies);
+            this.trustedProxies = IpWhitelist.compile(proxies);
+        }
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (trustedProxies == null || !trustedProxies.matches(remoteAddr)) {
+            return remoteAddr;
+        }
+        String forwardedFor = request.getHeader(FORWARDED_FOR);
+        if (forwardedFor == null || forwardedFor.isBlank()) {
+            return remoteAddr;
+        }
+        String[] hops = forwardedFor.split(",");
+        String client = remoteAddr;
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) {
+                continue;
+            }
+            client = hop;
+            if (!trustedProxies.matches(hop)) {
+                break;
+            }
+        }
+        return client;
+    }
+}
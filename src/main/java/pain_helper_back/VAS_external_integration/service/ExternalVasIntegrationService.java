@@ -4,27 +4,30 @@ package pain_helper_back.VAS_external_integration.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordResponseDTO;
 import pain_helper_back.VAS_external_integration.dto.VasMonitorStatsDTO;
-import pain_helper_back.VAS_external_integration.parser.CsvVasParser;
-import pain_helper_back.VAS_external_integration.parser.VasFormatParser;
 import pain_helper_back.analytics.event.VasRecordedEvent;
 import pain_helper_back.common.patients.entity.Patient;
 import pain_helper_back.common.patients.entity.Vas;
 import pain_helper_back.common.patients.repository.PatientRepository;
+import pain_helper_back.common.patients.repository.RecommendationRepository;
 import pain_helper_back.common.patients.repository.VasRepository;
 import pain_helper_back.enums.RecommendationStatus;
 import pain_helper_back.nurse.service.NurseService;
 import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
+import pain_helper_back.patient_locking.SerializedByPatient;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /*
  * Сервис для обработки VAS данных из внешних систем.
@@ -33,7 +36,8 @@ import java.util.Map;
  * - Конвертация внешних данных во внутренний формат
  * - Сохранение VAS в БД
  * - Автоматическая генерация рекомендаций
- * - Batch обработка CSV
+ * - Сохранение микро-батчей (async ingest, потоковый CSV импорт)
+ * - Учет сохраненных записей в статистике VAS Monitor (VasStatisticsService)
  */
 @Service
 @Slf4j
@@ -43,10 +47,31 @@ public class ExternalVasIntegrationService {
     private final PatientRepository patientRepository;
     private final VasRepository vasRepository;
     private final NurseService nurseService;
-    private final CsvVasParser csvParser;
     private final ApplicationEventPublisher eventPublisher;
     private final PainEscalationService painEscalationService;
-    
+    private final RecommendationRepository recommendationRepository;
+    private final VasStatisticsService vasStatisticsService;
+    private final VasDeduplicationService deduplicationService;
+    private final VasStreamService vasStreamService;
+
+    /*
+     * Минимальный уровень VAS для автоматической генерации рекомендации
+     */
+    public static final int RECOMMENDATION_VAS_THRESHOLD = 4;
+
+    /*
+     * Максимальное число MRN в одном IN запросе при загрузке пациентов батча
+     */
+    private static final int MRN_LOOKUP_CHUNK_SIZE = 500;
+
+    /*
+     * Максимальный размер страницы для getVasRecords
+     */
+    public static final int MAX_RECORDS_PAGE_SIZE = 500;
+
+    private static final String EXTERNAL_SOURCE_PREFIX = "EXTERNAL_";
+    private static final char LIKE_ESCAPE = '\\';
+    private static final Sort RECORDS_SORT = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
 
     /*
      * Обработка одной VAS записи из внешней системы
@@ -54,6 +79,7 @@ public class ExternalVasIntegrationService {
      * @param externalVas Внешняя VAS запись
      * @return ID созданной VAS записи
      */
+    @SerializedByPatient(mrn = "#externalVas.patientMrn")
     public Long processExternalVasRecord(ExternalVasRecordRequestDTO externalVas) {
         log.info("Processing external VAS record: patientMrn={}, vasLevel={}, source={}",
                 externalVas.getPatientMrn(), externalVas.getVasLevel(), externalVas.getSource());
@@ -63,41 +89,19 @@ public class ExternalVasIntegrationService {
                 .orElseThrow(() -> new RuntimeException(
                         "Patient not found with MRN: " + externalVas.getPatientMrn()));
         // 2. Создать VAS запись
-        Vas vas = new Vas();
-        vas.setPatient(patient);
-        vas.setVasLevel(externalVas.getVasLevel());
-        vas.setRecordedAt(externalVas.getTimestamp());
-        vas.setLocation(externalVas.getLocation());
-        vas.setPainPlace(externalVas.getPainPlace());
-        vas.setNotes(externalVas.getNotes());
-        vas.setRecordedBy("EXTERNAL_" + externalVas.getSource()); // Помечаем как внешний источник
-
-        Vas savedVas = vasRepository.save(vas);
+        Vas savedVas = vasRepository.save(buildVas(patient, externalVas));
+        vasStatisticsService.recordAfterCommit(List.of(savedVas));
+        vasStreamService.publishAfterCommit(List.of(savedVas));
 
         log.info("VAS record saved: vasId={}, patientMrn={}, vasLevel={}",
                 savedVas.getId(), externalVas.getPatientMrn(), externalVas.getVasLevel());
 
         // 2.1. Публикация события VAS (EXTERNAL источник - внешнее устройство)
-        eventPublisher.publishEvent(new VasRecordedEvent(
-                this,
-                savedVas.getId(),
-                externalVas.getPatientMrn(),
-                "EXTERNAL_" + externalVas.getSource(), // recordedBy - помечаем как внешний источник
-                externalVas.getTimestamp() != null ? externalVas.getTimestamp() : LocalDateTime.now(),
-                externalVas.getVasLevel(),
-                externalVas.getLocation(), // painLocation
-                externalVas.getVasLevel() >= 8, // isCritical если боль >= 8
-                "EXTERNAL", // vasSource - внешний источник
-                externalVas.getDeviceId() // deviceId устройства
-        ));
-
-        log.info("VAS_RECORDED event published: source=EXTERNAL, device={}, vasLevel={}",
-                externalVas.getDeviceId(), externalVas.getVasLevel());
-
+        publishVasRecorded(savedVas, externalVas);
 
         // 3. Автоматическая генерация рекомендации (если VAS >= 4)
         // ВАЖНО: Используем отдельную транзакцию, чтобы ошибка рекомендации не откатила VAS
-        if (externalVas.getVasLevel() >= 4) {
+        if (externalVas.getVasLevel() >= RECOMMENDATION_VAS_THRESHOLD) {
             // Проверяем есть ли уже PENDING рекомендация у пациента
             boolean hasPending = patient.getRecommendations().stream()
                     .anyMatch(r -> r.getStatus() == RecommendationStatus.PENDING);
@@ -121,142 +125,308 @@ public class ExternalVasIntegrationService {
     }
 
     /*
-     * Batch обработка VAS записей из CSV
+     * Сохранение микро-батча VAS записей из асинхронного ingest pipeline (VasIngestPipeline).
+     *
+     * ОТЛИЧИЯ ОТ processExternalVasRecord:
+     * - Все записи батча сохраняются одним saveAll в одной транзакции
+     * - Пациенты батча загружаются одним IN запросом по уникальным MRN (resolvePatientsByMrn)
+     * - Записи с неизвестным MRN отклоняются без дополнительных обращений к БД
+     * - Повторно присланные записи (уже сохраненные или повторенные внутри батча) пропускаются
+     *   до сохранения и публикации событий (resolveDuplicates)
+     * - Рекомендации НЕ генерируются здесь - pipeline запускает их асинхронно после коммита
      *
-     * @param csvData CSV данные
-     * @return Статистика обработки
+     * @param records Записи батча
+     * @return Результаты в порядке входного списка (vasId == null - пациент не найден)
      */
-    public Map<String, Object> processBatchVasRecords(String csvData) throws VasFormatParser.ParseException {
-        log.info("Processing batch VAS import from CSV");
-
-        // Парсинг CSV
-        List<ExternalVasRecordRequestDTO> records = csvParser.parseMultiple(csvData);
-        int total = records.size();
-        int success = 0;
-        int failed = 0;
-        List<String> errors = new ArrayList<>();
-        List<Long> createdVasIds = new ArrayList<>();
-
-        // Обработка каждой записи
+    public List<IngestResult> persistIngestBatch(List<ExternalVasRecordRequestDTO> records) {
+        Map<String, Patient> patientsByMrn = resolvePatientsByMrn(records);
+        Map<String, Long> persistedByKey = resolveDuplicates(records);
+        Set<String> batchKeys = new HashSet<>();
+        List<IngestResult> results = new ArrayList<>(Collections.nCopies(records.size(), IngestResult.REJECTED));
+        List<Vas> toSave = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        Set<String> rejectedMrns = new LinkedHashSet<>();
+        int duplicates = 0;
+
         for (int i = 0; i < records.size(); i++) {
             ExternalVasRecordRequestDTO record = records.get(i);
+            String dedupKey = record.getDedupKey();
+            if (dedupKey != null && (persistedByKey.containsKey(dedupKey) || !batchKeys.add(dedupKey))) {
+                // Повтор внутри батча получит ID при следующей попытке, если первая запись батча не сохранится
+                results.set(i, new IngestResult(persistedByKey.get(dedupKey), true));
+                duplicates++;
+                continue;
+            }
+            Patient patient = patientsByMrn.get(record.getPatientMrn());
+            if (patient == null) {
+                rejectedMrns.add(record.getPatientMrn());
+                continue;
+            }
+            toSave.add(buildVas(patient, record));
+            positions.add(i);
+        }
 
-            try {
-                Long vasId = processExternalVasRecord(record);
-                createdVasIds.add(vasId);
-                success++;
-            } catch (Exception e) {
-                failed++;
-                String error = String.format("Line %d: %s (MRN: %s)",
-                        i + 2, e.getMessage(), record.getPatientMrn());
-                errors.add(error);
-                log.warn("Failed to process CSV line {}: {}", i + 2, e.getMessage());
+        List<Vas> saved = vasRepository.saveAll(toSave);
+        vasStatisticsService.recordAfterCommit(saved);
+        vasStreamService.publishAfterCommit(saved);
+
+        Map<String, Long> savedByKey = new HashMap<>();
+        for (int i = 0; i < saved.size(); i++) {
+            int position = positions.get(i);
+            Vas vas = saved.get(i);
+            results.set(position, new IngestResult(vas.getId(), false));
+            if (vas.getDedupKey() != null) {
+                savedByKey.put(vas.getDedupKey(), vas.getId());
+                deduplicationService.remember(vas.getDedupKey());
             }
+            publishVasRecorded(vas, records.get(position));
         }
-        log.info("Batch import completed: total={}, success={}, failed={}", total, success, failed);
-        // Формирование результата
-        Map<String, Object> result = new HashMap<>();
-        result.put("status", failed == 0 ? "success" : "partial_success");
-        result.put("total", total);
-        result.put("success", success);
-        result.put("failed", failed);
-        result.put("createdVasIds", createdVasIds);
-        if (!errors.isEmpty()) {
-            result.put("errors", errors);
+        // Повторы внутри батча ссылаются на запись, сохраненную в этом же батче
+        for (int i = 0; i < results.size(); i++) {
+            IngestResult result = results.get(i);
+            if (result.duplicate() && result.vasId() == null) {
+                results.set(i, new IngestResult(savedByKey.get(records.get(i).getDedupKey()), true));
+            }
         }
+        if (duplicates > 0) {
+            deduplicationService.recordBatchDuplicates(duplicates);
+        }
+
+        log.info("Ingest batch persisted: size={}, saved={}, duplicates={}, patients={}, rejected={}",
+                records.size(), saved.size(), duplicates, patientsByMrn.size(),
+                records.size() - saved.size() - duplicates);
+        if (!rejectedMrns.isEmpty()) {
+            log.warn("Ingest batch rejected records for unknown MRNs: {}", rejectedMrns);
+        }
+        return results;
+    }
 
-        return result;
+    /*
+     * Результат сохранения записи батча
+     *
+     * @param vasId     ID VAS записи (сохраненной или ранее сохраненного оригинала); null - пациент не найден
+     * @param duplicate Запись - повтор уже сохраненной, события и рекомендации для нее не запускаются
+     */
+    public record IngestResult(Long vasId, boolean duplicate) {
+        static final IngestResult REJECTED = new IngestResult(null, false);
+    }
+
+    /*
+     * Поиск уже сохраненных записей батча по ключу дубликата.
+     * Один IN запрос по индексу dedup_key на каждые MRN_LOOKUP_CHUNK_SIZE ключей.
+     *
+     * @return ключ -> ID сохраненной записи
+     */
+    private Map<String, Long> resolveDuplicates(List<ExternalVasRecordRequestDTO> records) {
+        List<String> distinctKeys = records.stream()
+                .map(deduplicationService::keyOf)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        Map<String, Long> persistedByKey = new HashMap<>();
+        for (int from = 0; from < distinctKeys.size(); from += MRN_LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = distinctKeys.subList(from, Math.min(from + MRN_LOOKUP_CHUNK_SIZE, distinctKeys.size()));
+            for (VasRepository.DedupKeyView view : vasRepository.findByDedupKeyIn(chunk)) {
+                persistedByKey.put(view.getDedupKey(), view.getId());
+            }
+        }
+        return persistedByKey;
+    }
+
+    /*
+     * Загрузка пациентов батча по уникальным MRN.
+     * Вместо findByMrn на каждую запись - один IN запрос на каждые MRN_LOOKUP_CHUNK_SIZE MRN.
+     *
+     * @return MRN -> пациент (неизвестных MRN в карте нет)
+     */
+    private Map<String, Patient> resolvePatientsByMrn(List<ExternalVasRecordRequestDTO> records) {
+        List<String> distinctMrns = records.stream()
+                .map(ExternalVasRecordRequestDTO::getPatientMrn)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        Map<String, Patient> patientsByMrn = new HashMap<>(distinctMrns.size() * 2);
+        for (int from = 0; from < distinctMrns.size(); from += MRN_LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = distinctMrns.subList(from, Math.min(from + MRN_LOOKUP_CHUNK_SIZE, distinctMrns.size()));
+            for (Patient patient : patientRepository.findByMrnIn(chunk)) {
+                patientsByMrn.put(patient.getMrn(), patient);
+            }
+        }
+        return patientsByMrn;
+    }
+
+    /*
+     * Генерация рекомендации для пациента вне транзакции сохранения VAS
+     * (вызывается асинхронно из VasIngestPipeline после коммита батча).
+     *
+     * NOT_SUPPORTED: createRecommendation() открывает свою транзакцию, и ее ошибка
+     * не помечает внешнюю транзакцию как rollback-only.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @SerializedByPatient(mrn = "#mrn")
+    public void generateRecommendationIfNoPending(String mrn) {
+        if (!recommendationRepository.findByPatientMrnAndStatus(mrn, RecommendationStatus.PENDING).isEmpty()) {
+            log.info("Skipping recommendation generation - PENDING recommendation already exists for patient {}", mrn);
+            return;
+        }
+        try {
+            nurseService.createRecommendation(mrn);
+            log.info("Recommendation generated automatically for patient: {}", mrn);
+        } catch (Exception e) {
+            log.error("Failed to generate recommendation for patient {}: {}", mrn, e.getMessage());
+        }
     }
 
     /*
-     * Получить список VAS записей с фильтрами для мониторинга.
+     * Получить страницу VAS записей с фильтрами для мониторинга.
+     *
+     * Фильтры выполняются в БД (Specification), сортировка: createdAt DESC, id DESC.
+     * Возвращается Slice (запрашивается size + 1 строка, COUNT не выполняется);
+     * общее количество - отдельно через countVasRecords().
      *
      * @param deviceId Фильтр по ID устройства (optional)
-     * @param location Фильтр по локации (optional)
+     * @param location Начало локации, например "Ward A" (optional)
      * @param timeRange Временной диапазон: "1h", "6h", "24h", "7d" (optional)
      * @param vasLevelMin Минимальный уровень VAS (optional)
      * @param vasLevelMax Максимальный уровень VAS (optional)
-     * @return Список VAS записей с данными пациентов
+     * @param page Номер страницы (с 0)
+     * @param size Размер страницы (ограничен MAX_RECORDS_PAGE_SIZE)
+     * @return Страница VAS записей с данными пациентов
      */
     @Transactional(readOnly = true)
-    public List<ExternalVasRecordResponseDTO> getVasRecords(
+    public Slice<ExternalVasRecordResponseDTO> getVasRecords(
             String deviceId,
             String location,
             String timeRange,
             Integer vasLevelMin,
-            Integer vasLevelMax) {
+            Integer vasLevelMax,
+            int page,
+            int size) {
 
-        log.info("Fetching VAS records: deviceId={}, location={}, timeRange={}, vasRange={}-{}",
-                deviceId, location, timeRange, vasLevelMin, vasLevelMax);
-
-        // Определяем временной диапазон
-        LocalDateTime startTime = calculateStartTime(timeRange);
-
-        // Получаем VAS записи с фильтрацией
-        List<Vas> vasRecords = vasRepository.findAll().stream()
-                .filter(v -> v.getRecordedBy() != null && v.getRecordedBy().startsWith("EXTERNAL_"))
-                .filter(v -> startTime == null || v.getCreatedAt().isAfter(startTime))
-                .filter(v -> deviceId == null || extractDeviceId(v.getRecordedBy()).contains(deviceId))
-                .filter(v -> location == null || (v.getLocation() != null && v.getLocation().contains(location)))
-                .filter(v -> vasLevelMin == null || v.getVasLevel() >= vasLevelMin)
-                .filter(v -> vasLevelMax == null || v.getVasLevel() <= vasLevelMax)
-                .sorted((v1, v2) -> v2.getCreatedAt().compareTo(v1.getCreatedAt())) // DESC по времени
-                .toList();
+        log.info("Fetching VAS records: deviceId={}, location={}, timeRange={}, vasRange={}-{}, page={}, size={}",
+                deviceId, location, timeRange, vasLevelMin, vasLevelMax, page, size);
+
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.clamp(size, 1, MAX_RECORDS_PAGE_SIZE),
+                RECORDS_SORT);
+        Specification<Vas> spec = externalVasSpec(deviceId, location, calculateStartTime(timeRange),
+                vasLevelMin, vasLevelMax);
+
+        // Пациент загружается тем же запросом (entity graph), без отдельного SELECT на запись
+        Slice<Vas> vasRecords = vasRepository.findBy(spec, query -> query.project("patient").slice(pageable));
 
-        log.info("Found {} VAS records matching filters", vasRecords.size());
+        log.info("Found {} VAS records matching filters (hasNext={})",
+                vasRecords.getNumberOfElements(), vasRecords.hasNext());
 
         // Конвертируем в DTO с данными пациента
-        return vasRecords.stream()
-                .map(this::convertToResponse)
-                .toList();
+        return vasRecords.map(this::convertToResponse);
     }
 
     /*
-     * Получить статистику по VAS записям за сегодня.
-     *
-     * @return Статистика: total, average, high pain alerts, active devices
+     * Количество VAS записей по тем же фильтрам, что и getVasRecords() (COUNT в БД)
      */
     @Transactional(readOnly = true)
-    public VasMonitorStatsDTO getVasStatistics() {
-        log.info("Calculating VAS statistics for today");
-
-        LocalDateTime startOfDay = LocalDateTime.now().toLocalDate().atStartOfDay();
+    public long countVasRecords(
+            String deviceId,
+            String location,
+            String timeRange,
+            Integer vasLevelMin,
+            Integer vasLevelMax) {
+        return vasRepository.count(externalVasSpec(deviceId, location, calculateStartTime(timeRange),
+                vasLevelMin, vasLevelMax));
+    }
 
-        // Получаем все внешние VAS записи за сегодня
-        List<Vas> todayRecords = vasRepository.findAll().stream()
-                .filter(v -> v.getRecordedBy() != null && v.getRecordedBy().startsWith("EXTERNAL_"))
-                .filter(v -> v.getCreatedAt().isAfter(startOfDay))
-                .toList();
+    /*
+     * Вспомогательный метод: фильтр внешних VAS записей для getVasRecords / countVasRecords.
+     * Использует индексы idx_vas_recorded_by_created_at, idx_vas_created_at и idx_vas_location.
+     * Локация сравнивается по префиксу (LIKE 'Ward A%'): поиск по подстроке ('%Ward A%')
+     * не может использовать B-tree индекс и читает все внешние записи периода.
+     */
+    private Specification<Vas> externalVasSpec(
+            String deviceId,
+            String location,
+            LocalDateTime startTime,
+            Integer vasLevelMin,
+            Integer vasLevelMax) {
 
-        int totalRecords = todayRecords.size();
+        // Только внешние записи: recordedBy = "EXTERNAL_<source>"
+        Specification<Vas> spec = (root, query, cb) ->
+                cb.like(root.get("recordedBy"), escapeLike(EXTERNAL_SOURCE_PREFIX) + "%", LIKE_ESCAPE);
 
-        // Средний VAS
-        double averageVas = todayRecords.isEmpty() ? 0.0 :
-                todayRecords.stream()
-                        .mapToInt(Vas::getVasLevel)
-                        .average()
-                        .orElse(0.0);
+        if (deviceId != null && !deviceId.isBlank()) {
+            spec = spec.and((root, query, cb) -> cb.like(root.get("recordedBy"),
+                    escapeLike(EXTERNAL_SOURCE_PREFIX) + "%" + escapeLike(deviceId) + "%", LIKE_ESCAPE));
+        }
+        if (location != null && !location.isBlank()) {
+            spec = spec.and((root, query, cb) ->
+                    cb.like(root.get("location"), escapeLike(location.trim()) + "%", LIKE_ESCAPE));
+        }
+        if (startTime != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThan(root.get("createdAt"), startTime));
+        }
+        if (vasLevelMin != null) {
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("vasLevel"), vasLevelMin));
+        }
+        if (vasLevelMax != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("vasLevel"), vasLevelMax));
+        }
+        return spec;
+    }
 
-        // High pain alerts (VAS >= 7)
-        int highPainAlerts = (int) todayRecords.stream()
-                .filter(v -> v.getVasLevel() >= 7)
-                .count();
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 
-        // Активные устройства (DISTINCT deviceId)
-        long activeDevices = todayRecords.stream()
-                .map(v -> extractDeviceId(v.getRecordedBy()))
-                .distinct()
-                .count();
+    /*
+     * Получить статистику по VAS записям за сегодня.
+     * Считается по инкрементальным часовым bucket (VasStatisticsService), без чтения таблицы vas.
+     *
+     * @return Статистика: total, average, high pain alerts, active devices, разбивка по устройствам и локациям
+     */
+    public VasMonitorStatsDTO getVasStatistics() {
+        VasMonitorStatsDTO stats = vasStatisticsService.getTodayStatistics();
 
         log.info("VAS Statistics: total={}, avg={}, highPain={}, devices={}",
-                totalRecords, averageVas, highPainAlerts, activeDevices);
+                stats.getTotalRecordsToday(), stats.getAverageVas(), stats.getHighPainAlerts(), stats.getActiveDevices());
+        return stats;
+    }
 
-        return VasMonitorStatsDTO.builder()
-                .totalRecordsToday(totalRecords)
-                .averageVas(Math.round(averageVas * 10.0) / 10.0) // Округление до 1 знака
-                .highPainAlerts(highPainAlerts)
-                .activeDevices((int) activeDevices)
-                .build();
+    /*
+     * Вспомогательный метод: создание Vas entity из внешней записи.
+     */
+    private Vas buildVas(Patient patient, ExternalVasRecordRequestDTO externalVas) {
+        Vas vas = new Vas();
+        vas.setPatient(patient);
+        vas.setVasLevel(externalVas.getVasLevel());
+        vas.setRecordedAt(externalVas.getTimestamp());
+        vas.setLocation(externalVas.getLocation());
+        vas.setPainPlace(externalVas.getPainPlace());
+        vas.setNotes(externalVas.getNotes());
+        vas.setRecordedBy("EXTERNAL_" + externalVas.getSource()); // Помечаем как внешний источник
+        vas.setDedupKey(deduplicationService.keyOf(externalVas));
+        return vas;
+    }
+
+    /*
+     * Вспомогательный метод: публикация VAS_RECORDED для внешней записи.
+     */
+    private void publishVasRecorded(Vas savedVas, ExternalVasRecordRequestDTO externalVas) {
+        eventPublisher.publishEvent(new VasRecordedEvent(
+                this,
+                savedVas.getId(),
+                externalVas.getPatientMrn(),
+                "EXTERNAL_" + externalVas.getSource(), // recordedBy - помечаем как внешний источник
+                savedVas.getRecordedAt(),
+                externalVas.getVasLevel(),
+                externalVas.getLocation(), // painLocation
+                externalVas.getVasLevel() >= 8, // isCritical если боль >= 8
+                "EXTERNAL", // vasSource - внешний источник
+                externalVas.getDeviceId() // deviceId устройства
+        ));
+
+        log.info("VAS_RECORDED event published: source=EXTERNAL, device={}, vasLevel={}",
+                externalVas.getDeviceId(), externalVas.getVasLevel());
     }
 
     /*
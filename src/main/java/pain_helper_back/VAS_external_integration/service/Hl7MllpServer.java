@@ -0,0 +1,419 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import pain_helper_back.VAS_external_integration.config.Hl7MllpConfig;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.parser.Hl7VasParser;
+import pain_helper_back.VAS_external_integration.parser.VasFormatParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Встроенный HL7 v2 MLLP сервер для bedside мониторов (включается vas.mllp.enabled=true).
+ *
+ * ПРОТОКОЛ MLLP:
+ * - Устройство держит постоянное TCP соединение
+ * - Каждое сообщение обрамлено: <VT>(0x0B) HL7 сообщение <FS>(0x1C)<CR>(0x0D)
+ * - На каждое сообщение сервер отвечает ACK в том же соединении:
+ *   MSA|AA - запись принята в очередь ingest
+ *   MSA|AE - сообщение не разобрано (Hl7VasParser)
+ *   MSA|AR - очередь ingest переполнена, устройство должно повторить отправку
+ *
+ * АРХИТЕКТУРА:
+ * - Один поток с NIO Selector обслуживает все соединения (без потока на соединение)
+ * - Разбор HL7 и постановка в очередь (VasIngestPipeline.submit) не блокируют,
+ *   сохранение в БД выполняют обработчики ingest pipeline микро-батчами
+ * - Неизвестный MRN выясняется уже при сохранении: ACK подтверждает прием, а не сохранение
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "vas.mllp", name = "enabled", havingValue = "true")
+public class Hl7MllpServer {
+    static final byte START_BLOCK = 0x0B;
+    static final byte END_BLOCK = 0x1C;
+    static final byte CARRIAGE_RETURN = 0x0D;
+
+    private static final DateTimeFormatter HL7_DATETIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final Hl7MllpConfig config;
+    private final Hl7VasParser hl7Parser;
+    private final VasIngestPipeline ingestPipeline;
+    private final Charset charset;
+    private final IpWhitelist allowedSources;
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    // Метрики
+    private final LongAdder openConnections = new LongAdder();
+    private final LongAdder connectionsRefused = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder messagesAccepted = new LongAdder();
+    private final LongAdder messagesRejected = new LongAdder();
+    private final LongAdder messagesFailed = new LongAdder();
+    private final AtomicLong ackSequence = new AtomicLong();
+
+    public Hl7MllpServer(Hl7MllpConfig config, Hl7VasParser hl7Parser, VasIngestPipeline ingestPipeline) {
+        this.config = config;
+        this.hl7Parser = hl7Parser;
+        this.ingestPipeline = ingestPipeline;
+        this.charset = Charset.forName(config.getCharset());
+        IpWhitelist.validate(config.getAllowedSources());
+        this.allowedSources = IpWhitelist.compile(config.getAllowedSources());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(config.getBindAddress(), config.getPort()));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "Hl7Mllp-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("HL7 MLLP server listening on {}:{}, allowed sources: {}", config.getBindAddress(), getLocalPort(),
+                allowedSources.isAllowAll() ? "any" : allowedSources);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (selectorThread != null) {
+            try {
+                selectorThread.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("HL7 MLLP server stopped: received={}, accepted={}, rejected={}, failed={}",
+                messagesReceived.sum(), messagesAccepted.sum(), messagesRejected.sum(), messagesFailed.sum());
+    }
+
+    /*
+     * Фактический порт (при vas.mllp.port=0 выбирается ОС)
+     */
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public long getOpenConnections() {
+        return openConnections.sum();
+    }
+
+    public long getConnectionsRefused() {
+        return connectionsRefused.sum();
+    }
+
+    public long getMessagesReceived() {
+        return messagesReceived.sum();
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select(1_000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) write(key);
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        log.debug("HL7 MLLP connection closed: {}", e.getMessage());
+                        close(key);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("HL7 MLLP selector loop failed: {}", e.getMessage(), e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+            if (!allowedSources.matches(remote.getAddress().getHostAddress())) {
+                connectionsRefused.increment();
+                log.warn("HL7 MLLP connection from {} refused: source not in vas.mllp.allowed-sources", remote);
+                channel.close();
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().setKeepAlive(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel.getRemoteAddress().toString()));
+            openConnections.increment();
+            log.debug("HL7 MLLP connection opened: {}", channel.getRemoteAddress());
+        }
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = connection.readBuffer;
+
+        int read = 0;
+        // Пока ACK не дописаны (клиент не читает ответы), новые данные не читаем
+        while (connection.pendingWrites.isEmpty() && (read = channel.read(buffer)) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (!connection.accept(buffer.get())) {
+                    log.warn("HL7 MLLP message from {} exceeds {} bytes, closing connection",
+                            connection.remoteAddress, config.getMaxMessageBytes());
+                    messagesFailed.increment();
+                    queueAck(key, connection, buildAck(null, "AE", "Message too large"));
+                    flushAndClose(key, connection);
+                    return;
+                }
+                if (connection.frameComplete) {
+                    String message = connection.takeMessage(charset);
+                    queueAck(key, connection, handleMessage(message));
+                }
+            }
+            buffer.clear();
+        }
+        if (read < 0) {
+            close(key);
+        }
+    }
+
+    /*
+     * Разбор сообщения и постановка в очередь ingest
+     *
+     * @return ACK сообщение для отправки устройству
+     */
+    String handleMessage(String message) {
+        messagesReceived.increment();
+        String[] msh = mshFields(message);
+        try {
+            ExternalVasRecordRequestDTO record = hl7Parser.parse(message);
+            record.setSource("HL7_MLLP");
+            Optional<String> trackingId = ingestPipeline.submit(record);
+            if (trackingId.isEmpty()) {
+                messagesRejected.increment();
+                return buildAck(msh, "AR", "Ingest queue is full, retry later");
+            }
+            messagesAccepted.increment();
+            return buildAck(msh, "AA", null);
+        } catch (VasFormatParser.ParseException e) {
+            messagesFailed.increment();
+            return buildAck(msh, "AE", e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to handle HL7 MLLP message: {}", e.getMessage(), e);
+            messagesFailed.increment();
+            return buildAck(msh, "AE", "Internal error");
+        }
+    }
+
+    /*
+     * HL7 ACK: отправитель и получатель из исходного MSH меняются местами,
+     * MSA-2 ссылается на MSH-10 (Message Control ID) исходного сообщения
+     */
+    private String buildAck(String[] msh, String ackCode, String errorText) {
+        String sendingApp = field(msh, 2);
+        String sendingFacility = field(msh, 3);
+        String receivingApp = field(msh, 4);
+        String receivingFacility = field(msh, 5);
+        String controlId = field(msh, 9);
+        String version = msh != null && msh.length > 11 ? msh[11] : "2.5";
+
+        StringBuilder ack = new StringBuilder(160)
+                .append("MSH|^~\\&|")
+                .append(receivingApp.isEmpty() ? "PMA" : receivingApp).append('|')
+                .append(receivingFacility.isEmpty() ? "HOSPITAL" : receivingFacility).append('|')
+                .append(sendingApp).append('|')
+                .append(sendingFacility).append('|')
+                .append(LocalDateTime.now().format(HL7_DATETIME)).append("||ACK^R01|")
+                .append("ACK").append(ackSequence.incrementAndGet()).append("|P|")
+                .append(version).append('\r')
+                .append("MSA|").append(ackCode).append('|').append(controlId);
+        if (errorText != null) {
+            ack.append('|').append(sanitize(errorText));
+        }
+        return ack.append('\r').toString();
+    }
+
+    private static String[] mshFields(String message) {
+        if (message == null || !message.startsWith("MSH|")) return null;
+        int end = message.indexOf('\r');
+        if (end < 0) end = message.indexOf('\n');
+        String segment = end < 0 ? message : message.substring(0, end);
+        return segment.split("\\|", -1);
+    }
+
+    private static String field(String[] fields, int index) {
+        return fields != null && fields.length > index ? fields[index] : "";
+    }
+
+    /*
+     * Текст ошибки не должен ломать структуру ACK (разделители HL7)
+     */
+    private static String sanitize(String text) {
+        String cleaned = text.replaceAll("[|^~\\\\&\\r\\n]", " ");
+        return cleaned.length() > 80 ? cleaned.substring(0, 80) : cleaned;
+    }
+
+    private void queueAck(SelectionKey key, Connection connection, String ack) throws IOException {
+        byte[] payload = ack.getBytes(charset);
+        ByteBuffer frame = ByteBuffer.allocate(payload.length + 3);
+        frame.put(START_BLOCK).put(payload).put(END_BLOCK).put(CARRIAGE_RETURN).flip();
+        connection.pendingWrites.add(frame);
+        write(key);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        Deque<ByteBuffer> pending = connection.pendingWrites;
+
+        while (!pending.isEmpty()) {
+            ByteBuffer head = pending.peek();
+            channel.write(head);
+            if (head.hasRemaining()) {
+                // Буфер сокета заполнен: дописываем, когда канал снова станет доступен для записи,
+                // чтение соединения приостановлено до этого момента
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            pending.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void flushAndClose(SelectionKey key, Connection connection) {
+        try {
+            SocketChannel channel = (SocketChannel) key.channel();
+            for (ByteBuffer buffer : connection.pendingWrites) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            log.debug("Failed to flush HL7 MLLP NAK: {}", e.getMessage());
+        }
+        close(key);
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        if (key.attachment() instanceof Connection) {
+            openConnections.decrement();
+            key.attach(null);
+        }
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Failed to close HL7 MLLP channel: {}", e.getMessage());
+        }
+    }
+
+    private void closeAll() {
+        if (selector == null) return;
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close HL7 MLLP selector: {}", e.getMessage());
+        }
+    }
+
+    /*
+     * Состояние соединения: разбор MLLP кадра побайтно,
+     * кадр может приходить частями или несколько кадров в одном чтении
+     */
+    private final class Connection {
+        private final String remoteAddress;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ByteArrayOutputStream message = new ByteArrayOutputStream(512);
+        private final Deque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        private boolean inFrame;
+        private boolean sawEndBlock;
+        private boolean frameComplete;
+
+        private Connection(String remoteAddress) {
+            this.remoteAddress = remoteAddress;
+        }
+
+        /*
+         * @return false если сообщение превысило vas.mllp.max-message-bytes
+         */
+        private boolean accept(byte b) {
+            if (!inFrame) {
+                // Байты вне кадра (например, keep-alive переводы строк) игнорируются
+                if (b == START_BLOCK) {
+                    inFrame = true;
+                    message.reset();
+                }
+                return true;
+            }
+            if (sawEndBlock) {
+                sawEndBlock = false;
+                if (b == CARRIAGE_RETURN) {
+                    frameComplete = true;
+                    return true;
+                }
+                // <FS> без <CR> - часть данных
+                message.write(END_BLOCK);
+            }
+            if (b == END_BLOCK) {
+                sawEndBlock = true;
+                return true;
+            }
+            if (b == START_BLOCK) {
+                // Новый кадр до завершения предыдущего: незавершенный кадр отбрасывается
+                message.reset();
+                return true;
+            }
+            message.write(b);
+            return message.size() <= config.getMaxMessageBytes();
+        }
+
+        private String takeMessage(Charset charset) {
+            String text = message.toString(charset);
+            message.reset();
+            inFrame = false;
+            frameComplete = false;
+            return text;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Скомпилированный IP whitelist API ключа.
+ *
+ * ФОРМАТ (ApiKey.ipWhitelist):
+ * - "*" или пустая строка - любой IP
+ * - Список через запятую из адресов и CIDR блоков IPv4/IPv6,
+ *   например "10.20.0.0/16, 192.168.1.15, 2001:db8::/32"
+ *
+ * АЛГОРИТМ:
+ * - Строка разбирается один раз (при загрузке ключа в кэш ApiKeyService) в бинарное
+ *   префиксное дерево по 128 битам адреса. IPv4 хранится как IPv4-mapped IPv6 (::ffff:a.b.c.d),
+ *   поэтому одно дерево обслуживает оба семейства адресов
+ * - Узлы дерева лежат в плоских массивах; matches() разбирает адрес клиента без создания
+ *   объектов и спускается по дереву не глубже 128 уровней
+ * - Некорректные записи при компиляции пропускаются с предупреждением (они не могли совпасть
+ *   с адресом клиента и раньше); при сохранении whitelist их отклоняет validate()
+ */
+@Slf4j
+public final class IpWhitelist {
+    private static final IpWhitelist ALLOW_ALL = new IpWhitelist("*", true, new int[2], new boolean[1]);
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFFL << 32;
+    private static final int IPV4_MAPPED_BITS = 96;
+    private static final int ADDRESS_BITS = 128;
+
+    // Буфер разобранного адреса клиента: [старшие 64 бита, младшие 64 бита]
+    private static final ThreadLocal<long[]> ADDRESS_BUFFER = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final String source;
+    private final boolean allowAll;
+    // children[2 * node + bit] - индекс потомка, 0 - потомка нет (корень не бывает потомком)
+    private final int[] children;
+    // terminal[node] - узел завершает префикс из whitelist
+    private final boolean[] terminal;
+
+    private IpWhitelist(String source, boolean allowAll, int[] children, boolean[] terminal) {
+        this.source = source;
+        this.allowAll = allowAll;
+        this.children = children;
+        this.terminal = terminal;
+    }
+
+    /*
+     * Компиляция whitelist
+     *
+     * @param whitelist Значение ApiKey.ipWhitelist
+     */
+    public static IpWhitelist compile(String whitelist) {
+        if (whitelist == null || whitelist.isBlank() || "*".equals(whitelist.trim())) {
+            return ALLOW_ALL;
+        }
+        TrieBuilder builder = new TrieBuilder();
+        long[] address = new long[2];
+        for (String entry : whitelist.split(",")) {
+            String trimmed = entry.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if ("*".equals(trimmed)) {
+                return ALLOW_ALL;
+            }
+            int prefixLength = parseEntry(trimmed, address);
+            if (prefixLength < 0) {
+                log.warn("Ignoring invalid IP whitelist entry: {}", trimmed);
+                continue;
+            }
+            builder.insert(address[0], address[1], prefixLength);
+        }
+        return builder.build(whitelist);
+    }
+
+    /*
+     * Проверка whitelist перед сохранением
+     *
+     * @throws IllegalArgumentException если есть записи, не являющиеся IP адресом или CIDR блоком
+     */
+    public static void validate(String whitelist) {
+        if (whitelist == null) {
+            return;
+        }
+        List<String> invalid = new ArrayList<>();
+        long[] address = new long[2];
+        for (String entry : whitelist.split(",")) {
+            String trimmed = entry.trim();
+            if (!trimmed.isEmpty() && !"*".equals(trimmed) && parseEntry(trimmed, address) < 0) {
+                invalid.add(trimmed);
+            }
+        }
+        if (!invalid.isEmpty()) {
+            throw new IllegalArgumentException("Invalid IP whitelist entries: " + String.join(", ", invalid));
+        }
+    }
+
+    /*
+     * Проверка адреса клиента
+     *
+     * @param clientIp IPv4 или IPv6 адрес (например, из getRemoteAddr / X-Forwarded-For)
+     * @return true если адрес входит в один из блоков whitelist
+     */
+    public boolean matches(String clientIp) {
+        if (allowAll) {
+            return true;
+        }
+        if (clientIp == null) {
+            return false;
+        }
+        long[] address = ADDRESS_BUFFER.get();
+        return parseAddress(clientIp, 0, clientIp.length(), address) != 0
+                && contains(address[0], address[1]);
+    }
+
+    public boolean isAllowAll() {
+        return allowAll;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private boolean contains(long high, long low) {
+        int node = 0;
+        for (int bit = 0; bit < ADDRESS_BITS; bit++) {
+            if (terminal[node]) {
+                return true;
+            }
+            node = children[2 * node + bitAt(high, low, bit)];
+            if (node == 0) {
+                return false;
+            }
+        }
+        return terminal[node];
+    }
+
+    private static int bitAt(long high, long low, int bit) {
+        long half = bit < 64 ? high : low;
+        return (int) (half >>> (63 - (bit & 63))) & 1;
+    }
+
+    /*
+     * Разбор записи whitelist: адрес или адрес/длина префикса
+     *
+     * @param out Разобранный адрес (128 бит)
+     * @return Длина префикса в 128-битном пространстве или -1 для некорректной записи
+     */
+    private static int parseEntry(String entry, long[] out) {
+        int slash = entry.indexOf('/');
+        int addressEnd = slash < 0 ? entry.length() : slash;
+        int family = parseAddress(entry, 0, addressEnd, out);
+        if (family == 0) {
+            return -1;
+        }
+        int maxLength = family == 4 ? ADDRESS_BITS - IPV4_MAPPED_BITS : ADDRESS_BITS;
+        int prefixLength = maxLength;
+        if (slash >= 0) {
+            String length = entry.substring(slash + 1).trim();
+            if (length.isEmpty() || length.length() > 3 || !length.chars().allMatch(Character::isDigit)) {
+                return -1;
+            }
+            prefixLength = Integer.parseInt(length);
+            if (prefixLength > maxLength) {
+                return -1;
+            }
+        }
+        return family == 4 ? IPV4_MAPPED_BITS + prefixLength : prefixLength;
+    }
+
+    /*
+     * Разбор адреса s[from, to) в 128 бит без создания объектов
+     *
+     * @return 4 или 6 (семейство адреса), 0 если строка не является адресом
+     */
+    static int parseAddress(String s, int from, int to, long[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        if (to - from >= 2 && s.charAt(from) == '[' && s.charAt(to - 1) == ']') {
+            from++;
+            to--;
+        }
+        int zone = indexOf(s, '%', from, to);
+        if (zone >= 0) {
+            to = zone; // Zone id (fe80::1%eth0) на сравнение не влияет
+        }
+        if (from >= to) {
+            return 0;
+        }
+        if (indexOf(s, ':', from, to) < 0) {
+            long ipv4 = parseIpv4(s, from, to);
+            if (ipv4 < 0) {
+                return 0;
+            }
+            out[1] = IPV4_MAPPED_PREFIX | ipv4;
+            return 4;
+        }
+        return parseIpv6(s, from, to, out) ? 6 : 0;
+    }
+
+    private static long parseIpv4(String s, int from, int to) {
+        long value = 0;
+        int octets = 0;
+        int octet = 0;
+        int digits = 0;
+        for (int i = from; i <= to; i++) {
+            char c = i < to ? s.charAt(i) : '.';
+            if (c == '.') {
+                if (digits == 0 || ++octets > 4) {
+                    return -1;
+                }
+                value = (value << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                octet = octet * 10 + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+                digits++;
+            } else {
+                return -1;
+            }
+        }
+        return octets == 4 ? value : -1;
+    }
+
+    private static boolean parseIpv6(String s, int from, int to, long[] out) {
+        int gap = indexOfDoubleColon(s, from, to);
+        if (gap < 0) {
+            return parseGroups(s, from, to, 0, out) == 8;
+        }
+        if (indexOfDoubleColon(s, gap + 1, to) >= 0) {
+            return false;
+        }
+        int tailFrom = gap + 2;
+        int tailGroups = countGroups(s, tailFrom, to);
+        int headGroups = parseGroups(s, from, gap, 0, out);
+        if (headGroups < 0 || headGroups + tailGroups > 7) {
+            return false;
+        }
+        return parseGroups(s, tailFrom, to, 8 - tailGroups, out) == tailGroups;
+    }
+
+    /*
+     * Разбор групп "h:h:h" (последняя группа может быть IPv4 адресом) начиная с позиции firstIndex
+     *
+     * @return Число записанных 16-битных групп или -1
+     */
+    private static int parseGroups(String s, int from, int to, int firstIndex, long[] out) {
+        if (from == to) {
+            return 0;
+        }
+        int index = firstIndex;
+        int tokenStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && s.charAt(i) != ':') {
+                continue;
+            }
+            if (i == to && indexOf(s, '.', tokenStart, to) >= 0) {
+                long ipv4 = parseIpv4(s, tokenStart, to);
+                if (ipv4 < 0 || index > 6) {
+                    return -1;
+                }
+                setGroup(out, index++, (int) (ipv4 >>> 16));
+                setGroup(out, index++, (int) (ipv4 & 0xFFFF));
+            } else {
+                int group = parseHexGroup(s, tokenStart, i);
+                if (group < 0 || index > 7) {
+                    return -1;
+                }
+                setGroup(out, index++, group);
+            }
+            tokenStart = i + 1;
+        }
+        return index - firstIndex;
+    }
+
+    private static int countGroups(String s, int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        int groups = 1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == ':') {
+                groups++;
+            }
+        }
+        return indexOf(s, '.', from, to) >= 0 ? groups + 1 : groups;
+    }
+
+    private static int parseHexGroup(String s, int from, int to) {
+        if (to - from < 1 || to - from > 4) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static void setGroup(long[] out, int index, int group) {
+        if (index < 4) {
+            out[0] |= (long) group << (16 * (3 - index));
+        } else {
+            out[1] |= (long) group << (16 * (7 - index));
+        }
+    }
+
+    private static int indexOf(String s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfDoubleColon(String s, int from, int to) {
+        for (int i = from; i + 1 < to; i++) {
+            if (s.charAt(i) == ':' && s.charAt(i + 1) == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Построение дерева при компиляции whitelist
+     */
+    private static final class TrieBuilder {
+        private int[] children = new int[64];
+        private boolean[] terminal = new boolean[32];
+        private int size = 1;
+
+        void insert(long high, long low, int prefixLength) {
+            int node = 0;
+            for (int bit = 0; bit < prefixLength; bit++) {
+                if (terminal[node]) {
+                    return; // Уже покрыт более коротким префиксом
+                }
+                int slot = 2 * node + bitAt(high, low, bit);
+                int child = children[slot];
+                if (child == 0) {
+                    child = newNode();
+                    children[slot] = child;
+                }
+                node = child;
+            }
+            terminal[node] = true;
+            // Более длинные префиксы внутри этого блока больше не нужны
+            children[2 * node] = 0;
+            children[2 * node + 1] = 0;
+        }
+
+        IpWhitelist build(String source) {
+            return new IpWhitelist(source, false, Arrays.copyOf(children, 2 * size), Arrays.copyOf(terminal, size));
+        }
+
+        private int newNode() {
+            if (size == terminal.length) {
+                terminal = Arrays.copyOf(terminal, size * 2);
+                children = Arrays.copyOf(children, size * 4);
+            }
+            return size++;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Bloom фильтр с окном по времени из двух поколений (текущее и предыдущее).
+ *
+ * АЛГОРИТМ:
+ * - Размер поколения m и число хэш-функций k рассчитываются по ожидаемому числу элементов n
+ *   и целевой доле ложных срабатываний p: m = -n ln p / (ln 2)^2, k = m / n * ln 2
+ * - Позиции битов - двойное хэширование h1 + i * h2 (Kirsch-Mitzenmacher) по 128-битному хэшу элемента
+ * - Биты выставляются CAS операциями над AtomicLongArray, без блокировок
+ * - rotate(): текущее поколение становится предыдущим, предыдущее отбрасывается.
+ *   Элемент помнится от одного до двух периодов ротации
+ *
+ * Ложноотрицательных ответов нет: добавленный в текущем или предыдущем поколении элемент всегда найден.
+ */
+public final class RotatingBloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final long bitsPerGeneration;
+    private final int hashFunctions;
+    private final long expectedInsertions;
+
+    private volatile Generations generations;
+
+    public RotatingBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long m = (long) Math.ceil(-n * Math.log(p) / (LN2 * LN2));
+        this.bitsPerGeneration = Math.max(64, (m + 63) / 64 * 64);
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitsPerGeneration / n * LN2));
+        this.expectedInsertions = n;
+        this.generations = new Generations(newGeneration(), newGeneration());
+    }
+
+    /*
+     * Добавление элемента
+     *
+     * @return true если элемент, возможно, уже был добавлен (в текущем или предыдущем поколении);
+     *         false если элемент точно новый
+     */
+    public boolean put(long h1, long h2) {
+        Generations snapshot = generations;
+        boolean seenBefore = snapshot.previous.mightContain(h1, h2);
+        boolean newInCurrent = snapshot.current.put(h1, h2);
+        return seenBefore || !newInCurrent;
+    }
+
+    public boolean mightContain(long h1, long h2) {
+        Generations snapshot = generations;
+        return snapshot.current.mightContain(h1, h2) || snapshot.previous.mightContain(h1, h2);
+    }
+
+    /*
+     * Смена поколения
+     */
+    public synchronized void rotate() {
+        generations = new Generations(newGeneration(), generations.current);
+    }
+
+    /*
+     * Текущее поколение заполнено до расчетного числа элементов
+     */
+    public boolean isCurrentFull() {
+        return generations.current.insertions.sum() >= expectedInsertions;
+    }
+
+    public long getBitsPerGeneration() {
+        return bitsPerGeneration;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+
+    public long getMemoryBytes() {
+        return 2 * bitsPerGeneration / 8;
+    }
+
+    public long getCurrentInsertions() {
+        return generations.current.insertions.sum();
+    }
+
+    public long getPreviousInsertions() {
+        return generations.previous.insertions.sum();
+    }
+
+    /*
+     * Расчетная доля ложных срабатываний mightContain() при текущем заполнении обоих поколений:
+     * 1 - (1 - p_current)(1 - p_previous), где p = (1 - e^(-k n / m))^k
+     */
+    public double getEstimatedFalsePositiveRate() {
+        Generations snapshot = generations;
+        double current = estimate(snapshot.current.insertions.sum());
+        double previous = estimate(snapshot.previous.insertions.sum());
+        return 1 - (1 - current) * (1 - previous);
+    }
+
+    private double estimate(long insertions) {
+        return Math.pow(1 - Math.exp(-(double) hashFunctions * insertions / bitsPerGeneration), hashFunctions);
+    }
+
+    private Generation newGeneration() {
+        return new Generation(new AtomicLongArray((int) (bitsPerGeneration / 64)));
+    }
+
+    private record Generations(Generation current, Generation previous) {
+    }
+
+    private final class Generation {
+        private final AtomicLongArray words;
+        private final LongAdder insertions = new LongAdder();
+
+        private Generation(AtomicLongArray words) {
+            this.words = words;
+        }
+
+        /*
+         * @return true если хотя бы один бит был не выставлен (элемент новый для поколения)
+         */
+        private boolean put(long h1, long h2) {
+            boolean changed = false;
+            long combined = h1;
+            long step = h2 | 1; // Нулевой шаг дал бы k одинаковых позиций
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerGeneration);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value = words.get(word);
+                while ((value & mask) == 0) {
+                    if (words.compareAndSet(word, value, value | mask)) {
+                        changed = true;
+                        break;
+                    }
+                    value = words.get(word);
+                }
+                combined += step;
+            }
+            if (changed) {
+                insertions.increment();
+            }
+            return changed;
+        }
+
+        private boolean mightContain(long h1, long h2) {
+            long combined = h1;
+            long step = h2 | 1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Long.remainderUnsigned(combined, bitsPerGeneration);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += step;
+            }
+            return true;
+        }
+    }
+}
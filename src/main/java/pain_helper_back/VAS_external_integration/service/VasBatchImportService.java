@@ -0,0 +1,364 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import pain_helper_back.VAS_external_integration.config.VasImportConfig;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.dto.VasImportProgressDTO;
+import pain_helper_back.VAS_external_integration.parser.CsvVasParser;
+import pain_helper_back.VAS_external_integration.parser.FhirVasParser;
+import pain_helper_back.VAS_external_integration.parser.VasFormatParser;
+import pain_helper_back.VAS_external_integration.parser.VasRecordReader;
+import pain_helper_back.VAS_external_integration.parser.VasRecordRow;
+import pain_helper_back.VAS_external_integration.parser.XmlVasParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/*
+ * Потоковый batch импорт VAS записей (POST /api/external/vas/batch).
+ *
+ * ФОРМАТЫ:
+ * - CSV (по умолчанию) - построчно через CsvVasParser.openReader
+ * - XML (Content-Type содержит xml) - по элементам VASRecord через XmlVasParser.openReader (StAX)
+ * - FHIR Bundle (application/fhir+json, application/json) - по entry через FhirVasParser.openBundleReader
+ * - FHIR NDJSON (application/fhir+ndjson, application/x-ndjson) - по строкам через FhirVasParser.openNdjsonReader
+ *
+ * Для FHIR отчет содержит outcomes - результат каждого entry (created, duplicate, skipped, invalid, rejected)
+ *
+ * АЛГОРИТМ:
+ * 1. Записи читаются из тела запроса по одной (VasRecordReader)
+ * 2. Валидные записи накапливаются в чанк размером vas.import.chunk-size
+ * 3. Каждый чанк сохраняется в своей транзакции (ExternalVasIntegrationService.persistIngestBatch),
+ *    соединение с БД не удерживается на все время импорта
+ * 4. После коммита чанка рекомендации для пациентов с VAS >= 4 генерируются асинхронно
+ * 5. Прогресс доступен через GET /api/external/vas/batch/imports/{importId}
+ *
+ * ПАМЯТЬ:
+ * - В памяти только текущий чанк; отчет об ошибках и список ID ограничены
+ *   (vas.import.max-reported-errors / max-reported-ids)
+ */
+@Service
+@Slf4j
+public class VasBatchImportService {
+    private final CsvVasParser csvParser;
+    private final XmlVasParser xmlParser;
+    private final FhirVasParser fhirParser;
+    private final ExternalVasIntegrationService integrationService;
+    private final VasImportConfig config;
+    private final Executor recommendationExecutor;
+
+    private final Map<String, VasImportProgressDTO> imports;
+
+    public VasBatchImportService(CsvVasParser csvParser,
+                                XmlVasParser xmlParser,
+                                FhirVasParser fhirParser,
+                               ExternalVasIntegrationService integrationService,
+                               VasImportConfig config,
+                               @Qualifier("vasRecommendationExecutor") Executor recommendationExecutor) {
+        this.csvParser = csvParser;
+        this.xmlParser = xmlParser;
+        this.fhirParser = fhirParser;
+        this.integrationService = integrationService;
+        this.config = config;
+        this.recommendationExecutor = recommendationExecutor;
+        int retention = config.getProgressRetention();
+        this.imports = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VasImportProgressDTO> eldest) {
+                return size() > retention;
+            }
+        });
+    }
+
+    /*
+     * Потоковый импорт
+     *
+     * @param importId ID импорта (от клиента через X-Import-Id или сгенерированный)
+     * @param contentType Content-Type запроса (ndjson - FHIR NDJSON, fhir/json - FHIR Bundle, xml - XML, иначе CSV)
+     * @param source Тело запроса
+     * @return Итоговый отчет (формат совместим с прежним batch ответом)
+     */
+    public Map<String, Object> importBatch(String importId, String contentType, Reader source)
+            throws VasFormatParser.ParseException, IOException {
+        ImportFormat format = ImportFormat.of(contentType);
+        log.info("Starting streaming {} import: importId={}, chunkSize={}", format, importId, config.getChunkSize());
+
+        VasImportProgressDTO progress = VasImportProgressDTO.builder()
+                .importId(importId)
+                .format(format.name())
+                .status("RUNNING")
+                .rowsRead(0)
+                .success(0)
+                .failed(0)
+                .chunksCommitted(0)
+                .startedAt(LocalDateTime.now())
+                .build();
+        imports.put(importId, progress);
+
+        ImportReport report = new ImportReport(format.fhir ? "Entry" : "Line", config.getMaxReportedErrors(),
+                config.getMaxReportedIds(), format.fhir ? config.getMaxReportedOutcomes() : 0);
+        List<VasRecordRow> chunk = new ArrayList<>(config.getChunkSize());
+
+        try (VasRecordReader reader = openReader(format, source)) {
+            VasRecordRow row;
+            while ((row = reader.next()) != null) {
+                report.total++;
+                if (row.skipped()) {
+                    report.addSkipped(row.lineNumber(), row.error());
+                } else if (!row.isValid()) {
+                    report.addError(row.lineNumber(), row.error(), null);
+                } else {
+                    chunk.add(row);
+                    if (chunk.size() >= config.getChunkSize()) {
+                        commitChunk(chunk, report);
+                        chunk.clear();
+                    }
+                }
+                if (report.total % config.getChunkSize() == 0) {
+                    updateProgress(progress, report, "RUNNING");
+                }
+            }
+            if (!chunk.isEmpty()) {
+                commitChunk(chunk, report);
+            }
+        } catch (VasFormatParser.ParseException | IOException | RuntimeException e) {
+            updateProgress(progress, report, "FAILED");
+            throw e;
+        }
+
+        updateProgress(progress, report, "COMPLETED");
+        log.info("Batch import completed: importId={}, total={}, success={}, duplicates={}, skipped={}, failed={}, chunks={}",
+                importId, report.total, report.success, report.duplicates, report.skipped, report.failed, report.chunks);
+        return report.toResult(importId);
+    }
+
+    public Optional<VasImportProgressDTO> getProgress(String importId) {
+        return Optional.ofNullable(imports.get(importId));
+    }
+
+    public List<VasImportProgressDTO> getRecentImports() {
+        synchronized (imports) {
+            return new ArrayList<>(imports.values());
+        }
+    }
+
+    private void commitChunk(List<VasRecordRow> chunk, ImportReport report) {
+        List<ExternalVasRecordRequestDTO> records = chunk.stream().map(VasRecordRow::record).toList();
+        List<ExternalVasIntegrationService.IngestResult> results;
+        try {
+            results = persistWithRetry(records);
+        } catch (Exception e) {
+            log.error("Failed to commit import chunk (lines {}-{}): {}",
+                    chunk.getFirst().lineNumber(), chunk.getLast().lineNumber(), e.getMessage());
+            chunk.forEach(row -> report.addRejected(row.lineNumber(), e.getMessage(), row.record().getPatientMrn()));
+            return;
+        }
+        report.chunks++;
+
+        Set<String> recommendationMrns = new LinkedHashSet<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            VasRecordRow row = chunk.get(i);
+            ExternalVasIntegrationService.IngestResult result = results.get(i);
+            Long vasId = result.vasId();
+            if (result.duplicate()) {
+                report.addDuplicate(row.lineNumber(), vasId);
+                continue;
+            }
+            if (vasId == null) {
+                report.addRejected(row.lineNumber(), "Patient not found",
+                        row.record().getPatientMrn());
+                continue;
+            }
+            report.addSuccess(row.lineNumber(), vasId);
+            if (row.record().getVasLevel() >= ExternalVasIntegrationService.RECOMMENDATION_VAS_THRESHOLD) {
+                recommendationMrns.add(row.record().getPatientMrn());
+            }
+        }
+        for (String mrn : recommendationMrns) {
+            recommendationExecutor.execute(() -> integrationService.generateRecommendationIfNoPending(mrn));
+        }
+    }
+
+    /*
+     * Одновременный повтор той же записи нарушает уникальный индекс dedup_key и откатывает чанк.
+     * Повторная попытка находит сохраненную запись и пропускает только ее.
+     */
+    private List<ExternalVasIntegrationService.IngestResult> persistWithRetry(List<ExternalVasRecordRequestDTO> records) {
+        try {
+            return integrationService.persistIngestBatch(records);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Import chunk hit a concurrent duplicate, retrying: {}", e.getMostSpecificCause().getMessage());
+            return integrationService.persistIngestBatch(records);
+        }
+    }
+
+    private VasRecordReader openReader(ImportFormat format, Reader source) throws VasFormatParser.ParseException {
+        return switch (format) {
+            case CSV -> csvParser.openReader(source);
+            case XML -> xmlParser.openReader(source);
+            case FHIR_BUNDLE -> fhirParser.openBundleReader(source);
+            case FHIR_NDJSON -> fhirParser.openNdjsonReader(source);
+        };
+    }
+
+    private void updateProgress(VasImportProgressDTO progress, ImportReport report, String status) {
+        synchronized (progress) {
+            progress.setStatus(status);
+            progress.setRowsRead(report.total);
+            progress.setSuccess(report.success);
+            progress.setFailed(report.failed);
+            progress.setChunksCommitted(report.chunks);
+            if (!"RUNNING".equals(status)) {
+                progress.setFinishedAt(LocalDateTime.now());
+            }
+        }
+    }
+
+    /*
+     * Формат batch импорта по Content-Type
+     */
+    private enum ImportFormat {
+        CSV(false),
+        XML(false),
+        FHIR_BUNDLE(true),
+        FHIR_NDJSON(true);
+
+        private final boolean fhir;
+
+        ImportFormat(boolean fhir) {
+            this.fhir = fhir;
+        }
+
+        private static ImportFormat of(String contentType) throws VasFormatParser.ParseException {
+            String type = contentType != null ? contentType.toLowerCase() : "";
+            if (type.contains("ndjson")) return FHIR_NDJSON;
+            if (type.contains("fhir+xml")) {
+                throw new VasFormatParser.ParseException("FHIR XML is not supported, use application/fhir+json");
+            }
+            if (type.contains("fhir") || type.contains("json")) return FHIR_BUNDLE;
+            if (type.contains("xml")) return XML;
+            return CSV;
+        }
+    }
+
+    /*
+     * Накопитель итогового отчета с ограничением по памяти
+     */
+    private static final class ImportReport {
+        private final String positionLabel;
+        private final int maxErrors;
+        private final int maxIds;
+        private final int maxOutcomes;
+        private int total;
+        private int success;
+        private int failed;
+        private int chunks;
+        private int duplicates;
+        private int skipped;
+        private final List<String> errors = new ArrayList<>();
+        private final List<Long> createdVasIds = new ArrayList<>();
+        private final List<Map<String, Object>> outcomes = new ArrayList<>();
+
+        /*
+         * @param maxOutcomes Результатов по записям в отчете (0 - без outcomes)
+         */
+        private ImportReport(String positionLabel, int maxErrors, int maxIds, int maxOutcomes) {
+            this.positionLabel = positionLabel;
+            this.maxErrors = maxErrors;
+            this.maxIds = maxIds;
+            this.maxOutcomes = maxOutcomes;
+        }
+
+        /*
+         * Запись не разобрана
+         */
+        private void addError(int lineNumber, String message, String mrn) {
+            recordFailure(lineNumber, message, mrn);
+            addOutcome(lineNumber, "invalid", null, message);
+        }
+
+        /*
+         * Запись разобрана, но не сохранена (пациент не найден, ошибка чанка)
+         */
+        private void addRejected(int lineNumber, String message, String mrn) {
+            recordFailure(lineNumber, message, mrn);
+            addOutcome(lineNumber, "rejected", null, message);
+        }
+
+        private void recordFailure(int lineNumber, String message, String mrn) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(mrn != null
+                        ? String.format("%s %d: %s (MRN: %s)", positionLabel, lineNumber, message, mrn)
+                        : String.format("%s %d: %s", positionLabel, lineNumber, message));
+            }
+        }
+
+        private void addSuccess(int lineNumber, Long vasId) {
+            success++;
+            if (createdVasIds.size() < maxIds) {
+                createdVasIds.add(vasId);
+            }
+            addOutcome(lineNumber, "created", vasId, null);
+        }
+
+        private void addDuplicate(int lineNumber, Long existingVasId) {
+            duplicates++;
+            addOutcome(lineNumber, "duplicate", existingVasId, null);
+        }
+
+        private void addSkipped(int lineNumber, String reason) {
+            skipped++;
+            addOutcome(lineNumber, "skipped", null, reason);
+        }
+
+        private void addOutcome(int lineNumber, String status, Long vasId, String message) {
+            if (outcomes.size() >= maxOutcomes) {
+                return;
+            }
+            Map<String, Object> outcome = new LinkedHashMap<>();
+            outcome.put("entry", lineNumber);
+            outcome.put("status", status);
+            if (vasId != null) outcome.put("vasId", vasId);
+            if (message != null) outcome.put("message", message);
+            outcomes.add(outcome);
+        }
+
+        private Map<String, Object> toResult(String importId) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("importId", importId);
+            result.put("status", failed == 0 ? "success" : "partial_success");
+            result.put("total", total);
+            result.put("success", success);
+            result.put("failed", failed);
+            result.put("duplicates", duplicates);
+            result.put("chunks", chunks);
+            result.put("createdVasIds", createdVasIds);
+            if (success > createdVasIds.size()) {
+                result.put("createdVasIdsTruncated", true);
+            }
+            if (!errors.isEmpty()) {
+                result.put("errors", errors);
+                if (failed > errors.size()) {
+                    result.put("errorsTruncated", true);
+                }
+            }
+            if (maxOutcomes > 0) {
+                // Записи чанка попадают в отчет после коммита, позже пропущенных и ошибочных
+                outcomes.sort(Comparator.comparingInt(outcome -> (Integer) outcome.get("entry")));
+                result.put("skipped", skipped);
+                result.put("outcomes", outcomes);
+                if (total > outcomes.size()) {
+                    result.put("outcomesTruncated", true);
+                }
+            }
+            return result;
+        }
+    }
+}
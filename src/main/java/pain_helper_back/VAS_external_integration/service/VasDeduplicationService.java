@@ -0,0 +1,180 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pain_helper_back.VAS_external_integration.config.VasDedupConfig;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.dto.VasDedupStatsDTO;
+import pain_helper_back.common.patients.repository.VasRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Подавление повторно присланных VAS записей (повторы устройств и middleware).
+ *
+ * КЛЮЧ ДУБЛИКАТА (Vas.dedupKey, 128 бит SHA-256):
+ * - Заголовок Idempotency-Key, если клиент его передал (с привязкой к API ключу)
+ * - Иначе: источник + устройство + MRN + время записи + уровень VAS
+ *
+ * ПРОВЕРКИ:
+ * 1. findDuplicate() до обработки (/record, /ingest): Bloom фильтр с окном по времени.
+ *    "Точно новая" - без обращения к БД; срабатывание фильтра подтверждается запросом по индексу
+ *    dedup_key, поэтому ложное срабатывание стоит одного запроса, а не потерянной записи
+ * 2. При сохранении батча - один IN запрос по ключам батча (ExternalVasIntegrationService)
+ * 3. Уникальный индекс vas.dedup_key - на случай одновременных повторов
+ */
+@Service
+@Slf4j
+public class VasDeduplicationService {
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final VasDedupConfig config;
+    private final VasRepository vasRepository;
+    private final RotatingBloomFilter filter;
+    private volatile long lastRotationNanos = System.nanoTime();
+
+    // Метрики
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder duplicatesRejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder batchDuplicatesSkipped = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+
+    public VasDeduplicationService(VasDedupConfig config, VasRepository vasRepository) {
+        this.config = config;
+        this.vasRepository = vasRepository;
+        this.filter = new RotatingBloomFilter(config.getExpectedReadingsPerWindow(), config.getFalsePositiveRate());
+        log.info("VAS dedup filter: {} readings per {} min window, {} bits x {} hashes per generation, {} KB",
+                config.getExpectedReadingsPerWindow(), config.getWindowMinutes(),
+                filter.getBitsPerGeneration(), filter.getHashFunctions(), filter.getMemoryBytes() / 1024);
+    }
+
+    /*
+     * Ключ дубликата записи (вычисляется один раз и сохраняется в DTO)
+     *
+     * @return ключ или null, если проверка дубликатов выключена
+     */
+    public String keyOf(ExternalVasRecordRequestDTO record) {
+        if (!config.isEnabled()) {
+            return null;
+        }
+        if (record.getDedupKey() == null) {
+            String canonical = record.getIdempotencyKey() != null
+                    ? "idempotency|" + record.getIdempotencyKey()
+                    : "reading|" + record.getSource() + "|" + record.getDeviceId() + "|" + record.getPatientMrn()
+                    + "|" + record.getTimestamp() + "|" + record.getVasLevel();
+            record.setDedupKey(HEX.formatHex(sha256(canonical), 0, 16));
+        }
+        return record.getDedupKey();
+    }
+
+    /*
+     * Проверка записи до любой обработки (сохранение, события, рекомендации, эскалация)
+     *
+     * @return ID ранее сохраненной записи, если это дубликат
+     */
+    public Optional<Long> findDuplicate(ExternalVasRecordRequestDTO record) {
+        String key = keyOf(record);
+        if (key == null) {
+            return Optional.empty();
+        }
+        checks.increment();
+        if (!filter.put(high(key), low(key))) {
+            return Optional.empty();
+        }
+        filterHits.increment();
+        Optional<Long> existing = vasRepository.findIdByDedupKey(key);
+        if (existing.isPresent()) {
+            duplicatesRejected.increment();
+            log.info("Duplicate VAS reading rejected: patientMrn={}, source={}, existing vasId={}",
+                    record.getPatientMrn(), record.getSource(), existing.get());
+        } else {
+            falsePositives.increment();
+        }
+        return existing;
+    }
+
+    /*
+     * ID сохраненной записи по ключу (после нарушения уникального индекса dedup_key)
+     */
+    public Optional<Long> findPersisted(String dedupKey) {
+        return dedupKey == null ? Optional.empty() : vasRepository.findIdByDedupKey(dedupKey);
+    }
+
+    /*
+     * Запоминание ключа записи, сохраненной в обход findDuplicate (батчи)
+     */
+    public void remember(String dedupKey) {
+        if (dedupKey != null) {
+            filter.put(high(dedupKey), low(dedupKey));
+        }
+    }
+
+    public void recordBatchDuplicates(int count) {
+        batchDuplicatesSkipped.add(count);
+    }
+
+    /*
+     * Смена поколения фильтра раз в окно или досрочно при заполнении
+     */
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.MINUTES)
+    public void rotateIfDue() {
+        long windowNanos = TimeUnit.MINUTES.toNanos(Math.max(1, config.getWindowMinutes()));
+        boolean windowElapsed = System.nanoTime() - lastRotationNanos >= windowNanos;
+        if (windowElapsed || filter.isCurrentFull()) {
+            filter.rotate();
+            lastRotationNanos = System.nanoTime();
+            rotations.increment();
+            log.debug("VAS dedup filter rotated (windowElapsed={})", windowElapsed);
+        }
+    }
+
+    public VasDedupStatsDTO getStats() {
+        long hits = filterHits.sum();
+        long rejected = duplicatesRejected.sum();
+        long fp = falsePositives.sum();
+        long newReadings = checks.sum() - rejected;
+        return VasDedupStatsDTO.builder()
+                .enabled(config.isEnabled())
+                .windowMinutes(config.getWindowMinutes())
+                .memoryBytes(filter.getMemoryBytes())
+                .bitsPerGeneration(filter.getBitsPerGeneration())
+                .hashFunctions(filter.getHashFunctions())
+                .currentGenerationReadings(filter.getCurrentInsertions())
+                .previousGenerationReadings(filter.getPreviousInsertions())
+                .rotations(rotations.sum())
+                .configuredFalsePositiveRate(config.getFalsePositiveRate())
+                .estimatedFalsePositiveRate(filter.getEstimatedFalsePositiveRate())
+                .observedFalsePositiveRate(newReadings == 0 ? 0.0 : (double) fp / newReadings)
+                .checks(checks.sum())
+                .filterHits(hits)
+                .duplicatesRejected(rejected)
+                .falsePositives(fp)
+                .batchDuplicatesSkipped(batchDuplicatesSkipped.sum())
+                .build();
+    }
+
+    private static long high(String key) {
+        return HexFormat.fromHexDigitsToLong(key, 0, 16);
+    }
+
+    private static long low(String key) {
+        return HexFormat.fromHexDigitsToLong(key, 16, 32);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
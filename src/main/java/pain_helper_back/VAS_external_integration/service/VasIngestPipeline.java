@@ -0,0 +1,268 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import pain_helper_back.VAS_external_integration.config.VasIngestConfig;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.dto.VasIngestStatsDTO;
+import pain_helper_back.VAS_external_integration.dto.VasIngestStatusDTO;
+import pain_helper_back.common.metrics.LatencySamples;
+import pain_helper_back.enums.VasIngestStatus;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/*
+ * Асинхронный прием VAS данных от внешних устройств.
+ *
+ * ПОТОК ДАННЫХ:
+ * 1. Controller валидирует API ключ и данные, вызывает submit()
+ * 2. Запись ставится в ограниченную очередь, клиент сразу получает 202 + trackingId
+ * 3. Потоки-обработчики забирают записи микро-батчами (до batchSize)
+ *    и сохраняют каждый батч одной транзакцией
+ * 4. После коммита для пациентов с VAS >= 4 асинхронно запускается генерация рекомендации
+ *
+ * BACKPRESSURE:
+ * - Очередь ограничена (vas.ingest.queue-capacity)
+ * - При переполнении submit() возвращает пустой Optional, controller отвечает 503 + Retry-After
+ */
+@Service
+@Slf4j
+public class VasIngestPipeline {
+    private final ExternalVasIntegrationService integrationService;
+    private final VasIngestConfig config;
+    private final Executor recommendationExecutor;
+
+    private final BlockingQueue<PendingReading> queue;
+    private final Map<String, VasIngestStatusDTO> statuses;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    // Метрики
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRecords = new LongAdder();
+    private final LatencySamples latencies = new LatencySamples();
+
+    public VasIngestPipeline(ExternalVasIntegrationService integrationService,
+                             VasIngestConfig config,
+                             @Qualifier("vasRecommendationExecutor") Executor recommendationExecutor) {
+        this.integrationService = integrationService;
+        this.config = config;
+        this.recommendationExecutor = recommendationExecutor;
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        int retention = config.getStatusRetention();
+        this.statuses = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VasIngestStatusDTO> eldest) {
+                return size() > retention;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < config.getWorkerCount(); i++) {
+            Thread worker = new Thread(this::drainLoop, "VasIngest-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("VAS ingest pipeline started: workers={}, queueCapacity={}, batchSize={}",
+                config.getWorkerCount(), config.getQueueCapacity(), config.getBatchSize());
+    }
+
+    /*
+     * Остановка: обработчики дочищают очередь и завершаются
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!queue.isEmpty()) {
+            log.warn("VAS ingest pipeline stopped with {} unprocessed records", queue.size());
+        }
+    }
+
+    /*
+     * Постановка записи в очередь (без блокировки)
+     *
+     * @return trackingId или пустой Optional, если очередь заполнена
+     */
+    public Optional<String> submit(ExternalVasRecordRequestDTO record) {
+        if (!running) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        String trackingId = UUID.randomUUID().toString();
+        // Статус регистрируется до offer(), иначе обработчик может успеть раньше
+        statuses.put(trackingId, VasIngestStatusDTO.builder()
+                .trackingId(trackingId)
+                .status(VasIngestStatus.QUEUED)
+                .patientMrn(record.getPatientMrn())
+                .queuedAt(LocalDateTime.now())
+                .build());
+        if (!queue.offer(new PendingReading(trackingId, record, System.nanoTime()))) {
+            statuses.remove(trackingId);
+            rejected.increment();
+            return Optional.empty();
+        }
+        accepted.increment();
+        return Optional.of(trackingId);
+    }
+
+    public Optional<VasIngestStatusDTO> getStatus(String trackingId) {
+        return Optional.ofNullable(statuses.get(trackingId));
+    }
+
+    public int getRetryAfterSeconds() {
+        return config.getRetryAfterSeconds();
+    }
+
+    public VasIngestStatsDTO getStats() {
+        long batchCount = batches.sum();
+        LatencySamples.Snapshot latency = latencies.snapshot();
+        return VasIngestStatsDTO.builder()
+                .queueDepth(queue.size())
+                .queueCapacity(config.getQueueCapacity())
+                .accepted(accepted.sum())
+                .rejected(rejected.sum())
+                .persisted(persisted.sum())
+                .duplicates(duplicates.sum())
+                .failed(failed.sum())
+                .batches(batchCount)
+                .averageBatchSize(batchCount == 0 ? 0.0 : (double) batchedRecords.sum() / batchCount)
+                .latencyP50Ms(latency.percentile(0.50))
+                .latencyP99Ms(latency.percentile(0.99))
+                .latencyMaxMs(latency.max())
+                .build();
+    }
+
+    private void drainLoop() {
+        List<PendingReading> batch = new ArrayList<>(config.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingReading first = queue.poll(config.getPollTimeoutMs(), TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, config.getBatchSize() - 1);
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("VAS ingest worker error: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void processBatch(List<PendingReading> batch) {
+        List<ExternalVasRecordRequestDTO> records = batch.stream().map(PendingReading::record).toList();
+        List<ExternalVasIntegrationService.IngestResult> results;
+        try {
+            results = persistWithRetry(records);
+        } catch (Exception e) {
+            log.error("Failed to persist VAS ingest batch of {} records: {}", batch.size(), e.getMessage(), e);
+            batch.forEach(reading -> markFailed(reading, e.getMessage()));
+            return;
+        }
+
+        batches.increment();
+        batchedRecords.add(batch.size());
+        long now = System.nanoTime();
+
+        // Одна рекомендация на пациента за батч
+        Set<String> recommendationMrns = new LinkedHashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingReading reading = batch.get(i);
+            ExternalVasIntegrationService.IngestResult result = results.get(i);
+            Long vasId = result.vasId();
+            if (result.duplicate()) {
+                // Повтор уже сохраненной записи: без рекомендации и повторного сохранения
+                duplicates.increment();
+                updateStatus(reading.trackingId(), status -> {
+                    status.setStatus(VasIngestStatus.DUPLICATE);
+                    status.setVasId(vasId);
+                    status.setProcessedAt(LocalDateTime.now());
+                });
+                continue;
+            }
+            if (vasId == null) {
+                markFailed(reading, "Patient not found with MRN: " + reading.record().getPatientMrn());
+                continue;
+            }
+            persisted.increment();
+            latencies.record(TimeUnit.NANOSECONDS.toMillis(now - reading.enqueuedAtNanos()));
+            updateStatus(reading.trackingId(), status -> {
+                status.setStatus(VasIngestStatus.PERSISTED);
+                status.setVasId(vasId);
+                status.setProcessedAt(LocalDateTime.now());
+            });
+            if (reading.record().getVasLevel() >= ExternalVasIntegrationService.RECOMMENDATION_VAS_THRESHOLD) {
+                recommendationMrns.add(reading.record().getPatientMrn());
+            }
+        }
+
+        for (String mrn : recommendationMrns) {
+            recommendationExecutor.execute(() -> integrationService.generateRecommendationIfNoPending(mrn));
+        }
+    }
+
+    /*
+     * Одновременный повтор той же записи из другого батча нарушает уникальный индекс dedup_key
+     * и откатывает весь батч. Повторная попытка находит сохраненную запись и пропускает только ее.
+     */
+    private List<ExternalVasIntegrationService.IngestResult> persistWithRetry(List<ExternalVasRecordRequestDTO> records) {
+        try {
+            return integrationService.persistIngestBatch(records);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("VAS ingest batch hit a concurrent duplicate, retrying: {}", e.getMostSpecificCause().getMessage());
+            return integrationService.persistIngestBatch(records);
+        }
+    }
+
+    private void markFailed(PendingReading reading, String message) {
+        failed.increment();
+        updateStatus(reading.trackingId(), status -> {
+            status.setStatus(VasIngestStatus.FAILED);
+            status.setErrorMessage(message);
+            status.setProcessedAt(LocalDateTime.now());
+        });
+    }
+
+    private void updateStatus(String trackingId, Consumer<VasIngestStatusDTO> update) {
+        VasIngestStatusDTO status = statuses.get(trackingId);
+        if (status != null) {
+            synchronized (status) {
+                update.accept(status);
+            }
+        }
+    }
+
+    private record PendingReading(String trackingId, ExternalVasRecordRequestDTO record, long enqueuedAtNanos) {
+    }
+}
@@ -1,30 +1,46 @@
 package pain_helper_back.VAS_external_integration.service;
 
 
-import lombok.RequiredArgsConstructor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
 import pain_helper_back.VAS_external_integration.parser.VasFormatParser;
+import pain_helper_back.VAS_external_integration.parser.VasPayload;
 
-import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /*
  * Фабрика для автоматического выбора парсера по формату данных.
  *
- * ЛОГИКА:
- * 1. Проверяет Content-Type заголовок
- * 2. Автоматически определяет формат по структуре данных
- * 3. Выбирает парсер с наивысшим приоритетом
- * 4. Парсит данные в унифицированный DTO
+ * ЛОГИКА (один проход, без пробного парсинга каждым парсером):
+ * 1. Определяет формат по Content-Type (hl7, csv, xml, fhir)
+ * 2. Иначе - по первым непробельным символам: "{" JSON/FHIR, "<" XML, "MSH|" HL7, заголовок CSV
+ * 3. JSON и FHIR различаются по полю resourceType - дерево разбирается один раз
+ *    и передается парсеру через VasPayload
+ * 4. Вызывает единственный парсер этого формата
  */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class VasParserFactory {
 
-    private final List<VasFormatParser> parsers;
+    private final Map<ExternalVasRecordRequestDTO.DataFormat, VasFormatParser> parsersByFormat;
+    private final ObjectMapper objectMapper;
+
+    public VasParserFactory(List<VasFormatParser> parsers, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.parsersByFormat = new EnumMap<>(ExternalVasRecordRequestDTO.DataFormat.class);
+        for (VasFormatParser parser : parsers) {
+            VasFormatParser previous = parsersByFormat.put(parser.getFormat(), parser);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate VAS parsers for format " + parser.getFormat() + ": "
+                        + previous.getClass().getSimpleName() + ", " + parser.getClass().getSimpleName());
+            }
+        }
+    }
 
     /*
      * Автоматический парсинг VAS данных
@@ -38,23 +54,18 @@ public class VasParserFactory {
             throws VasFormatParser.ParseException {
 
         log.debug("Parsing VAS data, contentType: {}, dataLength: {}", contentType, rawData.length());
-        // Находим все подходящие парсеры
-        List<VasFormatParser> suitableParsers = parsers.stream()
-                .filter(parser -> parser.canParse(contentType, rawData))
-                .sorted(Comparator.comparingInt(VasFormatParser::getPriority))
-                .toList();
-        if (suitableParsers.isEmpty()) {
-            log.error("No suitable parser found for contentType: {}", contentType);
+        VasPayload payload = new VasPayload(contentType, rawData);
+        ExternalVasRecordRequestDTO.DataFormat format = detectFormat(payload);
+
+        VasFormatParser selectedParser = parsersByFormat.get(format);
+        if (selectedParser == null) {
+            log.error("No parser registered for format {} (contentType: {})", format, contentType);
             throw new VasFormatParser.ParseException(
                     "Unsupported data format. Supported formats: JSON, XML, HL7 v2, FHIR, CSV");
         }
+        log.debug("Selected parser: {}", selectedParser.getClass().getSimpleName());
 
-        // Используем парсер с наивысшим приоритетом
-        VasFormatParser selectedParser = suitableParsers.get(0);
-        log.info("Selected parser: {}", selectedParser.getClass().getSimpleName());
-
-        // Парсим данные
-        ExternalVasRecordRequestDTO result = selectedParser.parse(rawData);
+        ExternalVasRecordRequestDTO result = selectedParser.parse(payload);
 
         log.info("Successfully parsed VAS data using {}: patientMrn={}, vasLevel={}, format={}",
                 selectedParser.getClass().getSimpleName(),
@@ -64,12 +75,67 @@ public class VasParserFactory {
 
         return result;
     }
+
+    /*
+     * Определение формата за один проход по заголовку и началу данных
+     */
+    ExternalVasRecordRequestDTO.DataFormat detectFormat(VasPayload payload) throws VasFormatParser.ParseException {
+        String contentType = payload.getContentType();
+        if (contentType != null) {
+            if (contentType.contains("fhir")) return ExternalVasRecordRequestDTO.DataFormat.FHIR;
+            if (contentType.contains("hl7")) return ExternalVasRecordRequestDTO.DataFormat.HL7_V2;
+            if (contentType.contains("csv")) return ExternalVasRecordRequestDTO.DataFormat.CSV;
+            if (contentType.contains("xml")) return ExternalVasRecordRequestDTO.DataFormat.XML;
+        }
+
+        char first = payload.firstChar();
+        boolean jsonContentType = contentType != null && contentType.contains("json");
+        if (first == '{' || jsonContentType) {
+            return detectJsonFormat(payload);
+        }
+        if (first == '<') {
+            return ExternalVasRecordRequestDTO.DataFormat.XML;
+        }
+        if (payload.startsWith("MSH|")) {
+            return ExternalVasRecordRequestDTO.DataFormat.HL7_V2;
+        }
+        String header = payload.firstLine();
+        if (header.contains("patientmrn") && header.contains("vaslevel")) {
+            return ExternalVasRecordRequestDTO.DataFormat.CSV;
+        }
+
+        log.error("Unable to detect VAS data format, contentType: {}", contentType);
+        throw new VasFormatParser.ParseException(
+                "Unsupported data format. Supported formats: JSON, XML, HL7 v2, FHIR, CSV");
+    }
+
+    /*
+     * JSON или FHIR: FHIR ресурс всегда содержит resourceType.
+     * Разобранное дерево сохраняется в payload для парсера.
+     */
+    private ExternalVasRecordRequestDTO.DataFormat detectJsonFormat(VasPayload payload)
+            throws VasFormatParser.ParseException {
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(payload.getRawData());
+        } catch (Exception e) {
+            throw new VasFormatParser.ParseException("Invalid JSON format: " + e.getMessage(), e);
+        }
+        if (root == null || !root.isObject()) {
+            throw new VasFormatParser.ParseException("Invalid JSON format: expected JSON object");
+        }
+        payload.setJsonTree(root);
+        return root.has("resourceType")
+                ? ExternalVasRecordRequestDTO.DataFormat.FHIR
+                : ExternalVasRecordRequestDTO.DataFormat.JSON;
+    }
+
     /*
      * Получить список поддерживаемых форматов
      */
     public List<String> getSupportedFormats() {
-        return parsers.stream()
-                .map(parser -> parser.getClass().getSimpleName().replace("VasParser", ""))
+        return parsersByFormat.keySet().stream()
+                .map(Enum::name)
                 .toList();
     }
 }
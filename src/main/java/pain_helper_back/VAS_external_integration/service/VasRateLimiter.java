@@ -0,0 +1,118 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pain_helper_back.VAS_external_integration.config.VasRateLimitConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*
+ * Token bucket ограничитель частоты запросов (per API key / per IP).
+ *
+ * АЛГОРИТМ (GCRA - эквивалент token bucket в одном long):
+ * - Емкость bucket = лимит в минуту, пополнение равномерно: 1 токен за 60с / лимит
+ * - Состояние bucket - "теоретическое время прибытия" (TAT) следующего запроса
+ * - Запрос разрешен, если после него TAT опережает текущее время не больше чем на 60 секунд
+ * - Обновление TAT - CAS без блокировок, память O(1) на активный ключ
+ *
+ * ОЧИСТКА:
+ * - Bucket, простаивающий дольше vas.rate-limit.idle-eviction-seconds, полностью пополнен
+ *   и удаляется; при следующем запросе создается заново с полной емкостью
+ */
+@Service
+@Slf4j
+public class VasRateLimiter {
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final VasRateLimitConfig config;
+    private final LongSupplier clock;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public VasRateLimiter(VasRateLimitConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    VasRateLimiter(VasRateLimitConfig config, LongSupplier clock) {
+        this.config = config;
+        this.clock = clock;
+    }
+
+    /*
+     * Попытка потратить один токен
+     *
+     * @param bucketKey Ключ bucket (например, "key:<apiKey>" или "ip:<address>")
+     * @param requestsPerMinute Лимит; <= 0 - без ограничения
+     */
+    public RateLimitDecision tryAcquire(String bucketKey, int requestsPerMinute) {
+        if (requestsPerMinute <= 0) {
+            return RateLimitDecision.unlimited();
+        }
+        long interval = WINDOW_NANOS / requestsPerMinute;
+        long burst = interval * requestsPerMinute;
+        AtomicLong bucket = buckets.computeIfAbsent(bucketKey, k -> new AtomicLong(clock.getAsLong()));
+
+        while (true) {
+            long now = clock.getAsLong();
+            long tat = bucket.get();
+            long newTat = Math.max(tat, now) + interval;
+            long ahead = newTat - now;
+            if (ahead > burst) {
+                return new RateLimitDecision(false, requestsPerMinute, 0,
+                        toSecondsCeil(ahead - burst), toSecondsCeil(Math.max(tat, now) - now));
+            }
+            if (bucket.compareAndSet(tat, newTat)) {
+                return new RateLimitDecision(true, requestsPerMinute, (burst - ahead) / interval,
+                        0, toSecondsCeil(ahead));
+            }
+        }
+    }
+
+    public int getActiveBucketCount() {
+        return buckets.size();
+    }
+
+    /*
+     * Удаление давно простаивающих (полных) bucket
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuckets() {
+        long now = clock.getAsLong();
+        long idleNanos = TimeUnit.SECONDS.toNanos(config.getIdleEvictionSeconds());
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> now - entry.getValue().get() > idleNanos);
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets, {} active", evicted, buckets.size());
+        }
+    }
+
+    private static long toSecondsCeil(long nanos) {
+        return nanos <= 0 ? 0 : (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /*
+     * Результат проверки лимита
+     *
+     * @param limit Лимит в минуту (-1 - без ограничения)
+     * @param remaining Оставшиеся токены
+     * @param retryAfterSeconds Через сколько секунд появится токен (для отказа)
+     * @param resetSeconds Через сколько секунд bucket полностью пополнится
+     */
+    public record RateLimitDecision(boolean allowed, long limit, long remaining,
+                                    long retryAfterSeconds, long resetSeconds) {
+        static RateLimitDecision unlimited() {
+            return new RateLimitDecision(true, -1, -1, 0, 0);
+        }
+
+        public boolean isLimited() {
+            return limit >= 0;
+        }
+    }
+}
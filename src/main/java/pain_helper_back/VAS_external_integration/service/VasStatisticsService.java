@@ -0,0 +1,311 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.VAS_external_integration.config.VasStatsConfig;
+import pain_helper_back.VAS_external_integration.dto.VasMonitorStatsDTO;
+import pain_helper_back.VAS_external_integration.entity.VasStatsBucket;
+import pain_helper_back.VAS_external_integration.repository.VasStatsBucketRepository;
+import pain_helper_back.common.patients.entity.Vas;
+import pain_helper_back.common.patients.repository.VasRepository;
+import pain_helper_back.startup.StartupInitializer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Инкрементальная статистика внешних VAS записей для VAS Monitor Dashboard.
+ *
+ * АЛГОРИТМ:
+ * - Каждая сохраненная внешняя VAS запись после коммита транзакции добавляется в часовой bucket
+ *   (начало часа по createdAt + источник + локация). Счетчики bucket - LongAdder,
+ *   параллельный ingest не конкурирует за одну ячейку
+ * - getTodayStatistics() суммирует bucket с начала дня: O(bucket), таблица vas не читается
+ * - Изменившиеся bucket записываются в vas_stats_buckets раз в vas.stats.flush-interval-ms
+ *   (абсолютные значения, повторная запись безопасна)
+ *
+ * ВОССТАНОВЛЕНИЕ ПРИ СТАРТЕ (StartupInitializer):
+ * - Часы, закрытые до последнего flush (с запасом rebuild-grace-minutes), загружаются из vas_stats_buckets
+ * - Остальные часы окна пересчитываются одним GROUP BY запросом по таблице vas
+ * - Граница между восстановлением и живыми записями - createdAt (rebuildCutoff)
+ * - Пока восстановление не завершено, статистика считается агрегатным запросом к БД
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class VasStatisticsService implements StartupInitializer {
+    public static final String NAME = "vasStatistics";
+
+    private static final String EXTERNAL_SOURCE_PREFIX = "EXTERNAL_";
+    private static final String UNKNOWN = "UNKNOWN";
+    private static final int HIGH_PAIN_THRESHOLD = 7;
+    private static final int MIN_MEMORY_RETENTION_HOURS = 24;
+
+    private final VasRepository vasRepository;
+    private final VasStatsBucketRepository bucketRepository;
+    private final VasStatsConfig config;
+
+    private final Map<BucketKey, BucketCounters> buckets = new ConcurrentHashMap<>();
+
+    // Записи с createdAt раньше границы учитывает восстановление; null - восстановление еще не начато
+    private volatile LocalDateTime rebuildCutoff;
+    private volatile boolean ready;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /*
+     * Восстановление bucket окна memoryRetentionHours из БД
+     */
+    @Override
+    public void initialize() {
+        LocalDateTime cutoff = LocalDateTime.now();
+        rebuildCutoff = cutoff;
+
+        LocalDateTime windowStart = truncateToHour(cutoff.minusHours(memoryRetentionHours()));
+        LocalDateTime lastFlush = bucketRepository.findLastUpdatedAt();
+        LocalDateTime completeBefore = lastFlush == null ? windowStart
+                : truncateToHour(lastFlush.minusMinutes(config.getRebuildGraceMinutes()));
+        if (completeBefore.isBefore(windowStart)) {
+            completeBefore = windowStart;
+        }
+
+        int persisted = 0;
+        for (VasStatsBucket row : bucketRepository
+                .findByBucketStartGreaterThanEqualAndBucketStartLessThan(windowStart, completeBefore)) {
+            add(new BucketKey(row.getBucketStart(), row.getSource(), row.getLocation()),
+                    row.getRecordCount(), row.getVasSum(), row.getHighPainCount(), false);
+            persisted++;
+        }
+
+        int recalculated = 0;
+        for (VasRepository.HourlyVasAggregate row : vasRepository.aggregateExternalByHour(completeBefore, cutoff)) {
+            add(keyOf(row), row.getRecordCount(), nullToZero(row.getVasSum()), nullToZero(row.getHighPainCount()), true);
+            recalculated++;
+        }
+
+        ready = true;
+        log.info("VAS statistics rebuilt: {} persisted buckets before {}, {} buckets recalculated from vas table",
+                persisted, completeBefore, recalculated);
+    }
+
+    /*
+     * Учет сохраненных внешних VAS записей после коммита текущей транзакции
+     * (при откате транзакции статистика не меняется)
+     */
+    public void recordAfterCommit(List<Vas> saved) {
+        if (saved.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    saved.forEach(VasStatisticsService.this::record);
+                }
+            });
+        } else {
+            saved.forEach(this::record);
+        }
+    }
+
+    /*
+     * Статистика за текущий день (с 00:00)
+     */
+    public VasMonitorStatsDTO getTodayStatistics() {
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        StatsAccumulator stats = new StatsAccumulator();
+
+        if (!ready) {
+            log.debug("VAS statistics not rebuilt yet, aggregating in database");
+            for (VasRepository.HourlyVasAggregate row :
+                    vasRepository.aggregateExternalByHour(startOfDay, LocalDateTime.now().plusMinutes(1))) {
+                stats.add(keyOf(row), row.getRecordCount(), nullToZero(row.getVasSum()),
+                        nullToZero(row.getHighPainCount()));
+            }
+        } else {
+            buckets.forEach((key, counters) -> {
+                if (!key.hour().isBefore(startOfDay)) {
+                    stats.add(key, counters.count.sum(), counters.vasSum.sum(), counters.highPain.sum());
+                }
+            });
+        }
+        return stats.toDto();
+    }
+
+    /*
+     * Запись изменившихся bucket в vas_stats_buckets и удаление старых bucket из памяти
+     */
+    @Scheduled(fixedDelayString = "${vas.stats.flush-interval-ms:60000}")
+    public synchronized void flush() {
+        if (!ready) {
+            return;
+        }
+        Map<BucketKey, BucketCounters> dirty = new HashMap<>();
+        buckets.forEach((key, counters) -> {
+            if (counters.dirty) {
+                // Сброс флага до чтения сумм: параллельное добавление снова пометит bucket
+                counters.dirty = false;
+                dirty.put(key, counters);
+            }
+        });
+
+        if (!dirty.isEmpty()) {
+            try {
+                persist(dirty);
+            } catch (RuntimeException e) {
+                dirty.values().forEach(counters -> counters.dirty = true);
+                log.error("Failed to flush {} VAS statistics buckets, will retry: {}", dirty.size(), e.getMessage());
+                return;
+            }
+        }
+
+        LocalDateTime evictBefore = truncateToHour(LocalDateTime.now().minusHours(memoryRetentionHours()));
+        buckets.entrySet().removeIf(entry -> entry.getKey().hour().isBefore(evictBefore) && !entry.getValue().dirty);
+    }
+
+    /*
+     * Удаление строк vas_stats_buckets старше vas.stats.persisted-retention-days (ежедневно в 03:15)
+     */
+    @Scheduled(cron = "0 15 3 * * *")
+    @Transactional
+    public void purgeExpiredBuckets() {
+        LocalDateTime before = LocalDate.now().minusDays(config.getPersistedRetentionDays()).atStartOfDay();
+        int deleted = bucketRepository.deleteOlderThan(before);
+        log.info("Purged {} VAS statistics buckets older than {}", deleted, before);
+    }
+
+    private void persist(Map<BucketKey, BucketCounters> dirty) {
+        Set<LocalDateTime> hours = new HashSet<>();
+        dirty.keySet().forEach(key -> hours.add(key.hour()));
+
+        Map<BucketKey, VasStatsBucket> existing = new HashMap<>();
+        for (VasStatsBucket row : bucketRepository.findByBucketStartIn(hours)) {
+            existing.put(new BucketKey(row.getBucketStart(), row.getSource(), row.getLocation()), row);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<VasStatsBucket> rows = new ArrayList<>(dirty.size());
+        dirty.forEach((key, counters) -> {
+            VasStatsBucket row = existing.get(key);
+            if (row == null) {
+                row = VasStatsBucket.builder()
+                        .bucketStart(key.hour())
+                        .source(key.source())
+                        .location(key.location())
+                        .build();
+            }
+            row.setRecordCount(counters.count.sum());
+            row.setVasSum(counters.vasSum.sum());
+            row.setHighPainCount(counters.highPain.sum());
+            row.setUpdatedAt(now);
+            rows.add(row);
+        });
+        bucketRepository.saveAll(rows);
+        log.debug("Flushed {} VAS statistics buckets", rows.size());
+    }
+
+    private void record(Vas vas) {
+        LocalDateTime cutoff = rebuildCutoff;
+        if (cutoff == null || vas.getCreatedAt() == null || vas.getCreatedAt().isBefore(cutoff)) {
+            return; // Учтено (или будет учтено) восстановлением из БД
+        }
+        int vasLevel = vas.getVasLevel() != null ? vas.getVasLevel() : 0;
+        BucketKey key = new BucketKey(truncateToHour(vas.getCreatedAt()),
+                sourceOf(vas.getRecordedBy()), locationOf(vas.getLocation()));
+        add(key, 1, vasLevel, vasLevel >= HIGH_PAIN_THRESHOLD ? 1 : 0, true);
+    }
+
+    private void add(BucketKey key, long count, long vasSum, long highPain, boolean markDirty) {
+        BucketCounters counters = buckets.computeIfAbsent(key, k -> new BucketCounters());
+        counters.count.add(count);
+        counters.vasSum.add(vasSum);
+        counters.highPain.add(highPain);
+        if (markDirty) {
+            counters.dirty = true;
+        }
+    }
+
+    private int memoryRetentionHours() {
+        return Math.max(MIN_MEMORY_RETENTION_HOURS, config.getMemoryRetentionHours());
+    }
+
+    private static BucketKey keyOf(VasRepository.HourlyVasAggregate row) {
+        return new BucketKey(row.getDay().atTime(row.getHour(), 0),
+                sourceOf(row.getRecordedBy()), locationOf(row.getLocation()));
+    }
+
+    private static LocalDateTime truncateToHour(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static String sourceOf(String recordedBy) {
+        if (recordedBy == null || !recordedBy.startsWith(EXTERNAL_SOURCE_PREFIX)) {
+            return UNKNOWN;
+        }
+        return recordedBy.substring(EXTERNAL_SOURCE_PREFIX.length());
+    }
+
+    private static String locationOf(String location) {
+        return location == null || location.isBlank() ? UNKNOWN : location;
+    }
+
+    private static long nullToZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private record BucketKey(LocalDateTime hour, String source, String location) {
+    }
+
+    private static final class BucketCounters {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder vasSum = new LongAdder();
+        private final LongAdder highPain = new LongAdder();
+        private volatile boolean dirty;
+    }
+
+    /*
+     * Суммирование bucket в ответ dashboard
+     */
+    private static final class StatsAccumulator {
+        private long total;
+        private long vasSum;
+        private long highPain;
+        private final Map<String, Long> byDevice = new TreeMap<>();
+        private final Map<String, Long> byLocation = new TreeMap<>();
+
+        void add(BucketKey key, long count, long bucketVasSum, long bucketHighPain) {
+            if (count == 0) {
+                return;
+            }
+            total += count;
+            vasSum += bucketVasSum;
+            highPain += bucketHighPain;
+            byDevice.merge(key.source(), count, Long::sum);
+            byLocation.merge(key.location(), count, Long::sum);
+        }
+
+        VasMonitorStatsDTO toDto() {
+            double averageVas = total == 0 ? 0.0 : (double) vasSum / total;
+            return VasMonitorStatsDTO.builder()
+                    .totalRecordsToday((int) total)
+                    .averageVas(Math.round(averageVas * 10.0) / 10.0) // Округление до 1 знака
+                    .highPainAlerts((int) highPain)
+                    .activeDevices(byDevice.size())
+                    .recordsByDevice(byDevice)
+                    .recordsByLocation(byLocation)
+                    .build();
+        }
+    }
+}
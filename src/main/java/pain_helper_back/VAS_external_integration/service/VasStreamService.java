@@ -0,0 +1,175 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.VAS_external_integration.config.VasStreamConfig;
+import pain_helper_back.VAS_external_integration.dto.VasStreamFrameDTO;
+import pain_helper_back.VAS_external_integration.dto.VasStreamReadingDTO;
+import pain_helper_back.common.patients.entity.Vas;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/*
+ * Real-time поток внешних VAS записей для VAS Monitor Dashboard (вместо опроса /records и /stats).
+ *
+ * ТОПИКИ:
+ * - /topic/vas/stream - все внешние записи
+ * - /topic/vas/stream/{ward} - записи одного отделения; ward - часть location до койки
+ *   (до первой ',' или слова "Bed") в нижнем регистре, символы кроме букв и цифр заменены
+ *   на '-' ("Ward A, Bed 12" и "Ward A Bed 3" -> "ward-a")
+ *
+ * АЛГОРИТМ:
+ * - Записи после коммита транзакции складываются в карту MRN -> последняя запись пациента
+ *   (ConcurrentHashMap.merge, без блокировок; старая запись вытесняется новой)
+ * - Раз в vas.stream.frame-interval-ms карта вычитывается и отправляется одним кадром
+ *   на общий топик и по кадру на отделение. Пустые окна не отправляются
+ * - При всплеске от мониторов число STOMP сообщений ограничено частотой кадров,
+ *   а размер кадра - числом пациентов, а не числом записей
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class VasStreamService {
+    public static final String STREAM_TOPIC = "/topic/vas/stream";
+
+    private static final String EXTERNAL_SOURCE_PREFIX = "EXTERNAL_";
+    private static final String UNKNOWN_WARD = "unknown";
+    // Начало номера койки в location: "Ward A, Bed 12", "Ward B Bed 5"
+    private static final Pattern BED_SUFFIX = Pattern.compile("(,|\\bbed\\b).*$",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final VasStreamConfig config;
+
+    private static final Comparator<VasStreamReadingDTO> READING_ORDER = Comparator
+            .comparing(VasStreamReadingDTO::getRecordedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(VasStreamReadingDTO::getVasId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Map<String, PendingReading> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /*
+     * Постановка сохраненных записей в поток после коммита транзакции (без транзакции - сразу)
+     */
+    public void publishAfterCommit(List<Vas> saved) {
+        if (!config.isEnabled() || saved.isEmpty()) {
+            return;
+        }
+        List<VasStreamReadingDTO> readings = saved.stream().map(this::toReading).toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readings.forEach(VasStreamService.this::enqueue);
+                }
+            });
+        } else {
+            readings.forEach(this::enqueue);
+        }
+    }
+
+    /*
+     * Отправка накопленного окна
+     */
+    @Scheduled(fixedRateString = "${vas.stream.frame-interval-ms:250}")
+    public void flushFrame() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // remove() по ключу: запись, пришедшая во время вычитывания, попадет в этот или следующий кадр
+        List<VasStreamReadingDTO> readings = new ArrayList<>(pending.size());
+        for (String mrn : pending.keySet()) {
+            PendingReading entry = pending.remove(mrn);
+            if (entry != null) {
+                VasStreamReadingDTO reading = entry.latest();
+                reading.setCoalescedReadings(entry.count());
+                readings.add(reading);
+            }
+        }
+        if (readings.isEmpty()) {
+            return;
+        }
+        long frameSequence = sequence.incrementAndGet();
+        LocalDateTime sentAt = LocalDateTime.now();
+        try {
+            send(STREAM_TOPIC, null, readings, frameSequence, sentAt);
+            if (config.isWardTopics()) {
+                Map<String, List<VasStreamReadingDTO>> byWard = new HashMap<>();
+                for (VasStreamReadingDTO reading : readings) {
+                    byWard.computeIfAbsent(wardOf(reading.getLocation()), ward -> new ArrayList<>()).add(reading);
+                }
+                byWard.forEach((ward, wardReadings) ->
+                        send(STREAM_TOPIC + "/" + ward, ward, wardReadings, frameSequence, sentAt));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to send VAS stream frame: {}", e.getMessage());
+        }
+    }
+
+    /*
+     * Имя отделения в топике /topic/vas/stream/{ward} (локация без койки)
+     */
+    public static String wardOf(String location) {
+        if (location == null || location.isBlank()) {
+            return UNKNOWN_WARD;
+        }
+        String ward = BED_SUFFIX.matcher(location).replaceFirst("");
+        ward = ward.trim().toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", "-");
+        ward = ward.replaceAll("^-+|-+$", "");
+        return ward.isEmpty() ? UNKNOWN_WARD : ward;
+    }
+
+    private void send(String topic, String ward, List<VasStreamReadingDTO> readings,
+                      long frameSequence, LocalDateTime sentAt) {
+        int received = 0;
+        for (VasStreamReadingDTO reading : readings) {
+            received += reading.getCoalescedReadings();
+        }
+        messagingTemplate.convertAndSend(topic, VasStreamFrameDTO.builder()
+                .sequence(frameSequence)
+                .ward(ward)
+                .sentAt(sentAt)
+                .readingsReceived(received)
+                .readings(readings)
+                .build());
+    }
+
+    private void enqueue(VasStreamReadingDTO reading) {
+        pending.merge(reading.getPatientMrn(), new PendingReading(reading, 1), PendingReading::merge);
+    }
+
+    private VasStreamReadingDTO toReading(Vas vas) {
+        String recordedBy = vas.getRecordedBy();
+        return VasStreamReadingDTO.builder()
+                .vasId(vas.getId())
+                .patientMrn(vas.getPatient().getMrn())
+                .vasLevel(vas.getVasLevel())
+                .location(vas.getLocation())
+                .source(recordedBy != null && recordedBy.startsWith(EXTERNAL_SOURCE_PREFIX)
+                        ? recordedBy.substring(EXTERNAL_SOURCE_PREFIX.length())
+                        : recordedBy)
+                .recordedAt(vas.getRecordedAt())
+                .createdAt(vas.getCreatedAt())
+                .build();
+    }
+
+    /*
+     * Последняя запись пациента за окно (по времени записи, затем по ID) и число склеенных записей
+     */
+    private record PendingReading(VasStreamReadingDTO latest, int count) {
+        private static PendingReading merge(PendingReading current, PendingReading incoming) {
+            VasStreamReadingDTO newer = READING_ORDER.compare(incoming.latest, current.latest) >= 0
+                    ? incoming.latest : current.latest;
+            return new PendingReading(newer, current.count + incoming.count);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package pain_helper_back.admin.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +16,7 @@ import pain_helper_back.analytics.event.PersonUpdatedEvent;
 import pain_helper_back.common.patients.dto.PatientDTO;
 import pain_helper_back.common.patients.repository.PatientRepository;
 import pain_helper_back.enums.Roles;
+import pain_helper_back.startup.StartupInitializer;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -28,7 +28,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Transactional
 @Slf4j
-public class AdminServiceImpl implements AdminService, CommandLineRunner {
+public class AdminServiceImpl implements AdminService, StartupInitializer {
     private final PersonRepository personRepository;
     private final PatientRepository patientRepository;
     private final ModelMapper modelMapper;
@@ -156,7 +156,12 @@ public class AdminServiceImpl implements AdminService, CommandLineRunner {
     }
 
     @Override
-    public void run(String... args) throws Exception {
+    public String getName() {
+        return "adminUser";
+    }
+
+    @Override
+    public void initialize() {
         if (!personRepository.existsByLogin("admin")) {
             Person admin = new Person();
             admin.setPersonId("admin123");
@@ -7,22 +7,47 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
+import pain_helper_back.analytics.config.LoggingAspectConfig;
+import pain_helper_back.analytics.dto.ServiceLoggingStatsDTO;
 import pain_helper_back.analytics.entity.LogEntry;
-import pain_helper_back.analytics.repository.LogEntryRepository;
+import pain_helper_back.analytics.writer.LogEntryWriter;
+import pain_helper_back.enums.ServiceLogLevel;
 
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 
 /*
  * AOP Aspect для автоматического логирования всех методов сервисов
  * Перехватывает вызовы методов и сохраняет информацию в MongoDB
+ *
+ * ПОТОК ДАННЫХ:
+ * 1. Метод выполняется, измеряется время; уровень: ERROR - исключение, WARN - дольше slowThresholdMs, иначе INFO
+ * 2. Решение о сохранении по настройкам пакета класса (analytics.logging.packages, самый длинный префикс):
+ *    запись ниже уровня пакета пропускается, INFO сохраняется с долей sampleRate;
+ *    ошибки и медленные вызовы не сэмплируются
+ * 3. Только для сохраняемых записей строятся сигнатура, аргументы (с ограничением длины) и stack trace
+ * 4. Запись передается LogEntryWriter; в MongoDB ее пишет фоновый поток пакетами.
+ *    При заполненной очереди запись отбрасывается - вызов сервиса не ждет
  */
 @Aspect
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class LoggingAspect {
-    private final LogEntryRepository logEntryRepository;
+    private static final int MAX_STRING_ARGUMENT_LENGTH = 100;
+
+    private final LoggingAspectConfig config;
+    private final LogEntryWriter logEntryWriter;
+
+    // Настройки пакета вычисляются один раз на класс
+    private final Map<Class<?>, ClassLogging> classLogging = new ConcurrentHashMap<>();
+    private final LongAdder intercepted = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
 
     /*
      * Перехватывает все методы в пакетах service
@@ -30,71 +55,119 @@ public class LoggingAspect {
      */
     @Around("execution(* pain_helper_back..service..*.*(..))")
     public Object logServiceMethod(ProceedingJoinPoint joinPoint) throws Throwable {
-        String className = joinPoint.getTarget().getClass().getSimpleName();
-        String methodName = joinPoint.getSignature().getName();
-        String methodSignature = joinPoint.getSignature().toShortString();
-        Object[] args = joinPoint.getArgs();
-
-        long startTime = System.currentTimeMillis();
-        Object result = null;
+        if (!config.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        long startTime = System.nanoTime();
         Exception exception = null;
 
         try {
             //Выполняем оригинальный метод
-            result = joinPoint.proceed();
-            return result;
+            return joinPoint.proceed();
         } catch (Exception e) {
             exception = e;
             throw e;
         } finally {
-            long durationMs = System.currentTimeMillis() - startTime;
-            // Асинхронно сохраняем лог в MongoDB
-            saveLogEntryAsync(className, methodName, methodSignature, args, durationMs, exception);
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            // Передаем лог в очередь записи MongoDB
+            enqueueLogEntry(joinPoint, durationMs, exception);
         }
     }
+
+    public ServiceLoggingStatsDTO getStats() {
+        return ServiceLoggingStatsDTO.builder()
+                .enabled(config.isEnabled())
+                .intercepted(intercepted.sum())
+                .skipped(skipped.sum())
+                .writer(logEntryWriter.getStats())
+                .build();
+    }
+
     /*
-     * Асинхронное сохранение лога в MongoDB
-     * Не блокирует основной поток выполнения
+     * Построение записи и передача в очередь записи
+     * Не блокирует основной поток выполнения и не бросает исключений
      */
-    public void saveLogEntryAsync(String className, String methodName, String methodSignature, Object[] args, long durationMs, Exception exception) {
-
+    private void enqueueLogEntry(ProceedingJoinPoint joinPoint, long durationMs, Exception exception) {
         try {
-            // Определяем модуль по имени класса
-            String module = determineModule(className);
-            // Определяем категорию лога
-            String logCategory = exception != null ? "ERROR" : (durationMs > 1000 ? "WARN" : "INFO");
+            intercepted.increment();
+            ServiceLogLevel level = exception != null
+                    ? ServiceLogLevel.ERROR
+                    : (durationMs > config.getSlowThresholdMs() ? ServiceLogLevel.WARN : ServiceLogLevel.INFO);
+            Class<?> targetClass = joinPoint.getTarget().getClass();
+            ClassLogging logging = classLogging.computeIfAbsent(targetClass, this::resolveClassLogging);
+
+            // Логируем в консоль для отладки
+            if (exception != null) {
+                log.error("Method {} failed: {}", joinPoint.getSignature().toShortString(), exception.getMessage());
+            } else if (level == ServiceLogLevel.WARN) {
+                log.warn("Slow method detected: {} took {}ms", joinPoint.getSignature().toShortString(), durationMs);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Method {} executed in {}ms", joinPoint.getSignature().toShortString(), durationMs);
+            }
+
+            if (!shouldKeep(level, logging)) {
+                skipped.increment();
+                return;
+            }
 
             LogEntry logEntry = LogEntry.builder()
                     .timestamp(LocalDateTime.now())
-                    .className(className)
-                    .methodName(methodName)
-                    .methodSignature(methodSignature)
-                    .arguments(formatArguments(args))
+                    .className(targetClass.getSimpleName())
+                    .methodName(joinPoint.getSignature().getName())
+                    .methodSignature(joinPoint.getSignature().toShortString())
+                    .arguments(formatArguments(joinPoint.getArgs()))
                     .durationMs(durationMs)
                     .success(exception == null)
-                    .errorMessage(exception != null ? exception.getMessage() : null)
+                    .errorMessage(exception != null ? truncate(exception.getMessage(), config.getMaxErrorLength()) : null)
                     .errorStackTrace(exception != null ? getStackTrace(exception) : null)
-                    .logCategory(logCategory)
-                    .level(logCategory)
-                    .module(module)
+                    .logCategory(level.name())
+                    .level(level.name())
+                    .module(logging.module())
+                    .sampleRate(level == ServiceLogLevel.INFO ? logging.sampleRate() : 1.0)
                     .build();
-            logEntryRepository.save(logEntry);
-
-            // Логируем в консоль для отладки
-            if (exception != null) {
-                log.error("Method {} failed: {}", methodSignature, exception.getMessage());
-            } else if (durationMs > 1000) {
-                log.warn("Slow method detected: {} took {}ms", methodSignature, durationMs);
-            } else {
-                log.debug("Method {} executed in {}ms", methodSignature, durationMs);
-            }
+            logEntryWriter.append(logEntry);
 
         } catch (Exception e) {
             // Не бросаем исключение, чтобы не сломать основной поток
-            log.error("Failed to save log entry: {}", e.getMessage());
+            log.error("Failed to enqueue log entry: {}", e.getMessage());
         }
     }
 
+    /*
+     * Ошибки и медленные вызовы сохраняются всегда, если не ниже уровня пакета; INFO - с долей sampleRate
+     */
+    private boolean shouldKeep(ServiceLogLevel level, ClassLogging logging) {
+        if (level.compareTo(logging.level()) < 0) {
+            return false;
+        }
+        if (level != ServiceLogLevel.INFO || logging.sampleRate() >= 1.0) {
+            return true;
+        }
+        return ThreadLocalRandom.current().nextDouble() < logging.sampleRate();
+    }
+
+    /*
+     * Настройки самого длинного совпавшего префикса пакета поверх общих
+     */
+    private ClassLogging resolveClassLogging(Class<?> targetClass) {
+        String className = targetClass.getName();
+        ServiceLogLevel level = config.getLevel();
+        double sampleRate = config.getSampleRate();
+        int matchedLength = -1;
+        for (Map.Entry<String, LoggingAspectConfig.PackageLogging> entry : config.getPackages().entrySet()) {
+            String prefix = entry.getKey();
+            boolean matches = className.startsWith(prefix)
+                    && (className.length() == prefix.length() || className.charAt(prefix.length()) == '.');
+            if (matches && prefix.length() > matchedLength) {
+                matchedLength = prefix.length();
+                LoggingAspectConfig.PackageLogging packageLogging = entry.getValue();
+                level = packageLogging.getLevel() != null ? packageLogging.getLevel() : config.getLevel();
+                sampleRate = packageLogging.getSampleRate() != null ? packageLogging.getSampleRate() : config.getSampleRate();
+            }
+        }
+        return new ClassLogging(level, sampleRate, determineModule(targetClass.getSimpleName()));
+    }
+
     /*
      * Определяет модуль по имени класса
      */
@@ -109,27 +182,27 @@ public class LoggingAspect {
     }
 
     /*
-     * Форматирует аргументы метода для логирования
+     * Форматирует аргументы метода для логирования (общая длина не больше maxArgumentsLength)
      */
     private String formatArguments(Object[] args) {
         if (args == null || args.length == 0) {
             return "[]";
         }
         StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < args.length; i++) {
+        for (int i = 0; i < args.length && sb.length() < config.getMaxArgumentsLength(); i++) {
             if (i > 0) sb.append(", ");
             Object arg = args[i];
             switch (arg) {
                 case null -> sb.append("null");
                 case String str ->
                     // Ограничиваем длину строк
-                        sb.append("\"").append(str.length() > 100 ? str.substring(0, 100) + "..." : str).append("\"");
+                        sb.append("\"").append(truncate(str, MAX_STRING_ARGUMENT_LENGTH)).append("\"");
                 case Number number -> sb.append(arg);
                 default -> sb.append(arg.getClass().getSimpleName());
             }
         }
         sb.append("]");
-        return sb.toString();
+        return truncate(sb.toString(), config.getMaxArgumentsLength());
     }
 
     /*
@@ -140,7 +213,7 @@ public class LoggingAspect {
         sb.append(exception.getClass().getName()).append(": ").append(exception.getMessage()).append("\n");
 
         StackTraceElement[] stackTrace = exception.getStackTrace();
-        int limit = Math.min(5, stackTrace.length); // Ограничиваем 5 строками
+        int limit = Math.min(config.getMaxStackTraceLines(), stackTrace.length); // Ограничиваем число строк
         for (int i = 0; i < limit; i++) {
             sb.append("\tat ").append(stackTrace[i].toString()).append("\n");
         }
@@ -149,6 +222,16 @@ public class LoggingAspect {
             sb.append("\t... ").append(stackTrace.length - limit).append(" more");
         }
 
-        return sb.toString();
+        return truncate(sb.toString(), config.getMaxErrorLength());
+    }
+
+    private static String truncate(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        return value.substring(0, maxLength) + "...";
+    }
+
+    private record ClassLogging(ServiceLogLevel level, double sampleRate, String module) {
     }
 }
@@ -1,19 +0,0 @@
-package pain_helper_back.analytics.config;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-import java.util.concurrent.Executor;
-
-@Configuration
-public class AnalyticsAsyncConfig {
-    @Bean(name = "analyticsTaskExecutor")
-    public Executor analyticsTaskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("Analytics-");
-        executor.initialize();
-        return executor;
-    }
-}
\ No newline at end of file
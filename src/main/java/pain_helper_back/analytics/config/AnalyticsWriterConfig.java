@@ -0,0 +1,38 @@
+package pain_helper_back.analytics.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import pain_helper_back.analytics.writer.BatchingWriterSettings;
+import pain_helper_back.enums.AnalyticsOverflowPolicy;
+
+/**
+ * Конфигурация пакетной записи аналитических событий в MongoDB (AnalyticsEventWriter)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "analytics.writer")
+@Getter
+@Setter
+public class AnalyticsWriterConfig implements BatchingWriterSettings {
+    /**
+     * Емкость буфера событий (по умолчанию 10000)
+     */
+    private int bufferCapacity = 10_000;
+    /**
+     * Размер пакета insertMany: при накоплении стольких событий запись начинается сразу (по умолчанию 500)
+     */
+    private int batchSize = 500;
+    /**
+     * Максимальное время ожидания неполного пакета в миллисекундах (по умолчанию 1000)
+     */
+    private long flushIntervalMs = 1000;
+    /**
+     * Поведение при заполненном буфере (по умолчанию DROP_NEWEST)
+     */
+    private AnalyticsOverflowPolicy overflowPolicy = AnalyticsOverflowPolicy.DROP_NEWEST;
+    /**
+     * Максимальное ожидание места в буфере для политики BLOCK в миллисекундах (по умолчанию 50)
+     */
+    private long blockTimeoutMs = 50;
+}
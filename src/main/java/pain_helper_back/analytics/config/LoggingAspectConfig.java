@@ -0,0 +1,89 @@
+package pain_helper_back.analytics.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import pain_helper_back.analytics.writer.BatchingWriterSettings;
+import pain_helper_back.enums.AnalyticsOverflowPolicy;
+import pain_helper_back.enums.ServiceLogLevel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Конфигурация логирования методов сервисов (LoggingAspect) и пакетной записи логов в MongoDB (LogEntryWriter)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "analytics.logging")
+@Getter
+@Setter
+public class LoggingAspectConfig implements BatchingWriterSettings {
+    /**
+     * Сохранять логи методов сервисов в MongoDB (по умолчанию true)
+     */
+    private boolean enabled = true;
+    /**
+     * Минимальный уровень сохраняемых записей (по умолчанию INFO)
+     */
+    private ServiceLogLevel level = ServiceLogLevel.INFO;
+    /**
+     * Доля сохраняемых INFO-записей от 0 до 1 (по умолчанию 0.1). Ошибки и медленные вызовы не сэмплируются
+     */
+    private double sampleRate = 0.1;
+    /**
+     * Порог медленного вызова в миллисекундах: такие вызовы сохраняются как WARN (по умолчанию 1000)
+     */
+    private long slowThresholdMs = 1000;
+    /**
+     * Максимальная длина строки аргументов (по умолчанию 256)
+     */
+    private int maxArgumentsLength = 256;
+    /**
+     * Максимальная длина сообщения об ошибке и stack trace (по умолчанию 1000)
+     */
+    private int maxErrorLength = 1000;
+    /**
+     * Число строк stack trace (по умолчанию 5)
+     */
+    private int maxStackTraceLines = 5;
+    /**
+     * Переопределение уровня и доли сэмплирования по пакетам; ключ - префикс пакета, действует самый длинный:
+     * analytics.logging.packages[pain_helper_back.treatment_protocol].sample-rate=0.01
+     */
+    private Map<String, PackageLogging> packages = new LinkedHashMap<>();
+    /**
+     * Емкость буфера записей (по умолчанию 5000). Вместе с ограничениями длины полей задает предел памяти
+     * очереди: около 3 КБ на запись, не больше ~15 МБ при настройках по умолчанию
+     */
+    private int bufferCapacity = 5000;
+    /**
+     * Размер пакета insertMany (по умолчанию 200)
+     */
+    private int batchSize = 200;
+    /**
+     * Максимальное время ожидания неполного пакета в миллисекундах (по умолчанию 1000)
+     */
+    private long flushIntervalMs = 1000;
+    /**
+     * Поведение при заполненном буфере (по умолчанию DROP_NEWEST - вызов сервиса никогда не ждет)
+     */
+    private AnalyticsOverflowPolicy overflowPolicy = AnalyticsOverflowPolicy.DROP_NEWEST;
+    /**
+     * Максимальное ожидание места в буфере для политики BLOCK в миллисекундах (по умолчанию 0)
+     */
+    private long blockTimeoutMs = 0;
+
+    @Getter
+    @Setter
+    public static class PackageLogging {
+        /**
+         * Минимальный уровень для пакета (не задан - общий level)
+         */
+        private ServiceLogLevel level;
+        /**
+         * Доля сохраняемых INFO-записей для пакета (не задана - общий sampleRate)
+         */
+        private Double sampleRate;
+    }
+}
@@ -5,13 +5,17 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import pain_helper_back.analytics.aspect.LoggingAspect;
+import pain_helper_back.analytics.dto.AnalyticsWriterStatsDTO;
 import pain_helper_back.analytics.dto.EventStatsDTO;
 import pain_helper_back.analytics.dto.PatientStatsDTO;
 import pain_helper_back.analytics.dto.PerformanceStatsDTO;
+import pain_helper_back.analytics.dto.ServiceLoggingStatsDTO;
 import pain_helper_back.analytics.dto.UserActivityDTO;
 import pain_helper_back.analytics.entity.AnalyticsEvent;
 import pain_helper_back.analytics.entity.LogEntry;
 import pain_helper_back.analytics.service.AnalyticsService;
+import pain_helper_back.analytics.writer.AnalyticsEventWriter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,6 +27,8 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class AnalyticsController {
     private final AnalyticsService analyticsService;
+    private final AnalyticsEventWriter analyticsEventWriter;
+    private final LoggingAspect loggingAspect;
 
     /*
      * GET /api/analytics/events/stats
@@ -130,4 +136,21 @@ public class AnalyticsController {
         return ResponseEntity.ok(logs);
     }
 
+    /*
+     * GET /api/analytics/writer/stats
+     * Статистика пакетной записи событий: глубина буфера, отброшенные события, задержка записи
+     */
+    @GetMapping("/writer/stats")
+    public ResponseEntity<AnalyticsWriterStatsDTO> getWriterStats() {
+        return ResponseEntity.ok(analyticsEventWriter.getStats());
+    }
+
+    /*
+     * GET /api/analytics/logging/stats
+     * Статистика логирования методов сервисов: пропущено сэмплированием, очередь записи логов
+     */
+    @GetMapping("/logging/stats")
+    public ResponseEntity<ServiceLoggingStatsDTO> getLoggingStats() {
+        return ResponseEntity.ok(loggingAspect.getStats());
+    }
 }
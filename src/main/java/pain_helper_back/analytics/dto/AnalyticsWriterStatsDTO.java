@@ -0,0 +1,29 @@
+package pain_helper_back.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import pain_helper_back.enums.AnalyticsOverflowPolicy;
+
+/*
+ * Статистика пакетной записи аналитических событий
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsWriterStatsDTO {
+    private int bufferDepth;
+    private int bufferCapacity;
+    private AnalyticsOverflowPolicy overflowPolicy;
+    private long appended;
+    private long dropped;          // Отброшены при заполненном буфере или после остановки
+    private long written;
+    private long failed;           // Не записаны: ошибка MongoDB или документ отклонен
+    private long flushes;
+    private double averageBatchSize;
+    private long flushLatencyP50Ms;
+    private long flushLatencyP99Ms;
+    private long flushLatencyMaxMs;
+}
@@ -0,0 +1,20 @@
+package pain_helper_back.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/*
+ * Статистика логирования методов сервисов
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServiceLoggingStatsDTO {
+    private boolean enabled;
+    private long intercepted;               // Перехвачено вызовов
+    private long skipped;                   // Не сохранены: сэмплирование или уровень пакета
+    private AnalyticsWriterStatsDTO writer; // Очередь записи в MongoDB
+}
@@ -45,5 +45,7 @@ public class LogEntry {
     private String level; // INFO, WARN, ERROR(for API)
     @Indexed
     private String module;// nurse, doctor, anesthesiologist, external_emr_integration_service
+    //sampling
+    private Double sampleRate;// share of INFO calls persisted (1.0 for WARN/ERROR): count of calls = entries / sampleRate
 
 }
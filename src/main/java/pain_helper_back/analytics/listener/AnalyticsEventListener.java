@@ -4,11 +4,10 @@ package pain_helper_back.analytics.listener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import pain_helper_back.analytics.entity.AnalyticsEvent;
 import pain_helper_back.analytics.event.*;
-import pain_helper_back.analytics.repository.AnalyticsEventRepository;
+import pain_helper_back.analytics.writer.AnalyticsEventWriter;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -16,19 +15,19 @@ import java.util.Map;
 
 /*
  * Слушатель бизнес-событий
- * Асинхронно сохраняет события в MongoDB для аналитики
+ * Строит аналитическое событие в потоке публикации и передает его AnalyticsEventWriter,
+ * который пакетами сохраняет события в MongoDB
  */
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class AnalyticsEventListener {
-    private final AnalyticsEventRepository analyticsEventRepository;
+    private final AnalyticsEventWriter analyticsEventWriter;
 
     /*
      * Обработка события: Создан новый сотрудник
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handlePersonCreated(PersonCreatedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -48,8 +47,8 @@ public class AnalyticsEventListener {
             analyticsEvent.getMetadata().put("newPersonId", event.getPersonId());
             analyticsEvent.getMetadata().put("newPersonRole", event.getRole());
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: PERSON_CREATED, personId={}, role={}, createdBy={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: PERSON_CREATED, personId={}, role={}, createdBy={}",
                     event.getPersonId(), event.getRole(), event.getCreatedBy());
 
         } catch (Exception e) {
@@ -60,7 +59,6 @@ public class AnalyticsEventListener {
      * Обработка события: Удален сотрудник
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handlePersonDeleted(PersonDeletedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -80,8 +78,8 @@ public class AnalyticsEventListener {
             analyticsEvent.getMetadata().put("deletedPersonId", event.getPersonId());
             analyticsEvent.getMetadata().put("deletedPersonRole", event.getRole());
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.warn("Analytics event saved: PERSON_DELETED, personId={}, role={}, deletedBy={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.warn("Analytics event queued: PERSON_DELETED, personId={}, role={}, deletedBy={}",
                     event.getPersonId(), event.getRole(), event.getDeletedBy());
 
         } catch (Exception e) {
@@ -92,7 +90,6 @@ public class AnalyticsEventListener {
      * Обработка события: Обновлены данные сотрудника
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handlePersonUpdated(PersonUpdatedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -109,8 +106,8 @@ public class AnalyticsEventListener {
 
             analyticsEvent.getMetadata().put("updatedPersonId", event.getPersonId());
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: PERSON_UPDATED, personId={}, updatedBy={}, fields={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: PERSON_UPDATED, personId={}, updatedBy={}, fields={}",
                     event.getPersonId(), event.getUpdatedBy(), event.getChangedFields().keySet());
 
         } catch (Exception e) {
@@ -121,7 +118,6 @@ public class AnalyticsEventListener {
      * Обработка события: Вход пользователя в систему
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handleUserLogin(UserLoginEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -138,12 +134,12 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
+            analyticsEventWriter.append(analyticsEvent);
             if (event.getSuccess()) {
-                log.info("Analytics event saved: USER_LOGIN_SUCCESS, personId={}, role={}",
+                log.info("Analytics event queued: USER_LOGIN_SUCCESS, personId={}, role={}",
                         event.getPersonId(), event.getRole());
             } else {
-                log.warn("Analytics event saved: USER_LOGIN_FAILED, personId={}", event.getPersonId());
+                log.warn("Analytics event queued: USER_LOGIN_FAILED, personId={}", event.getPersonId());
             }
 
         } catch (Exception e) {
@@ -154,7 +150,6 @@ public class AnalyticsEventListener {
      * Обработка события: Рекомендация одобрена
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handleRecommendationApproved(RecommendationApprovedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -173,8 +168,8 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: RECOMMENDATION_APPROVED, recommendationId={}, doctorId={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: RECOMMENDATION_APPROVED, recommendationId={}, doctorId={}",
                     event.getRecommendationId(), event.getApprovedBy());
 
         } catch (Exception e) {
@@ -185,7 +180,6 @@ public class AnalyticsEventListener {
      * Обработка события: Рекомендация отклонена
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handleRecommendationRejected(RecommendationRejectedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -205,8 +199,8 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: RECOMMENDATION_REJECTED, recommendationId={}, doctorId={}, reason={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: RECOMMENDATION_REJECTED, recommendationId={}, doctorId={}, reason={}",
                     event.getRecommendationId(), event.getRejectedBy(), event.getRejectionReason());
 
         } catch (Exception e) {
@@ -218,7 +212,6 @@ public class AnalyticsEventListener {
      * Обработка события: Пациент зарегистрирован
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handlePatientRegistered(PatientRegisteredEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -236,8 +229,8 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: PATIENT_REGISTERED, patientMrn={}, registeredBy={}, role={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: PATIENT_REGISTERED, patientMrn={}, registeredBy={}, role={}",
                     event.getPatientMrn(), event.getRegisteredBy(), event.getRegisteredByRole());
 
         } catch (Exception e) {
@@ -248,7 +241,6 @@ public class AnalyticsEventListener {
      * Обработка события: Создана запись EMR
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handleEmrCreated(EmrCreatedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -275,7 +267,7 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
+            analyticsEventWriter.append(analyticsEvent);
             log.info("EMR_CREATED event saved: patient={}, createdBy={}, diagnoses={}",
                     event.getPatientMrn(), event.getCreatedBy(),
                     event.getDiagnosisCodes() != null ? event.getDiagnosisCodes().size() : 0);
@@ -288,7 +280,6 @@ public class AnalyticsEventListener {
      * Различает внутренний (медсестра) и внешний (устройство) источник
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handleVasRecorded(VasRecordedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -313,8 +304,8 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: VAS_RECORDED, patientMrn={}, vasLevel={}, critical={}, source={}, device={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: VAS_RECORDED, patientMrn={}, vasLevel={}, critical={}, source={}, device={}",
                     event.getPatientMrn(), event.getVasLevel(), event.getIsCritical(), 
                     event.getVasSource(), event.getDeviceId());
 
@@ -326,7 +317,6 @@ public class AnalyticsEventListener {
      * Обработка события: Создана рекомендация
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handleRecommendationCreated(RecommendationCreatedEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -354,8 +344,8 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: RECOMMENDATION_CREATED, recommendationId={}, patientMrn={}, drug={}, vasLevel={}, diagnoses={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: RECOMMENDATION_CREATED, recommendationId={}, patientMrn={}, drug={}, vasLevel={}, diagnoses={}",
                     event.getRecommendationId(), event.getPatientMrn(), event.getDrugName(), event.getVasLevel(),
                     event.getDiagnosisCodes() != null ? event.getDiagnosisCodes().size() : 0);
 
@@ -368,7 +358,6 @@ public class AnalyticsEventListener {
      * Обработка события: Введена доза препарата
      */
     @EventListener
-    @Async("analyticsTaskExecutor")
     public void handleDoseAdministered(DoseAdministeredEvent event) {
         try {
             Map<String, Object> metadata = new HashMap<>();
@@ -387,8 +376,8 @@ public class AnalyticsEventListener {
                     .metadata(metadata)
                     .build();
 
-            analyticsEventRepository.save(analyticsEvent);
-            log.info("Analytics event saved: DOSE_ADMINISTERED, patientMrn={}, drug={} {}{}, administeredBy={}",
+            analyticsEventWriter.append(analyticsEvent);
+            log.info("Analytics event queued: DOSE_ADMINISTERED, patientMrn={}, drug={} {}{}, administeredBy={}",
                     event.getPatientMrn(), event.getDosage(), event.getUnit(), event.getDrugName(), event.getAdministeredBy());
 
         } catch (Exception e) {
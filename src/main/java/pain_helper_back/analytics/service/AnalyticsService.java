@@ -2,8 +2,15 @@ package pain_helper_back.analytics.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.GroupOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.stereotype.Service;
 import pain_helper_back.analytics.dto.EventStatsDTO;
 import pain_helper_back.analytics.dto.PatientStatsDTO;
@@ -15,48 +22,44 @@ import pain_helper_back.analytics.repository.AnalyticsEventRepository;
 import pain_helper_back.analytics.repository.LogEntryRepository;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
+/*
+ * Статистика по analytics_events считается в MongoDB ($match по индексированным полям, затем $group/$facet);
+ * в JVM попадают только агрегированные строки, а не документы событий
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class AnalyticsService {
+    private static final String COUNT = "count";
+
     private final AnalyticsEventRepository analyticsEventRepository;
     private final LogEntryRepository logEntryRepository;
+    private final MongoTemplate mongoTemplate;
 
     /*
      * Получить общую статистику по событиям
      */
     public EventStatsDTO getEventStats(LocalDateTime startDate, LocalDateTime endDate) {
-        List<AnalyticsEvent> events;
-        if (startDate != null && endDate != null) {
-            events = analyticsEventRepository.findByTimestampBetween(startDate, endDate);
-        } else {
-            events = analyticsEventRepository.findAll();
-        }
-        Long totalEvents = (long) events.size();
-        // Группировка по типу события
-        Map<String, Long> eventsByType = events.stream()
-                .collect(Collectors.groupingBy(
-                        AnalyticsEvent::getEventType,
-                        Collectors.counting()
-                ));
-        // Группировка по роли пользователя
-        Map<String, Long> eventsByRole = events.stream()
-                .filter(event -> event.getUserRole() != null)
-                .collect(Collectors.groupingBy(
-                        AnalyticsEvent::getUserRole,
-                        Collectors.counting()
-                ));
-        // Группировка по статусу
-        Map<String, Long> eventsByStatus = events.stream()
-                .filter(e -> e.getStatus() != null)
-                .collect(Collectors.groupingBy(
-                        AnalyticsEvent::getStatus,
-                        Collectors.counting()
-                ));
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(timestampCriteria(startDate, endDate)),
+                Aggregation.facet(Aggregation.count().as(COUNT)).as("total")
+                        .and(countBy("eventType")).as("byType")
+                        // Группировка по роли пользователя
+                        .and(Aggregation.match(Criteria.where("userRole").ne(null)), countBy("userRole")).as("byRole")
+                        // Группировка по статусу
+                        .and(Aggregation.match(Criteria.where("status").ne(null)), countBy("status")).as("byStatus"));
+        Document facets = aggregateOne(aggregation);
+
+        Long totalEvents = firstLong(facets, "total", COUNT);
+        Map<String, Long> eventsByType = countsByKey(facets, "byType");
+        Map<String, Long> eventsByRole = countsByKey(facets, "byRole");
+        Map<String, Long> eventsByStatus = countsByKey(facets, "byStatus");
         log.info("Event stats calculated: totalEvents={}, types={}, roles={}",
                 totalEvents, eventsByType.size(), eventsByRole.size());
 
@@ -67,35 +70,27 @@ public class AnalyticsService {
      * Получить активность пользователя
      */
     public UserActivityDTO getUserActivity(String userId, LocalDateTime startDate, LocalDateTime endDate) {
-        List<AnalyticsEvent> userEvents;
-        if (startDate != null && endDate != null) {
-            userEvents = analyticsEventRepository.findByUserIdAndTimestampBetween(userId, startDate, endDate);
-        } else {
-            userEvents = analyticsEventRepository.findByUserId(userId);
-        }
-        if (userEvents.isEmpty()) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(timestampCriteria(startDate, endDate).and("userId").is(userId)),
+                Aggregation.group()
+                        .count().as("totalActions")
+                        .first("userRole").as("userRole")
+                        .max("timestamp").as("lastActivity")
+                        .sum(countIf("eventType", "USER_LOGIN_SUCCESS")).as("loginCount")
+                        .sum(countIf("eventType", "USER_LOGIN_FAILED")).as("failedLoginCount"));
+        Document activity = aggregateOne(aggregation);
+        if (activity == null) {
             return new UserActivityDTO(userId, "UNKNOWN", 0L, null, 0L, 0L);
         }
-        Long totalActions = (long) userEvents.size();
-        String userRole = userEvents.get(0).getUserRole();
-
-        LocalDateTime lastActivity = userEvents.stream()
-                .map(AnalyticsEvent::getTimestamp)
-                .max(LocalDateTime::compareTo)
-                .orElse(null);
-
-        Long loginCount = userEvents.stream()
-                .filter(event -> "USER_LOGIN_SUCCESS".equals(event.getEventType()))
-                .count();
-
-        Long failedLoginCount = userEvents.stream()
-                .filter(event -> "USER_LOGIN_FAILED".equals(event.getEventType()))
-                .count();
+        Long totalActions = toLong(activity.get("totalActions"));
+        Long loginCount = toLong(activity.get("loginCount"));
+        Long failedLoginCount = toLong(activity.get("failedLoginCount"));
 
         log.info("User activity calculated: userId={}, totalActions={}, loginCount={}",
                 userId, totalActions, loginCount);
 
-        return new UserActivityDTO(userId, userRole, totalActions, lastActivity, loginCount, failedLoginCount);
+        return new UserActivityDTO(userId, activity.getString("userRole"), totalActions,
+                toLocalDateTime(activity.getDate("lastActivity")), loginCount, failedLoginCount);
 
     }
 
@@ -103,56 +98,40 @@ public class AnalyticsService {
      * Получить статистику производительности
      */
     public PerformanceStatsDTO getPerformanceStats(LocalDateTime startDate, LocalDateTime endDate) {
-        List<AnalyticsEvent> events;
-
-        if (startDate != null && endDate != null) {
-            events = analyticsEventRepository.findByTimestampBetween(startDate, endDate);
-        } else {
-            events = analyticsEventRepository.findAll();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(timestampCriteria(startDate, endDate)
+                        .orOperator(Criteria.where("recommendationId").ne(null), Criteria.where("escalationId").ne(null))),
+                Aggregation.facet(
+                                //Рекомендации
+                                Aggregation.match(Criteria.where("recommendationId").ne(null)
+                                        .and("eventType").in("RECOMMENDATION_APPROVED", "RECOMMENDATION_REJECTED")),
+                                countBy("eventType")).as("recommendations")
+                        .and(Aggregation.match(Criteria.where("recommendationId").ne(null)),
+                                Aggregation.group().avg("processingTimeMs").as("average")).as("recommendationTime")
+                        // Эскалации
+                        .and(Aggregation.match(Criteria.where("escalationId").ne(null)
+                                        .and("eventType").in("ESCALATION_CREATED", "ESCALATION_RESOLVED")),
+                                Aggregation.group("eventType").count().as(COUNT).avg("processingTimeMs").as("average"))
+                        .as("escalations"));
+        Document facets = aggregateOne(aggregation);
+
+        Map<String, Long> recommendations = countsByKey(facets, "recommendations");
+        Long approvedRecommendations = recommendations.getOrDefault("RECOMMENDATION_APPROVED", 0L);
+        Long rejectedRecommendations = recommendations.getOrDefault("RECOMMENDATION_REJECTED", 0L);
+        Long totalRecommendations = approvedRecommendations + rejectedRecommendations;
+        Double averageProcessingTimeMs = firstDouble(facets, "recommendationTime", "average");
+
+        Long totalEscalations = 0L;
+        Long resolvedEscalations = 0L;
+        Double averageEscalationResolutionTimeMs = 0.0;
+        for (Document row : facets.getList("escalations", Document.class)) {
+            if ("ESCALATION_CREATED".equals(row.get("_id"))) {
+                totalEscalations = toLong(row.get(COUNT));
+            } else {
+                resolvedEscalations = toLong(row.get(COUNT));
+                averageEscalationResolutionTimeMs = toDouble(row.get("average"));
+            }
         }
-        //Рекомендации
-        List<AnalyticsEvent> recommendationEvents = events.stream()
-                .filter(event -> event.getRecommendationId() != null)
-                .toList();
-
-        Long totalRecommendations = recommendationEvents.stream()
-                .filter(e -> "RECOMMENDATION_APPROVED".equals(e.getEventType()) ||
-                        "RECOMMENDATION_REJECTED".equals(e.getEventType()))
-                .count();
-
-        Long approvedRecommendations = recommendationEvents.stream()
-                .filter(e -> "RECOMMENDATION_APPROVED".equals(e.getEventType()))
-                .count();
-
-        Long rejectedRecommendations = recommendationEvents.stream()
-                .filter(e -> "RECOMMENDATION_REJECTED".equals(e.getEventType()))
-                .count();
-
-        Double averageProcessingTimeMs = recommendationEvents.stream()
-                .filter(e -> e.getProcessingTimeMs() != null)
-                .mapToLong(AnalyticsEvent::getProcessingTimeMs)
-                .average()
-                .orElse(0.0);
-
-        // Эскалации
-        List<AnalyticsEvent> escalationEvents = events.stream()
-                .filter(e -> e.getEscalationId() != null)
-                .toList();
-
-        Long totalEscalations = escalationEvents.stream()
-                .filter(e -> "ESCALATION_CREATED".equals(e.getEventType()))
-                .count();
-
-        Long resolvedEscalations = escalationEvents.stream()
-                .filter(e -> "ESCALATION_RESOLVED".equals(e.getEventType()))
-                .count();
-
-        Double averageEscalationResolutionTimeMs = escalationEvents.stream()
-                .filter(e -> "ESCALATION_RESOLVED".equals(e.getEventType()) &&
-                        e.getProcessingTimeMs() != null)
-                .mapToLong(AnalyticsEvent::getProcessingTimeMs)
-                .average()
-                .orElse(0.0);
 
         log.info("Performance stats calculated: totalRecs={}, approved={}, totalEsc={}",
                 totalRecommendations, approvedRecommendations, totalEscalations);
@@ -172,48 +151,37 @@ public class AnalyticsService {
      * Получить статистику по пациентам
      */
     public PatientStatsDTO getPatientsStats(LocalDateTime startDate, LocalDateTime endDate) {
-        List<AnalyticsEvent> events;
-        if (startDate != null && endDate != null) {
-            events = analyticsEventRepository.findByTimestampBetween(startDate, endDate);
-        } else {
-            events = analyticsEventRepository.findAll();
+        Criteria registered = Criteria.where("eventType").is("PATIENT_REGISTERED");
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(timestampCriteria(startDate, endDate)
+                        .and("eventType").in("PATIENT_REGISTERED", "VAS_RECORDED")),
+                // Регистрация пациентов
+                Aggregation.facet(Aggregation.match(registered), Aggregation.count().as(COUNT)).as("patients")
+                        // Группировка по полу
+                        .and(Aggregation.match(new Criteria().andOperator(registered,
+                                Criteria.where("metadata.gender").exists(true))), countBy("metadata.gender")).as("byGender")
+                        // Возрасты - не больше сотни строк, группы считаются ниже
+                        .and(Aggregation.match(new Criteria().andOperator(registered,
+                                Criteria.where("metadata.age").exists(true))), countBy("metadata.age")).as("byAge")
+                        // VAS записи
+                        .and(Aggregation.match(Criteria.where("eventType").is("VAS_RECORDED")),
+                                Aggregation.group()
+                                        .count().as(COUNT)
+                                        .sum(countIf("priority", "HIGH")).as("critical")
+                                        .avg("vasLevel").as("average")).as("vas"));
+        Document facets = aggregateOne(aggregation);
+
+        Long totalPatients = firstLong(facets, "patients", COUNT);
+        Map<String, Long> patientsByGender = countsByKey(facets, "byGender");
+        Map<String, Long> patientsByAgeGroup = new HashMap<>();
+        for (Document row : facets.getList("byAge", Document.class)) {
+            Integer age = row.get("_id") instanceof Number number ? number.intValue() : null;
+            patientsByAgeGroup.merge(getAgeGroup(age), toLong(row.get(COUNT)), Long::sum);
         }
-        // Регистрация пациентов
-        List<AnalyticsEvent> patientEvents = events.stream()
-                .filter(e -> "PATIENT_REGISTERED".equals(e.getEventType()))
-                .toList();
-        Long totalPatients = (long) patientEvents.size();
-
-        // Группировка по полу
-        Map<String, Long> patientsByGender = patientEvents.stream()
-                .filter(e -> e.getMetadata() != null && e.getMetadata().containsKey("gender"))
-                .collect(Collectors.groupingBy(
-                        e -> String.valueOf(e.getMetadata().get("gender")),
-                        Collectors.counting()
-                ));
-        // Группировка по возрастным группам
-        Map<String, Long> patientsByAgeGroup = patientEvents.stream()
-                .filter(e -> e.getMetadata() != null && e.getMetadata().containsKey("age"))
-                .collect(Collectors.groupingBy(
-                        e -> getAgeGroup((Integer) e.getMetadata().get("age")),
-                        Collectors.counting()
-                ));
-        // VAS записи
-        List<AnalyticsEvent> vasEvents = events.stream()
-                .filter(e -> "VAS_RECORDED".equals(e.getEventType()))
-                .toList();
-
-        Long totalVasRecords = (long) vasEvents.size();
-
-        Long criticalVasRecords = vasEvents.stream()
-                .filter(e -> "HIGH".equals(e.getPriority()))
-                .count();
-
-        Double averageVasLevel = vasEvents.stream()
-                .filter(e -> e.getVasLevel() != null)
-                .mapToInt(AnalyticsEvent::getVasLevel)
-                .average()
-                .orElse(0.0);
+
+        Long totalVasRecords = firstLong(facets, "vas", COUNT);
+        Long criticalVasRecords = firstLong(facets, "vas", "critical");
+        Double averageVasLevel = firstDouble(facets, "vas", "average");
 
         log.info("Patient stats calculated: totalPatients={}, totalVas={}, criticalVas={}",
                 totalPatients, totalVasRecords, criticalVasRecords);
@@ -264,6 +232,62 @@ public class AnalyticsService {
         return logEntryRepository.findByLevel(level);
     }
 
+    /*
+     * Фильтр периода (как findByTimestampBetween - границы не включены); без дат - все события
+     */
+    private Criteria timestampCriteria(LocalDateTime startDate, LocalDateTime endDate) {
+        if (startDate != null && endDate != null) {
+            return Criteria.where("timestamp").gt(startDate).lt(endDate);
+        }
+        return new Criteria();
+    }
+
+    private GroupOperation countBy(String field) {
+        return Aggregation.group(field).count().as(COUNT);
+    }
+
+    private AggregationExpression countIf(String field, String value) {
+        return ConditionalOperators.when(Criteria.where(field).is(value)).then(1).otherwise(0);
+    }
+
+    /*
+     * Единственная строка результата (null - нет документов под фильтром)
+     */
+    private Document aggregateOne(Aggregation aggregation) {
+        return mongoTemplate.aggregate(aggregation, AnalyticsEvent.class, Document.class).getUniqueMappedResult();
+    }
+
+    private Map<String, Long> countsByKey(Document facets, String facet) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Document row : facets.getList(facet, Document.class)) {
+            counts.put(String.valueOf(row.get("_id")), toLong(row.get(COUNT)));
+        }
+        return counts;
+    }
+
+    private Long firstLong(Document facets, String facet, String field) {
+        List<Document> rows = facets.getList(facet, Document.class);
+        return rows.isEmpty() ? 0L : toLong(rows.get(0).get(field));
+    }
+
+    private Double firstDouble(Document facets, String facet, String field) {
+        List<Document> rows = facets.getList(facet, Document.class);
+        return rows.isEmpty() ? 0.0 : toDouble(rows.get(0).get(field));
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    // $avg без значений возвращает null
+    private static Double toDouble(Object value) {
+        return value instanceof Number number ? number.doubleValue() : 0.0;
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
     /**
      * Вспомогательный метод для определения возрастной группы
      */
@@ -0,0 +1,18 @@
+package pain_helper_back.analytics.writer;
+
+import pain_helper_back.analytics.entity.AnalyticsEvent;
+
+import java.util.List;
+
+/*
+ * Хранилище пакетов аналитических событий (MongoDB; в тестах - в памяти)
+ */
+public interface AnalyticsEventSink {
+    /*
+     * Неупорядоченная вставка пакета: ошибка одного документа не останавливает остальные.
+     * Список переиспользуется писателем - ссылку на него сохранять нельзя
+     *
+     * @return Число вставленных событий
+     */
+    int insertUnordered(List<AnalyticsEvent> events);
+}
@@ -0,0 +1,28 @@
+package pain_helper_back.analytics.writer;
+
+import org.springframework.stereotype.Component;
+import pain_helper_back.analytics.config.AnalyticsWriterConfig;
+import pain_helper_back.analytics.entity.AnalyticsEvent;
+
+import java.util.List;
+
+/*
+ * Пакетная асинхронная запись аналитических событий в MongoDB.
+ *
+ * AnalyticsEventListener строит событие в потоке публикации и вызывает append();
+ * пакеты пишутся одним неупорядоченным insertMany (буфер, переполнение, остановка - см. BatchingWriter)
+ */
+@Component
+public class AnalyticsEventWriter extends BatchingWriter<AnalyticsEvent> {
+    private final AnalyticsEventSink sink;
+
+    public AnalyticsEventWriter(AnalyticsWriterConfig config, AnalyticsEventSink sink) {
+        super("AnalyticsWriter", config);
+        this.sink = sink;
+    }
+
+    @Override
+    protected int writeBatch(List<AnalyticsEvent> batch) {
+        return sink.insertUnordered(batch);
+    }
+}
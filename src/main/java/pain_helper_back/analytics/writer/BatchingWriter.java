@@ -0,0 +1,237 @@
+package pain_helper_back.analytics.writer;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import pain_helper_back.analytics.dto.AnalyticsWriterStatsDTO;
+import pain_helper_back.common.metrics.LatencySamples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Пакетная асинхронная запись документов в MongoDB (общая часть AnalyticsEventWriter и LogEntryWriter).
+ *
+ * ПОТОК ДАННЫХ:
+ * 1. Вызывающий поток кладет документ через append() - без блокировок и без обращения к MongoDB
+ * 2. Документ попадает в ограниченный lock-free буфер (ConcurrentLinkedQueue + счетчик глубины на CAS)
+ * 3. Поток записи забирает документы пакетами до batchSize и передает каждый пакет в writeBatch():
+ *    сразу при накоплении batchSize документов или раз в flushIntervalMs
+ *
+ * ПЕРЕПОЛНЕНИЕ (BatchingWriterSettings.overflowPolicy):
+ * - DROP_NEWEST - новый документ отбрасывается
+ * - DROP_OLDEST - вытесняется самый старый документ
+ * - BLOCK - вызывающий поток ждет место не дольше blockTimeoutMs, затем документ отбрасывается
+ * Отброшенные документы и ошибки записи учитываются в статистике; повторной записи нет -
+ * аналитика и логи не должны тормозить клинические операции.
+ *
+ * ОСТАНОВКА:
+ * - Новые документы не принимаются, буфер дописывается до конца
+ */
+@Slf4j
+public abstract class BatchingWriter<T> {
+    private final String name;
+    private final BatchingWriterSettings settings;
+
+    private final ConcurrentLinkedQueue<T> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private volatile Thread flusher;
+    private volatile boolean running;
+
+    // Метрики
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedEvents = new LongAdder();
+    private final LatencySamples flushLatencies = new LatencySamples();
+
+    protected BatchingWriter(String name, BatchingWriterSettings settings) {
+        this.name = name;
+        this.settings = settings;
+    }
+
+    /*
+     * Запись одного пакета. Список переиспользуется - ссылку на него сохранять нельзя
+     *
+     * @return Число записанных документов (остальные считаются неудачными)
+     */
+    protected abstract int writeBatch(List<T> batch);
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::flushLoop, name);
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+        log.info("{} started: bufferCapacity={}, batchSize={}, flushIntervalMs={}, overflowPolicy={}",
+                name, settings.getBufferCapacity(), settings.getBatchSize(), settings.getFlushIntervalMs(),
+                settings.getOverflowPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        Thread thread = flusher;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (depth.get() > 0) {
+            log.warn("{} stopped with {} unwritten documents", name, depth.get());
+        }
+    }
+
+    /*
+     * Добавление документа в буфер
+     *
+     * @return false если документ отброшен
+     */
+    public boolean append(T document) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        int newDepth = reserve();
+        if (newDepth < 0) {
+            newDepth = switch (settings.getOverflowPolicy()) {
+                case DROP_NEWEST -> -1;
+                case DROP_OLDEST -> evictOldest();
+                case BLOCK -> awaitSpace();
+            };
+        }
+        if (newDepth < 0) {
+            dropped.increment();
+            return false;
+        }
+        buffer.offer(document);
+        appended.increment();
+        if (newDepth == settings.getBatchSize()) {
+            LockSupport.unpark(flusher); // Пакет накоплен - писать, не дожидаясь интервала
+        }
+        return true;
+    }
+
+    public AnalyticsWriterStatsDTO getStats() {
+        long flushCount = flushes.sum();
+        LatencySamples.Snapshot latency = flushLatencies.snapshot();
+        return AnalyticsWriterStatsDTO.builder()
+                .bufferDepth(depth.get())
+                .bufferCapacity(settings.getBufferCapacity())
+                .overflowPolicy(settings.getOverflowPolicy())
+                .appended(appended.sum())
+                .dropped(dropped.sum())
+                .written(written.sum())
+                .failed(failed.sum())
+                .flushes(flushCount)
+                .averageBatchSize(flushCount == 0 ? 0.0 : (double) flushedEvents.sum() / flushCount)
+                .flushLatencyP50Ms(latency.percentile(0.50))
+                .flushLatencyP99Ms(latency.percentile(0.99))
+                .flushLatencyMaxMs(latency.max())
+                .build();
+    }
+
+    /*
+     * Занять место в буфере: CAS по глубине, буфер не превышает емкость
+     *
+     * @return Новая глубина или -1, если буфер заполнен
+     */
+    private int reserve() {
+        while (true) {
+            int current = depth.get();
+            if (current >= settings.getBufferCapacity()) {
+                return -1;
+            }
+            if (depth.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /*
+     * DROP_OLDEST: место старейшего документа переходит новому (глубина не меняется)
+     */
+    private int evictOldest() {
+        if (buffer.poll() != null) {
+            dropped.increment();
+            return depth.get();
+        }
+        return reserve(); // Буфер заполнен документами, которые еще кладутся - вытеснять нечего
+    }
+
+    /*
+     * BLOCK: ожидание места с подталкиванием потока записи
+     */
+    private int awaitSpace() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getBlockTimeoutMs());
+        while (running && System.nanoTime() < deadline) {
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(this, 100_000);
+            int newDepth = reserve();
+            if (newDepth >= 0) {
+                return newDepth;
+            }
+        }
+        return -1;
+    }
+
+    private void flushLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.getFlushIntervalMs());
+        long nextFlush = System.nanoTime() + intervalNanos;
+        List<T> batch = new ArrayList<>(settings.getBatchSize());
+        while (running || depth.get() > 0) {
+            long wait = nextFlush - System.nanoTime();
+            if (running && depth.get() < settings.getBatchSize() && wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue; // Пробуждение по unpark() или по времени - условия проверяются заново
+            }
+            drain(batch);
+            nextFlush = System.nanoTime() + intervalNanos;
+        }
+    }
+
+    /*
+     * Запись всего содержимого буфера пакетами до batchSize
+     */
+    private void drain(List<T> batch) {
+        while (true) {
+            T document;
+            while (batch.size() < settings.getBatchSize() && (document = buffer.poll()) != null) {
+                depth.decrementAndGet();
+                batch.add(document);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<T> batch) {
+        long start = System.nanoTime();
+        try {
+            int inserted = writeBatch(batch);
+            written.add(inserted);
+            failed.add(batch.size() - inserted);
+        } catch (Exception e) {
+            failed.add(batch.size());
+            log.warn("{} failed to write {} documents: {}", name, batch.size(), e.getMessage());
+        }
+        flushes.increment();
+        flushedEvents.add(batch.size());
+        flushLatencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
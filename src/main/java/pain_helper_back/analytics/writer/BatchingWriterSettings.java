@@ -0,0 +1,19 @@
+package pain_helper_back.analytics.writer;
+
+import pain_helper_back.enums.AnalyticsOverflowPolicy;
+
+/*
+ * Настройки BatchingWriter. Читаются при каждом обращении - изменения конфигурации
+ * вступают в силу без перезапуска потока записи (кроме емкости уже занятого буфера)
+ */
+public interface BatchingWriterSettings {
+    int getBufferCapacity();
+
+    int getBatchSize();
+
+    long getFlushIntervalMs();
+
+    AnalyticsOverflowPolicy getOverflowPolicy();
+
+    long getBlockTimeoutMs();
+}
@@ -0,0 +1,17 @@
+package pain_helper_back.analytics.writer;
+
+import pain_helper_back.analytics.entity.LogEntry;
+
+import java.util.List;
+
+/*
+ * Хранилище пакетов технических логов (MongoDB; в тестах - в памяти)
+ */
+public interface LogEntrySink {
+    /*
+     * Неупорядоченная вставка пакета. Список переиспользуется писателем - ссылку на него сохранять нельзя
+     *
+     * @return Число вставленных записей
+     */
+    int insertUnordered(List<LogEntry> entries);
+}
@@ -0,0 +1,28 @@
+package pain_helper_back.analytics.writer;
+
+import org.springframework.stereotype.Component;
+import pain_helper_back.analytics.config.LoggingAspectConfig;
+import pain_helper_back.analytics.entity.LogEntry;
+
+import java.util.List;
+
+/*
+ * Пакетная асинхронная запись технических логов LoggingAspect в MongoDB.
+ *
+ * Поток вызова сервиса только кладет готовую запись в буфер; пакеты пишутся одним
+ * неупорядоченным insertMany (буфер, переполнение, остановка - см. BatchingWriter)
+ */
+@Component
+public class LogEntryWriter extends BatchingWriter<LogEntry> {
+    private final LogEntrySink sink;
+
+    public LogEntryWriter(LoggingAspectConfig config, LogEntrySink sink) {
+        super("LogEntryWriter", config);
+        this.sink = sink;
+    }
+
+    @Override
+    protected int writeBatch(List<LogEntry> batch) {
+        return sink.insertUnordered(batch);
+    }
+}
@@ -0,0 +1,32 @@
+package pain_helper_back.analytics.writer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+import pain_helper_back.analytics.entity.LogEntry;
+
+import java.util.List;
+
+/*
+ * Запись пакета логов в log_entries одним неупорядоченным bulk insert (insertMany, ordered=false)
+ */
+@Component
+@RequiredArgsConstructor
+public class MongoLogEntrySink implements LogEntrySink {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public int insertUnordered(List<LogEntry> entries) {
+        try {
+            return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LogEntry.class)
+                    .insert(entries)
+                    .execute()
+                    .getInsertedCount();
+        } catch (BulkOperationException e) {
+            // Часть документов отклонена сервером, остальные вставлены
+            return e.getResult().getInsertedCount();
+        }
+    }
+}
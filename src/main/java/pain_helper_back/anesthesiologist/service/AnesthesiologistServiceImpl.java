@@ -14,10 +14,13 @@ import pain_helper_back.common.patients.dto.exceptions.NotFoundException;
 import pain_helper_back.common.patients.entity.*;
 import pain_helper_back.common.patients.repository.PatientRepository;
 import pain_helper_back.common.patients.repository.RecommendationRepository;
+import pain_helper_back.enums.EscalationStatus;
 import pain_helper_back.enums.RecommendationStatus;
 import pain_helper_back.enums.Roles;
 import pain_helper_back.anesthesiologist.dto.AnesthesiologistRecommendationCreateDTO;
 import pain_helper_back.anesthesiologist.dto.AnesthesiologistRecommendationUpdateDTO;
+import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
+import pain_helper_back.patient_locking.SerializedByPatient;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -36,6 +39,7 @@ public class AnesthesiologistServiceImpl implements AnesthesiologistServiceInter
     private final PatientRepository patientRepository;
     private final ModelMapper modelMapper;
     private final ApplicationEventPublisher eventPublisher;
+    private final PainEscalationService painEscalationService;
 
 
     // Возвращает список всех рекомендаций, переданных на уровень анестезиолога (ESCALATED).
@@ -61,6 +65,7 @@ public class AnesthesiologistServiceImpl implements AnesthesiologistServiceInter
     // Одобряет эскалированную рекомендацию и публикует событие для аудита.
     @Override
     @Transactional
+    @SerializedByPatient(recommendationId = "#recommendationId")
     public RecommendationDTO approveEscalation(Long recommendationId, RecommendationApprovalRejectionDTO dto) {
         log.info("Approving escalation (Recommendation ID={}):", recommendationId);
 
@@ -86,6 +91,8 @@ public class AnesthesiologistServiceImpl implements AnesthesiologistServiceInter
             rec.getComments().add("Anesthesiologist: " + comment);
         }
         recommendationRepository.save(rec);
+        painEscalationService.resolveOpenEscalations(rec.getPatient().getId(), rec.getPatient().getMrn(),
+                EscalationStatus.RESOLVED, anesthId);
 
         //  время обработки от момента создания до финального решения анестезиолога
         Long processingTimeMs = Duration.between(
@@ -112,6 +119,7 @@ public class AnesthesiologistServiceImpl implements AnesthesiologistServiceInter
     // Отклоняет эскалированную рекомендацию и публикует событие для аудита.
     @Override
     @Transactional
+    @SerializedByPatient(recommendationId = "#recommendationId")
     public RecommendationDTO rejectEscalation(Long recommendationId, RecommendationApprovalRejectionDTO dto) {
         log.info("Rejecting escalation (Recommendation ID={})", recommendationId);
 
@@ -137,6 +145,8 @@ public class AnesthesiologistServiceImpl implements AnesthesiologistServiceInter
         rec.setReplacedAt(LocalDateTime.now());
 
         recommendationRepository.save(rec);
+        painEscalationService.resolveOpenEscalations(rec.getPatient().getId(), rec.getPatient().getMrn(),
+                EscalationStatus.REJECTED, anesthId);
 
         //  Публикуем событие для аудита
         Long lifeCycleMs = Duration.between(rec.getCreatedAt(), rec.getReplacedAt()).toMillis();
@@ -162,6 +172,7 @@ public class AnesthesiologistServiceImpl implements AnesthesiologistServiceInter
      */
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#dto.patientMrn")
     public RecommendationDTO createRecommendationAfterRejection(AnesthesiologistRecommendationCreateDTO dto) {
         long startTime = System.currentTimeMillis();
 
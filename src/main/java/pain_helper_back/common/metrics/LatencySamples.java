@@ -0,0 +1,63 @@
+package pain_helper_back.common.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Последние значения задержки (мс) для перцентилей в статистике компонента
+ * (VasIngestPipeline, BatchingWriter).
+ *
+ * АЛГОРИТМ:
+ * - Кольцевой буфер фиксированной емкости: запись без блокировок, новое значение
+ *   вытесняет самое старое
+ * - Перцентили считаются по копии буфера при запросе статистики (nearest-rank)
+ */
+public final class LatencySamples {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong index = new AtomicLong();
+
+    public LatencySamples() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LatencySamples(int capacity) {
+        this.samples = new AtomicLongArray(capacity);
+    }
+
+    public void record(long latencyMs) {
+        int slot = (int) (index.getAndIncrement() % samples.length());
+        samples.set(slot, latencyMs);
+    }
+
+    /*
+     * Отсортированная копия накопленных значений
+     */
+    public Snapshot snapshot() {
+        int count = (int) Math.min(index.get(), samples.length());
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = samples.get(i);
+        }
+        Arrays.sort(values);
+        return new Snapshot(values);
+    }
+
+    public record Snapshot(long[] sorted) {
+
+        /*
+         * @return Значение перцентиля или 0, если значений нет
+         */
+        public long percentile(double quantile) {
+            if (sorted.length == 0) return 0L;
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        public long max() {
+            return sorted.length == 0 ? 0L : sorted[sorted.length - 1];
+        }
+    }
+}
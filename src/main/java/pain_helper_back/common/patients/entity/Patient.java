@@ -22,6 +22,10 @@ public class Patient {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "patient_id")
     private Long id;
+    // Оптимистическая блокировка: default 0 - для строк, созданных до появления колонки
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0")
+    private Long version;
     @Column(name = "mrn", unique = true)
     private String mrn;
     @Column(name = "first_name")
@@ -25,6 +25,10 @@ public class Recommendation {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "recommendation_id")
     private Long id;
+    // Оптимистическая блокировка: default 0 - для строк, созданных до появления колонки
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0")
+    private Long version;
     @Column(name = "regimen_hierarchy")
     private int regimenHierarchy;
     @Column(name = "status")
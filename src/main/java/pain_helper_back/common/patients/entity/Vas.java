@@ -14,10 +14,21 @@ import java.time.LocalDateTime;
  * - location - локация пациента
  * - notes - дополнительные заметки
  * - recordedBy - кто записал (медсестра или внешняя система)
+ *
+ * ИНДЕКСЫ (фильтры External VAS Monitor, сортировка по createdAt DESC):
+ * - recorded_by + created_at - только внешние записи / конкретный источник за период
+ * - created_at - временной диапазон
+ * - location - фильтр по началу локации (LIKE 'Ward A%')
+ * - patient_id + recorded_at - последние записи пациента (окно анализа эскалации боли)
  */
 @Entity
 @Data
-@Table(name = "vas")
+@Table(name = "vas", indexes = {
+        @Index(name = "idx_vas_recorded_by_created_at", columnList = "recorded_by, created_at"),
+        @Index(name = "idx_vas_created_at", columnList = "created_at"),
+        @Index(name = "idx_vas_location", columnList = "location"),
+        @Index(name = "idx_vas_patient_recorded_at", columnList = "patient_id, recorded_at")
+})
 public class Vas {
 
     @Id
@@ -72,6 +83,13 @@ public class Vas {
     @Column(name = "recorded_by", length = 100)
     private String recordedBy;
 
+    /**
+     * Ключ внешней записи для подавления дубликатов (хэш Idempotency-Key
+     * или устройство + MRN + время + значение). null - запись медсестры
+     */
+    @Column(name = "dedup_key", length = 32, unique = true)
+    private String dedupKey;
+
     // ============================================
     // AUDIT ПОЛЯ
     // ============================================
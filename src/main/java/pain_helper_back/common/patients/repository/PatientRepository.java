@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import pain_helper_back.common.patients.entity.Patient;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,8 +23,13 @@ public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpec
 
     Optional<Patient> findByMrn(String mrn);
 
+    // Пакетная загрузка пациентов по набору MRN (батчи внешних VAS записей)
+    List<Patient> findByMrnIn(Collection<String> mrns);
+
     void deleteByMrn(String mrn);
 
+    boolean existsByMrn(String mrn);
+
     boolean existsByPhoneNumber(String phoneNumber);
 
     boolean existsByEmail(String email);
@@ -1,6 +1,8 @@
 package pain_helper_back.common.patients.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import pain_helper_back.common.patients.dto.RecommendationWithVasDTO;
 import pain_helper_back.common.patients.entity.Recommendation;
 import pain_helper_back.enums.RecommendationStatus;
@@ -44,4 +46,8 @@ public interface RecommendationRepository extends JpaRepository<Recommendation,
     );
 
     List<Recommendation> findAllByCreatedAtAfter(LocalDateTime since);
+
+    // MRN пациента рекомендации без загрузки сущности (блокировка пациента до транзакции)
+    @Query("SELECT r.patient.mrn FROM Recommendation r WHERE r.id = :id")
+    Optional<String> findPatientMrnById(@Param("id") Long id);
 }
@@ -1,9 +1,17 @@
 package pain_helper_back.common.patients.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import pain_helper_back.common.patients.entity.Vas;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Репозиторий для жалоб пациента (VAS – pain score).
@@ -13,9 +21,85 @@ import java.util.List;
  * Примеры кастомных запросов:
  * - Найти все жалобы, где painLevel > 7 (сильная боль).
  * - Найти последние жалобы по mrn (ORDER BY createdAt DESC).
+ *
+ * JpaSpecificationExecutor - фильтрация и постраничная выдача внешних VAS записей
+ * (ExternalVasIntegrationService.getVasRecords).
  */
-public interface VasRepository extends JpaRepository<Vas, Long> {
+public interface VasRepository extends JpaRepository<Vas, Long>, JpaSpecificationExecutor<Vas> {
     List<Vas> findByPainLevelGreaterThan(int threshold);
     List<Vas> findByPatientMrn(String mrn);
     List<Vas> findByPatientMrnOrderByCreatedAtDesc(String mrn);
+
+    /**
+     * Последние записи пациента по времени записи (прогрев окна VasWindowCache).
+     * Только поля, нужные для анализа эскалации; индекс idx_vas_patient_recorded_at
+     */
+    @Query("SELECT v.id AS id, v.painLevel AS painLevel, v.recordedAt AS recordedAt " +
+            "FROM Vas v WHERE v.patient.mrn = :mrn " +
+            "ORDER BY v.recordedAt DESC, v.id DESC")
+    List<VasReadingView> findRecentReadings(@Param("mrn") String mrn, Pageable pageable);
+
+    /**
+     * ID записи с ключом дубликата (подтверждение срабатывания Bloom фильтра)
+     */
+    @Query("SELECT v.id FROM Vas v WHERE v.dedupKey = :dedupKey")
+    Optional<Long> findIdByDedupKey(@Param("dedupKey") String dedupKey);
+
+    /**
+     * Уже сохраненные записи батча по ключам дубликатов
+     */
+    List<DedupKeyView> findByDedupKeyIn(Collection<String> dedupKeys);
+
+    /**
+     * Часовые агрегаты внешних VAS записей за период [from, to) по createdAt
+     * (восстановление VasStatisticsService при старте)
+     */
+    @Query("SELECT EXTRACT(DATE FROM v.createdAt) AS day, EXTRACT(HOUR FROM v.createdAt) AS hour, " +
+            "v.recordedBy AS recordedBy, v.location AS location, COUNT(v) AS recordCount, " +
+            "SUM(v.vasLevel) AS vasSum, SUM(CASE WHEN v.vasLevel >= 7 THEN 1 ELSE 0 END) AS highPainCount " +
+            "FROM Vas v " +
+            "WHERE v.createdAt >= :from AND v.createdAt < :to " +
+            "AND v.recordedBy LIKE 'EXTERNAL\\_%' ESCAPE '\\' " +
+            "GROUP BY EXTRACT(DATE FROM v.createdAt), EXTRACT(HOUR FROM v.createdAt), v.recordedBy, v.location")
+    List<HourlyVasAggregate> aggregateExternalByHour(@Param("from") LocalDateTime from,
+                                                     @Param("to") LocalDateTime to);
+
+    /**
+     * Проекция: запись VAS для окна анализа эскалации
+     */
+    interface VasReadingView {
+        Long getId();
+
+        Integer getPainLevel();
+
+        LocalDateTime getRecordedAt();
+    }
+
+    /**
+     * Проекция: ID записи и ее ключ дубликата
+     */
+    interface DedupKeyView {
+        Long getId();
+
+        String getDedupKey();
+    }
+
+    /**
+     * Строка aggregateExternalByHour
+     */
+    interface HourlyVasAggregate {
+        LocalDate getDay();
+
+        Integer getHour();
+
+        String getRecordedBy();
+
+        String getLocation();
+
+        Long getRecordCount();
+
+        Long getVasSum();
+
+        Long getHighPainCount();
+    }
 }
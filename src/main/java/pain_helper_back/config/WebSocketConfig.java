@@ -10,6 +10,8 @@
  * - /topic/escalations/critical - критические эскалации
  * - /topic/escalations/dashboard - мониторинг эскалаций
  * - /topic/emr-alerts - критические изменения в EMR
+ * - /topic/vas/stream - кадры внешних VAS записей (последняя запись на пациента за окно, VasStreamService)
+ * - /topic/vas/stream/{ward} - те же кадры по отделению
  * 
  * FRONTEND CONNECTION:
  * const socket = new SockJS('http://localhost:8080/ws');
@@ -19,6 +19,7 @@ import pain_helper_back.common.patients.repository.RecommendationRepository;
 import pain_helper_back.common.patients.dto.RecommendationApprovalRejectionDTO;
 import pain_helper_back.common.patients.dto.RecommendationWithVasDTO;
 import pain_helper_back.enums.*;
+import pain_helper_back.patient_locking.SerializedByPatient;
 
 import java.time.Duration;
 import java.time.LocalDate;
@@ -174,11 +175,13 @@ public class DoctorServiceImpl implements DoctorService {
     }
 
     @Override
+    @SerializedByPatient(mrn = "#mrn")
     public void deletePatient(String mrn) {
         patientRepository.deleteByMrn(mrn);
     }
 
     @Override
+    @SerializedByPatient(mrn = "#mrn")
     public PatientDTO updatePatient(String mrn, PatientUpdateDTO patientUpdateDto) {
         Patient patient = findPatientOrThrow(mrn);
 
@@ -203,6 +206,7 @@ public class DoctorServiceImpl implements DoctorService {
     // ================= EMR ================= //
 
     @Override
+    @SerializedByPatient(mrn = "#mrn")
     public EmrDTO createEmr(String mrn, EmrDTO emrDto) {
         Patient patient = findPatientOrThrow(mrn);
         Emr emr = modelMapper.map(emrDto, Emr.class);
@@ -247,6 +251,7 @@ public class DoctorServiceImpl implements DoctorService {
     }
 
     @Override
+    @SerializedByPatient(mrn = "#mrn")
     public EmrDTO updateEmr(String mrn, EmrUpdateDTO emrUpdateDto) {
         Patient patient = findPatientOrThrow(mrn);
         Emr emr = patient.getEmr().getLast();
@@ -341,6 +346,7 @@ public class DoctorServiceImpl implements DoctorService {
 
     // ================= WORKFLOW: APPROVAL/REJECTION ================= //
     @Override
+    @SerializedByPatient(recommendationId = "#recommendationId")
     public RecommendationDTO approveRecommendation(Long recommendationId, RecommendationApprovalRejectionDTO dto) {
         log.info("Approving recommendation with id: {}", recommendationId);
 
@@ -387,6 +393,7 @@ public class DoctorServiceImpl implements DoctorService {
 
 
     @Override
+    @SerializedByPatient(recommendationId = "#recommendationId")
     public RecommendationDTO rejectRecommendation(Long recommendationId, RecommendationApprovalRejectionDTO dto) {
         log.info("Rejecting recommendation with id: {}", recommendationId);
 
@@ -17,6 +17,7 @@ import pain_helper_back.external_emr_integration_service.service.WebSocketNotifi
 import pain_helper_back.treatment_protocol.service.TreatmentProtocolService;
 import pain_helper_back.websocket.dto.UnifiedNotificationDTO;
 import pain_helper_back.websocket.service.UnifiedNotificationService;
+import pain_helper_back.patient_locking.SerializedByPatient;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -81,6 +82,7 @@ public class EmrRecalculationService {
      * @param newEmr Новые данные EMR
      */
     @Transactional
+    @SerializedByPatient(mrn = "#patient.mrn")
     public void handleEmrChange(Patient patient, Emr oldEmr, Emr newEmr) {
         log.info("Handling EMR change for patient: {}", patient.getMrn());
 
@@ -0,0 +1,7 @@
+package pain_helper_back.enums;
+
+public enum AnalyticsOverflowPolicy {
+    DROP_NEWEST,   // Новое событие отбрасывается
+    DROP_OLDEST,   // Вытесняется самое старое событие буфера
+    BLOCK          // Вызывающий поток ждет место до blockTimeoutMs, затем событие отбрасывается
+}
@@ -0,0 +1,10 @@
+package pain_helper_back.enums;
+
+/*
+ * Тип напоминания о дозе (DoseReminderScheduler)
+ */
+public enum DoseReminderType {
+    MIN_INTERVAL_REACHED, // Истек минимальный интервал - следующую дозу можно вводить
+    NEXT_DOSE_DUE,        // Плановое время следующей дозы
+    OVERDUE               // Плановая доза не введена в течение overdue-grace-minutes
+}
@@ -0,0 +1,7 @@
+package pain_helper_back.enums;
+
+public enum ServiceLogLevel {
+    INFO,    // Обычный вызов метода сервиса (сэмплируется)
+    WARN,    // Медленный вызов (дольше slowThresholdMs)
+    ERROR    // Вызов завершился исключением
+}
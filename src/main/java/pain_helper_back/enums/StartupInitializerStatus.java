@@ -0,0 +1,7 @@
+package pain_helper_back.enums;
+
+public enum StartupInitializerStatus {
+    COMPLETED,
+    FAILED,
+    SKIPPED
+}
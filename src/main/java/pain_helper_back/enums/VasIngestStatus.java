@@ -0,0 +1,8 @@
+package pain_helper_back.enums;
+
+public enum VasIngestStatus {
+    QUEUED,
+    PERSISTED,
+    DUPLICATE,
+    FAILED
+}
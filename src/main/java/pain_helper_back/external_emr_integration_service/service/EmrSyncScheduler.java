@@ -4,16 +4,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import pain_helper_back.common.patients.entity.Emr;
 import pain_helper_back.common.patients.repository.EmrRepository;
 import pain_helper_back.emr_recalculation.service.EmrRecalculationService;
 import pain_helper_back.enums.EmrSourceType;
 import pain_helper_back.external_emr_integration_service.client.HapiFhirClient;
+import pain_helper_back.external_emr_integration_service.dto.EmrChangeAlertDTO;
 import pain_helper_back.external_emr_integration_service.dto.EmrSyncResultDTO;
 import pain_helper_back.external_emr_integration_service.dto.FhirObservationDTO;
 import pain_helper_back.external_emr_integration_service.entity.EmrMapping;
 import pain_helper_back.external_emr_integration_service.repository.EmrMappingRepository;
+import pain_helper_back.patient_locking.PatientWriteLocks;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -34,11 +35,16 @@ import java.util.List;
  * 3. Сравнивает с текущими значениями в БД
  * 4. Обновляет EMR если есть изменения
  * 5. Создает алерты при критических изменениях
+ *
+ * ТРАНЗАКЦИИ:
+ * - Запрос к FHIR - вне транзакции и без блокировок
+ * - Запись EMR и пересчет рекомендаций - отдельная транзакция на пациента под его блокировкой
+ *   (PatientWriteLocks): ошибка одного пациента не откатывает остальных,
+ *   параллельные записи медсестры / врача по тому же пациенту ждут коммита синхронизации
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Transactional
 public class EmrSyncScheduler {
     private final EmrMappingRepository emrMappingRepository;
     private final EmrRepository emrRepository;
@@ -46,6 +52,7 @@ public class EmrSyncScheduler {
     private final EmrChangeDetectionService emrChangeDetectionService;
     private final WebSocketNotificationService webSocketNotificationService;
     private final EmrRecalculationService emrRecalculationService;
+    private final PatientWriteLocks patientWriteLocks;
 
     @Scheduled(cron = "0 0 */6 * * *")
     public EmrSyncResultDTO syncAllFhirPatients() {
@@ -81,7 +88,7 @@ public class EmrSyncScheduler {
         List<String> errors = new ArrayList<>();
         for (EmrMapping mapping : fhirMappings) {
             try {
-                boolean hasChanges = syncSinglePatient(mapping);
+                boolean hasChanges = syncSinglePatient(mapping, result.getAlerts());
                 if (hasChanges) {
                     successCount++;
                 } else {
@@ -140,6 +147,15 @@ public class EmrSyncScheduler {
      * @return true если были изменения, false если данные не изменились
      */
     public boolean syncSinglePatient(EmrMapping mapping) {
+        return syncSinglePatient(mapping, new ArrayList<>());
+    }
+
+    /*
+     * Синхронизация одного пациента с накоплением критических алертов.
+     * Алерты добавляются в alerts только после коммита транзакции пациента
+     * (повтор при конфликте @Version не дублирует их).
+     */
+    private boolean syncSinglePatient(EmrMapping mapping, List<EmrChangeAlertDTO> alerts) {
         String fhirPatientId = mapping.getExternalFhirId();
         String internalEmrNumber = mapping.getInternalEmrNumber();
 
@@ -160,6 +176,21 @@ public class EmrSyncScheduler {
             return false;
         }
 
+        // 2-7. Обновление EMR - в транзакции пациента под его блокировкой
+        List<EmrChangeAlertDTO> patientAlerts = new ArrayList<>();
+        boolean hasChanges = patientWriteLocks.inNewTransaction(internalEmrNumber, () -> {
+            patientAlerts.clear();
+            return applyObservations(internalEmrNumber, freshObservations, patientAlerts);
+        });
+        alerts.addAll(patientAlerts);
+        return hasChanges;
+    }
+
+    /*
+     * Сравнение и запись EMR пациента по свежим Observations, пересчет рекомендаций.
+     */
+    private boolean applyObservations(String internalEmrNumber, List<FhirObservationDTO> freshObservations,
+                                      List<EmrChangeAlertDTO> alerts) {
         // 2. Получаем текущий EMR из БД
         Emr currentEmr = emrRepository.findByPatientMrn(internalEmrNumber)
                 .stream()
@@ -185,7 +216,7 @@ public class EmrSyncScheduler {
         log.info("EMR updated for patient: mrn={}, changes detected", internalEmrNumber);
 
         // 6. Проверяем критические изменения и создаем алерты
-        emrChangeDetectionService.checkCriticalChanges(currentEmr, updatedEmr, internalEmrNumber);
+        alerts.addAll(emrChangeDetectionService.checkCriticalChanges(currentEmr, updatedEmr, internalEmrNumber));
 
         // 7. НОВОЕ: Автоматический пересчет рекомендаций при критических изменениях EMR
         try {
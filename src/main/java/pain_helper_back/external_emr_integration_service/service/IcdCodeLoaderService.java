@@ -1,9 +1,9 @@
 package pain_helper_back.external_emr_integration_service.service;
 
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
+import pain_helper_back.startup.StartupInitializer;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
@@ -14,7 +14,7 @@ import java.util.*;
  * Сервис для загрузки ICD кодов диагнозов из CSV файла.
  * 
  * НАЗНАЧЕНИЕ:
- * - Загружает коды болезней из icd9cm_2015_converted.csv при старте приложения
+ * - Загружает коды болезней из icd9cm_2015_converted.csv при старте приложения (StartupInitializer)
  * - Предоставляет случайные диагнозы для моковых пациентов
  * - Кэширует данные в памяти для быстрого доступа
  * 
@@ -25,15 +25,26 @@ import java.util.*;
  */
 @Service
 @Slf4j
-public class IcdCodeLoaderService {
+public class IcdCodeLoaderService implements StartupInitializer {
+    public static final String NAME = "icdCodeCache";
     
-    private List<IcdCode> icdCodes = new ArrayList<>();
+    // Список публикуется целиком после загрузки: инициализатор работает в отдельном потоке
+    private volatile List<IcdCode> icdCodes = List.of();
     private Random random = new Random();
     
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void initialize() {
+        loadIcdCodes();
+    }
+
     /**
      * Загружает ICD коды при старте приложения.
      */
-    @PostConstruct
     public void loadIcdCodes() {
         log.info("Loading ICD codes from CSV...");
         
@@ -46,6 +57,7 @@ public class IcdCodeLoaderService {
                 // Пропускаем заголовок
                 String headerLine = reader.readLine();
                 
+                List<IcdCode> loaded = new ArrayList<>();
                 String line;
                 int count = 0;
                 while ((line = reader.readLine()) != null) {
@@ -53,10 +65,11 @@ public class IcdCodeLoaderService {
                     if (parts.length == 2) {
                         String code = parts[0].trim();
                         String name = parts[1].trim().replace("\"", "");
-                        icdCodes.add(new IcdCode(code, name));
+                        loaded.add(new IcdCode(code, name));
                         count++;
                     }
                 }
+                icdCodes = Collections.unmodifiableList(loaded);
                 
                 log.info("Successfully loaded {} ICD codes", count);
             }
@@ -110,11 +123,12 @@ public class IcdCodeLoaderService {
      * Добавляет дефолтные коды на случай ошибки загрузки.
      */
     private void addDefaultCodes() {
-        icdCodes.add(new IcdCode("250.00", "Diabetes mellitus without mention of complication"));
-        icdCodes.add(new IcdCode("401.9", "Essential hypertension, unspecified"));
-        icdCodes.add(new IcdCode("272.4", "Hyperlipidemia"));
-        icdCodes.add(new IcdCode("530.81", "Gastroesophageal reflux disease"));
-        icdCodes.add(new IcdCode("715.90", "Osteoarthrosis, unspecified"));
+        icdCodes = List.of(
+                new IcdCode("250.00", "Diabetes mellitus without mention of complication"),
+                new IcdCode("401.9", "Essential hypertension, unspecified"),
+                new IcdCode("272.4", "Hyperlipidemia"),
+                new IcdCode("530.81", "Gastroesophageal reflux disease"),
+                new IcdCode("715.90", "Osteoarthrosis, unspecified"));
         log.warn("Using default ICD codes due to loading error");
     }
     
@@ -1,10 +1,11 @@
 package pain_helper_back.external_emr_integration_service.service;
 
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import pain_helper_back.startup.StartupInitializer;
 import pain_helper_back.treatment_protocol.entity.TreatmentProtocol;
+import pain_helper_back.treatment_protocol.excel_loader.TreatmentProtocolLoader;
 import pain_helper_back.treatment_protocol.repository.TreatmentProtocolRepository;
 import pain_helper_back.treatment_protocol.utils.SanitizeUtils;
 
@@ -29,13 +30,14 @@ import java.util.Map;
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class TreatmentProtocolIcdExtractor {
+public class TreatmentProtocolIcdExtractor implements StartupInitializer {
     
     private final TreatmentProtocolRepository treatmentProtocolRepository;
     private final IcdCodeLoaderService icdCodeLoaderService;
     
-    private List<IcdCodeLoaderService.IcdCode> protocolIcdCodes = new ArrayList<>();
-    private List<String> protocolSensitivities = new ArrayList<>();
+    // Списки публикуются целиком после извлечения: инициализатор работает в отдельном потоке
+    private volatile List<IcdCodeLoaderService.IcdCode> protocolIcdCodes = List.of();
+    private volatile List<String> protocolSensitivities = List.of();
     private Random random = new Random();
     
     /**
@@ -43,10 +45,27 @@ public class TreatmentProtocolIcdExtractor {
      */
     private static final Pattern ICD_PATTERN = Pattern.compile("[A-Z]?[0-9]{3}(?:\\.[0-9A-Z]+)?");
     
+    @Override
+    public String getName() {
+        return "protocolIcdCodes";
+    }
+
+    /**
+     * Протоколы должны быть загружены в БД до извлечения кодов
+     */
+    @Override
+    public Set<String> getDependsOn() {
+        return Set.of(TreatmentProtocolLoader.NAME);
+    }
+
+    @Override
+    public void initialize() {
+        extractIcdCodesFromProtocol();
+    }
+
     /**
      * Извлекает ICD коды из Treatment Protocol после загрузки базы данных.
      */
-    @PostConstruct
     public void extractIcdCodesFromProtocol() {
         log.info("Extracting ICD codes from Treatment Protocol contraindications...");
         
@@ -94,10 +113,12 @@ public class TreatmentProtocolIcdExtractor {
             log.info("=== END OF CONTRAINDICATIONS ===");
             
             // Создаем список IcdCode объектов с описаниями
+            List<IcdCodeLoaderService.IcdCode> extracted = new ArrayList<>();
             for (String code : uniqueIcdCodes) {
                 String description = findDescriptionForCode(code);
-                protocolIcdCodes.add(new IcdCodeLoaderService.IcdCode(code, description));
+                extracted.add(new IcdCodeLoaderService.IcdCode(code, description));
             }
+            protocolIcdCodes = Collections.unmodifiableList(extracted);
             
             log.info("Successfully extracted {} ICD codes from Treatment Protocol:", protocolIcdCodes.size());
             log.info("=== UNIQUE ICD CODES ===");
@@ -139,7 +160,7 @@ public class TreatmentProtocolIcdExtractor {
             }
         }
         
-        protocolSensitivities.addAll(uniqueSensitivities);
+        protocolSensitivities = List.copyOf(uniqueSensitivities);
         
         log.info("Successfully extracted {} unique sensitivities from Treatment Protocol:", protocolSensitivities.size());
         log.info("=== UNIQUE SENSITIVITIES ===");
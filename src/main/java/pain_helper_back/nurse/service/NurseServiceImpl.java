@@ -18,9 +18,11 @@ import pain_helper_back.common.patients.entity.*;
 import pain_helper_back.common.patients.repository.EmrRepository;
 import pain_helper_back.common.patients.repository.PatientRepository;
 import pain_helper_back.common.patients.repository.RecommendationRepository;
+import pain_helper_back.common.patients.repository.VasRepository;
 import pain_helper_back.enums.RecommendationStatus;
-import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
+import pain_helper_back.pain_escalation_tracking.service.VasWindowCache;
 import pain_helper_back.treatment_protocol.service.TreatmentProtocolService;
+import pain_helper_back.patient_locking.SerializedByPatient;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -43,7 +45,8 @@ public class NurseServiceImpl implements NurseService {
     private final ModelMapper modelMapper;
     private final ApplicationEventPublisher eventPublisher;
     private final RecommendationRepository recommendationRepository;
-    private final PainEscalationService painEscalationService;
+    private final VasRepository vasRepository;
+    private final VasWindowCache vasWindowCache;
 
 
     private Patient findPatientOrThrow(String mrn) {
@@ -128,12 +131,14 @@ public class NurseServiceImpl implements NurseService {
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public void deletePatient(String mrn) {
         patientRepository.deleteByMrn(mrn);
     }
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public PatientDTO updatePatient(String mrn, PatientUpdateDTO patientUpdateDto) {
         Patient patient = findPatientOrThrow(mrn);
 
@@ -157,6 +162,7 @@ public class NurseServiceImpl implements NurseService {
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public EmrDTO createEmr(String mrn, EmrDTO emrDto) {
         // 1 Находим пациента
         Patient patient = findPatientOrThrow(mrn);
@@ -208,6 +214,7 @@ public class NurseServiceImpl implements NurseService {
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public EmrDTO updateEmr(String mrn, EmrUpdateDTO emrUpdateDto) {
         Patient patient = findPatientOrThrow(mrn);
         Emr emr = patient.getEmr().getLast();
@@ -237,11 +244,14 @@ public class NurseServiceImpl implements NurseService {
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public VasDTO createVAS(String mrn, VasDTO vasDto) {
         Patient patient = findPatientOrThrow(mrn);
         Vas vas = modelMapper.map(vasDto, Vas.class);
         vas.setPatient(patient);
         patient.getVas().add(vas);
+        // Сохраняем сразу: событию нужны ID и время записи (окно VasWindowCache)
+        vasRepository.save(vas);
 
         // Публикация события VAS (INTERNAL источник - медсестра)
         eventPublisher.publishEvent(new VasRecordedEvent(
@@ -249,33 +259,35 @@ public class NurseServiceImpl implements NurseService {
                 vas.getId(),
                 mrn,
                 "nurse_id", // TODO: заменить на реальный ID из Security Context
-                LocalDateTime.now(),
+                vas.getRecordedAt(),
                 vas.getPainLevel(),
                 vas.getPainPlace(),
                 vas.getPainLevel() >= 8,  // isCritical если боль >= 8
                 "INTERNAL",  // vasSource - внутренний ввод медсестрой
                 null  //deviceId - не применимо для внутреннего ввода
         ));
-
-        //!! АВТОМАТИЧЕСКАЯ ПРОВЕРКА ЭСКАЛАЦИИ БОЛИ (Блок pain_escalation_tracking)
-        painEscalationService.handleNewVasRecord(mrn, vas.getPainLevel());
+        // Проверка эскалации боли - PainEscalationEventListener.onVasRecorded() после коммита
         return modelMapper.map(vas, VasDTO.class);
     }
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public VasDTO updateVAS(String mrn, VasDTO vasDto) {
         Patient patient = findPatientOrThrow(mrn);
         Vas vas = patient.getVas().getLast();
         vas.setPainLevel(vasDto.getPainLevel());
+        vasWindowCache.invalidateAfterCommit(mrn);
         return modelMapper.map(vas, VasDTO.class);
     }
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public void deleteVAS(String mrn) {
         Patient patient = findPatientOrThrow(mrn);
         patient.getVas().removeLast();
+        vasWindowCache.invalidateAfterCommit(mrn);
     }
 
     @Override
@@ -313,6 +325,7 @@ public class NurseServiceImpl implements NurseService {
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public RecommendationDTO createRecommendation(String mrn) {
         long startTime = System.currentTimeMillis();
 
@@ -373,6 +386,7 @@ public class NurseServiceImpl implements NurseService {
 
     @Override
     @Transactional
+    @SerializedByPatient(mrn = "#mrn")
     public RecommendationDTO executeRecommendation(String mrn) {
         //  Находим пациента и его последнюю рекомендацию
         Patient patient = findPatientOrThrow(mrn);
@@ -0,0 +1,41 @@
+package pain_helper_back.pain_escalation_tracking.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация напоминаний о дозах (DoseReminderScheduler)
+ * Минимальный интервал между дозами - PainEscalationConfig.minDoseIntervalHours
+ */
+@Configuration
+@ConfigurationProperties(prefix = "pain.dose-reminder")
+@Getter
+@Setter
+public class DoseReminderConfig {
+    /**
+     * Включить напоминания о дозах
+     */
+    private boolean enabled = true;
+    /**
+     * Плановый интервал до следующей дозы в часах (по умолчанию 6 часов)
+     */
+    private int dueIntervalHours = 6;
+    /**
+     * Через сколько минут после планового времени доза считается просроченной (по умолчанию 60)
+     */
+    private int overdueGraceMinutes = 60;
+    /**
+     * Длительность тика колеса таймеров в мс (точность срабатывания напоминаний)
+     */
+    private long tickMs = 1000;
+    /**
+     * Слотов на уровень колеса: 2^wheelSlotBits (по умолчанию 256)
+     */
+    private int wheelSlotBits = 8;
+    /**
+     * Уровней колеса (горизонт = tickMs * 2^(wheelSlotBits * wheelLevels), по умолчанию ~136 лет)
+     */
+    private int wheelLevels = 4;
+}
@@ -2,6 +2,7 @@ package pain_helper_back.pain_escalation_tracking.config;
 
 
 import lombok.Getter;
+import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,13 +12,15 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @ConfigurationProperties(prefix = "pain.escalation")
 @Getter
+@Setter
 public class PainEscalationConfig {
     /**
      * Минимальный рост VAS для эскалации (по умолчанию 2 балла)
      */
     private int minVasIncrease = 2;
     /**
-     * Минимальный интервал между дозами в часах (по умолчанию 4 часа)
+     * Минимальный интервал между дозами в часах (по умолчанию 4 часа).
+     * В этот интервал после дозы у пациента не больше одной открытой эскалации
      */
     private int minDoseIntervalHours = 4;
     /**
@@ -33,7 +36,28 @@ public class PainEscalationConfig {
      */
     private int trendAnalysisPeriodHours = 24;
     /**
-     * Максимальное количество эскалаций за период (по умолчанию 3)
+     * Максимальное количество эскалаций пациента за escalationPeriodHours (по умолчанию 3; 0 - без ограничения).
+     * Сверх лимита новая эскалация подавляется или объединяется с открытой (EscalationThrottle)
      */
     private int maxEscalationsPerPeriod = 3;
+    /**
+     * Скользящий период для maxEscalationsPerPeriod в часах (по умолчанию 24 часа)
+     */
+    private int escalationPeriodHours = 24;
+    /**
+     * Ожидаемое число записей VAS в час; окно последних записей пациента (VasWindowCache)
+     * вмещает trendAnalysisPeriodHours * windowReadingsPerHour записей (по умолчанию 24 * 4 = 96)
+     */
+    private int windowReadingsPerHour = 4;
+    /**
+     * Максимальное число пациентов с окном в памяти (вытесняются давно не использованные)
+     */
+    private int windowCacheMaxPatients = 10_000;
+
+    /**
+     * Емкость окна последних записей VAS пациента (не меньше 2 - текущая и предыдущая)
+     */
+    public int getWindowCapacity() {
+        return Math.max(2, trendAnalysisPeriodHours * windowReadingsPerHour);
+    }
 }
@@ -1,153 +1,106 @@
-//package pain_helper_back.pain_escalation_tracking.controller;
-//
-//
-//import lombok.RequiredArgsConstructor;
-//import lombok.extern.slf4j.Slf4j;
-//import org.springframework.http.ResponseEntity;
-//import org.springframework.web.bind.annotation.*;
-//import pain_helper_back.pain_escalation_tracking.dto.*;
-//import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
-//
-//import jakarta.validation.Valid;
-//import java.util.List;
-//
-///**
-// * REST API для управления дозами и эскалацией боли.
-// * Позволяет медсестрам регистрировать введенные дозы и проверять возможность следующей дозы.
-// */
-//@RestController
-//@RequestMapping("/api/pain-escalation")
-//@RequiredArgsConstructor
-//@Slf4j
-//@CrossOrigin(origins = "*")
-//public class DoseAdministrationController {
-//
-//    private final PainEscalationService painEscalationService;
-//    /*
-//     * Регистрация введенной дозы препарата.
-//     *
-//     * @param mrn MRN пациента
-//     * @param request данные о введенной дозе
-//     * @return результат регистрации
-//     */
-//    @PostMapping("/patients/{mrn}/doses")
-//    public ResponseEntity<DoseAdministrationResponseDTO> registerDose(
-//            @PathVariable String mrn,
-//            @Valid @RequestBody DoseAdministrationRequestDTO request) {
-//
-//        log.info("Registering dose for patient {}: {}  of {}",
-//                mrn, request.getDosage(), request.getDrugName());
-//
-//        var result = painEscalationService.registerDoseAdministration(mrn, request);
-//
-//        var response = DoseAdministrationResponseDTO.builder()
-//                .success(true)
-//                .message("Dose registered successfully")
-//                .doseId(result.getDoseId())
-//                .administeredAt(result.getAdministeredAt())
-//                .nextDoseAllowedAt(result.getNextDoseAllowedAt())
-//                .build();
-//
-//        log.info("Dose registered successfully for patient {}", mrn);
-//        return ResponseEntity.ok(response);
-//    }
-//    /*
-//     * Проверка возможности введения следующей дозы.
-//     *
-//     * @param mrn MRN пациента
-//     * @return информация о возможности введения дозы
-//     */
-//    @GetMapping("/patients/{mrn}/can-administer-dose")
-//    public ResponseEntity<CanAdministerDoseResponseDTO> canAdministerDose(@PathVariable String mrn) {
-//
-//        log.info("Checking if next dose can be administered for patient {}", mrn);
-//
-//        boolean canAdminister = painEscalationService.canAdministerNextDose(mrn);
-//
-//        var response = CanAdministerDoseResponseDTO.builder()
-//                .canAdminister(canAdminister)
-//                .patientMrn(mrn)
-//                .message(canAdminister
-//                        ? "Next dose can be administered"
-//                        : "Minimum interval not met - wait before next dose")
-//                .build();
-//
-//        return ResponseEntity.ok(response);
-//    }
-//    /*
-//     * Получить историю доз пациента.
-//     *
-//     * @param mrn MRN пациента
-//     * @return список введенных доз
-//     */
-//    @GetMapping("/patients/{mrn}/doses")
-//    public ResponseEntity<List<DoseHistoryDTO>> getDoseHistory(@PathVariable String mrn) {
-//
-//        log.info("Fetching dose history for patient {}", mrn);
-//
-//        var doses = painEscalationService.getDoseHistory(mrn);
-//
-//        return ResponseEntity.ok(doses);
-//    }
-//    /*
-//     * Проверка эскалации боли для пациента.
-//     *
-//     * @param mrn MRN пациента
-//     * @return результат проверки эскалации
-//     */
-//    @PostMapping("/patients/{mrn}/check-escalation")
-//    public ResponseEntity<PainEscalationCheckResultDTO> checkPainEscalation(@PathVariable String mrn) {
-//
-//        log.info("Checking pain escalation for patient {}", mrn);
-//
-//        var result = painEscalationService.checkPainEscalation(mrn);
-//
-//        return ResponseEntity.ok(result);
-//    }
-//    /*
-//     * Получить последнюю эскалацию пациента.
-//     *
-//     * @param mrn MRN пациента
-//     * @return информация об эскалации
-//     */
-//    @GetMapping("/patients/{mrn}/latest-escalation")
-//    public ResponseEntity<EscalationInfoDTO> getLatestEscalation(@PathVariable String mrn) {
-//
-//        log.info("Fetching latest escalated recommendation for patient {}", mrn);
-//
-//        var recommendation = painEscalationService.getLatestEscalation(mrn);
-//
-//        if (recommendation == null) {
-//            return ResponseEntity.noContent().build();
-//        }
-//
-//        var response = EscalationInfoDTO.builder()
-//                .escalationId(recommendation.getId())                 // ID рекомендации
-//                .patientMrn(mrn)                                      // MRN пациента
-//                .priority(null)                                       // приоритет больше не используется
-//                .status(null)                                         // статус в старом смысле не используется
-//                .reason(recommendation.getComments() != null && !recommendation.getComments().isEmpty()
-//                        ? recommendation.getComments().getLast()
-//                        : "Pain escalation detected")                 // берем последний комментарий
-//                .createdAt(recommendation.getCreatedAt())             // когда рекомендация была создана
-//                .resolvedAt(null)                                     // не актуально — можно null
-//                .resolvedBy(null)                                     // не актуально — можно null
-//                .build();
-//
-//        return ResponseEntity.ok(response);
-//    }
-//    /*
-//     * Получить статистику по эскалациям.
-//     *
-//     * @return статистика
-//     */
-////    @GetMapping("/statistics")
-////    public ResponseEntity<PainEscalationStatisticsDTO> getStatistics() {
-////
-////        log.info("Fetching pain escalation statistics");
-////
-////        var stats = painEscalationService.getEscalationStatistics();
-////
-////        return ResponseEntity.ok(stats);
-////    }
-//}
\ No newline at end of file
+package pain_helper_back.pain_escalation_tracking.controller;
+
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pain_helper_back.pain_escalation_tracking.dto.*;
+import pain_helper_back.pain_escalation_tracking.service.DoseAdministrationService;
+import pain_helper_back.pain_escalation_tracking.service.DoseReminderScheduler;
+
+import jakarta.validation.Valid;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * REST API для управления дозами.
+ * Позволяет медсестрам регистрировать введенные дозы и проверять возможность следующей дозы.
+ */
+@RestController
+@RequestMapping("/api/pain-escalation")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class DoseAdministrationController {
+
+    private final DoseAdministrationService doseAdministrationService;
+    private final DoseReminderScheduler doseReminderScheduler;
+
+    /*
+     * Регистрация введенной дозы препарата.
+     *
+     * @param mrn MRN пациента
+     * @param request данные о введенной дозе
+     * @return результат регистрации (409 - минимальный интервал не выдержан)
+     */
+    @PostMapping("/patients/{mrn}/doses")
+    public ResponseEntity<DoseAdministrationResponseDTO> registerDose(
+            @PathVariable String mrn,
+            @Valid @RequestBody DoseAdministrationRequestDTO request) {
+
+        log.info("Registering dose for patient {}: {}  of {}",
+                mrn, request.getDosage(), request.getDrugName());
+        try {
+            return ResponseEntity.ok(doseAdministrationService.registerDoseAdministration(mrn, request));
+        } catch (IllegalStateException e) {
+            log.warn("Dose rejected for patient {}: {}", mrn, e.getMessage());
+            var response = DoseAdministrationResponseDTO.builder()
+                    .success(false)
+                    .message(e.getMessage())
+                    .nextDoseAllowedAt(doseAdministrationService.getNextDoseTime(mrn))
+                    .build();
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+    }
+
+    /*
+     * Проверка возможности введения следующей дозы.
+     *
+     * @param mrn MRN пациента
+     * @return информация о возможности введения дозы
+     */
+    @GetMapping("/patients/{mrn}/can-administer-dose")
+    public ResponseEntity<CanAdministerDoseResponseDTO> canAdministerDose(@PathVariable String mrn) {
+
+        LocalDateTime nextDoseAllowedAt = doseAdministrationService.getNextDoseTime(mrn);
+        LocalDateTime now = LocalDateTime.now();
+        boolean canAdminister = nextDoseAllowedAt == null || !now.isBefore(nextDoseAllowedAt);
+
+        var response = CanAdministerDoseResponseDTO.builder()
+                .canAdminister(canAdminister)
+                .patientMrn(mrn)
+                .message(canAdminister
+                        ? "Next dose can be administered"
+                        : "Minimum interval not met - wait before next dose")
+                .lastDoseAt(doseAdministrationService.getLastDoseTime(mrn))
+                .nextDoseAllowedAt(nextDoseAllowedAt)
+                .hoursUntilNextDose(canAdminister
+                        ? 0
+                        : (int) Math.ceil(Duration.between(now, nextDoseAllowedAt).toMinutes() / 60.0))
+                .build();
+
+        return ResponseEntity.ok(response);
+    }
+
+    /*
+     * Получить историю доз пациента.
+     *
+     * @param mrn MRN пациента
+     * @return список введенных доз
+     */
+    @GetMapping("/patients/{mrn}/doses")
+    public ResponseEntity<List<DoseHistoryDTO>> getDoseHistory(@PathVariable String mrn) {
+        return ResponseEntity.ok(doseAdministrationService.getDoseHistory(mrn));
+    }
+
+    /*
+     * Статистика напоминаний о дозах (ожидающие / отправленные по типам / отмененные)
+     */
+    @GetMapping("/dose-reminders/stats")
+    public ResponseEntity<DoseReminderStatsDTO> getDoseReminderStats() {
+        return ResponseEntity.ok(doseReminderScheduler.getStats());
+    }
+}
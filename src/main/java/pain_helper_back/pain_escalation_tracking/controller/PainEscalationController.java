@@ -4,9 +4,15 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import pain_helper_back.pain_escalation_tracking.dto.EscalationInfoDTO;
+import pain_helper_back.pain_escalation_tracking.dto.EscalationThrottleStatsDTO;
+import pain_helper_back.pain_escalation_tracking.dto.PainEscalationStatisticsDTO;
 import pain_helper_back.pain_escalation_tracking.dto.PainTrendAnalysisDTO;
+import pain_helper_back.pain_escalation_tracking.service.EscalationThrottle;
 import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
 
+import java.util.List;
+
 /**
  * Контроллер для анализа и отслеживания роста боли (Pain Escalation Tracking)
  * Используется для проверки VAS, анализа трендов и автоматического реагирования системы.
@@ -18,6 +24,7 @@ import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
 public class PainEscalationController {
 
     private final PainEscalationService painEscalationService;
+    private final EscalationThrottle escalationThrottle;
 
     /**
      * Анализ тренда боли за последние 24 ч для графиков и аналитики
@@ -27,6 +34,33 @@ public class PainEscalationController {
         return painEscalationService.analyzePainTrend(mrn);
     }
 
+    /**
+     * Активные (незакрытые) эскалации, новые первыми
+     */
+    @GetMapping("/active")
+    public List<EscalationInfoDTO> getActiveEscalations(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size
+    ) {
+        return painEscalationService.getActiveEscalations(page, size);
+    }
+
+    /**
+     * Статистика эскалаций за период: по статусу, по приоритету, медиана времени решения
+     */
+    @GetMapping("/statistics")
+    public PainEscalationStatisticsDTO getStatistics(@RequestParam(defaultValue = "24") int hours) {
+        return painEscalationService.getEscalationStatistics(hours);
+    }
+
+    /**
+     * Статистика ограничения эскалаций (подавленные / объединенные) для настройки лимитов
+     */
+    @GetMapping("/throttle/stats")
+    public EscalationThrottleStatsDTO getThrottleStats() {
+        return escalationThrottle.getStats();
+    }
+
     /**
      * Реакция на новую жалобу пациента (новое VAS)
      * Если боль выросла ≥ 2 баллов — уведомляем анестезиолога
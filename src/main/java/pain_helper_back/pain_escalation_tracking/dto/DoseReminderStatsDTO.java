@@ -0,0 +1,30 @@
+package pain_helper_back.pain_escalation_tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * DTO: Состояние напоминаний о дозах (DoseReminderScheduler)
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DoseReminderStatsDTO {
+
+    /** Запланированные напоминания (таймеры колеса) */
+    private Integer pendingReminders;
+
+    /** Пациенты с запланированными напоминаниями */
+    private Integer patientsWithReminders;
+
+    /** Отправленные напоминания по типу (MIN_INTERVAL_REACHED, NEXT_DOSE_DUE, OVERDUE) */
+    private Map<String, Long> sentByType;
+
+    /** Напоминания, отмененные новой дозой */
+    private Long cancelledReminders;
+}
@@ -0,0 +1,35 @@
+package pain_helper_back.pain_escalation_tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO: Эскалация боли в списке активных эскалаций (дашборд анестезиолога)
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EscalationInfoDTO {
+
+    /** Идентификатор записи эскалации (PainEscalation entity) */
+    private Long escalationId;
+
+    private String patientMrn;
+    private String patientName;
+
+    /** LOW, MEDIUM, HIGH, CRITICAL */
+    private String priority;
+
+    /** PENDING, IN_REVIEW */
+    private String status;
+
+    private Integer previousVas;
+    private Integer currentVas;
+    private Integer vasChange;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,36 @@
+package pain_helper_back.pain_escalation_tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO: Статистика ограничения эскалаций боли (EscalationThrottle)
+ * Используется для настройки maxEscalationsPerPeriod / escalationPeriodHours / minDoseIntervalHours.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EscalationThrottleStatsDTO {
+
+    /** Пациенты со счетчиками в памяти */
+    private Integer trackedPatients;
+
+    /** Эскалации, пропущенные ограничителем (созданы и отправлены) */
+    private Long allowedEscalations;
+
+    /** Подавленные эскалации (без записи и уведомлений) */
+    private Long suppressedEscalations;
+
+    /** Из них подавлены из-за интервала после введенной дозы */
+    private Long suppressedByDoseInterval;
+
+    /** Эскалации, объединенные с открытой эскалацией (рост приоритета) */
+    private Long mergedEscalations;
+
+    private Integer maxEscalationsPerPeriod;
+    private Integer escalationPeriodHours;
+    private Integer minDoseIntervalHours;
+}
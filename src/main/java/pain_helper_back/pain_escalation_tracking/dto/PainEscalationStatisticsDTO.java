@@ -0,0 +1,38 @@
+package pain_helper_back.pain_escalation_tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * DTO: Статистика эскалаций боли за период (дашборд эскалаций)
+ * Все значения считаются агрегатными запросами в БД.
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PainEscalationStatisticsDTO {
+
+    /** Начало периода (эскалации, созданные после этого времени) */
+    private LocalDateTime from;
+
+    /** Всего эскалаций за период */
+    private Long totalEscalations;
+
+    /** Количество по статусу (PENDING, IN_REVIEW, RESOLVED, REJECTED, CANCELLED) */
+    private Map<String, Long> escalationsByStatus;
+
+    /** Количество по приоритету (LOW, MEDIUM, HIGH, CRITICAL) */
+    private Map<String, Long> escalationsByPriority;
+
+    /** Незакрытые эскалации на текущий момент (за всё время) */
+    private Long activeEscalations;
+
+    /** Медиана времени от эскалации до решения анестезиолога, минуты (null - решенных нет) */
+    private Double medianResolutionMinutes;
+}
@@ -13,9 +13,12 @@ import java.time.LocalDateTime;
 /**
  * Сущность для отслеживания введенных доз препаратов
  * Используется для проверки интервалов между дозами
+ * Индекс patient_id + administered_at - последняя доза пациента (интервал, напоминания)
  */
 @Entity
-@Table(name = "dose_administrations")
+@Table(name = "dose_administrations", indexes = {
+        @Index(name = "idx_dose_patient_administered_at", columnList = "patient_id, administered_at")
+})
 @Getter
 @Setter
 @RequiredArgsConstructor
@@ -5,11 +5,24 @@ import lombok.*;
 import pain_helper_back.common.patients.entity.Patient;
 import pain_helper_back.common.patients.entity.Recommendation;
 import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.enums.EscalationStatus;
 
 import java.time.LocalDateTime;
 
+/**
+ * Эскалация боли пациента (рост VAS ≥ minVasIncrease)
+ * <p>
+ * ИНДЕКСЫ (дашборд эскалаций, EscalationThrottle):
+ * - status + created_at - активные эскалации и счетчики по статусу за период
+ * - patient_patient_id + created_at - эскалации пациента за период
+ * - priority - счетчики по приоритету
+ */
 @Entity
-@Table(name = "pain_escalations")
+@Table(name = "pain_escalations", indexes = {
+        @Index(name = "idx_pain_escalation_status_created_at", columnList = "status, created_at"),
+        @Index(name = "idx_pain_escalation_patient_created_at", columnList = "patient_patient_id, created_at"),
+        @Index(name = "idx_pain_escalation_priority", columnList = "priority")
+})
 @Getter
 @Setter
 @RequiredArgsConstructor
@@ -31,6 +44,14 @@ public class PainEscalation {
     @Enumerated(EnumType.STRING)
     private EscalationPriority priority;         // LOW, MEDIUM, HIGH, CRITICAL
 
+    // Default в БД: строки, созданные до появления колонки, получают PENDING (см. PainEscalationStatusBackfill)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", columnDefinition = "varchar(255) default 'PENDING'")
+    private EscalationStatus status = EscalationStatus.PENDING;  // PENDING → RESOLVED / REJECTED решением анестезиолога
 
     private LocalDateTime createdAt;
-}
\ No newline at end of file
+
+    private LocalDateTime resolvedAt;
+    private String resolvedBy;
+    private Long resolutionSeconds;              // resolvedAt - createdAt (медиана времени решения считается в БД)
+}
@@ -0,0 +1,37 @@
+package pain_helper_back.pain_escalation_tracking.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pain_helper_back.analytics.event.VasRecordedEvent;
+import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
+import pain_helper_back.pain_escalation_tracking.service.VasWindowCache;
+
+/*
+ * Слушатель сохраненных записей VAS (медсестра и внешние источники)
+ * После коммита записи добавляет ее в окно VasWindowCache и запускает проверку эскалации.
+ * Отдельный бин: handleNewVasRecord вызывается через прокси PainEscalationService,
+ * поэтому эскалация пишется в собственной транзакции (REQUIRES_NEW), а не в уже закоммиченной
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PainEscalationEventListener {
+    private final PainEscalationService painEscalationService;
+    private final VasWindowCache vasWindowCache;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onVasRecorded(VasRecordedEvent event) {
+        String mrn = event.getPatientMrn();
+        Integer vasLevel = event.getVasLevel();
+        try {
+            log.info("Received VAS event for patient {} (painLevel={})", mrn, vasLevel);
+            vasWindowCache.record(mrn, event.getVasId(), vasLevel, event.getRecordedAt());
+            painEscalationService.handleNewVasRecord(mrn, vasLevel);
+        } catch (Exception e) {
+            log.error("Failed to handle VAS escalation for {}: {}", mrn, e.getMessage(), e);
+        }
+    }
+}
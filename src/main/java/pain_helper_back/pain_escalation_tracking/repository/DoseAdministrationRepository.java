@@ -7,6 +7,7 @@ import org.springframework.stereotype.Repository;
 import pain_helper_back.common.patients.entity.Patient;
 import pain_helper_back.pain_escalation_tracking.entity.DoseAdministration;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,4 +23,17 @@ public interface DoseAdministrationRepository extends JpaRepository<DoseAdminist
     List<DoseAdministration> findByPatientOrderByAdministeredAtDesc(Patient patient);
 
     Optional<DoseAdministration> findTopByPatientOrderByAdministeredAtDesc(Patient patient);
+
+    /**
+     * Последняя введенная доза пациента по MRN
+     */
+    Optional<DoseAdministration> findTopByPatientMrnOrderByAdministeredAtDesc(String mrn);
+
+    /**
+     * Последние дозы пациентов, введенные после since (восстановление напоминаний при старте)
+     */
+    @Query("SELECT d FROM DoseAdministration d JOIN FETCH d.patient p " +
+            "WHERE d.administeredAt >= :since AND d.administeredAt = " +
+            "(SELECT MAX(d2.administeredAt) FROM DoseAdministration d2 WHERE d2.patient = d.patient)")
+    List<DoseAdministration> findLatestPerPatientSince(@Param("since") LocalDateTime since);
 }
@@ -1,10 +1,121 @@
 package pain_helper_back.pain_escalation_tracking.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.enums.EscalationStatus;
 import pain_helper_back.pain_escalation_tracking.entity.PainEscalation;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface PainEscalationRepository extends JpaRepository<PainEscalation, Long> {
 
+    /**
+     * Эскалации пациента после указанного времени (прогрев счетчиков EscalationThrottle)
+     */
+    List<EscalationView> findByPatientMrnAndCreatedAtAfterOrderByCreatedAtAsc(String mrn, LocalDateTime after);
+
+    /**
+     * Незакрытые эскалации пациента (закрываются решением анестезиолога)
+     */
+    List<PainEscalation> findByPatientIdAndStatusIn(Long patientId, Collection<EscalationStatus> statuses);
+
+    /**
+     * Активные эскалации для дашборда, новые первыми (индекс status + created_at, без загрузки сущностей)
+     */
+    @Query("SELECT e.id AS id, p.mrn AS patientMrn, p.firstName AS firstName, p.lastName AS lastName, " +
+            "e.priority AS priority, e.status AS status, e.previousVas AS previousVas, " +
+            "e.currentVas AS currentVas, e.vasChange AS vasChange, e.createdAt AS createdAt " +
+            "FROM PainEscalation e JOIN e.patient p " +
+            "WHERE e.status IN :statuses " +
+            "ORDER BY e.createdAt DESC")
+    List<ActiveEscalationView> findActive(@Param("statuses") Collection<EscalationStatus> statuses,
+                                          Pageable pageable);
+
+    long countByStatusIn(Collection<EscalationStatus> statuses);
+
+    /**
+     * Статус эскалаций без статуса (строки, созданные до появления колонки status)
+     */
+    @Modifying
+    @Query("UPDATE PainEscalation e SET e.status = :status WHERE e.status IS NULL")
+    int fillMissingStatus(@Param("status") EscalationStatus status);
+
+    /**
+     * Количество эскалаций по статусу, созданных после from
+     */
+    @Query("SELECT e.status AS status, COUNT(e) AS total FROM PainEscalation e " +
+            "WHERE e.createdAt >= :from GROUP BY e.status")
+    List<StatusCount> countByStatusSince(@Param("from") LocalDateTime from);
+
+    /**
+     * Количество эскалаций по приоритету, созданных после from
+     */
+    @Query("SELECT e.priority AS priority, COUNT(e) AS total FROM PainEscalation e " +
+            "WHERE e.createdAt >= :from GROUP BY e.priority")
+    List<PriorityCount> countByPrioritySince(@Param("from") LocalDateTime from);
+
+    /**
+     * Медиана времени решения (секунды) эскалаций, созданных после from; null - решенных нет
+     */
+    @Query("SELECT percentile_cont(0.5) WITHIN GROUP (ORDER BY e.resolutionSeconds) FROM PainEscalation e " +
+            "WHERE e.createdAt >= :from AND e.resolutionSeconds IS NOT NULL")
+    Double findMedianResolutionSecondsSince(@Param("from") LocalDateTime from);
+
+    /**
+     * Проекция: ID, время, приоритет и статус эскалации
+     */
+    interface EscalationView {
+        Long getId();
+
+        LocalDateTime getCreatedAt();
+
+        EscalationPriority getPriority();
+
+        EscalationStatus getStatus();
+    }
+
+    /**
+     * Проекция: строка списка активных эскалаций
+     */
+    interface ActiveEscalationView {
+        Long getId();
+
+        String getPatientMrn();
+
+        String getFirstName();
+
+        String getLastName();
+
+        EscalationPriority getPriority();
+
+        EscalationStatus getStatus();
+
+        Integer getPreviousVas();
+
+        Integer getCurrentVas();
+
+        Integer getVasChange();
+
+        LocalDateTime getCreatedAt();
+    }
+
+    interface StatusCount {
+        EscalationStatus getStatus();
+
+        Long getTotal();
+    }
+
+    interface PriorityCount {
+        EscalationPriority getPriority();
+
+        Long getTotal();
+    }
 }
@@ -18,4 +18,6 @@ public interface DoseAdministrationService {
     List<DoseHistoryDTO> getDoseHistory(String mrn);
 
     LocalDateTime getNextDoseTime(String mrn);
+
+    LocalDateTime getLastDoseTime(String mrn);
 }
@@ -0,0 +1,152 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pain_helper_back.common.patients.dto.exceptions.NotFoundException;
+import pain_helper_back.common.patients.entity.Patient;
+import pain_helper_back.common.patients.entity.Recommendation;
+import pain_helper_back.common.patients.repository.PatientRepository;
+import pain_helper_back.common.patients.repository.RecommendationRepository;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+import pain_helper_back.pain_escalation_tracking.dto.DoseAdministrationRequestDTO;
+import pain_helper_back.pain_escalation_tracking.dto.DoseAdministrationResponseDTO;
+import pain_helper_back.pain_escalation_tracking.dto.DoseHistoryDTO;
+import pain_helper_back.pain_escalation_tracking.entity.DoseAdministration;
+import pain_helper_back.pain_escalation_tracking.repository.DoseAdministrationRepository;
+import pain_helper_back.patient_locking.SerializedByPatient;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Регистрация введенных доз и контроль минимального интервала между ними.
+ * <p>
+ * После сохранения дозы:
+ * - планируются напоминания (DoseReminderScheduler) - следующая доза разрешена / плановая / просрочена;
+ * - начинается интервал после дозы для ограничителя эскалаций (EscalationThrottle).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DoseAdministrationServiceImpl implements DoseAdministrationService {
+
+    private final DoseAdministrationRepository doseAdministrationRepository;
+    private final PatientRepository patientRepository;
+    private final RecommendationRepository recommendationRepository;
+    private final PainEscalationConfig config;
+    private final DoseReminderScheduler doseReminderScheduler;
+    private final EscalationThrottle escalationThrottle;
+
+    @Override
+    @Transactional
+    public DoseAdministration registerDoseAdministration(DoseAdministration doseAdministration) {
+        if (doseAdministration.getAdministeredAt() == null) {
+            doseAdministration.setAdministeredAt(LocalDateTime.now());
+        }
+        if (doseAdministration.getNextDoseAllowedAt() == null) {
+            doseAdministration.setNextDoseAllowedAt(
+                    doseAdministration.getAdministeredAt().plusHours(config.getMinDoseIntervalHours()));
+        }
+        DoseAdministration saved = doseAdministrationRepository.save(doseAdministration);
+
+        doseReminderScheduler.scheduleAfterCommit(saved);
+        escalationThrottle.recordDose(saved.getPatient().getMrn(), saved.getAdministeredAt());
+        return saved;
+    }
+
+    // ------------------------------------------------------------
+    // Регистрация дозы медсестрой: минимальный интервал от предыдущей дозы обязателен
+    // ------------------------------------------------------------
+    @Override
+    @Transactional
+    @SerializedByPatient(mrn = "#mrn")
+    public DoseAdministrationResponseDTO registerDoseAdministration(String mrn, DoseAdministrationRequestDTO request) {
+        Patient patient = patientRepository.findByMrn(mrn)
+                .orElseThrow(() -> new NotFoundException("Patient not found: " + mrn));
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextAllowed = getNextDoseTime(mrn);
+        if (nextAllowed != null && now.isBefore(nextAllowed)) {
+            throw new IllegalStateException("Minimum interval not met - next dose allowed at " + nextAllowed);
+        }
+
+        Recommendation recommendation = null;
+        if (request.getRecommendationId() != null) {
+            recommendation = recommendationRepository.findById(request.getRecommendationId())
+                    .orElseThrow(() -> new NotFoundException("Recommendation not found: " + request.getRecommendationId()));
+        }
+
+        DoseAdministration dose = new DoseAdministration();
+        dose.setPatient(patient);
+        dose.setRecommendation(recommendation);
+        dose.setDrugName(request.getDrugName());
+        dose.setDosage(request.getDosage());
+        dose.setUnit(request.getUnit());
+        dose.setRoute(request.getRoute());
+        dose.setAdministeredBy(request.getAdministeredBy());
+        dose.setAdministeredAt(now);
+        dose.setVasBefore(request.getVasBefore());
+        dose.setVasAfter(request.getVasAfter());
+        dose.setNotes(request.getNotes());
+
+        DoseAdministration saved = registerDoseAdministration(dose);
+        log.info("Dose registered for patient {}: {} {} of {}, next dose allowed at {}",
+                mrn, saved.getDosage(), saved.getUnit(), saved.getDrugName(), saved.getNextDoseAllowedAt());
+
+        return DoseAdministrationResponseDTO.builder()
+                .success(true)
+                .message("Dose registered successfully")
+                .doseId(saved.getId())
+                .administeredAt(saved.getAdministeredAt())
+                .nextDoseAllowedAt(saved.getNextDoseAllowedAt())
+                .build();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean canAdministerNextDose(String mrn) {
+        LocalDateTime nextAllowed = getNextDoseTime(mrn);
+        return nextAllowed == null || !LocalDateTime.now().isBefore(nextAllowed);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DoseHistoryDTO> getDoseHistory(String mrn) {
+        Patient patient = patientRepository.findByMrn(mrn)
+                .orElseThrow(() -> new NotFoundException("Patient not found: " + mrn));
+        return doseAdministrationRepository.findByPatientOrderByAdministeredAtDesc(patient).stream()
+                .map(dose -> DoseHistoryDTO.builder()
+                        .id(dose.getId())
+                        .drugName(dose.getDrugName())
+                        .dosage(dose.getDosage())
+                        .unit(dose.getUnit())
+                        .route(dose.getRoute())
+                        .administeredAt(dose.getAdministeredAt())
+                        .administeredBy(dose.getAdministeredBy())
+                        .notes(dose.getNotes())
+                        .nextDoseAllowedAt(dose.getNextDoseAllowedAt())
+                        .build())
+                .toList();
+    }
+
+    // Время, с которого разрешена следующая доза (null - доз еще не было)
+    @Override
+    @Transactional(readOnly = true)
+    public LocalDateTime getNextDoseTime(String mrn) {
+        return doseAdministrationRepository.findTopByPatientMrnOrderByAdministeredAtDesc(mrn)
+                .map(dose -> dose.getNextDoseAllowedAt() != null
+                        ? dose.getNextDoseAllowedAt()
+                        : dose.getAdministeredAt().plusHours(config.getMinDoseIntervalHours()))
+                .orElse(null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public LocalDateTime getLastDoseTime(String mrn) {
+        return doseAdministrationRepository.findTopByPatientMrnOrderByAdministeredAtDesc(mrn)
+                .map(DoseAdministration::getAdministeredAt)
+                .orElse(null);
+    }
+}
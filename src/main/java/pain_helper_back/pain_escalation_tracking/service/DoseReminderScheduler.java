@@ -0,0 +1,305 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.common.patients.entity.Patient;
+import pain_helper_back.enums.DoseReminderType;
+import pain_helper_back.pain_escalation_tracking.config.DoseReminderConfig;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+import pain_helper_back.pain_escalation_tracking.dto.DoseReminderStatsDTO;
+import pain_helper_back.pain_escalation_tracking.entity.DoseAdministration;
+import pain_helper_back.pain_escalation_tracking.repository.DoseAdministrationRepository;
+import pain_helper_back.startup.StartupInitializer;
+import pain_helper_back.websocket.dto.UnifiedNotificationDTO;
+import pain_helper_back.websocket.service.UnifiedNotificationService;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Напоминания о дозах (DOSE_REMINDER через UnifiedNotificationService, топик медсестер).
+ *
+ * НАПОМИНАНИЯ НА ВВЕДЕННУЮ ДОЗУ:
+ * - MIN_INTERVAL_REACHED - administeredAt + minDoseIntervalHours (следующую дозу можно вводить)
+ * - NEXT_DOSE_DUE - administeredAt + dueIntervalHours (плановое время следующей дозы)
+ * - OVERDUE - плановое время + overdueGraceMinutes
+ * Новая доза пациента отменяет напоминания предыдущей.
+ *
+ * АЛГОРИТМ:
+ * - Напоминания - таймеры иерархического колеса (HierarchicalTimingWheel) в памяти:
+ *   добавление, отмена и срабатывание - O(1) на напоминание, без периодического сканирования таблицы доз
+ * - tick() продвигает колесо до текущего времени; уведомления отправляются вне блокировки
+ * - Напоминания планируются после коммита транзакции регистрации дозы
+ *
+ * - Уже наступившие MIN_INTERVAL_REACHED / NEXT_DOSE_DUE (доза внесена задним числом) не отправляются,
+ *   наступивший OVERDUE отправляется сразу (доза по-прежнему просрочена)
+ *
+ * ВОССТАНОВЛЕНИЕ ПРИ СТАРТЕ (StartupInitializer):
+ * - Последние дозы пациентов за dueIntervalHours + overdueGraceMinutes загружаются одним запросом
+ *   и планируются заново; OVERDUE, наступивший за время простоя, отправляется сразу
+ */
+@Service
+@Slf4j
+public class DoseReminderScheduler implements StartupInitializer {
+    public static final String NAME = "doseReminders";
+
+    private final DoseReminderConfig config;
+    private final PainEscalationConfig escalationConfig;
+    private final DoseAdministrationRepository doseAdministrationRepository;
+    private final UnifiedNotificationService unifiedNotificationService;
+
+    // Колесо и напоминания пациентов - под одной блокировкой
+    private final Object lock = new Object();
+    private final HierarchicalTimingWheel<DoseReminder> wheel;
+    private final Map<String, PatientReminders> pendingByPatient = new HashMap<>();
+
+    // Метрики
+    private final Map<DoseReminderType, LongAdder> sent = new EnumMap<>(DoseReminderType.class);
+    private final LongAdder cancelled = new LongAdder();
+
+    public DoseReminderScheduler(DoseReminderConfig config,
+                                 PainEscalationConfig escalationConfig,
+                                 DoseAdministrationRepository doseAdministrationRepository,
+                                 UnifiedNotificationService unifiedNotificationService) {
+        this.config = config;
+        this.escalationConfig = escalationConfig;
+        this.doseAdministrationRepository = doseAdministrationRepository;
+        this.unifiedNotificationService = unifiedNotificationService;
+        this.wheel = new HierarchicalTimingWheel<>(config.getWheelSlotBits(), config.getWheelLevels(),
+                currentTick());
+        for (DoseReminderType type : DoseReminderType.values()) {
+            sent.put(type, new LongAdder());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void initialize() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now()
+                .minusHours(config.getDueIntervalHours())
+                .minusMinutes(config.getOverdueGraceMinutes());
+        List<DoseAdministration> doses = doseAdministrationRepository.findLatestPerPatientSince(since);
+        List<DoseReminder> due = new ArrayList<>();
+        for (DoseAdministration dose : doses) {
+            due.addAll(schedule(toSource(dose)));
+        }
+        send(due);
+        log.info("Dose reminders rebuilt: {} patients, {} pending reminders, {} overdue sent",
+                doses.size(), wheel.size(), due.size());
+    }
+
+    /*
+     * Планирование напоминаний дозы после коммита текущей транзакции
+     */
+    public void scheduleAfterCommit(DoseAdministration dose) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        DoseSource source = toSource(dose);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(schedule(source));
+                }
+            });
+        } else {
+            send(schedule(source));
+        }
+    }
+
+    /*
+     * Продвижение колеса до текущего времени и отправка наступивших напоминаний
+     */
+    @Scheduled(fixedRateString = "${pain.dose-reminder.tick-ms:1000}")
+    public void tick() {
+        List<DoseReminder> due;
+        synchronized (lock) {
+            due = wheel.advance(currentTick());
+            for (DoseReminder reminder : due) {
+                PatientReminders patient = pendingByPatient.get(reminder.patientMrn());
+                if (patient != null && patient.doseId.equals(reminder.doseId()) && --patient.remaining == 0) {
+                    pendingByPatient.remove(reminder.patientMrn());
+                }
+            }
+        }
+        send(due);
+    }
+
+    public DoseReminderStatsDTO getStats() {
+        int pending;
+        int patients;
+        synchronized (lock) {
+            pending = wheel.size();
+            patients = pendingByPatient.size();
+        }
+        Map<String, Long> sentByType = new LinkedHashMap<>();
+        sent.forEach((type, count) -> sentByType.put(type.name(), count.sum()));
+        return DoseReminderStatsDTO.builder()
+                .pendingReminders(pending)
+                .patientsWithReminders(patients)
+                .sentByType(sentByType)
+                .cancelledReminders(cancelled.sum())
+                .build();
+    }
+
+    /*
+     * Замена напоминаний пациента напоминаниями новой дозы
+     *
+     * @return Наступивший OVERDUE для немедленной отправки (остальные наступившие напоминания
+     *         пропускаются: доза внесена задним числом или сервис был остановлен)
+     */
+    private List<DoseReminder> schedule(DoseSource dose) {
+        LocalDateTime minIntervalAt = dose.administeredAt().plusHours(escalationConfig.getMinDoseIntervalHours());
+        LocalDateTime dueAt = dose.administeredAt().plusHours(config.getDueIntervalHours());
+        LocalDateTime overdueAt = dueAt.plusMinutes(config.getOverdueGraceMinutes());
+
+        List<DoseReminder> immediate = new ArrayList<>();
+        synchronized (lock) {
+            PatientReminders previous = pendingByPatient.get(dose.patientMrn());
+            if (previous != null) {
+                if (previous.administeredAt.isAfter(dose.administeredAt())) {
+                    return immediate; // Уже запланированы напоминания более новой дозы
+                }
+                for (HierarchicalTimingWheel.Timer<DoseReminder> timer : previous.timers) {
+                    if (wheel.cancel(timer)) {
+                        cancelled.increment();
+                    }
+                }
+                pendingByPatient.remove(dose.patientMrn());
+            }
+
+            PatientReminders patient = new PatientReminders(dose.doseId(), dose.administeredAt());
+            addReminder(patient, dose, DoseReminderType.MIN_INTERVAL_REACHED, minIntervalAt, immediate);
+            addReminder(patient, dose, DoseReminderType.NEXT_DOSE_DUE, dueAt, immediate);
+            addReminder(patient, dose, DoseReminderType.OVERDUE, overdueAt, immediate);
+            if (patient.remaining > 0) {
+                pendingByPatient.put(dose.patientMrn(), patient);
+            }
+        }
+        return immediate;
+    }
+
+    private void addReminder(PatientReminders patient, DoseSource dose, DoseReminderType type,
+                             LocalDateTime at, List<DoseReminder> immediate) {
+        DoseReminder reminder = new DoseReminder(dose.doseId(), dose.patientMrn(), dose.patientName(),
+                dose.drugName(), dose.administeredAt(), type);
+        HierarchicalTimingWheel.Timer<DoseReminder> timer = wheel.schedule(deadlineTick(at), reminder);
+        if (timer != null) {
+            patient.timers.add(timer);
+            patient.remaining++;
+        } else if (type == DoseReminderType.OVERDUE) {
+            immediate.add(reminder);
+        }
+    }
+
+    private void send(List<DoseReminder> reminders) {
+        for (DoseReminder reminder : reminders) {
+            unifiedNotificationService.sendNotification(toNotification(reminder));
+            sent.get(reminder.type()).increment();
+        }
+    }
+
+    private UnifiedNotificationDTO toNotification(DoseReminder reminder) {
+        UnifiedNotificationDTO.NotificationPriority priority;
+        String title;
+        String message;
+        switch (reminder.type()) {
+            case MIN_INTERVAL_REACHED -> {
+                priority = UnifiedNotificationDTO.NotificationPriority.LOW;
+                title = "Next dose allowed";
+                message = String.format("Minimum interval of %dh since %s given at %s has passed. Next dose may be administered if needed.",
+                        escalationConfig.getMinDoseIntervalHours(), reminder.drugName(), reminder.administeredAt());
+            }
+            case NEXT_DOSE_DUE -> {
+                priority = UnifiedNotificationDTO.NotificationPriority.MEDIUM;
+                title = "Next dose due";
+                message = String.format("Next dose of %s is due (last dose at %s).",
+                        reminder.drugName(), reminder.administeredAt());
+            }
+            default -> {
+                priority = UnifiedNotificationDTO.NotificationPriority.HIGH;
+                title = "Dose overdue";
+                message = String.format("Dose of %s was due at %s and has not been recorded.",
+                        reminder.drugName(), reminder.administeredAt().plusHours(config.getDueIntervalHours()));
+            }
+        }
+        return UnifiedNotificationDTO.builder()
+                .type(UnifiedNotificationDTO.NotificationType.DOSE_REMINDER)
+                .priority(priority)
+                .patientMrn(reminder.patientMrn())
+                .patientName(reminder.patientName())
+                .title(title)
+                .message(message)
+                .details(reminder.type().name())
+                .relatedEntityId(reminder.doseId())
+                .relatedEntityType("DOSE_ADMINISTRATION")
+                .requiresAction(reminder.type() != DoseReminderType.MIN_INTERVAL_REACHED)
+                .actionUrl("/patients/" + reminder.patientMrn() + "/doses")
+                .targetRole("NURSE")
+                .build();
+    }
+
+    private DoseSource toSource(DoseAdministration dose) {
+        Patient patient = dose.getPatient();
+        return new DoseSource(dose.getId(), patient.getMrn(),
+                patient.getFirstName() + " " + patient.getLastName(),
+                dose.getDrugName(), dose.getAdministeredAt());
+    }
+
+    private long currentTick() {
+        return Math.floorDiv(System.currentTimeMillis(), config.getTickMs());
+    }
+
+    // Округление вверх: напоминание не срабатывает раньше своего времени
+    private long deadlineTick(LocalDateTime time) {
+        long millis = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Math.floorDiv(millis + config.getTickMs() - 1, config.getTickMs());
+    }
+
+    /*
+     * Данные дозы, нужные напоминаниям (без ссылок на JPA сущности)
+     */
+    private record DoseSource(Long doseId, String patientMrn, String patientName,
+                              String drugName, LocalDateTime administeredAt) {
+    }
+
+    /*
+     * Напоминание - полезная нагрузка таймера колеса
+     */
+    private record DoseReminder(Long doseId, String patientMrn, String patientName, String drugName,
+                                LocalDateTime administeredAt, DoseReminderType type) {
+    }
+
+    /*
+     * Напоминания последней дозы пациента
+     */
+    private static final class PatientReminders {
+        private final Long doseId;
+        private final LocalDateTime administeredAt;
+        private final List<HierarchicalTimingWheel.Timer<DoseReminder>> timers = new ArrayList<>(3);
+        private int remaining;
+
+        private PatientReminders(Long doseId, LocalDateTime administeredAt) {
+            this.doseId = doseId;
+            this.administeredAt = administeredAt;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+import pain_helper_back.pain_escalation_tracking.dto.EscalationThrottleStatsDTO;
+import pain_helper_back.pain_escalation_tracking.entity.DoseAdministration;
+import pain_helper_back.pain_escalation_tracking.repository.DoseAdministrationRepository;
+import pain_helper_back.pain_escalation_tracking.repository.PainEscalationRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+ * Ограничитель эскалаций боли пациента (до записи PainEscalation и рассылки уведомлений).
+ *
+ * АЛГОРИТМ:
+ * - На пациента - скользящее окно времен эскалаций за escalationPeriodHours и открытая эскалация
+ *   (последняя в окне: ID и приоритет)
+ * - Эскалация пропускается, если в окне меньше maxEscalationsPerPeriod эскалаций и пациент
+ *   не в интервале minDoseIntervalHours после дозы с уже открытой после нее эскалацией
+ *   (следующую дозу ввести нельзя - повторное уведомление ничего не меняет)
+ * - Иначе: при росте приоритета относительно открытой эскалации - MERGE (открытая эскалация
+ *   обновляется и уведомление отправляется повторно), без роста - SUPPRESS (ничего не делается)
+ * - Счетчики прогреваются лениво: эскалации за период и последняя доза - по запросу к БД
+ *   при первом обращении для пациента; далее только память
+ *
+ * ОЧИСТКА:
+ * - Пациенты без эскалаций в окне и вне интервала после дозы удаляются из памяти
+ */
+@Service
+@Slf4j
+public class EscalationThrottle {
+    private final PainEscalationConfig config;
+    private final PainEscalationRepository painEscalationRepository;
+    private final DoseAdministrationRepository doseAdministrationRepository;
+    private final Supplier<LocalDateTime> clock;
+    private final Map<String, PatientEscalations> patients = new ConcurrentHashMap<>();
+
+    // Метрики
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder suppressedByDoseInterval = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+
+    @Autowired
+    public EscalationThrottle(PainEscalationConfig config,
+                              PainEscalationRepository painEscalationRepository,
+                              DoseAdministrationRepository doseAdministrationRepository) {
+        this(config, painEscalationRepository, doseAdministrationRepository, LocalDateTime::now);
+    }
+
+    EscalationThrottle(PainEscalationConfig config,
+                       PainEscalationRepository painEscalationRepository,
+                       DoseAdministrationRepository doseAdministrationRepository,
+                       Supplier<LocalDateTime> clock) {
+        this.config = config;
+        this.painEscalationRepository = painEscalationRepository;
+        this.doseAdministrationRepository = doseAdministrationRepository;
+        this.clock = clock;
+    }
+
+    /*
+     * Решение по новой эскалации пациента. ESCALATE резервирует место в окне;
+     * после коммита эскалации нужно вызвать opened(), при ошибке или откате - release()
+     *
+     * @param priority Приоритет новой эскалации
+     */
+    public ThrottleDecision tryAcquire(String mrn, EscalationPriority priority) {
+        while (true) {
+            PatientEscalations state = patients.computeIfAbsent(mrn, key -> new PatientEscalations());
+            synchronized (state) {
+                if (state.evicted) {
+                    continue; // Удален очисткой между computeIfAbsent и блокировкой
+                }
+                LocalDateTime now = clock.get();
+                if (!state.loaded) {
+                    warm(mrn, state, now);
+                }
+                state.expire(now.minusHours(config.getEscalationPeriodHours()));
+
+                boolean limitReached = config.getMaxEscalationsPerPeriod() > 0
+                        && state.escalationTimes.size() >= config.getMaxEscalationsPerPeriod();
+                boolean doseGated = isDoseGated(state, now);
+                if (!limitReached && !doseGated) {
+                    state.escalationTimes.addLast(now);
+                    allowed.increment();
+                    return ThrottleDecision.escalate(now);
+                }
+                if (state.openEscalationId != null && priority.compareTo(state.openPriority) > 0) {
+                    state.openPriority = priority;
+                    merged.increment();
+                    return ThrottleDecision.merge(state.openEscalationId);
+                }
+                suppressed.increment();
+                if (doseGated) {
+                    suppressedByDoseInterval.increment();
+                }
+                return ThrottleDecision.suppress(limitReached
+                        ? "Escalation limit reached (" + config.getMaxEscalationsPerPeriod() + " per "
+                        + config.getEscalationPeriodHours() + "h)"
+                        : "Escalation already open within dose interval");
+            }
+        }
+    }
+
+    /*
+     * Эскалация сохранена - становится открытой
+     */
+    public void opened(String mrn, Long escalationId, EscalationPriority priority, LocalDateTime createdAt) {
+        PatientEscalations state = patients.get(mrn);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.openEscalationId = escalationId;
+            state.openPriority = priority;
+            state.openedAt = createdAt;
+        }
+    }
+
+    /*
+     * Эскалация не сохранена (ошибка или откат транзакции) - место в окне, зарезервированное
+     * решением ESCALATE, освобождается
+     */
+    public void release(String mrn, ThrottleDecision decision) {
+        PatientEscalations state = patients.get(mrn);
+        if (state == null || decision.action() != ThrottleDecision.Action.ESCALATE) {
+            return;
+        }
+        synchronized (state) {
+            if (state.escalationTimes.removeLastOccurrence(decision.reservedAt())) {
+                allowed.decrement();
+            }
+        }
+    }
+
+    /*
+     * Эскалации пациента закрыты анестезиологом - объединять больше не с чем,
+     * новая эскалация в интервале после дозы снова разрешена (лимит за период сохраняется)
+     */
+    public void resolved(String mrn) {
+        PatientEscalations state = patients.get(mrn);
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            state.openEscalationId = null;
+            state.openPriority = null;
+            state.openedAt = null;
+        }
+    }
+
+    /*
+     * Введена доза - начинается интервал minDoseIntervalHours
+     */
+    public void recordDose(String mrn, LocalDateTime administeredAt) {
+        PatientEscalations state = patients.get(mrn);
+        if (state == null) {
+            return; // Будет прочитана из БД при прогреве
+        }
+        synchronized (state) {
+            if (state.lastDoseAt == null || administeredAt.isAfter(state.lastDoseAt)) {
+                state.lastDoseAt = administeredAt;
+            }
+        }
+    }
+
+    /*
+     * Удаление пациентов без активных ограничений
+     */
+    @Scheduled(fixedDelay = 600_000)
+    public void evictIdlePatients() {
+        LocalDateTime now = clock.get();
+        LocalDateTime periodStart = now.minusHours(config.getEscalationPeriodHours());
+        int before = patients.size();
+        patients.values().removeIf(state -> {
+            synchronized (state) {
+                state.expire(periodStart);
+                boolean idle = state.escalationTimes.isEmpty()
+                        && (state.lastDoseAt == null || !now.isBefore(doseIntervalEnd(state)));
+                state.evicted = idle;
+                return idle;
+            }
+        });
+        int evicted = before - patients.size();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle escalation throttle entries, {} tracked", evicted, patients.size());
+        }
+    }
+
+    public EscalationThrottleStatsDTO getStats() {
+        return EscalationThrottleStatsDTO.builder()
+                .trackedPatients(patients.size())
+                .allowedEscalations(allowed.sum())
+                .suppressedEscalations(suppressed.sum())
+                .suppressedByDoseInterval(suppressedByDoseInterval.sum())
+                .mergedEscalations(merged.sum())
+                .maxEscalationsPerPeriod(config.getMaxEscalationsPerPeriod())
+                .escalationPeriodHours(config.getEscalationPeriodHours())
+                .minDoseIntervalHours(config.getMinDoseIntervalHours())
+                .build();
+    }
+
+    private boolean isDoseGated(PatientEscalations state, LocalDateTime now) {
+        return state.lastDoseAt != null
+                && now.isBefore(doseIntervalEnd(state))
+                && state.openedAt != null
+                && !state.openedAt.isBefore(state.lastDoseAt);
+    }
+
+    private LocalDateTime doseIntervalEnd(PatientEscalations state) {
+        return state.lastDoseAt.plusHours(config.getMinDoseIntervalHours());
+    }
+
+    private void warm(String mrn, PatientEscalations state, LocalDateTime now) {
+        LocalDateTime periodStart = now.minusHours(config.getEscalationPeriodHours());
+        for (PainEscalationRepository.EscalationView escalation :
+                painEscalationRepository.findByPatientMrnAndCreatedAtAfterOrderByCreatedAtAsc(mrn, periodStart)) {
+            state.escalationTimes.addLast(escalation.getCreatedAt());
+            if (escalation.getStatus() == null || PainEscalationServiceImpl.OPEN_STATUSES.contains(escalation.getStatus())) {
+                state.openEscalationId = escalation.getId();
+                state.openPriority = escalation.getPriority();
+                state.openedAt = escalation.getCreatedAt();
+            }
+        }
+        state.lastDoseAt = doseAdministrationRepository.findTopByPatientMrnOrderByAdministeredAtDesc(mrn)
+                .map(DoseAdministration::getAdministeredAt)
+                .orElse(null);
+        state.loaded = true;
+    }
+
+    /*
+     * Решение ограничителя
+     *
+     * @param escalationId Открытая эскалация для MERGE
+     * @param reason Причина для SUPPRESS
+     * @param reservedAt Зарезервированное место в окне для ESCALATE (для release())
+     */
+    public record ThrottleDecision(Action action, Long escalationId, String reason, LocalDateTime reservedAt) {
+        public enum Action {ESCALATE, MERGE, SUPPRESS}
+
+        static ThrottleDecision escalate(LocalDateTime reservedAt) {
+            return new ThrottleDecision(Action.ESCALATE, null, null, reservedAt);
+        }
+
+        static ThrottleDecision merge(Long escalationId) {
+            return new ThrottleDecision(Action.MERGE, escalationId, "Merged into open escalation " + escalationId, null);
+        }
+
+        static ThrottleDecision suppress(String reason) {
+            return new ThrottleDecision(Action.SUPPRESS, null, reason, null);
+        }
+    }
+
+    /*
+     * Состояние пациента. Доступ - под монитором объекта.
+     */
+    private static final class PatientEscalations {
+        private final ArrayDeque<LocalDateTime> escalationTimes = new ArrayDeque<>();
+        private Long openEscalationId;
+        private EscalationPriority openPriority;
+        private LocalDateTime openedAt;
+        private LocalDateTime lastDoseAt;
+        private boolean loaded;
+        private boolean evicted;
+
+        private void expire(LocalDateTime periodStart) {
+            while (!escalationTimes.isEmpty() && escalationTimes.peekFirst().isBefore(periodStart)) {
+                escalationTimes.pollFirst();
+            }
+            if (openedAt != null && openedAt.isBefore(periodStart)) {
+                openEscalationId = null;
+                openPriority = null;
+                openedAt = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Иерархическое колесо таймеров (hierarchical timing wheel) в тиках.
+ *
+ * АЛГОРИТМ:
+ * - levels уровней по 2^slotBits слотов; тик слота уровня L = 2^(slotBits * L) базовых тиков
+ * - Таймер кладется на младший уровень, где номер его блока отличается от текущего меньше,
+ *   чем на число слотов: O(1), без сортировки и без сканирования
+ * - advance(): на каждом тике, когда младшие разряды текущего тика обнуляются, слот старшего
+ *   уровня "осыпается" на нижние уровни; затем срабатывают все таймеры слота уровня 0.
+ *   Каждый таймер переносится не больше levels - 1 раз
+ * - Слот - двусвязный список, отмена таймера - O(1)
+ * - Дедлайны дальше горизонта колеса (2^(slotBits * levels) тиков) ограничиваются горизонтом
+ *   и перекладываются при осыпании
+ *
+ * Не потокобезопасен: синхронизацию обеспечивает владелец (DoseReminderScheduler).
+ */
+public final class HierarchicalTimingWheel<T> {
+    private final int slotBits;
+    private final int slotMask;
+    private final int levels;
+    private final long horizon;
+    private final Timer<T>[][] heads;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimingWheel(int slotBits, int levels, long startTick) {
+        if (slotBits < 1 || levels < 1 || slotBits * levels > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel geometry: " + slotBits + " bits x " + levels);
+        }
+        this.slotBits = slotBits;
+        this.slotMask = (1 << slotBits) - 1;
+        this.levels = levels;
+        this.horizon = (1L << (slotBits * levels)) - 1;
+        this.heads = new Timer[levels][1 << slotBits];
+        this.currentTick = startTick;
+    }
+
+    /*
+     * Добавление таймера
+     *
+     * @param deadlineTick Тик срабатывания
+     * @return Таймер для отмены или null, если дедлайн уже наступил (вызывающий обрабатывает сам)
+     */
+    public Timer<T> schedule(long deadlineTick, T payload) {
+        if (deadlineTick <= currentTick) {
+            return null;
+        }
+        Timer<T> timer = new Timer<>(deadlineTick, payload);
+        insert(timer);
+        size++;
+        return timer;
+    }
+
+    /*
+     * Отмена таймера
+     *
+     * @return false если таймер уже сработал или отменен
+     */
+    public boolean cancel(Timer<T> timer) {
+        if (timer == null || timer.level < 0) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /*
+     * Продвижение колеса до targetTick включительно
+     *
+     * @return Сработавшие таймеры в порядке тиков
+     */
+    public List<T> advance(long targetTick) {
+        List<T> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            Timer<T> timer = heads[0][(int) (currentTick & slotMask)];
+            while (timer != null) {
+                Timer<T> next = timer.next;
+                unlink(timer);
+                size--;
+                expired.add(timer.payload);
+                timer = next;
+            }
+        }
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /*
+     * Осыпание слотов старших уровней, чей блок начинается на текущем тике (сверху вниз,
+     * чтобы таймеры могли опуститься до уровня 0 за один тик)
+     */
+    private void cascade() {
+        int top = 0;
+        while (top + 1 < levels && (currentTick & ((1L << (slotBits * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level >= 1; level--) {
+            int slot = (int) ((currentTick >>> (slotBits * level)) & slotMask);
+            Timer<T> timer = heads[level][slot];
+            heads[level][slot] = null;
+            while (timer != null) {
+                Timer<T> next = timer.next;
+                timer.prev = null;
+                timer.next = null;
+                insert(timer);
+                timer = next;
+            }
+        }
+    }
+
+    private void insert(Timer<T> timer) {
+        long deadline = Math.min(timer.deadlineTick, currentTick + horizon);
+        int level = 0;
+        while (level + 1 < levels
+                && (deadline >>> (slotBits * level)) - (currentTick >>> (slotBits * level)) > slotMask) {
+            level++;
+        }
+        int slot = (int) ((deadline >>> (slotBits * level)) & slotMask);
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = heads[level][slot];
+        if (timer.next != null) {
+            timer.next.prev = timer;
+        }
+        heads[level][slot] = timer;
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            heads[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+
+    /*
+     * Таймер колеса (узел двусвязного списка слота)
+     */
+    public static final class Timer<T> {
+        private final long deadlineTick;
+        private final T payload;
+        private Timer<T> prev;
+        private Timer<T> next;
+        private int level = -1;
+        private int slot;
+
+        private Timer(long deadlineTick, T payload) {
+            this.deadlineTick = deadlineTick;
+            this.payload = payload;
+        }
+
+        public long getDeadlineTick() {
+            return deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package pain_helper_back.pain_escalation_tracking.service;
+import pain_helper_back.enums.EscalationStatus;
+import pain_helper_back.pain_escalation_tracking.dto.EscalationInfoDTO;
+import pain_helper_back.pain_escalation_tracking.dto.PainEscalationStatisticsDTO;
 import pain_helper_back.pain_escalation_tracking.dto.PainTrendAnalysisDTO;
 
+import java.util.List;
+
 /**
  * Сервис анализа и отслеживания роста боли (Pain Escalation Tracking).
  * <p>
  * Отвечает за:
  * - анализ тренда боли пациента по VAS (для UI-графиков и аналитики);
- * - обработку новой жалобы пациента и определение необходимости уведомления.
+ * - обработку новой жалобы пациента и определение необходимости уведомления;
+ * - закрытие эскалаций решением анестезиолога и статистику для дашборда эскалаций.
  */
 
 public interface PainEscalationService {
@@ -27,4 +33,24 @@ public interface PainEscalationService {
      * @param newVasLevel новый уровень боли (VAS)
      */
     void handleNewVasRecord(String mrn, Integer newVasLevel);
+
+    /**
+     * Закрывает незакрытые эскалации пациента (решение анестезиолога по эскалированной рекомендации).
+     *
+     * @param patientId  ID пациента
+     * @param mrn        медицинский номер пациента
+     * @param status     RESOLVED или REJECTED
+     * @param resolvedBy кто принял решение
+     */
+    void resolveOpenEscalations(Long patientId, String mrn, EscalationStatus status, String resolvedBy);
+
+    /**
+     * Незакрытые эскалации (PENDING, IN_REVIEW), новые первыми.
+     */
+    List<EscalationInfoDTO> getActiveEscalations(int page, int size);
+
+    /**
+     * Статистика эскалаций за последние hours часов (агрегатные запросы в БД).
+     */
+    PainEscalationStatisticsDTO getEscalationStatistics(int hours);
 }
\ No newline at end of file
@@ -2,29 +2,34 @@ package pain_helper_back.pain_escalation_tracking.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.transaction.event.TransactionPhase;
-import org.springframework.transaction.event.TransactionalEventListener;
-import pain_helper_back.analytics.event.VasRecordedEvent;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import pain_helper_back.common.patients.dto.exceptions.NotFoundException;
 import pain_helper_back.common.patients.entity.Patient;
 import pain_helper_back.common.patients.entity.Recommendation;
-import pain_helper_back.common.patients.entity.Vas;
 import pain_helper_back.common.patients.repository.PatientRepository;
 import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.enums.EscalationStatus;
 import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+import pain_helper_back.pain_escalation_tracking.dto.EscalationInfoDTO;
 import pain_helper_back.pain_escalation_tracking.dto.PainEscalationCheckResultDTO;
+import pain_helper_back.pain_escalation_tracking.dto.PainEscalationStatisticsDTO;
 import pain_helper_back.pain_escalation_tracking.dto.PainTrendAnalysisDTO;
 import pain_helper_back.pain_escalation_tracking.entity.PainEscalation;
 import pain_helper_back.pain_escalation_tracking.repository.PainEscalationRepository;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Реализация модуля анализа роста боли (Pain Escalation Tracking).
@@ -33,30 +38,28 @@ import java.util.List;
  * - анализирует историю VAS и вычисляет тренд боли;
  * - фиксирует рост боли ≥ 2 пунктов;
  * - создаёт PainEscalation запись и уведомляет анестезиолога.
+ * <p>
+ * История VAS берётся из окна последних записей пациента (VasWindowCache), а не из patient.getVas():
+ * проверка эскалации и анализ тренда - O(размер окна), в холодном случае - один запрос к БД.
+ * Лимиты эскалаций (maxEscalationsPerPeriod, minDoseIntervalHours) проверяет EscalationThrottle
+ * до загрузки пациента, записи эскалации и уведомлений.
+ * Новые записи VAS приходят после коммита из PainEscalationEventListener.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PainEscalationServiceImpl implements PainEscalationService {
 
+    // Незакрытые эскалации: ждут решения анестезиолога
+    static final Set<EscalationStatus> OPEN_STATUSES = EnumSet.of(EscalationStatus.PENDING, EscalationStatus.IN_REVIEW);
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final PatientRepository patientRepository;
     private final PainEscalationRepository painEscalationRepository;
     private final PainEscalationConfig config;
     private final PainEscalationNotificationService notificationService;
-
-    // Слушает событие в методах создания новых VAS
-    @EventListener
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)    public void onVasRecorded(VasRecordedEvent event) {
-        String mrn = event.getPatientMrn();
-        Integer vasLevel = event.getVasLevel();
-        try {
-            log.info("Received VAS event for patient {} (painLevel={})", mrn, vasLevel);
-            handleNewVasRecord(mrn, vasLevel);
-        } catch (Exception e) {
-            log.error("Failed to handle VAS escalation for {}: {}", mrn, e.getMessage(), e);
-        }
-    }
-
+    private final VasWindowCache vasWindowCache;
+    private final EscalationThrottle escalationThrottle;
 
     @Transactional(readOnly = true)
     public Patient getPatientByMrn(String mrn) {
@@ -65,21 +68,24 @@ public class PainEscalationServiceImpl implements PainEscalationService {
     }
 
     // ------------------------------------------------------------
-    // Анализ тренда боли (для UI / аналитики) - динамику боли за всё время наблюдения.
+    // Анализ тренда боли (для UI / аналитики) - динамика боли за trendAnalysisPeriodHours до последней жалобы.
     // 1 жалоба (VAS) → 1 рекомендация → действует в течение ~суток → следующая жалоба создаёт новую рекомендацию.
     // ------------------------------------------------------------
     @Override
     @Transactional(readOnly = true)
     public PainTrendAnalysisDTO analyzePainTrend(String mrn) {
-        Patient patient = getPatientByMrn(mrn);
-        List<Vas> vasHistory = patient.getVas();
+        return analyzePainTrend(mrn, getReadings(mrn));
+    }
+
+    private PainTrendAnalysisDTO analyzePainTrend(String mrn, VasWindowCache.Readings readings) {
+        int size = readings.size();
 
         // Если нет данных или только одна жалоба — возвращаем «пустую аналитику»
-        if (vasHistory == null || vasHistory.size() < 2) {
+        if (size < 2) {
             return PainTrendAnalysisDTO.builder()
                     .patientMrn(mrn)
                     .painTrend("NO_DATA")
-                    .vasRecordCount(vasHistory == null ? 0 : vasHistory.size())
+                    .vasRecordCount(size)
                     .averageVas((double) 0)
                     .maxVas(0)
                     .minVas(0)
@@ -91,37 +97,48 @@ public class PainEscalationServiceImpl implements PainEscalationService {
                     .build();
         }
 
-        // гарантируем правильный порядок
+        // Окно упорядочено по времени записи; период отсчитывается от последней жалобы
+        int[] levels = readings.painLevels();
+        LocalDateTime[] recordedAt = readings.recordedAt();
+        LocalDateTime periodStart = recordedAt[size - 1].minusHours(config.getTrendAnalysisPeriodHours());
+        int first = 0;
+        while (first < size - 2 && recordedAt[first].isBefore(periodStart)) {
+            first++;
+        }
 
+        List<Integer> vasValues = new ArrayList<>(size - first);
+        int sum = 0;
+        int max = Integer.MIN_VALUE;
+        int min = Integer.MAX_VALUE;
+        for (int i = first; i < size; i++) {
+            vasValues.add(levels[i]);
+            sum += levels[i];
+            max = Math.max(max, levels[i]);
+            min = Math.min(min, levels[i]);
+        }
 
-        List<Integer> vasValues = vasHistory.stream().map(Vas::getPainLevel).toList();
-        int current = vasValues.getLast();
-        int previous = vasValues.get(vasValues.size() - 2);
+        int current = levels[size - 1];
+        int previous = levels[size - 2];
         int change = current - previous;
 
         String trend = "STABLE";
         if (change >= 1) trend = "INCREASING";
         else if (change <= -1) trend = "DECREASING";
 
-        double avg = vasValues.stream().mapToInt(Integer::intValue).average().orElse(0);
-        int max = vasValues.stream().mapToInt(Integer::intValue).max().orElse(0);
-        int min = vasValues.stream().mapToInt(Integer::intValue).min().orElse(0);
-
-        int daysBetween = Math.toIntExact(Duration.between(
-                vasHistory.get(vasHistory.size() - 2).getRecordedAt(),
-                vasHistory.getLast().getRecordedAt()
-        ).toDays());
+        int daysBetween = Math.toIntExact(Duration.between(recordedAt[size - 2], recordedAt[size - 1]).toDays());
 
         return PainTrendAnalysisDTO.builder()
                 .patientMrn(mrn)
                 .painTrend(trend)
-                .vasRecordCount(vasHistory.size())
-                .averageVas(avg)
+                .vasRecordCount(vasValues.size())
+                .averageVas((double) sum / vasValues.size())
                 .maxVas(max)
                 .minVas(min)
                 .currentVas(current)
                 .previousVas(previous)
                 .vasChange(change)
+                .lastVasRecordedAt(recordedAt[size - 1])
+                .previousVasRecordedAt(recordedAt[size - 2])
                 .vasHistory(vasValues)
                 .daysBetweenVasRecords(daysBetween) // можно переименовать в daysBetweenVas
                 .build();
@@ -141,26 +158,165 @@ public class PainEscalationServiceImpl implements PainEscalationService {
             return;
         }
 
-        Patient patient = getPatientByMrn(mrn);
-        Recommendation lastRecommendation = patient.getRecommendations().getLast();
+        EscalationThrottle.ThrottleDecision decision =
+                escalationThrottle.tryAcquire(mrn, checkResult.getEscalationPriority());
+        switch (decision.action()) {
+            case SUPPRESS -> {
+                log.info("Escalation suppressed for patient {}: {}", mrn, decision.reason());
+                return;
+            }
+            case MERGE -> {
+                mergeIntoOpenEscalation(decision.escalationId(), checkResult);
+                return;
+            }
+            case ESCALATE -> {
+                // продолжаем: новая эскалация
+            }
+        }
 
-        // создаём запись PainEscalation
         PainEscalation escalation = new PainEscalation();
-        escalation.setPatient(patient);
-        escalation.setLastRecommendation(lastRecommendation);
-        escalation.setCreatedAt(LocalDateTime.now());
-        escalation.setPreviousVas(checkResult.getPreviousVas());
-        escalation.setCurrentVas(checkResult.getCurrentVas());
-        escalation.setVasChange(checkResult.getVasChange());
-        escalation.setPriority(checkResult.getEscalationPriority());
+        boolean deferred = completeThrottleAfterTransaction(mrn, decision, escalation);
+        try {
+            Patient patient = getPatientByMrn(mrn);
+            List<Recommendation> recommendations = patient.getRecommendations();
+            Recommendation lastRecommendation = recommendations == null || recommendations.isEmpty()
+                    ? null
+                    : recommendations.getLast();
+
+            // создаём запись PainEscalation
+            escalation.setPatient(patient);
+            escalation.setLastRecommendation(lastRecommendation);
+            escalation.setCreatedAt(LocalDateTime.now());
+            escalation.setPreviousVas(checkResult.getPreviousVas());
+            escalation.setCurrentVas(checkResult.getCurrentVas());
+            escalation.setVasChange(checkResult.getVasChange());
+            escalation.setPriority(checkResult.getEscalationPriority());
+            escalation.setStatus(EscalationStatus.PENDING);
+
+            painEscalationRepository.save(escalation);
+
+            // уведомляем анестезиолога
+            notificationService.sendEscalationNotification(escalation);
+        } catch (RuntimeException e) {
+            if (!deferred) {
+                escalationThrottle.release(mrn, decision);
+            }
+            throw e;
+        }
+        if (!deferred) {
+            escalationThrottle.opened(mrn, escalation.getId(), escalation.getPriority(), escalation.getCreatedAt());
+        }
+
+        log.info("Pain escalation recorded and notification sent for patient {}", mrn);
+    }
 
+    /*
+     * Эскалация становится открытой в EscalationThrottle только после коммита; при откате
+     * зарезервированное место в окне освобождается. Без транзакции - false, вызывающий делает это сам
+     */
+    private boolean completeThrottleAfterTransaction(String mrn, EscalationThrottle.ThrottleDecision decision,
+                                                     PainEscalation escalation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                // Без ID - эскалация не сохранена, хотя исключение перехвачено и транзакция закоммичена
+                if (status == STATUS_COMMITTED && escalation.getId() != null) {
+                    escalationThrottle.opened(mrn, escalation.getId(), escalation.getPriority(), escalation.getCreatedAt());
+                } else {
+                    escalationThrottle.release(mrn, decision);
+                }
+            }
+        });
+        return true;
+    }
+
+    // ------------------------------------------------------------
+    // Решение анестезиолога закрывает незакрытые эскалации пациента
+    // ------------------------------------------------------------
+    @Override
+    @Transactional
+    public void resolveOpenEscalations(Long patientId, String mrn, EscalationStatus status, String resolvedBy) {
+        LocalDateTime now = LocalDateTime.now();
+        List<PainEscalation> open = painEscalationRepository.findByPatientIdAndStatusIn(patientId, OPEN_STATUSES);
+        for (PainEscalation escalation : open) {
+            escalation.setStatus(status);
+            escalation.setResolvedAt(now);
+            escalation.setResolvedBy(resolvedBy);
+            if (escalation.getCreatedAt() != null) {
+                escalation.setResolutionSeconds(Duration.between(escalation.getCreatedAt(), now).toSeconds());
+            }
+        }
+        painEscalationRepository.saveAll(open);
+        escalationThrottle.resolved(mrn);
+        log.info("{} open pain escalation(s) of patient {} marked {}", open.size(), mrn, status);
+    }
 
-        painEscalationRepository.save(escalation);
+    // ------------------------------------------------------------
+    // Дашборд эскалаций: список активных и агрегаты считаются в БД по индексам
+    // ------------------------------------------------------------
+    @Override
+    @Transactional(readOnly = true)
+    public List<EscalationInfoDTO> getActiveEscalations(int page, int size) {
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+        return painEscalationRepository.findActive(OPEN_STATUSES, pageRequest).stream()
+                .map(view -> EscalationInfoDTO.builder()
+                        .escalationId(view.getId())
+                        .patientMrn(view.getPatientMrn())
+                        .patientName(view.getFirstName() + " " + view.getLastName())
+                        .priority(view.getPriority() != null ? view.getPriority().name() : null)
+                        .status(view.getStatus().name())
+                        .previousVas(view.getPreviousVas())
+                        .currentVas(view.getCurrentVas())
+                        .vasChange(view.getVasChange())
+                        .createdAt(view.getCreatedAt())
+                        .build())
+                .toList();
+    }
 
-        // уведомляем анестезиолога
-        notificationService.sendEscalationNotification(escalation);
+    @Override
+    @Transactional(readOnly = true)
+    public PainEscalationStatisticsDTO getEscalationStatistics(int hours) {
+        LocalDateTime from = LocalDateTime.now().minusHours(hours);
+
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        long total = 0;
+        for (PainEscalationRepository.StatusCount count : painEscalationRepository.countByStatusSince(from)) {
+            byStatus.put(count.getStatus() != null ? count.getStatus().name() : "UNKNOWN", count.getTotal());
+            total += count.getTotal();
+        }
+        Map<String, Long> byPriority = new LinkedHashMap<>();
+        for (PainEscalationRepository.PriorityCount count : painEscalationRepository.countByPrioritySince(from)) {
+            byPriority.put(count.getPriority() != null ? count.getPriority().name() : "UNKNOWN", count.getTotal());
+        }
+        Double medianSeconds = painEscalationRepository.findMedianResolutionSecondsSince(from);
+
+        return PainEscalationStatisticsDTO.builder()
+                .from(from)
+                .totalEscalations(total)
+                .escalationsByStatus(byStatus)
+                .escalationsByPriority(byPriority)
+                .activeEscalations(painEscalationRepository.countByStatusIn(OPEN_STATUSES))
+                .medianResolutionMinutes(medianSeconds != null ? medianSeconds / 60 : null)
+                .build();
+    }
 
-        log.info("Pain escalation recorded and notification sent for patient {}", mrn);
+    // ------------------------------------------------------------
+    // Лимит эскалаций исчерпан, но приоритет вырос - обновляем открытую эскалацию и уведомляем повторно
+    // ------------------------------------------------------------
+    private void mergeIntoOpenEscalation(Long escalationId, PainEscalationCheckResultDTO checkResult) {
+        painEscalationRepository.findById(escalationId).ifPresent(escalation -> {
+            escalation.setCurrentVas(checkResult.getCurrentVas());
+            escalation.setVasChange(checkResult.getCurrentVas() - escalation.getPreviousVas());
+            escalation.setPriority(checkResult.getEscalationPriority());
+            painEscalationRepository.save(escalation);
+
+            notificationService.sendEscalationNotification(escalation);
+            log.info("Pain escalation {} updated to {} for patient {}",
+                    escalationId, escalation.getPriority(), checkResult.getPatientMrn());
+        });
     }
 
     // ------------------------------------------------------------
@@ -170,52 +326,58 @@ public class PainEscalationServiceImpl implements PainEscalationService {
     // ------------------------------------------------------------
     @Transactional(readOnly = true)
     protected PainEscalationCheckResultDTO checkPainEscalation(String mrn) {
-        Patient patient = getPatientByMrn(mrn);
-
-        List<Vas> vasHistory = patient.getVas();
-        if (vasHistory == null || vasHistory.size() < 2) {
+        VasWindowCache.Readings readings = getReadings(mrn);
+        int size = readings.size();
+        if (size < 2) {
             return buildNoEscalationResult(mrn); // возвращаем пустой результат
         }
 
-        List<Vas> sorted = vasHistory.stream()
-                .sorted(Comparator.comparing(Vas::getRecordedAt).reversed())
-                .toList();
-
-        Vas currentVas = sorted.get(0);
-        Vas previousVas = sorted.get(1);
+        int currentVas = readings.painLevels()[size - 1];
+        int previousVas = readings.painLevels()[size - 2];
 
-        int diff = currentVas.getPainLevel() - previousVas.getPainLevel();
+        int diff = currentVas - previousVas;
         boolean escalationRequired = diff >= config.getMinVasIncrease();  // показатель разницы от 2 и более - эскалация требуется
 
         EscalationPriority priority =
-                currentVas.getPainLevel() >= config.getCriticalVasLevel() ? EscalationPriority.CRITICAL :
-                        currentVas.getPainLevel() >= config.getHighVasLevel() ? EscalationPriority.HIGH :
+                currentVas >= config.getCriticalVasLevel() ? EscalationPriority.CRITICAL :
+                        currentVas >= config.getHighVasLevel() ? EscalationPriority.HIGH :
                                 escalationRequired ? EscalationPriority.MEDIUM : EscalationPriority.LOW;   // определяем критичность новой жалобы
 
         String reason = escalationRequired
                 ? String.format("Pain increased by %d points (%d → %d)", diff,
-                previousVas.getPainLevel(), currentVas.getPainLevel())
+                previousVas, currentVas)
                 : "No significant pain increase";
 
         String recommendations = escalationRequired
                 ? "Notify anesthesiologist. Review treatment if escalation persists."
                 : "Continue standard observation.";
 
-        PainTrendAnalysisDTO trend = analyzePainTrend(mrn);
+        PainTrendAnalysisDTO trend = analyzePainTrend(mrn, readings);
 
         return PainEscalationCheckResultDTO.builder()
                 .patientMrn(mrn)
                 .escalationRequired(escalationRequired)
                 .escalationReason(reason)
                 .escalationPriority(priority)
-                .currentVas(currentVas.getPainLevel())
-                .previousVas(previousVas.getPainLevel())
+                .currentVas(currentVas)
+                .previousVas(previousVas)
                 .vasChange(diff)
                 .recommendations(recommendations)
                 .painTrendAnalysisDTO(trend)
                 .build();
     }
 
+    // ------------------------------------------------------------
+    //  Окно последних записей; пустое окно - проверяем, что пациент существует
+    // ------------------------------------------------------------
+    private VasWindowCache.Readings getReadings(String mrn) {
+        VasWindowCache.Readings readings = vasWindowCache.getReadings(mrn);
+        if (readings.size() == 0 && !patientRepository.existsByMrn(mrn)) {
+            throw new NotFoundException("Patient not found: " + mrn);
+        }
+        return readings;
+    }
+
     // ------------------------------------------------------------
     //  Если нет данных — возвращаем “пустой” результат
     // ------------------------------------------------------------
@@ -0,0 +1,37 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pain_helper_back.enums.EscalationStatus;
+import pain_helper_back.pain_escalation_tracking.repository.PainEscalationRepository;
+import pain_helper_back.startup.StartupInitializer;
+
+/*
+ * Заполнение статуса эскалаций, созданных до появления колонки status (StartupInitializer).
+ * ddl-auto=update добавляет колонку с default 'PENDING', но в БД, где колонка уже была добавлена
+ * без default, такие строки остались с NULL и не попадали в активные эскалации и счетчики
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PainEscalationStatusBackfill implements StartupInitializer {
+    public static final String NAME = "painEscalationStatusBackfill";
+
+    private final PainEscalationRepository painEscalationRepository;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    @Transactional
+    public void initialize() {
+        int updated = painEscalationRepository.fillMissingStatus(EscalationStatus.PENDING);
+        if (updated > 0) {
+            log.info("Pain escalations without status marked PENDING: {}", updated);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.common.patients.repository.VasRepository;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Окна последних записей VAS пациентов для проверки эскалации и анализа тренда боли.
+ *
+ * АЛГОРИТМ:
+ * - На пациента - кольцевой буфер последних PainEscalationConfig.getWindowCapacity() записей,
+ *   упорядоченных по времени записи (recordedAt, затем ID)
+ * - Окно прогревается лениво: при первом обращении - один запрос последних записей по индексу
+ *   (patient_id, recorded_at), только ID / уровень / время, без загрузки Patient и всей истории
+ * - Каждая сохраненная запись (VasRecordedEvent после коммита) добавляется в уже прогретое окно;
+ *   для пациента без окна ничего не делается - запись попадет в окно при прогреве
+ * - Изменение или удаление записи сбрасывает окно пациента (invalidateAfterCommit)
+ * - Число окон ограничено (windowCacheMaxPatients), давно не использованные вытесняются
+ */
+@Component
+@Slf4j
+public class VasWindowCache {
+    private final VasRepository vasRepository;
+    private final int capacity;
+    private final Map<String, VasWindow> windows;
+
+    // Метрики
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VasWindowCache(VasRepository vasRepository, PainEscalationConfig config) {
+        this.vasRepository = vasRepository;
+        this.capacity = config.getWindowCapacity();
+        int maxPatients = config.getWindowCacheMaxPatients();
+        this.windows = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VasWindow> eldest) {
+                return size() > maxPatients;
+            }
+        });
+    }
+
+    /*
+     * Последние записи пациента по возрастанию времени записи
+     * (не больше емкости окна; в холодном случае - один запрос к БД)
+     */
+    public Readings getReadings(String mrn) {
+        VasWindow window = windows.computeIfAbsent(mrn, key -> new VasWindow(capacity));
+        synchronized (window) {
+            if (window.warm) {
+                hits.increment();
+            } else {
+                misses.increment();
+                List<VasRepository.VasReadingView> recent =
+                        vasRepository.findRecentReadings(mrn, PageRequest.of(0, capacity));
+                for (VasRepository.VasReadingView reading : recent) {
+                    window.add(reading.getId(), reading.getPainLevel(), reading.getRecordedAt());
+                }
+                if (window.size == 0) {
+                    // Записей нет (или пациента нет) - пустое окно не держим
+                    windows.remove(mrn, window);
+                    return window.snapshot();
+                }
+                window.warm = true;
+                log.debug("VAS window warmed for patient {}: {} readings", mrn, window.size);
+            }
+            return window.snapshot();
+        }
+    }
+
+    /*
+     * Добавление сохраненной записи в окно пациента (если окно уже есть в памяти)
+     */
+    public void record(String mrn, Long vasId, Integer painLevel, LocalDateTime recordedAt) {
+        VasWindow window = windows.get(mrn);
+        if (window != null) {
+            synchronized (window) {
+                window.add(vasId, painLevel, recordedAt);
+            }
+        }
+    }
+
+    /*
+     * Сброс окна пациента после изменения или удаления записи VAS
+     */
+    public void invalidateAfterCommit(String mrn) {
+        windows.remove(mrn);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    windows.remove(mrn);
+                }
+            });
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /*
+     * Записи окна по возрастанию времени записи
+     */
+    public record Readings(int[] painLevels, LocalDateTime[] recordedAt) {
+        public int size() {
+            return painLevels.length;
+        }
+    }
+
+    /*
+     * Кольцевой буфер записей, упорядоченных по (recordedAt, id). Доступ - под монитором окна.
+     */
+    private static final class VasWindow {
+        private final Long[] ids;
+        private final int[] levels;
+        private final LocalDateTime[] times;
+        private int head;
+        private int size;
+        private boolean warm;
+
+        private VasWindow(int capacity) {
+            this.ids = new Long[capacity];
+            this.levels = new int[capacity];
+            this.times = new LocalDateTime[capacity];
+        }
+
+        private void add(Long id, Integer level, LocalDateTime time) {
+            if (level == null || time == null || contains(id)) {
+                return;
+            }
+            int capacity = ids.length;
+            if (size == capacity) {
+                if (compare(time, id, times[head], ids[head]) < 0) {
+                    return; // Старше всех записей полного окна
+                }
+                head = (head + 1) % capacity;
+                size--;
+            }
+            // Вставка с конца: записи устройств приходят почти упорядоченными
+            int position = size;
+            while (position > 0) {
+                int previous = (head + position - 1) % capacity;
+                if (compare(times[previous], ids[previous], time, id) <= 0) {
+                    break;
+                }
+                int current = (head + position) % capacity;
+                ids[current] = ids[previous];
+                levels[current] = levels[previous];
+                times[current] = times[previous];
+                position--;
+            }
+            int slot = (head + position) % capacity;
+            ids[slot] = id;
+            levels[slot] = level;
+            times[slot] = time;
+            size++;
+        }
+
+        private boolean contains(Long id) {
+            if (id == null) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (id.equals(ids[(head + i) % ids.length])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Readings snapshot() {
+            int[] painLevels = new int[size];
+            LocalDateTime[] recordedAt = new LocalDateTime[size];
+            for (int i = 0; i < size; i++) {
+                int slot = (head + i) % ids.length;
+                painLevels[i] = levels[slot];
+                recordedAt[i] = times[slot];
+            }
+            return new Readings(painLevels, recordedAt);
+        }
+
+        private static int compare(LocalDateTime leftTime, Long leftId, LocalDateTime rightTime, Long rightId) {
+            int byTime = leftTime.compareTo(rightTime);
+            if (byTime != 0 || leftId == null || rightId == null) {
+                return byTime;
+            }
+            return leftId.compareTo(rightId);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package pain_helper_back.patient_locking;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PatientLockTimeoutException extends RuntimeException {
+    public PatientLockTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,162 @@
+package pain_helper_back.patient_locking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pain_helper_back.patient_locking.config.PatientWriteLockConfig;
+import pain_helper_back.patient_locking.dto.PatientWriteLockStatsDTO;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * Сериализация записи по пациенту полосатыми блокировками (striped locks).
+ *
+ * АЛГОРИТМ:
+ * - Фиксированный массив ReentrantLock (степень двойки); полоса пациента - хэш MRN по маске.
+ *   Память не зависит от числа пациентов, блокировки не создаются и не удаляются
+ * - Записи одного пациента выполняются по очереди (справедливая блокировка - в порядке поступления),
+ *   разные пациенты на разных полосах - параллельно
+ * - Блокировка держится до коммита: берется снаружи транзакции (аспект с наивысшим приоритетом
+ *   или inNewTransaction()) и отпускается после ее завершения
+ * - Конфликт @Version (запись в обход блокировки) - операция повторяется целиком,
+ *   если транзакция открыта здесь, а не во внешнем вызове
+ * - Ожидание ограничено timeoutMs: PatientLockTimeoutException вместо зависания
+ *   (в том числе при блокировке двух пациентов в разном порядке)
+ *
+ * Повторный вход тем же потоком (вложенные вызовы для одного пациента) не блокируется.
+ */
+@Component
+@Slf4j
+public class PatientWriteLocks {
+    private final PatientWriteLockConfig config;
+    private final TransactionTemplate newTransaction;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    // Метрики
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder optimisticRetries = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public PatientWriteLocks(PatientWriteLockConfig config, PlatformTransactionManager transactionManager) {
+        this.config = config;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        int size = Integer.highestOneBit(Math.max(2, config.getStripes()) - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock(config.isFair());
+        }
+        this.mask = size - 1;
+    }
+
+    /*
+     * Работа над пациентом под его блокировкой (транзакцию открывает сама работа)
+     *
+     * @param mrn MRN пациента
+     * @param work Работа (обычно proceed() аспекта)
+     */
+    public <T> T execute(String mrn, Work<T> work) throws Throwable {
+        ReentrantLock lock = stripes[stripeOf(mrn)];
+        acquire(lock, mrn);
+        try {
+            boolean ownsTransaction = !TransactionSynchronizationManager.isActualTransactionActive();
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return work.run();
+                } catch (OptimisticLockingFailureException e) {
+                    if (!ownsTransaction || attempt >= config.getOptimisticRetries()) {
+                        throw e;
+                    }
+                    optimisticRetries.increment();
+                    log.warn("Optimistic lock conflict for patient {}, retrying ({}/{})",
+                            mrn, attempt + 1, config.getOptimisticRetries());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * Работа над пациентом в отдельной транзакции под его блокировкой (фоновые задачи)
+     */
+    public <T> T inNewTransaction(String mrn, Supplier<T> work) {
+        try {
+            return execute(mrn, () -> newTransaction.execute(status -> work.get()));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e); // Supplier не бросает проверяемых исключений
+        }
+    }
+
+    public PatientWriteLockStatsDTO getStats() {
+        int locked = 0;
+        int queued = 0;
+        for (ReentrantLock lock : stripes) {
+            if (lock.isLocked()) {
+                locked++;
+            }
+            queued += lock.getQueueLength();
+        }
+        long waits = contended.sum();
+        return PatientWriteLockStatsDTO.builder()
+                .stripes(stripes.length)
+                .fair(config.isFair())
+                .acquisitions(acquisitions.sum())
+                .contendedAcquisitions(waits)
+                .timeouts(timeouts.sum())
+                .optimisticRetries(optimisticRetries.sum())
+                .averageWaitMs(waits == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / waits)
+                .maxWaitMs(maxWaitNanos.get() / 1_000_000.0)
+                .lockedStripes(locked)
+                .queuedThreads(queued)
+                .build();
+    }
+
+    int stripeOf(String mrn) {
+        int h = mrn.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void acquire(ReentrantLock lock, String mrn) {
+        try {
+            // tryLock с нулевым ожиданием соблюдает очередь справедливой блокировки (в отличие от tryLock())
+            if (!lock.tryLock(0, TimeUnit.NANOSECONDS)) {
+                contended.increment();
+                long start = System.nanoTime();
+                boolean acquired = lock.tryLock(config.getTimeoutMs(), TimeUnit.MILLISECONDS);
+                long waited = System.nanoTime() - start;
+                waitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                if (!acquired) {
+                    timeouts.increment();
+                    throw new PatientLockTimeoutException("Patient " + mrn + " is busy - write lock not acquired in "
+                            + config.getTimeoutMs() + " ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PatientLockTimeoutException("Interrupted while waiting for write lock of patient " + mrn);
+        }
+        acquisitions.increment();
+    }
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T run() throws Throwable;
+    }
+}
@@ -0,0 +1,34 @@
+package pain_helper_back.patient_locking;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * Метод изменяет данные одного пациента: вызовы для одного пациента выполняются по очереди,
+ * для разных пациентов - параллельно (PatientWriteLockAspect).
+ *
+ * Блокировка берется до открытия транзакции метода и отпускается после коммита.
+ * Пациент задается SpEL выражением по параметрам метода - MRN или ID рекомендации.
+ *
+ * ПРИМЕР:
+ * @SerializedByPatient(mrn = "#mrn")
+ * @SerializedByPatient(mrn = "#dto.patientMrn")
+ * @SerializedByPatient(recommendationId = "#recommendationId")
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SerializedByPatient {
+    /*
+     * SpEL выражение MRN пациента
+     */
+    String mrn() default "";
+
+    /*
+     * SpEL выражение ID рекомендации (MRN пациента читается из БД)
+     */
+    String recommendationId() default "";
+}
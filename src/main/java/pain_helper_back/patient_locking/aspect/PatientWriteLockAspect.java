@@ -0,0 +1,70 @@
+package pain_helper_back.patient_locking.aspect;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import pain_helper_back.common.patients.repository.RecommendationRepository;
+import pain_helper_back.patient_locking.PatientWriteLocks;
+import pain_helper_back.patient_locking.SerializedByPatient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * AOP Aspect для методов @SerializedByPatient: вызов выполняется под блокировкой пациента.
+ *
+ * Наивысший приоритет - аспект оборачивает TransactionInterceptor, поэтому транзакция метода
+ * открывается после захвата блокировки и коммитится до ее освобождения.
+ * (+1: первым должен идти ExposeInvocationInterceptor, иначе не связывается параметр аннотации)
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class PatientWriteLockAspect {
+    private final PatientWriteLocks patientWriteLocks;
+    private final RecommendationRepository recommendationRepository;
+
+    private final SpelExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer parameterNames = new DefaultParameterNameDiscoverer();
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Around("@annotation(serializedByPatient)")
+    public Object serialize(ProceedingJoinPoint joinPoint, SerializedByPatient serializedByPatient) throws Throwable {
+        String mrn = resolveMrn(joinPoint, serializedByPatient);
+        if (mrn == null) {
+            // Пациент не определен (нет MRN / рекомендации) - метод сам сообщит об ошибке
+            return joinPoint.proceed();
+        }
+        return patientWriteLocks.execute(mrn, joinPoint::proceed);
+    }
+
+    private String resolveMrn(ProceedingJoinPoint joinPoint, SerializedByPatient serializedByPatient) {
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+                null, ((MethodSignature) joinPoint.getSignature()).getMethod(), joinPoint.getArgs(), parameterNames);
+        if (!serializedByPatient.mrn().isEmpty()) {
+            return evaluate(serializedByPatient.mrn(), context, String.class);
+        }
+        Long recommendationId = evaluate(serializedByPatient.recommendationId(), context, Long.class);
+        return recommendationId == null
+                ? null
+                : recommendationRepository.findPatientMrnById(recommendationId).orElse(null);
+    }
+
+    private <T> T evaluate(String expression, MethodBasedEvaluationContext context, Class<T> type) {
+        if (expression.isEmpty()) {
+            return null;
+        }
+        return expressions.computeIfAbsent(expression, parser::parseExpression).getValue(context, type);
+    }
+}
@@ -0,0 +1,34 @@
+package pain_helper_back.patient_locking.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация сериализации записи по пациенту (PatientWriteLocks)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "patient.write-lock")
+@Getter
+@Setter
+public class PatientWriteLockConfig {
+    /**
+     * Число полос блокировок (округляется вверх до степени двойки, по умолчанию 1024).
+     * Разные пациенты на одной полосе ждут друг друга - полос должно быть заметно больше,
+     * чем одновременно записывающих потоков.
+     */
+    private int stripes = 1024;
+    /**
+     * Справедливые блокировки: записи одного пациента выполняются в порядке поступления (по умолчанию true)
+     */
+    private boolean fair = true;
+    /**
+     * Максимальное ожидание блокировки пациента в миллисекундах (по умолчанию 10000)
+     */
+    private long timeoutMs = 10_000;
+    /**
+     * Число повторов операции при конфликте оптимистической блокировки @Version (по умолчанию 2)
+     */
+    private int optimisticRetries = 2;
+}
@@ -0,0 +1,27 @@
+package pain_helper_back.patient_locking.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pain_helper_back.patient_locking.PatientWriteLocks;
+import pain_helper_back.patient_locking.dto.PatientWriteLockStatsDTO;
+
+/**
+ * REST API для мониторинга блокировок записи по пациентам
+ */
+@RestController
+@RequestMapping("/api/admin/patient-locks")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class PatientWriteLockController {
+    private final PatientWriteLocks patientWriteLocks;
+
+    /**
+     * GET /api/admin/patient-locks/stats
+     * Захваты, ожидания, таймауты и повторы после конфликтов @Version
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<PatientWriteLockStatsDTO> getStats() {
+        return ResponseEntity.ok(patientWriteLocks.getStats());
+    }
+}
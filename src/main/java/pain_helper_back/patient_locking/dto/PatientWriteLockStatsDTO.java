@@ -0,0 +1,26 @@
+package pain_helper_back.patient_locking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/*
+ * Статистика блокировок записи по пациентам
+ */
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatientWriteLockStatsDTO {
+    private int stripes;
+    private boolean fair;
+    private long acquisitions;
+    private long contendedAcquisitions;   // Полоса была занята - поток ждал
+    private long timeouts;
+    private long optimisticRetries;       // Повторы после конфликта @Version
+    private double averageWaitMs;         // Среднее ожидание по ожидавшим захватам
+    private double maxWaitMs;
+    private int lockedStripes;            // Сейчас занято полос
+    private int queuedThreads;            // Сейчас ждут блокировку
+}
@@ -10,13 +10,25 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 import pain_helper_back.performance_SLA_monitoring.config.PerformanceSlaConfig;
 import pain_helper_back.performance_SLA_monitoring.entity.PerformanceMetric;
-import pain_helper_back.performance_SLA_monitoring.service.PerformanceMonitoringService;
+import pain_helper_back.performance_SLA_monitoring.metrics.OperationHistograms;
+import pain_helper_back.performance_SLA_monitoring.metrics.OperationHistograms.OperationRecorder;
+import pain_helper_back.performance_SLA_monitoring.metrics.SlaViolationWriter;
 
+import java.lang.reflect.Method;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * AOP Aspect для автоматического мониторинга производительности.
  * Перехватывает выполнение методов и записывает метрики.
+ *
+ * Каждый вызов попадает в HDR гистограмму операции (OperationHistograms) без блокировок и без MongoDB;
+ * документ на вызов строится только при нарушении SLA и пишется в фоне (SlaViolationWriter).
+ * Имя операции, SLA порог и гистограмма определяются один раз на метод целевого класса и кэшируются:
+ * на каждом вызове - только поиск по (класс, Method), без построения строк.
  */
 @Aspect
 @Component
@@ -24,15 +36,18 @@ import java.time.LocalDateTime;
 @Slf4j
 public class PerformanceMonitoringAspect {
 
-    private final PerformanceMonitoringService monitoringService;
+    private final OperationHistograms operationHistograms;
+    private final SlaViolationWriter slaViolationWriter;
     private final PerformanceSlaConfig slaConfig;
 
+    private final Map<OperationKey, OperationRecorder> operations = new ConcurrentHashMap<>();
+
     /*
      * Мониторинг всех публичных методов в сервисах
      */
     @Around("execution(* pain_helper_back..service..*ServiceImpl*(..))")
     public Object monitorServiceMethods(ProceedingJoinPoint joinPoint) throws Throwable {
-        return monitorExecution(joinPoint, extractOperationName(joinPoint));
+        return monitorExecution(joinPoint, resolveOperation(joinPoint));
     }
 
     /*
@@ -40,79 +55,87 @@ public class PerformanceMonitoringAspect {
      */
     @Around("execution(* pain_helper_back..controller..*Controller.*(..))")
     public Object monitorControllerMethods(ProceedingJoinPoint joinPoint) throws Throwable {
-        return monitorExecution(joinPoint, extractOperationName(joinPoint));
+        return monitorExecution(joinPoint, resolveOperation(joinPoint));
 
     }
 
     /*
      * Основной метод мониторинга
      */
-    private Object monitorExecution(ProceedingJoinPoint joinPoint, String operationName) throws Throwable {
-        long startTime = System.currentTimeMillis();
-        LocalDateTime timestamp = LocalDateTime.now();
-        String status = "SUCCESS";
+    private Object monitorExecution(ProceedingJoinPoint joinPoint, OperationRecorder operation) throws Throwable {
+        long startNanos = System.nanoTime();
         String errorMessage = null;
-        Object result = null;
+        boolean failed = false;
 
         try {
-            result = joinPoint.proceed();
-            return result;
+            return joinPoint.proceed();
         } catch (Throwable throwable) {
-            status = "ERROR";
+            failed = true;
             errorMessage = throwable.getMessage();
             throw throwable;
         } finally {
-            long executionTime = System.currentTimeMillis() - startTime;
-
-            // Записываем метрику асинхронно
-            recordMetricAsync(joinPoint, operationName, executionTime, timestamp, status, errorMessage);
+            long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+            try {
+                if (operation.record(durationMicros, failed)) {
+                    recordViolation(joinPoint, operation, TimeUnit.MICROSECONDS.toMillis(durationMicros),
+                            failed ? "ERROR" : "SUCCESS", errorMessage);
+                }
+            } catch (Exception e) {
+                log.error("Failed to record performance metric: {}", e.getMessage());
+            }
         }
     }
 
     /*
-     * Асинхронная запись метрики
+     * Нарушение SLA: отдельный документ с контекстом вызова
      */
-    private void recordMetricAsync(ProceedingJoinPoint joinPoint, String operationName,
-                                   long executionTime, LocalDateTime timestamp,
-                                   String status, String errorMessage) {
-        try {
-            MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-            String methodName = signature.getDeclaringTypeName() + "." + signature.getName();
-            Long slaThreshold = slaConfig.getThreshold(operationName);
-            boolean slaViolated = slaConfig.isSlaViolated(operationName, executionTime);
-            double slaPercentage = slaConfig.getSlaPercentage(operationName, executionTime);
-
-            // Извлекаем параметры (опционально)
-            String parameters = extractParameters(joinPoint);
-            String userId = extractUserId(joinPoint);
-            String userRole = extractUserRole(joinPoint);
-            String patientMrn = extractPatientMrn(joinPoint);
-
-            PerformanceMetric metric = PerformanceMetric.builder()
-                    .operationName(operationName)
-                    .executionTimeMs(executionTime)
-                    .slaThresholdMs(slaThreshold)
-                    .slaViolated(slaViolated)
-                    .slaPercentage(slaPercentage)
-                    .methodName(methodName)
-                    .userId(userId)
-                    .userRole(userRole)
-                    .patientMrn(patientMrn)
-                    .status(status)
-                    .errorMessage(errorMessage)
-                    .timestamp(timestamp)
-                    .metadata(parameters)
-                    .build();
-            monitoringService.recordMetric(metric);
-        } catch (Exception e) {
-            log.error("Failed to record performance metric: {}", e.getMessage());
+    private void recordViolation(ProceedingJoinPoint joinPoint, OperationRecorder operation,
+                                 long executionTime, String status, String errorMessage) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        String methodName = signature.getDeclaringTypeName() + "." + signature.getName();
+        String operationName = operation.getOperationName();
+        long slaThreshold = operation.getSlaThresholdMs();
+        double slaPercentage = slaConfig.getSlaPercentage(operationName, executionTime);
+
+        PerformanceMetric metric = PerformanceMetric.builder()
+                .operationName(operationName)
+                .executionTimeMs(executionTime)
+                .slaThresholdMs(slaThreshold)
+                .slaViolated(true)
+                .slaPercentage(slaPercentage)
+                .methodName(methodName)
+                .userId(extractUserId(joinPoint))
+                .userRole(extractUserRole(joinPoint))
+                .patientMrn(extractPatientMrn(joinPoint))
+                .status(status)
+                .errorMessage(errorMessage)
+                .timestamp(LocalDateTime.now().minus(executionTime, ChronoUnit.MILLIS))
+                .metadata(extractParameters(joinPoint))
+                .build();
+        slaViolationWriter.append(metric);
+
+        log.warn("SLA VIOLATION: {} took {}ms (threshold: {}ms, {}% of SLA)",
+                operationName, executionTime, slaThreshold, String.format("%.1f", slaPercentage));
+    }
+
+    /*
+     * Операция вызова из кэша; при первом вызове метода - определение имени по правилам ниже
+     */
+    OperationRecorder resolveOperation(ProceedingJoinPoint joinPoint) {
+        OperationKey key = new OperationKey(joinPoint.getTarget().getClass(),
+                ((MethodSignature) joinPoint.getSignature()).getMethod());
+        OperationRecorder operation = operations.get(key);
+        if (operation == null) {
+            operation = operations.computeIfAbsent(key,
+                    k -> operationHistograms.recorder(extractOperationName(joinPoint)));
         }
+        return operation;
     }
 
     /*
      * Извлечь название операции из метода
      */
-    private String extractOperationName(ProceedingJoinPoint joinPoint) {
+    String extractOperationName(ProceedingJoinPoint joinPoint) {
         String methodName = joinPoint.getSignature().getName();
         String className = joinPoint.getTarget().getClass().getSimpleName();
 
@@ -226,4 +249,10 @@ public class PerformanceMonitoringAspect {
         }
         return null;
     }
+
+    /*
+     * Метод целевого класса: имя операции по умолчанию зависит от класса бина, а не от объявившего метод
+     */
+    private record OperationKey(Class<?> targetClass, Method method) {
+    }
 }
@@ -0,0 +1,50 @@
+package pain_helper_back.performance_SLA_monitoring.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import pain_helper_back.analytics.writer.BatchingWriterSettings;
+import pain_helper_back.enums.AnalyticsOverflowPolicy;
+
+/**
+ * Конфигурация гистограмм задержек операций (OperationHistograms) и записи нарушений SLA (SlaViolationWriter)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "performance.metrics")
+@Getter
+@Setter
+public class PerformanceMetricsConfig implements BatchingWriterSettings {
+    /**
+     * Интервал снимка гистограмм в MongoDB в миллисекундах (по умолчанию 60000)
+     */
+    private long snapshotIntervalMs = 60_000;
+    /**
+     * Сколько часов завершенных интервалов хранить в памяти; более ранние периоды читаются из MongoDB (по умолчанию 24)
+     */
+    private int historyHours = 24;
+    /**
+     * Точность гистограмм - значащие цифры, 2 = погрешность 1% (по умолчанию 2)
+     */
+    private int significantDigits = 2;
+    /**
+     * Емкость очереди записи нарушений SLA (по умолчанию 1000)
+     */
+    private int bufferCapacity = 1000;
+    /**
+     * Размер пакета записи нарушений SLA (по умолчанию 100)
+     */
+    private int batchSize = 100;
+    /**
+     * Максимальное время ожидания неполного пакета нарушений в миллисекундах (по умолчанию 1000)
+     */
+    private long flushIntervalMs = 1000;
+    /**
+     * Поведение при заполненной очереди нарушений (по умолчанию DROP_NEWEST - запрос никогда не ждет)
+     */
+    private AnalyticsOverflowPolicy overflowPolicy = AnalyticsOverflowPolicy.DROP_NEWEST;
+    /**
+     * Максимальное ожидание места в очереди для политики BLOCK в миллисекундах (по умолчанию 0)
+     */
+    private long blockTimeoutMs = 0;
+}
@@ -0,0 +1,63 @@
+package pain_helper_back.performance_SLA_monitoring.entity;
+
+
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Агрегат задержек одной операции за интервал снимка.
+ * Один документ на операцию за интервал вместо документа на каждый вызов;
+ * гистограмма хранится целиком, поэтому перцентили любого периода считаются слиянием интервалов.
+ */
+@Document(collection = "performance_snapshots")
+@CompoundIndex(name = "operation_interval_idx", def = "{'operationName': 1, 'intervalStart': 1}")
+@Getter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PerformanceSnapshot {
+
+    @Id
+    private String id;
+
+    /**
+     * Название операции (например, "recommendation.generate")
+     */
+    private String operationName;
+    /**
+     * Начало и конец интервала
+     */
+    @Indexed
+    private LocalDateTime intervalStart;
+    private LocalDateTime intervalEnd;
+    /**
+     * Число вызовов, ошибок и нарушений SLA за интервал
+     */
+    private Long count;
+    private Long errorCount;
+    private Long slaViolationCount;
+    /**
+     * SLA порог операции
+     */
+    private Long slaThresholdMs;
+    /**
+     * Сводка задержек (для чтения без декодирования гистограммы)
+     */
+    private Double meanMs;
+    private Double p50Ms;
+    private Double p95Ms;
+    private Double p99Ms;
+    private Double maxMs;
+    /**
+     * HDR гистограмма задержек в микросекундах (сжатая, Base64)
+     */
+    private String histogram;
+}
@@ -0,0 +1,293 @@
+package pain_helper_back.performance_SLA_monitoring.metrics;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.PackedHistogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import pain_helper_back.performance_SLA_monitoring.config.PerformanceMetricsConfig;
+import pain_helper_back.performance_SLA_monitoring.config.PerformanceSlaConfig;
+import pain_helper_back.performance_SLA_monitoring.entity.PerformanceSnapshot;
+import pain_helper_back.performance_SLA_monitoring.repository.PerformanceSnapshotRepository;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * HDR гистограммы задержек по операциям.
+ *
+ * ПОТОК ДАННЫХ:
+ * 1. record() в потоке запроса: запись в Recorder операции (wait-free) и счетчики ошибок/нарушений SLA
+ *    на LongAdder - без блокировок и без обращения к MongoDB
+ * 2. Раз в snapshotIntervalMs snapshot() закрывает интервал: по каждой операции с вызовами -
+ *    одна гистограмма интервала; она остается в памяти на historyHours и пишется в performance_snapshots
+ *    одним документом на операцию
+ * 3. intervals(start, end) для статистики: завершенные интервалы из памяти + текущий незавершенный;
+ *    часть периода старше истории в памяти (в т.ч. до перезапуска) читается из MongoDB
+ *
+ * Значения в микросекундах; точность significantDigits (2 = 1%), диапазон расширяется автоматически.
+ * Recorder операции - обычная (не упакованная) конкурентная гистограмма: упакованный Recorder зацикливается
+ * при одновременной записи нескольких потоков в одну операцию. Упакованные (память пропорциональна числу
+ * занятых диапазонов) - только гистограммы интервалов, которые пишутся под блокировкой.
+ */
+@Component
+@Slf4j
+public class OperationHistograms {
+    private final PerformanceMetricsConfig config;
+    private final PerformanceSlaConfig slaConfig;
+    private final PerformanceSnapshotRepository snapshotRepository;
+
+    private final ConcurrentHashMap<String, OperationRecorder> operations = new ConcurrentHashMap<>();
+
+    // Под блокировкой this: закрытие интервала и чтение не пересекаются
+    private final Deque<OperationInterval> history = new ArrayDeque<>(); // Старые интервалы первыми
+    private LocalDateTime intervalStart = LocalDateTime.now();
+    private LocalDateTime memoryHorizon = intervalStart;                 // Раньше этого момента - только MongoDB
+
+    public OperationHistograms(PerformanceMetricsConfig config, PerformanceSlaConfig slaConfig,
+                               PerformanceSnapshotRepository snapshotRepository) {
+        this.config = config;
+        this.slaConfig = slaConfig;
+        this.snapshotRepository = snapshotRepository;
+    }
+
+    /*
+     * Запись вызова операции
+     *
+     * @return true если нарушен SLA порог операции
+     */
+    public boolean record(String operationName, long durationMicros, boolean error) {
+        return recorder(operationName).record(durationMicros, error);
+    }
+
+    /*
+     * Гистограмма операции для записи без поиска по имени (SLA порог определяется при создании)
+     */
+    public OperationRecorder recorder(String operationName) {
+        OperationRecorder recorder = operations.get(operationName);
+        if (recorder == null) {
+            recorder = operations.computeIfAbsent(operationName, this::newRecorder);
+        }
+        return recorder;
+    }
+
+    /*
+     * Интервалы всех операций, пересекающиеся с периодом [start, end)
+     */
+    public List<OperationInterval> intervals(LocalDateTime start, LocalDateTime end) {
+        List<OperationInterval> result = new ArrayList<>();
+        LocalDateTime horizon;
+        synchronized (this) {
+            horizon = memoryHorizon;
+            for (OperationInterval interval : history) {
+                if (interval.overlaps(start, end)) {
+                    result.add(interval);
+                }
+            }
+            LocalDateTime now = LocalDateTime.now();
+            if (now.isAfter(start) && intervalStart.isBefore(end)) {
+                for (OperationRecorder recorder : operations.values()) {
+                    OperationInterval current = recorder.peekInterval(intervalStart, now);
+                    if (current != null) {
+                        result.add(current);
+                    }
+                }
+            }
+        }
+        if (start.isBefore(horizon)) {
+            result.addAll(loadPersisted(start, end.isBefore(horizon) ? end : horizon));
+        }
+        return result;
+    }
+
+    /*
+     * Пустая гистограмма для слияния интервалов
+     */
+    public Histogram newHistogram() {
+        return new PackedHistogram(config.getSignificantDigits());
+    }
+
+    /*
+     * Закрытие текущего интервала: снимок в историю и в MongoDB
+     */
+    @Scheduled(fixedRateString = "${performance.metrics.snapshot-interval-ms:60000}",
+            initialDelayString = "${performance.metrics.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        List<OperationInterval> closed = new ArrayList<>();
+        synchronized (this) {
+            LocalDateTime end = LocalDateTime.now();
+            for (OperationRecorder recorder : operations.values()) {
+                OperationInterval interval = recorder.closeInterval(intervalStart, end);
+                if (interval != null) {
+                    closed.add(interval);
+                }
+            }
+            history.addAll(closed);
+            intervalStart = end;
+            trimHistory(end.minusHours(config.getHistoryHours()));
+        }
+        persist(closed);
+    }
+
+    /*
+     * Незаписанный интервал не теряется при остановке
+     */
+    @PreDestroy
+    public void flush() {
+        snapshot();
+    }
+
+    private OperationRecorder newRecorder(String operationName) {
+        return new OperationRecorder(operationName, slaConfig.getThreshold(operationName), config.getSignificantDigits());
+    }
+
+    private void trimHistory(LocalDateTime cutoff) {
+        while (!history.isEmpty() && history.peekFirst().getIntervalStart().isBefore(cutoff)) {
+            history.pollFirst();
+        }
+        if (cutoff.isAfter(memoryHorizon)) {
+            memoryHorizon = cutoff;
+        }
+    }
+
+    private void persist(List<OperationInterval> intervals) {
+        if (intervals.isEmpty()) {
+            return;
+        }
+        try {
+            snapshotRepository.insert(intervals.stream().map(this::toSnapshot).toList());
+            log.debug("Persisted {} operation latency snapshots", intervals.size());
+        } catch (Exception e) {
+            // Интервалы остаются в памяти на historyHours
+            log.warn("Failed to persist {} operation latency snapshots: {}", intervals.size(), e.getMessage());
+        }
+    }
+
+    private List<OperationInterval> loadPersisted(LocalDateTime start, LocalDateTime end) {
+        try {
+            List<OperationInterval> intervals = new ArrayList<>();
+            // end не позже горизонта: интервалы, начавшиеся после него, уже есть в памяти
+            for (PerformanceSnapshot snapshot : snapshotRepository.findOverlapping(start, end)) {
+                intervals.add(fromSnapshot(snapshot));
+            }
+            return intervals;
+        } catch (Exception e) {
+            log.warn("Failed to load operation latency snapshots from {} to {}: {}", start, end, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private PerformanceSnapshot toSnapshot(OperationInterval interval) {
+        AbstractHistogram histogram = interval.getLatencyMicros();
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return PerformanceSnapshot.builder()
+                .operationName(interval.getOperationName())
+                .intervalStart(interval.getIntervalStart())
+                .intervalEnd(interval.getIntervalEnd())
+                .count(histogram.getTotalCount())
+                .errorCount(interval.getErrorCount())
+                .slaViolationCount(interval.getSlaViolationCount())
+                .slaThresholdMs(interval.getSlaThresholdMs())
+                .meanMs(histogram.getMean() / 1000.0)
+                .p50Ms(histogram.getValueAtPercentile(50) / 1000.0)
+                .p95Ms(histogram.getValueAtPercentile(95) / 1000.0)
+                .p99Ms(histogram.getValueAtPercentile(99) / 1000.0)
+                .maxMs(histogram.getMaxValue() / 1000.0)
+                .histogram(Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)))
+                .build();
+    }
+
+    private OperationInterval fromSnapshot(PerformanceSnapshot snapshot) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode(snapshot.getHistogram()));
+        return new OperationInterval(
+                snapshot.getOperationName(),
+                snapshot.getIntervalStart(),
+                snapshot.getIntervalEnd(),
+                PackedHistogram.decodeFromCompressedByteBuffer(buffer, 0),
+                snapshot.getErrorCount(),
+                snapshot.getSlaViolationCount(),
+                snapshot.getSlaThresholdMs());
+    }
+
+    /*
+     * Гистограмма одной операции. recorder и счетчики пишутся потоками запросов без блокировок,
+     * остальное - только под блокировкой OperationHistograms
+     */
+    public static final class OperationRecorder {
+        @Getter
+        private final String operationName;
+        @Getter
+        private final long slaThresholdMs;
+        private final Recorder recorder;
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder violations = new LongAdder();
+
+        private final Histogram current;      // Текущий интервал, перенесенный из recorder
+        private Histogram recycled;           // Буфер обмена с recorder
+        private long errorsClosed;
+        private long violationsClosed;
+
+        private OperationRecorder(String operationName, long slaThresholdMs, int significantDigits) {
+            this.operationName = operationName;
+            this.slaThresholdMs = slaThresholdMs;
+            this.recorder = new Recorder(significantDigits);
+            this.current = new PackedHistogram(significantDigits);
+        }
+
+        /*
+         * @return true если нарушен SLA порог операции
+         */
+        public boolean record(long durationMicros, boolean error) {
+            recorder.recordValue(Math.max(0, durationMicros));
+            if (error) {
+                errors.increment();
+            }
+            boolean violated = TimeUnit.MICROSECONDS.toMillis(durationMicros) > slaThresholdMs;
+            if (violated) {
+                violations.increment();
+            }
+            return violated;
+        }
+
+        /*
+         * Копия текущего интервала (null - нечего учитывать)
+         */
+        private OperationInterval peekInterval(LocalDateTime start, LocalDateTime end) {
+            // Счетчики читаются до переноса: все учтенные ошибки уже есть в гистограмме
+            long errorCount = errors.sum() - errorsClosed;
+            long violationCount = violations.sum() - violationsClosed;
+            recycled = recorder.getIntervalHistogram(recycled);
+            current.add(recycled);
+            // Ошибка учитывается после записи значения и может прийти в следующий, уже пустой интервал
+            if (current.getTotalCount() == 0 && errorCount == 0 && violationCount == 0) {
+                return null;
+            }
+            return new OperationInterval(operationName, start, end, current.copy(),
+                    errorCount, violationCount, slaThresholdMs);
+        }
+
+        private OperationInterval closeInterval(LocalDateTime start, LocalDateTime end) {
+            OperationInterval interval = peekInterval(start, end);
+            if (interval != null) {
+                errorsClosed += interval.getErrorCount();
+                violationsClosed += interval.getSlaViolationCount();
+                current.reset();
+            }
+            return interval;
+        }
+    }
+}
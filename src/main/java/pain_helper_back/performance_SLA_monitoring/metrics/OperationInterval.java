@@ -0,0 +1,31 @@
+package pain_helper_back.performance_SLA_monitoring.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.HdrHistogram.AbstractHistogram;
+
+import java.time.LocalDateTime;
+
+/*
+ * Задержки одной операции за интервал: завершенный снимок, текущий незавершенный интервал
+ * или агрегат, прочитанный из MongoDB. Гистограмма в микросекундах, только для чтения
+ */
+@Getter
+@AllArgsConstructor
+public class OperationInterval {
+    private final String operationName;
+    private final LocalDateTime intervalStart;
+    private final LocalDateTime intervalEnd;
+    private final AbstractHistogram latencyMicros;
+    private final long errorCount;
+    private final long slaViolationCount;
+    private final long slaThresholdMs;
+
+    public long getCount() {
+        return latencyMicros.getTotalCount();
+    }
+
+    boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        return intervalEnd.isAfter(start) && intervalStart.isBefore(end);
+    }
+}
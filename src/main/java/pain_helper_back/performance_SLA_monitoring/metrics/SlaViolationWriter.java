@@ -0,0 +1,29 @@
+package pain_helper_back.performance_SLA_monitoring.metrics;
+
+import org.springframework.stereotype.Component;
+import pain_helper_back.analytics.writer.BatchingWriter;
+import pain_helper_back.performance_SLA_monitoring.config.PerformanceMetricsConfig;
+import pain_helper_back.performance_SLA_monitoring.entity.PerformanceMetric;
+import pain_helper_back.performance_SLA_monitoring.repository.PerformanceMetricRepository;
+
+import java.util.List;
+
+/*
+ * Пакетная асинхронная запись нарушений SLA в performance_metrics.
+ * Только нарушения хранятся по одному документу на вызов; остальные вызовы попадают в гистограммы
+ * (буфер, переполнение, остановка - см. BatchingWriter)
+ */
+@Component
+public class SlaViolationWriter extends BatchingWriter<PerformanceMetric> {
+    private final PerformanceMetricRepository metricRepository;
+
+    public SlaViolationWriter(PerformanceMetricsConfig config, PerformanceMetricRepository metricRepository) {
+        super("SlaViolationWriter", config);
+        this.metricRepository = metricRepository;
+    }
+
+    @Override
+    protected int writeBatch(List<PerformanceMetric> batch) {
+        return metricRepository.insert(batch).size();
+    }
+}
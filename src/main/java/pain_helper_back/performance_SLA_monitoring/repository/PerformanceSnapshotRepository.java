@@ -0,0 +1,27 @@
+package pain_helper_back.performance_SLA_monitoring.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+import pain_helper_back.performance_SLA_monitoring.entity.PerformanceSnapshot;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Репозиторий для агрегатов задержек операций в MongoDB
+ */
+@Repository
+public interface PerformanceSnapshotRepository extends MongoRepository<PerformanceSnapshot, String> {
+
+    /**
+     * Интервалы, пересекающиеся с периодом [start, end)
+     */
+    @Query("{ 'intervalEnd': { $gt: ?0 }, 'intervalStart': { $lt: ?1 } }")
+    List<PerformanceSnapshot> findOverlapping(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Удалить интервалы, закончившиеся раньше cutoff
+     */
+    long deleteByIntervalEndBefore(LocalDateTime cutoff);
+}
@@ -14,7 +14,7 @@ import java.util.List;
  */
 public interface PerformanceMonitoringService {
     /*
-     * Сохранить метрику производительности
+     * Учесть метрику производительности в гистограмме операции; документ сохраняется только при нарушении SLA
      */
     void recordMetric(PerformanceMetric metric);
     /**
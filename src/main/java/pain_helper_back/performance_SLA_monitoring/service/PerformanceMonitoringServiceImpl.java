@@ -3,6 +3,7 @@ package pain_helper_back.performance_SLA_monitoring.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,18 +12,27 @@ import pain_helper_back.performance_SLA_monitoring.dto.PerformanceMetricDTO;
 import pain_helper_back.performance_SLA_monitoring.dto.PerformanceStatisticDTO;
 import pain_helper_back.performance_SLA_monitoring.dto.SlaViolationDTO;
 import pain_helper_back.performance_SLA_monitoring.entity.PerformanceMetric;
+import pain_helper_back.performance_SLA_monitoring.metrics.OperationHistograms;
+import pain_helper_back.performance_SLA_monitoring.metrics.OperationInterval;
+import pain_helper_back.performance_SLA_monitoring.metrics.SlaViolationWriter;
 import pain_helper_back.performance_SLA_monitoring.repository.PerformanceMetricRepository;
+import pain_helper_back.performance_SLA_monitoring.repository.PerformanceSnapshotRepository;
 
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
 /*
  * Реализация сервиса мониторинга производительности
+ *
+ * Статистика строится по HDR гистограммам операций (OperationHistograms): последние historyHours -
+ * из памяти, более ранние периоды - из агрегатов performance_snapshots.
+ * Отдельные документы performance_metrics хранятся только для нарушений SLA.
  */
 @Service
 @RequiredArgsConstructor
@@ -30,17 +40,21 @@ import java.util.stream.Collectors;
 public class PerformanceMonitoringServiceImpl implements PerformanceMonitoringService {
 
     private final PerformanceMetricRepository metricRepository;
+    private final PerformanceSnapshotRepository snapshotRepository;
+    private final OperationHistograms operationHistograms;
+    private final SlaViolationWriter slaViolationWriter;
     private final PerformanceSlaConfig slaConfig;
     private final ModelMapper modelMapper;
 
 
     @Override
-    @Transactional
     public void recordMetric(PerformanceMetric metric) {
         try {
-            metricRepository.save(metric);
+            boolean violated = operationHistograms.record(metric.getOperationName(),
+                    TimeUnit.MILLISECONDS.toMicros(metric.getExecutionTimeMs()), "ERROR".equals(metric.getStatus()));
 
-            if (metric.getSlaViolated()) {
+            if (violated) {
+                slaViolationWriter.append(metric);
                 log.warn("SLA VIOLATION: {} took {}ms (threshold: {}ms, {}% of SLA)",
                         metric.getOperationName(),
                         metric.getExecutionTimeMs(),
@@ -60,7 +74,7 @@ public class PerformanceMonitoringServiceImpl implements PerformanceMonitoringSe
 
     @Override
     public List<SlaViolationDTO> getSlaViolations(LocalDateTime start, LocalDateTime end) {
-        List<PerformanceMetric> metrics = metricRepository.findByTimestampBetween(start, end);
+        List<PerformanceMetric> metrics = metricRepository.findBySlaViolatedTrueAndTimestampBetween(start, end);
         return metrics.stream().map(metric -> modelMapper.map(metric, SlaViolationDTO.class)).toList();
 
     }
@@ -68,9 +82,10 @@ public class PerformanceMonitoringServiceImpl implements PerformanceMonitoringSe
 
     @Override
     public PerformanceStatisticDTO getStatistics(LocalDateTime start, LocalDateTime end) {
-        List<PerformanceMetric> metrics = metricRepository.findByTimestampBetween(start, end);
+        List<OperationInterval> intervals = operationHistograms.intervals(start, end);
+        long total = intervals.stream().mapToLong(OperationInterval::getCount).sum();
 
-        if (metrics.isEmpty()) {
+        if (total == 0) {
             return PerformanceStatisticDTO.builder()
                     .totalOperations(0L)
                     .successfulOperations(0L)
@@ -81,56 +96,44 @@ public class PerformanceMonitoringServiceImpl implements PerformanceMonitoringSe
         }
 
         // Общая статистика
-        long total = metrics.size();
-        long successful = metrics.stream().filter(m -> "SUCCESS".equals(m.getStatus())).count();
-        long failed = total - successful;
-        long violations = metrics.stream().filter(PerformanceMetric::getSlaViolated).count();
+        Histogram times = mergeHistograms(intervals);
+        long failed = intervals.stream().mapToLong(OperationInterval::getErrorCount).sum();
+        long successful = total - failed;
+        long violations = intervals.stream().mapToLong(OperationInterval::getSlaViolationCount).sum();
         double violationRate = (violations * 100.0) / total;
 
-        // Времена выполнения
-        List<Long> times = metrics.stream()
-                .map(PerformanceMetric::getExecutionTimeMs)
-                .sorted()
-                .toList();
-
-        double avgTime = times.stream().mapToLong(Long::longValue).average().orElse(0.0);
-        long minTime = times.get(0);
-        long maxTime = times.get(times.size() - 1);
-        long medianTime = times.get(times.size() / 2);
-        long p95Time = times.get((int) (times.size() * 0.95));
-        long p99Time = times.get((int) (times.size() * 0.99));
-
         // Статистика по операциям
-        Map<String, PerformanceStatisticDTO.OperationStatistics> operationStats = calculateOperationStatistics(metrics);
+        Map<String, PerformanceStatisticDTO.OperationStatistics> operationStats = calculateOperationStatistics(intervals);
 
+        // Отдельные документы есть только у нарушений SLA
+        List<PerformanceMetric> violationMetrics = loadViolations(start, end);
         // Топ медленных операций
-        List<PerformanceMetricDTO> slowestOperations = metrics.stream()
+        List<PerformanceMetricDTO> slowestOperations = violationMetrics.stream()
                 .sorted(Comparator.comparingLong(PerformanceMetric::getExecutionTimeMs).reversed())
                 .limit(10)
                 .map(metric -> modelMapper.map(metric, PerformanceMetricDTO.class))
                 .toList();
         // Последние нарушения SLA
-        List<SlaViolationDTO> recentViolations = metrics.stream()
-                .filter(PerformanceMetric::getSlaViolated)
+        List<SlaViolationDTO> recentViolations = violationMetrics.stream()
                 .sorted(Comparator.comparing(PerformanceMetric::getTimestamp).reversed())
                 .limit(20)
                 .map(metric -> modelMapper.map(metric, SlaViolationDTO.class))
                 .toList();
         // Тренды по часам
-        Map<String, Long> hourlyCount = calculateHourlyOperationCount(metrics);
-        Map<String, Double> hourlyAvgTime = calculateHourlyAverageTime(metrics);
+        Map<String, Long> hourlyCount = calculateHourlyOperationCount(intervals);
+        Map<String, Double> hourlyAvgTime = calculateHourlyAverageTime(intervals);
         return PerformanceStatisticDTO.builder()
                 .totalOperations(total)
                 .successfulOperations(successful)
                 .failedOperations(failed)
                 .slaViolations(violations)
                 .slaViolationRate(violationRate)
-                .averageExecutionTimeMs(avgTime)
-                .minExecutionTimeMs(minTime)
-                .maxExecutionTimeMs(maxTime)
-                .medianExecutionTimeMs(medianTime)
-                .p95ExecutionTimeMs(p95Time)
-                .p99ExecutionTimeMs(p99Time)
+                .averageExecutionTimeMs(times.getMean() / 1000.0)
+                .minExecutionTimeMs(toMillis(times.getMinValue()))
+                .maxExecutionTimeMs(toMillis(times.getMaxValue()))
+                .medianExecutionTimeMs(toMillis(times.getValueAtPercentile(50)))
+                .p95ExecutionTimeMs(toMillis(times.getValueAtPercentile(95)))
+                .p99ExecutionTimeMs(toMillis(times.getValueAtPercentile(99)))
                 .operationStats(operationStats)
                 .slowestOperations(slowestOperations)
                 .recentViolations(recentViolations)
@@ -142,45 +145,14 @@ public class PerformanceMonitoringServiceImpl implements PerformanceMonitoringSe
     @Override
     public PerformanceStatisticDTO.OperationStatistics getOperationStatistics(
             String operationName, LocalDateTime start, LocalDateTime end) {
-        List<PerformanceMetric> metrics = metricRepository.findByOperationNameAndTimestampBetween(operationName, start, end);
+        List<OperationInterval> intervals = operationHistograms.intervals(start, end).stream()
+                .filter(interval -> interval.getOperationName().equals(operationName))
+                .toList();
 
-        if (metrics.isEmpty()) {
+        if (intervals.isEmpty()) {
             return null;
         }
-        long count = metrics.size();
-
-        double avgTime = metrics.stream()
-                .mapToLong(PerformanceMetric::getExecutionTimeMs)
-                .average()
-                .orElse(0.0);
-
-        long violations = metrics.stream()
-                .filter(PerformanceMetric::getSlaViolated)
-                .count();
-        double violationRate = (violations * 100.0) / count;
-
-        long minTime = metrics.stream()
-                .mapToLong(PerformanceMetric::getExecutionTimeMs)
-                .min()
-                .orElse(0L);
-
-        long maxTime = metrics.stream()
-                .mapToLong(PerformanceMetric::getExecutionTimeMs)
-                .max()
-                .orElse(0L);
-
-        Long slaThreshold = slaConfig.getThreshold(operationName);
-
-        return PerformanceStatisticDTO.OperationStatistics.builder()
-                .operationName(operationName)
-                .count(count)
-                .averageTimeMs(avgTime)
-                .slaThresholdMs(slaThreshold)
-                .violations(violations)
-                .violationRate(violationRate)
-                .minTimeMs(minTime)
-                .maxTimeMs(maxTime)
-                .build();
+        return toOperationStatistics(operationName, intervals);
     }
     @Override
     public List<PerformanceMetricDTO> getSlowestOperations(int limit, LocalDateTime start, LocalDateTime end) {
@@ -209,6 +181,10 @@ public class PerformanceMonitoringServiceImpl implements PerformanceMonitoringSe
             log.info("Cleaned up {} old performance metrics (older than {} days)",
                     oldMetrics.size(), daysToKeep);
         }
+        long oldSnapshots = snapshotRepository.deleteByIntervalEndBefore(cutoff);
+        if (oldSnapshots > 0) {
+            log.info("Cleaned up {} old performance snapshots (older than {} days)", oldSnapshots, daysToKeep);
+        }
 
     }
 // ========== HELPER METHODS ==========
@@ -249,67 +225,69 @@ public class PerformanceMonitoringServiceImpl implements PerformanceMonitoringSe
     }
 
     private Map<String, PerformanceStatisticDTO.OperationStatistics> calculateOperationStatistics(
-            List<PerformanceMetric> metrics) {
+            List<OperationInterval> intervals) {
 
-        Map<String, List<PerformanceMetric>> byOperation = metrics.stream()
-                .collect(Collectors.groupingBy(PerformanceMetric::getOperationName));
+        Map<String, List<OperationInterval>> byOperation = intervals.stream()
+                .collect(Collectors.groupingBy(OperationInterval::getOperationName));
 
         Map<String, PerformanceStatisticDTO.OperationStatistics> stats = new HashMap<>();
+        byOperation.forEach((opName, opIntervals) -> stats.put(opName, toOperationStatistics(opName, opIntervals)));
+        return stats;
+    }
 
-        byOperation.forEach((opName, opMetrics) -> {
-            long count = opMetrics.size();
-            double avgTime = opMetrics.stream()
-                    .mapToLong(PerformanceMetric::getExecutionTimeMs)
-                    .average()
-                    .orElse(0.0);
-
-            long violations = opMetrics.stream()
-                    .filter(PerformanceMetric::getSlaViolated)
-                    .count();
-
-            double violationRate = (violations * 100.0) / count;
-
-            long minTime = opMetrics.stream()
-                    .mapToLong(PerformanceMetric::getExecutionTimeMs)
-                    .min()
-                    .orElse(0L);
-
-            long maxTime = opMetrics.stream()
-                    .mapToLong(PerformanceMetric::getExecutionTimeMs)
-                    .max()
-                    .orElse(0L);
-
-            Long slaThreshold = slaConfig.getThreshold(opName);
-
-            stats.put(opName, PerformanceStatisticDTO.OperationStatistics.builder()
-                    .operationName(opName)
-                    .count(count)
-                    .averageTimeMs(avgTime)
-                    .slaThresholdMs(slaThreshold)
-                    .violations(violations)
-                    .violationRate(violationRate)
-                    .minTimeMs(minTime)
-                    .maxTimeMs(maxTime)
-                    .build());
-        });
+    private PerformanceStatisticDTO.OperationStatistics toOperationStatistics(
+            String operationName, List<OperationInterval> intervals) {
+        Histogram times = mergeHistograms(intervals);
+        long count = times.getTotalCount();
+        long violations = intervals.stream().mapToLong(OperationInterval::getSlaViolationCount).sum();
+        double violationRate = count == 0 ? 0.0 : (violations * 100.0) / count;
 
-        return stats;
+        return PerformanceStatisticDTO.OperationStatistics.builder()
+                .operationName(operationName)
+                .count(count)
+                .averageTimeMs(times.getMean() / 1000.0)
+                .slaThresholdMs(slaConfig.getThreshold(operationName))
+                .violations(violations)
+                .violationRate(violationRate)
+                .minTimeMs(toMillis(times.getMinValue()))
+                .maxTimeMs(toMillis(times.getMaxValue()))
+                .build();
     }
 
-    private Map<String, Long> calculateHourlyOperationCount(List<PerformanceMetric> metrics) {
-        return metrics.stream()
+    private Histogram mergeHistograms(List<OperationInterval> intervals) {
+        Histogram merged = operationHistograms.newHistogram();
+        intervals.forEach(interval -> merged.add(interval.getLatencyMicros()));
+        return merged;
+    }
+
+    private List<PerformanceMetric> loadViolations(LocalDateTime start, LocalDateTime end) {
+        try {
+            return metricRepository.findBySlaViolatedTrueAndTimestampBetween(start, end);
+        } catch (Exception e) {
+            // Агрегаты доступны из памяти и без MongoDB
+            log.warn("Failed to load SLA violations: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static long toMillis(long micros) {
+        return TimeUnit.MICROSECONDS.toMillis(micros);
+    }
+
+    private Map<String, Long> calculateHourlyOperationCount(List<OperationInterval> intervals) {
+        return intervals.stream()
                 .collect(Collectors.groupingBy(
-                        m -> m.getTimestamp().getHour() + ":00",
-                        Collectors.counting()
+                        interval -> interval.getIntervalStart().getHour() + ":00",
+                        Collectors.summingLong(OperationInterval::getCount)
                 ));
     }
 
-    private Map<String, Double> calculateHourlyAverageTime(List<PerformanceMetric> metrics) {
-        return metrics.stream()
+    private Map<String, Double> calculateHourlyAverageTime(List<OperationInterval> intervals) {
+        return intervals.stream()
                 .collect(Collectors.groupingBy(
-                        m -> m.getTimestamp().getHour() + ":00",
-                        Collectors.averagingLong(PerformanceMetric::getExecutionTimeMs)
+                        interval -> interval.getIntervalStart().getHour() + ":00",
+                        Collectors.collectingAndThen(Collectors.toList(), hourIntervals ->
+                                mergeHistograms(hourIntervals).getMean() / 1000.0)
                 ));
     }
 }
-
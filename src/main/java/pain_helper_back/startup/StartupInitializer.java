@@ -0,0 +1,36 @@
+package pain_helper_back.startup;
+
+import java.util.Set;
+
+/**
+ * Инициализатор, выполняемый один раз при старте приложения.
+ *
+ * НАЗНАЧЕНИЕ:
+ * - Заменяет CommandLineRunner / @PostConstruct для загрузчиков справочников и стартовых данных
+ * - Явно объявляет зависимости от других инициализаторов (по имени)
+ *
+ * ВЫПОЛНЕНИЕ:
+ * - StartupInitializerRunner запускает независимые инициализаторы параллельно
+ *   на ограниченном пуле потоков
+ * - Инициализатор стартует только после успешного завершения всех своих зависимостей
+ * - Приложение считается готовым (ApplicationReadyEvent) только после завершения всех инициализаторов
+ */
+public interface StartupInitializer {
+
+    /**
+     * Уникальное имя инициализатора (используется в зависимостях и в отчете о старте)
+     */
+    String getName();
+
+    /**
+     * Имена инициализаторов, которые должны завершиться до запуска этого
+     */
+    default Set<String> getDependsOn() {
+        return Set.of();
+    }
+
+    /**
+     * Выполнить инициализацию
+     */
+    void initialize() throws Exception;
+}
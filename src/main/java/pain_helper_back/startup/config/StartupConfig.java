@@ -0,0 +1,25 @@
+package pain_helper_back.startup.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурация параллельного запуска стартовых инициализаторов
+ */
+@Configuration
+@ConfigurationProperties(prefix = "startup.initializers")
+@Getter
+@Setter
+public class StartupConfig {
+    /**
+     * Размер пула потоков для инициализаторов (по умолчанию 4).
+     * Не должен превышать размер пула соединений Hikari.
+     */
+    private int poolSize = 4;
+    /**
+     * Максимальное время ожидания всех инициализаторов в секундах (по умолчанию 300)
+     */
+    private long timeoutSeconds = 300;
+}
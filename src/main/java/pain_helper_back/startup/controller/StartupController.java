@@ -0,0 +1,31 @@
+package pain_helper_back.startup.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pain_helper_back.startup.dto.StartupTimingReportDTO;
+import pain_helper_back.startup.service.StartupInitializerRunner;
+
+/**
+ * REST API для отчета о времени старта приложения
+ */
+@RestController
+@RequestMapping("/api/admin/startup")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class StartupController {
+    private final StartupInitializerRunner startupInitializerRunner;
+
+    /**
+     * GET /api/admin/startup/report
+     * Время выполнения каждого стартового инициализатора
+     */
+    @GetMapping("/report")
+    public ResponseEntity<StartupTimingReportDTO> getStartupReport() {
+        StartupTimingReportDTO report = startupInitializerRunner.getLastReport();
+        if (report == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(report);
+    }
+}
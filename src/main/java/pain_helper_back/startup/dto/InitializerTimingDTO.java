@@ -0,0 +1,32 @@
+package pain_helper_back.startup.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pain_helper_back.enums.StartupInitializerStatus;
+
+import java.util.Set;
+
+/**
+ * Время выполнения одного стартового инициализатора
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InitializerTimingDTO {
+    private String name;
+    private Set<String> dependsOn;
+    private StartupInitializerStatus status;
+    /**
+     * Поток, в котором выполнялся инициализатор
+     */
+    private String threadName;
+    /**
+     * Смещение старта относительно начала фазы инициализации (мс)
+     */
+    private Long startOffsetMs;
+    private Long durationMs;
+    private String errorMessage;
+}
@@ -0,0 +1,32 @@
+package pain_helper_back.startup.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Отчет о времени старта приложения.
+ *
+ * ИСПОЛЬЗОВАНИЕ: GET /api/admin/startup/report
+ *
+ * СОДЕРЖИМОЕ:
+ * - Общее время фазы инициализации (wall clock)
+ * - Сумма времени всех инициализаторов (сколько бы заняло последовательное выполнение)
+ * - Время по каждому инициализатору
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StartupTimingReportDTO {
+    private LocalDateTime startedAt;
+    private Long totalDurationMs;
+    private Long sequentialDurationMs;
+    private Integer poolSize;
+    private Boolean successful;
+    private List<InitializerTimingDTO> initializers;
+}
@@ -0,0 +1,231 @@
+package pain_helper_back.startup.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import pain_helper_back.enums.StartupInitializerStatus;
+import pain_helper_back.startup.StartupInitializer;
+import pain_helper_back.startup.config.StartupConfig;
+import pain_helper_back.startup.dto.InitializerTimingDTO;
+import pain_helper_back.startup.dto.StartupTimingReportDTO;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Запуск стартовых инициализаторов с учетом зависимостей.
+ *
+ * АЛГОРИТМ:
+ * 1. Проверяем граф зависимостей (дубликаты имен, неизвестные зависимости, циклы)
+ * 2. В топологическом порядке строим цепочки CompletableFuture:
+ *    каждый инициализатор стартует после завершения всех своих зависимостей
+ * 3. Независимые инициализаторы выполняются параллельно на ограниченном пуле
+ * 4. Ждем завершения всех инициализаторов — ApplicationRunner блокирует публикацию
+ *    ApplicationReadyEvent, поэтому готовность сообщается только после полной загрузки
+ * 5. Логируем отчет о времени и сохраняем его для GET /api/admin/startup/report
+ *
+ * ОШИБКИ:
+ * - Если инициализатор упал, зависящие от него пропускаются (SKIPPED)
+ * - После формирования отчета старт приложения прерывается, как и раньше с CommandLineRunner
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StartupInitializerRunner implements ApplicationRunner {
+    private final List<StartupInitializer> initializers;
+    private final StartupConfig startupConfig;
+
+    private volatile StartupTimingReportDTO lastReport;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Map<String, StartupInitializer> byName = indexByName(initializers);
+        List<String> order = topologicalOrder(byName);
+
+        log.info("Running {} startup initializers on {} threads", order.size(), startupConfig.getPoolSize());
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(startupConfig.getPoolSize());
+        executor.setMaxPoolSize(startupConfig.getPoolSize());
+        executor.setThreadNamePrefix("Startup-");
+        executor.initialize();
+
+        LocalDateTime startedAt = LocalDateTime.now();
+        long phaseStart = System.nanoTime();
+        Map<String, InitializerTimingDTO> timings = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+
+        try {
+            for (String name : order) {
+                StartupInitializer initializer = byName.get(name);
+                CompletableFuture<?>[] dependencies = initializer.getDependsOn().stream()
+                        .map(futures::get)
+                        .toArray(CompletableFuture[]::new);
+                futures.put(name, CompletableFuture.allOf(dependencies)
+                        .thenRunAsync(() -> execute(initializer, phaseStart, timings), executor));
+            }
+
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+                    .get(startupConfig.getTimeoutSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.error("Startup initializers did not complete within {} s", startupConfig.getTimeoutSeconds());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Ошибка уже зафиксирована в timings конкретного инициализатора
+        } finally {
+            executor.shutdown();
+        }
+
+        StartupTimingReportDTO report = buildReport(order, byName, timings, startedAt, phaseStart);
+        lastReport = report;
+        logReport(report);
+
+        if (!report.getSuccessful()) {
+            throw new IllegalStateException("Startup initialization failed, see startup timing report");
+        }
+    }
+
+    /**
+     * Последний отчет о старте (null, если инициализация еще не завершилась)
+     */
+    public StartupTimingReportDTO getLastReport() {
+        return lastReport;
+    }
+
+    private void execute(StartupInitializer initializer, long phaseStart, Map<String, InitializerTimingDTO> timings) {
+        long start = System.nanoTime();
+        InitializerTimingDTO timing = InitializerTimingDTO.builder()
+                .name(initializer.getName())
+                .dependsOn(initializer.getDependsOn())
+                .threadName(Thread.currentThread().getName())
+                .startOffsetMs(TimeUnit.NANOSECONDS.toMillis(start - phaseStart))
+                .build();
+        try {
+            initializer.initialize();
+            timing.setStatus(StartupInitializerStatus.COMPLETED);
+        } catch (Exception e) {
+            log.error("Startup initializer '{}' failed: {}", initializer.getName(), e.getMessage(), e);
+            timing.setStatus(StartupInitializerStatus.FAILED);
+            timing.setErrorMessage(e.getMessage());
+            throw new IllegalStateException("Startup initializer '" + initializer.getName() + "' failed", e);
+        } finally {
+            timing.setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            timings.put(initializer.getName(), timing);
+        }
+    }
+
+    private StartupTimingReportDTO buildReport(List<String> order,
+                                               Map<String, StartupInitializer> byName,
+                                               Map<String, InitializerTimingDTO> timings,
+                                               LocalDateTime startedAt,
+                                               long phaseStart) {
+        List<InitializerTimingDTO> entries = new ArrayList<>();
+        for (String name : order) {
+            InitializerTimingDTO timing = timings.get(name);
+            if (timing == null) {
+                timing = InitializerTimingDTO.builder()
+                        .name(name)
+                        .dependsOn(byName.get(name).getDependsOn())
+                        .status(StartupInitializerStatus.SKIPPED)
+                        .build();
+            }
+            entries.add(timing);
+        }
+        entries.sort(Comparator.comparing(InitializerTimingDTO::getStartOffsetMs,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+
+        long sequential = entries.stream()
+                .filter(t -> t.getDurationMs() != null)
+                .mapToLong(InitializerTimingDTO::getDurationMs)
+                .sum();
+        boolean successful = entries.stream()
+                .allMatch(t -> t.getStatus() == StartupInitializerStatus.COMPLETED);
+
+        return StartupTimingReportDTO.builder()
+                .startedAt(startedAt)
+                .totalDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart))
+                .sequentialDurationMs(sequential)
+                .poolSize(startupConfig.getPoolSize())
+                .successful(successful)
+                .initializers(entries)
+                .build();
+    }
+
+    private void logReport(StartupTimingReportDTO report) {
+        log.info("=== STARTUP TIMING REPORT ===");
+        for (InitializerTimingDTO t : report.getInitializers()) {
+            log.info("  {} [{}] start=+{}ms duration={}ms thread={} dependsOn={}",
+                    t.getName(), t.getStatus(), t.getStartOffsetMs(), t.getDurationMs(),
+                    t.getThreadName(), t.getDependsOn());
+        }
+        log.info("Startup initializers finished in {} ms (sequential sum {} ms)",
+                report.getTotalDurationMs(), report.getSequentialDurationMs());
+        log.info("=== END OF STARTUP TIMING REPORT ===");
+    }
+
+    /*
+     * Индексирует инициализаторы по имени и проверяет, что все зависимости существуют
+     */
+    static Map<String, StartupInitializer> indexByName(List<StartupInitializer> initializers) {
+        Map<String, StartupInitializer> byName = new LinkedHashMap<>();
+        for (StartupInitializer initializer : initializers) {
+            if (byName.putIfAbsent(initializer.getName(), initializer) != null) {
+                throw new IllegalStateException("Duplicate startup initializer name: " + initializer.getName());
+            }
+        }
+        for (StartupInitializer initializer : initializers) {
+            for (String dependency : initializer.getDependsOn()) {
+                if (!byName.containsKey(dependency)) {
+                    throw new IllegalStateException("Startup initializer '" + initializer.getName()
+                            + "' depends on unknown initializer '" + dependency + "'");
+                }
+            }
+        }
+        return byName;
+    }
+
+    /*
+     * Топологическая сортировка (алгоритм Кана). Цикл в зависимостях — ошибка конфигурации.
+     */
+    static List<String> topologicalOrder(Map<String, StartupInitializer> byName) {
+        Map<String, Integer> inDegree = new LinkedHashMap<>();
+        Map<String, List<String>> dependents = new HashMap<>();
+        for (StartupInitializer initializer : byName.values()) {
+            inDegree.put(initializer.getName(), initializer.getDependsOn().size());
+            for (String dependency : initializer.getDependsOn()) {
+                dependents.computeIfAbsent(dependency, k -> new ArrayList<>()).add(initializer.getName());
+            }
+        }
+
+        Deque<String> ready = new ArrayDeque<>();
+        inDegree.forEach((name, degree) -> {
+            if (degree == 0) ready.add(name);
+        });
+
+        List<String> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            order.add(name);
+            for (String dependent : dependents.getOrDefault(name, List.of())) {
+                if (inDegree.merge(dependent, -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (order.size() != byName.size()) {
+            Set<String> cyclic = new LinkedHashSet<>(byName.keySet());
+            order.forEach(cyclic::remove);
+            throw new IllegalStateException("Cyclic startup initializer dependencies: " + cyclic);
+        }
+        return order;
+    }
+}
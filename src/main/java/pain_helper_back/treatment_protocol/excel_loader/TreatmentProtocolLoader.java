@@ -7,9 +7,9 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
+import pain_helper_back.startup.StartupInitializer;
 import pain_helper_back.treatment_protocol.entity.TreatmentProtocol;
 import pain_helper_back.treatment_protocol.repository.TreatmentProtocolRepository;
 import pain_helper_back.treatment_protocol.utils.SanitizeUtils;
@@ -19,14 +19,21 @@ import java.io.InputStream;
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class TreatmentProtocolLoader implements CommandLineRunner {
+public class TreatmentProtocolLoader implements StartupInitializer {
+    public static final String NAME = "treatmentProtocol";
+
     private final TreatmentProtocolRepository treatmentProtocolRepository;
 
     //Apache POI строго типизирован, и если ячейка числовая, он не даст getStringCellValue() и наоборот
     //DataFormatter — это встроенный класс Apache POI, который превращает любую ячейку в строку точно так, как она отображается в Excel
 
     @Override
-    public void run(String... args) throws Exception {
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void initialize() throws Exception {
         if (treatmentProtocolRepository.count() > 0) {
             log.info(" Treatment Protocol already loaded");
             return;
@@ -2,9 +2,9 @@ package pain_helper_back.treatment_protocol.icd_diagnosis.icd_csv_loader;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
+import pain_helper_back.startup.StartupInitializer;
 import pain_helper_back.treatment_protocol.icd_diagnosis.entity.IcdDictionary;
 import pain_helper_back.treatment_protocol.icd_diagnosis.repository.IcdDictionaryRepository;
 import pain_helper_back.treatment_protocol.utils.SanitizeUtils;
@@ -17,12 +17,18 @@ import java.util.List;
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class IcdDictionaryLoader implements CommandLineRunner {
+public class IcdDictionaryLoader implements StartupInitializer {
+    public static final String NAME = "icdDictionary";
 
     private final IcdDictionaryRepository repo;
 
     @Override
-    public void run(String... args) throws Exception {
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void initialize() throws Exception {
 
         //  если таблица уже не пуста — загрузка не выполняется
         if (repo.count() > 0) {
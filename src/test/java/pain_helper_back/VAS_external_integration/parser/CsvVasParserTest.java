@@ -0,0 +1,103 @@
+package pain_helper_back.VAS_external_integration.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты потокового чтения CSV в CsvVasParser.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Колонки находятся по заголовку (любой порядок, без учета регистра, необязательные колонки)
+ * - Без заголовка или без PatientMRN/VASLevel - ParseException при открытии
+ * - Поврежденная строка дает ошибку только этой строки с ее номером в файле
+ * - Пустые строки пропускаются, значения в кавычках могут содержать запятые
+ */
+class CsvVasParserTest {
+
+    private final CsvVasParser parser = new CsvVasParser();
+
+    @Test
+    @DisplayName("Должен сопоставлять колонки по заголовку в любом порядке и регистре")
+    void shouldMapColumnsByHeader() throws Exception {
+        String csv = """
+                notes,Timestamp,vaslevel,LOCATION,patientmrn
+                "Sharp, stabbing",2026-10-18T08:30:00,7,Ward A Bed 12,EMR-1
+                """;
+
+        List<VasRecordRow> rows = readAll(parser.openReader(new StringReader(csv)));
+
+        assertEquals(1, rows.size());
+        VasRecordRow row = rows.get(0);
+        assertEquals(2, row.lineNumber());
+        assertEquals("EMR-1", row.record().getPatientMrn());
+        assertEquals(7, row.record().getVasLevel());
+        assertEquals("Ward A Bed 12", row.record().getLocation());
+        assertEquals("Sharp, stabbing", row.record().getNotes());
+        assertEquals(LocalDateTime.of(2026, 10, 18, 8, 30), row.record().getTimestamp());
+        assertNull(row.record().getDeviceId());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять CSV без заголовка или без обязательных колонок")
+    void shouldRejectMissingHeaderOrRequiredColumns() {
+        assertThrows(VasFormatParser.ParseException.class, () -> parser.openReader(new StringReader("")));
+        assertThrows(VasFormatParser.ParseException.class,
+                () -> parser.openReader(new StringReader("PatientMRN,DeviceID\nEMR-1,MON-1\n")));
+    }
+
+    @Test
+    @DisplayName("Должен возвращать ошибку поврежденной строки и продолжать чтение")
+    void shouldReportMalformedRowsAndContinue() throws Exception {
+        String csv = """
+                PatientMRN,VASLevel,Timestamp
+                EMR-1,3,2026-10-18T08:00:00
+
+                EMR-2,seven,2026-10-18T08:01:00
+                ,5,2026-10-18T08:02:00
+                EMR-4,11,2026-10-18T08:03:00
+                EMR-5,4,not-a-date
+                EMR-6
+                """;
+
+        List<VasRecordRow> rows = readAll(parser.openReader(new StringReader(csv)));
+
+        assertEquals(6, rows.size());
+        assertTrue(rows.get(0).isValid());
+        assertEquals(4, rows.get(1).lineNumber());
+        assertTrue(rows.get(1).error().contains("seven"));
+        assertEquals("PatientMRN is required", rows.get(2).error());
+        assertTrue(rows.get(3).error().contains("between 0 and 10"));
+        // Нераспознанное время заменяется текущим, строка валидна
+        assertTrue(rows.get(4).isValid());
+        assertNotNull(rows.get(4).record().getTimestamp());
+        assertEquals(8, rows.get(5).lineNumber());
+        assertEquals("VASLevel is required", rows.get(5).error());
+    }
+
+    @Test
+    @DisplayName("parseMultiple пропускает невалидные строки, без строк данных - ошибка")
+    void parseMultipleSkipsInvalidRows() throws Exception {
+        List<?> records = parser.parseMultiple("PatientMRN,VASLevel\nEMR-1,2\nEMR-2,x\nEMR-3,9\n");
+
+        assertEquals(2, records.size());
+        assertThrows(VasFormatParser.ParseException.class, () -> parser.parseMultiple("PatientMRN,VASLevel\n"));
+    }
+
+    private static List<VasRecordRow> readAll(VasRecordReader reader) throws Exception {
+        List<VasRecordRow> rows = new ArrayList<>();
+        try (reader) {
+            VasRecordRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
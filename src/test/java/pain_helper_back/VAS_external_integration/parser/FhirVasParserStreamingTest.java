@@ -0,0 +1,205 @@
+package pain_helper_back.VAS_external_integration.parser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты потокового чтения FHIR Bundle и NDJSON в FhirVasParser.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Чтение entry Bundle по одному, поля Bundle до и после entry пропускаются
+ * - Ссылки на Patient из того же Bundle разрешаются в MRN, ссылка на Patient ниже по Bundle отклоняется
+ * - LOINC коды боли и VAS в миллиметрах (38214-3, unit mm) приводятся к шкале 0-10, дробные значения округляются
+ * - Не-болевые ресурсы пропускаются, ошибки отдельных записей не прерывают чтение
+ * - Поврежденная строка NDJSON дает ошибку только этой строки
+ * - effectiveDateTime с любым смещением переводится в часовой пояс сервера, нераспознанный - ошибка записи
+ */
+class FhirVasParserStreamingTest {
+
+    private final FhirVasParser parser = new FhirVasParser(new ObjectMapper());
+
+    @Test
+    @DisplayName("Должен читать entry Bundle и разрешать ссылки на Patient внутри Bundle")
+    void shouldReadBundleEntries() throws Exception {
+        String bundle = """
+                {"resourceType":"Bundle","type":"transaction","meta":{"tag":[{"code":"x"}]},"entry":[
+                  {"fullUrl":"urn:uuid:p1","resource":{"resourceType":"Patient","id":"p1",
+                    "identifier":[{"value":"OTHER"},{"type":{"coding":[{"code":"MR"}]},"value":"MRN-1"}]}},
+                  {"resource":%s},
+                  {"resource":%s},
+                  {"resource":%s},
+                  {"request":{"method":"POST"}}
+                ],"total":5}
+                """.formatted(
+                observation("urn:uuid:p1", "38208-5", "\"valueInteger\":6"),
+                observation("Patient/MRN-2", "38214-3", "\"valueQuantity\":{\"value\":45,\"unit\":\"mm\"}"),
+                observation("Patient/MRN-2", "8867-4", "\"valueInteger\":80"));
+
+        List<VasRecordRow> rows = readAll(parser.openBundleReader(new StringReader(bundle)));
+
+        assertEquals(5, rows.size());
+        assertTrue(rows.get(0).skipped());
+        assertEquals("MRN-1", rows.get(1).record().getPatientMrn());
+        assertEquals(6, rows.get(1).record().getVasLevel());
+        assertEquals(2, rows.get(1).lineNumber());
+        assertEquals("MRN-2", rows.get(2).record().getPatientMrn());
+        assertEquals(5, rows.get(2).record().getVasLevel());
+        assertTrue(rows.get(3).skipped());
+        assertFalse(rows.get(4).isValid());
+        assertFalse(rows.get(4).skipped());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять ссылку на Patient, который идет в Bundle после Observation")
+    void shouldRejectForwardPatientReference() throws Exception {
+        String bundle = """
+                {"resourceType":"Bundle","type":"collection","entry":[
+                  {"resource":%s},
+                  {"fullUrl":"urn:uuid:p1","resource":{"resourceType":"Patient","id":"p1","identifier":[{"value":"MRN-1"}]}},
+                  {"resource":%s}
+                ]}
+                """.formatted(
+                observation("urn:uuid:p1", "38208-5", "\"valueInteger\":6"),
+                observation("urn:uuid:p1", "38208-5", "\"valueInteger\":7"));
+
+        List<VasRecordRow> rows = readAll(parser.openBundleReader(new StringReader(bundle)));
+
+        assertFalse(rows.get(0).isValid());
+        assertNull(rows.get(0).record());
+        assertTrue(rows.get(0).error().contains("urn:uuid:p1"));
+        assertEquals("MRN-1", rows.get(2).record().getPatientMrn());
+    }
+
+    @Test
+    @DisplayName("Должен округлять дробный VAS в valueQuantity на обеих шкалах")
+    void shouldRoundDecimalQuantity() throws Exception {
+        String ndjson = observation("Patient/A", "38208-5", "\"valueQuantity\":{\"value\":6.7}") + "\n"
+                + observation("Patient/B", "38214-3", "\"valueQuantity\":{\"value\":67,\"unit\":\"mm\"}") + "\n"
+                + observation("Patient/C", "38208-5", "\"valueQuantity\":{\"value\":6.4}") + "\n";
+
+        List<VasRecordRow> rows = readAll(parser.openNdjsonReader(new StringReader(ndjson)));
+
+        assertEquals(7, rows.get(0).record().getVasLevel());
+        assertEquals(7, rows.get(1).record().getVasLevel());
+        assertEquals(6, rows.get(2).record().getVasLevel());
+    }
+
+    @Test
+    @DisplayName("Должен приводить Visual analog score 38214-3 из миллиметров к VAS 0-10")
+    void shouldScaleVisualAnalogScore() throws Exception {
+        String ndjson = observation("Patient/A", "38214-3", "\"valueInteger\":65") + "\n"
+                + observation("Patient/B", "38214-3", "\"valueQuantity\":{\"value\":6.5,\"unit\":\"cm\"}") + "\n"
+                + observation("Patient/C", "38214-3", "\"valueQuantity\":{\"value\":30}") + "\n"
+                + observation("Patient/D", "38214-3", "\"valueInteger\":140") + "\n";
+
+        List<VasRecordRow> rows = readAll(parser.openNdjsonReader(new StringReader(ndjson)));
+
+        assertEquals(7, rows.get(0).record().getVasLevel());
+        assertEquals(7, rows.get(1).record().getVasLevel());
+        assertEquals(3, rows.get(2).record().getVasLevel());
+        // Больше 100 мм - вне шкалы
+        assertFalse(rows.get(3).isValid());
+    }
+
+    @Test
+    @DisplayName("Должен отклонять не-Bundle и поврежденный JSON")
+    void shouldRejectInvalidBundle() throws Exception {
+        assertThrows(VasFormatParser.ParseException.class,
+                () -> readAll(parser.openBundleReader(new StringReader("{\"resourceType\":\"Observation\"}"))));
+
+        VasRecordReader truncated = parser.openBundleReader(new StringReader(
+                "{\"resourceType\":\"Bundle\",\"entry\":[{\"resource\":" + observation("Patient/A", "38208-5",
+                        "\"valueInteger\":1") + "},{\"resource\":"));
+        assertTrue(truncated.next().isValid());
+        assertThrows(VasFormatParser.ParseException.class, truncated::next);
+    }
+
+    @Test
+    @DisplayName("Должен читать NDJSON построчно и продолжать после поврежденной строки")
+    void shouldReadNdjsonLines() throws Exception {
+        String ndjson = observation("Patient/A", "72514-3", "\"valueInteger\":3") + "\n"
+                + "{broken\n"
+                + "\n"
+                + observation("Patient/B", "38221-8", "\"valueInteger\":8").replace("final", "entered-in-error") + "\n"
+                + observation("Patient/C", "38208-5", "\"valueInteger\":11") + "\n"
+                + observation("Patient/D", "38208-5", "\"valueInteger\":2") + "\n";
+
+        List<VasRecordRow> rows = readAll(parser.openNdjsonReader(new StringReader(ndjson)));
+
+        assertEquals(5, rows.size());
+        assertEquals(3, rows.get(0).record().getVasLevel());
+        assertEquals(2, rows.get(1).lineNumber());
+        assertFalse(rows.get(1).isValid());
+        assertTrue(rows.get(2).skipped());
+        assertEquals(4, rows.get(2).lineNumber());
+        assertFalse(rows.get(3).isValid());
+        assertEquals("D", rows.get(4).record().getPatientMrn());
+    }
+
+    @Test
+    @DisplayName("Должен переводить effectiveDateTime со смещением в часовой пояс сервера")
+    void shouldConvertEffectiveDateTimeOffsets() throws Exception {
+        String ndjson = observation("Patient/A", "38208-5", "\"valueInteger\":3", "2026-10-18T08:00:00-05:00") + "\n"
+                + observation("Patient/B", "38208-5", "\"valueInteger\":3", "2026-10-18T16:00:00+03:00") + "\n"
+                + observation("Patient/C", "38208-5", "\"valueInteger\":3", "2026-10-18T13:00:00Z") + "\n"
+                + observation("Patient/D", "38208-5", "\"valueInteger\":3", "2026-10-18T13:00:00") + "\n"
+                + observation("Patient/E", "38208-5", "\"valueInteger\":3", "2026-10-18") + "\n";
+
+        List<VasRecordRow> rows = readAll(parser.openNdjsonReader(new StringReader(ndjson)));
+
+        LocalDateTime expected = OffsetDateTime.parse("2026-10-18T13:00:00Z")
+                .atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+        assertEquals(expected, rows.get(0).record().getTimestamp());
+        assertEquals(expected, rows.get(1).record().getTimestamp());
+        assertEquals(expected, rows.get(2).record().getTimestamp());
+        // Без смещения - локальное время как есть
+        assertEquals(LocalDateTime.of(2026, 10, 18, 13, 0), rows.get(3).record().getTimestamp());
+        assertEquals(LocalDateTime.of(2026, 10, 18, 0, 0), rows.get(4).record().getTimestamp());
+    }
+
+    @Test
+    @DisplayName("Нераспознанный effectiveDateTime в batch импорте - ошибка записи, а не текущее время")
+    void shouldRejectUnparseableEffectiveDateTimeInBatch() throws Exception {
+        String ndjson = observation("Patient/A", "38208-5", "\"valueInteger\":3", "18.10.2026 08:00") + "\n"
+                + observation("Patient/B", "38208-5", "\"valueInteger\":3", "2026-10-18T08:00:00-05:00") + "\n";
+
+        List<VasRecordRow> rows = readAll(parser.openNdjsonReader(new StringReader(ndjson)));
+
+        assertFalse(rows.get(0).isValid());
+        assertEquals("Invalid effectiveDateTime: 18.10.2026 08:00", rows.get(0).error());
+        assertTrue(rows.get(1).isValid());
+    }
+
+    private static String observation(String subject, String loinc, String value) {
+        return observation(subject, loinc, value, "2026-10-18T08:00:00Z");
+    }
+
+    private static String observation(String subject, String loinc, String value, String effectiveDateTime) {
+        return """
+                {"resourceType":"Observation","status":"final",
+                 "code":{"coding":[{"system":"http://loinc.org","code":"%s"}]},
+                 "subject":{"reference":"%s"},"effectiveDateTime":"%s",%s}"""
+                .formatted(loinc, subject, effectiveDateTime, value).replace("\n", "");
+    }
+
+    private static List<VasRecordRow> readAll(VasRecordReader reader) throws Exception {
+        List<VasRecordRow> rows = new ArrayList<>();
+        try (reader) {
+            VasRecordRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
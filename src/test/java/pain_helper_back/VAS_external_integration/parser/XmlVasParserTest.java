@@ -0,0 +1,123 @@
+package pain_helper_back.VAS_external_integration.parser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты StAX чтения XML в XmlVasParser.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Документ с DOCTYPE и внешней сущностью (XXE) отклоняется, содержимое файла не читается
+ * - Несколько VASRecord на любой глубине читаются по одному с номерами строк
+ * - Ошибка одной записи не прерывает чтение, поврежденный документ - ParseException
+ * - parse() возвращает первую запись
+ */
+class XmlVasParserTest {
+
+    private final XmlVasParser parser = new XmlVasParser();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Должен отклонять внешнюю сущность и не читать файл")
+    void shouldRejectExternalEntity() throws Exception {
+        Path secret = Files.writeString(tempDir.resolve("secret.txt"), "TOP-SECRET");
+        String xml = """
+                <?xml version="1.0"?>
+                <!DOCTYPE VASRecord [<!ENTITY xxe SYSTEM "%s">]>
+                <VASRecord><PatientMRN>&xxe;</PatientMRN><VASLevel>5</VASLevel></VASRecord>
+                """.formatted(secret.toUri());
+
+        VasFormatParser.ParseException e = assertThrows(VasFormatParser.ParseException.class,
+                () -> parser.parse(xml));
+        assertFalse(e.getMessage().contains("TOP-SECRET"));
+        assertThrows(VasFormatParser.ParseException.class,
+                () -> readAll(parser.openReader(new StringReader(xml))));
+    }
+
+    @Test
+    @DisplayName("Должен отклонять DOCTYPE даже без сущностей")
+    void shouldRejectDoctype() {
+        String xml = """
+                <?xml version="1.0"?>
+                <!DOCTYPE vasRecords>
+                <vasRecords><VASRecord><PatientMRN>EMR-1</PatientMRN><VASLevel>5</VASLevel></VASRecord></vasRecords>
+                """;
+
+        VasFormatParser.ParseException e = assertThrows(VasFormatParser.ParseException.class,
+                () -> readAll(parser.openReader(new StringReader(xml))));
+        assertTrue(e.getMessage().contains("DOCTYPE"));
+    }
+
+    @Test
+    @DisplayName("Должен читать несколько записей на разной глубине и продолжать после ошибочной")
+    void shouldReadMultipleRecords() throws Exception {
+        String xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <vasRecords>
+                  <VASRecord>
+                    <PatientMRN>EMR-1</PatientMRN><VASLevel>3</VASLevel>
+                    <Timestamp>2026-10-18T08:00:00</Timestamp>
+                  </VASRecord>
+                  <ward name="A">
+                    <vasrecord><patientmrn>EMR-2</patientmrn><vaslevel>x</vaslevel></vasrecord>
+                    <VASRecord>
+                      <PatientMRN>EMR-3</PatientMRN><VASLevel>8</VASLevel>
+                      <Location><![CDATA[Ward A, Bed 12]]></Location>
+                      <Notes>Sharp &amp; stabbing</Notes>
+                    </VASRecord>
+                  </ward>
+                </vasRecords>
+                """;
+
+        List<VasRecordRow> rows = readAll(parser.openReader(new StringReader(xml)));
+
+        assertEquals(3, rows.size());
+        assertEquals("EMR-1", rows.get(0).record().getPatientMrn());
+        assertEquals(LocalDateTime.of(2026, 10, 18, 8, 0), rows.get(0).record().getTimestamp());
+        assertEquals(3, rows.get(0).lineNumber());
+        assertFalse(rows.get(1).isValid());
+        assertEquals(8, rows.get(1).lineNumber());
+        assertTrue(rows.get(1).error().contains("VASLevel"));
+        assertEquals(8, rows.get(2).record().getVasLevel());
+        assertEquals("Ward A, Bed 12", rows.get(2).record().getLocation());
+        assertEquals("Sharp & stabbing", rows.get(2).record().getNotes());
+    }
+
+    @Test
+    @DisplayName("parse() возвращает первую запись, поврежденный документ - ParseException")
+    void parseReturnsFirstRecordAndRejectsMalformed() throws Exception {
+        String xml = "<vasRecords><VASRecord><PatientMRN>EMR-1</PatientMRN><VASLevel>2</VASLevel></VASRecord>"
+                + "<VASRecord><PatientMRN>EMR-2</PatientMRN><VASLevel>9</VASLevel></VASRecord></vasRecords>";
+
+        assertEquals("EMR-1", parser.parse(xml).getPatientMrn());
+        assertThrows(VasFormatParser.ParseException.class, () -> parser.parse("<vasRecords></vasRecords>"));
+
+        VasRecordReader truncated = parser.openReader(new StringReader(
+                "<vasRecords><VASRecord><PatientMRN>EMR-1</PatientMRN><VASLevel>2</VASLevel></VASRecord><VASRecord><Pat"));
+        assertTrue(truncated.next().isValid());
+        assertThrows(VasFormatParser.ParseException.class, truncated::next);
+    }
+
+    private static List<VasRecordRow> readAll(VasRecordReader reader) throws Exception {
+        List<VasRecordRow> rows = new ArrayList<>();
+        try (reader) {
+            VasRecordRow row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,79 @@
+package pain_helper_back.VAS_external_integration.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import pain_helper_back.VAS_external_integration.entity.ApiKey;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты изменения настроек ключа в ApiKeyRepository на H2.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Деактивация, whitelist и rate limit меняются точечным UPDATE
+ * - usage_count и last_used_at, накопленные ApiKeyUsageTracker, не перезаписываются
+ *   ни точечным UPDATE, ни сохранением ранее загруженной сущности
+ */
+@DataJpaTest
+class ApiKeyRepositoryTest {
+
+    private static final String KEY = "0123456789abcdef0123456789abcdef";
+
+    @Autowired
+    private ApiKeyRepository repository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        entityManager.persistAndFlush(ApiKey.builder()
+                .apiKey(KEY)
+                .systemName("Ward monitors")
+                .active(true)
+                .createdAt(LocalDateTime.now())
+                .ipWhitelist("*")
+                .rateLimitPerMinute(100)
+                .usageCount(0L)
+                .build());
+    }
+
+    @Test
+    @DisplayName("Изменение настроек не теряет использование, учтенное после чтения ключа")
+    void settingsUpdatesKeepUsageCount() {
+        // Ключ загружен до того, как ApiKeyUsageTracker записал использование
+        ApiKey loaded = repository.findById(KEY).orElseThrow();
+        LocalDateTime usedAt = LocalDateTime.now().withNano(0);
+        trackUsage(5, usedAt);
+
+        loaded.setDescription("Ward A bedside monitors");
+        repository.saveAndFlush(loaded);
+        assertEquals(1, repository.updateRateLimit(KEY, 5));
+        assertEquals(1, repository.updateIpWhitelist(KEY, "10.0.0.0/8"));
+        assertEquals(1, repository.deactivate(KEY));
+        assertEquals(0, repository.deactivate("unknown"));
+        entityManager.clear();
+
+        ApiKey stored = repository.findById(KEY).orElseThrow();
+        assertEquals(5L, stored.getUsageCount());
+        assertEquals(usedAt, stored.getLastUsedAt());
+        assertEquals(5, stored.getRateLimitPerMinute());
+        assertEquals("10.0.0.0/8", stored.getIpWhitelist());
+        assertEquals("Ward A bedside monitors", stored.getDescription());
+        assertFalse(stored.getActive());
+    }
+
+    private void trackUsage(int count, LocalDateTime usedAt) {
+        entityManager.getEntityManager()
+                .createNativeQuery("UPDATE api_keys SET usage_count = usage_count + ?, last_used_at = ? WHERE api_key = ?")
+                .setParameter(1, count)
+                .setParameter(2, usedAt)
+                .setParameter(3, KEY)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,165 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.VAS_external_integration.config.ApiKeyConfig;
+import pain_helper_back.VAS_external_integration.entity.ApiKey;
+import pain_helper_back.VAS_external_integration.repository.ApiKeyRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты кэша проверенных API ключей в ApiKeyService (репозиторий и учет использования - моки).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Попадание в кэш не обращается к БД, промах и истекший TTL - обращаются
+ * - Неизвестный ключ не кэшируется
+ * - Деактивация и изменение whitelist / rate limit сбрасывают ключ из кэша сразу и после коммита
+ * - Истекший ключ и IP вне whitelist отклоняются без учета использования
+ */
+@ExtendWith(MockitoExtension.class)
+class ApiKeyServiceTest {
+
+    private static final String KEY = "0123456789abcdef0123456789abcdef";
+
+    @Mock
+    private ApiKeyRepository apiKeyRepository;
+    @Mock
+    private ApiKeyUsageTracker usageTracker;
+
+    private ApiKeyConfig config;
+    private ApiKeyService service;
+
+    @BeforeEach
+    void setUp() {
+        config = new ApiKeyConfig();
+        config.setCacheTtlSeconds(60);
+        service = new ApiKeyService(apiKeyRepository, usageTracker, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Повторная проверка берет ключ из кэша, использование учитывается каждый раз")
+    void cacheHitSkipsDatabase() {
+        when(apiKeyRepository.findByApiKeyAndActiveTrue(KEY)).thenReturn(Optional.of(key("*")));
+
+        assertTrue(service.validateApiKey(KEY, "10.0.0.1"));
+        assertTrue(service.validateApiKey(KEY, "10.0.0.2"));
+
+        verify(apiKeyRepository, times(1)).findByApiKeyAndActiveTrue(KEY);
+        verify(usageTracker, times(2)).recordUsage(KEY);
+    }
+
+    @Test
+    @DisplayName("Неизвестный ключ не кэшируется, истекший TTL перечитывает ключ")
+    void cacheMissAndExpiredTtlReloadKey() {
+        when(apiKeyRepository.findByApiKeyAndActiveTrue("unknown")).thenReturn(Optional.empty());
+
+        assertFalse(service.validateApiKey("unknown", "10.0.0.1"));
+        assertFalse(service.validateApiKey("unknown", "10.0.0.1"));
+        verify(apiKeyRepository, times(2)).findByApiKeyAndActiveTrue("unknown");
+
+        config.setCacheTtlSeconds(0);
+        when(apiKeyRepository.findByApiKeyAndActiveTrue(KEY)).thenReturn(Optional.of(key("*")));
+        service.validateApiKey(KEY, "10.0.0.1");
+        service.validateApiKey(KEY, "10.0.0.1");
+        verify(apiKeyRepository, times(2)).findByApiKeyAndActiveTrue(KEY);
+        verify(usageTracker, never()).recordUsage("unknown");
+    }
+
+    @Test
+    @DisplayName("Деактивация сразу сбрасывает ключ из кэша")
+    void deactivateInvalidatesCache() {
+        when(apiKeyRepository.findByApiKeyAndActiveTrue(KEY)).thenReturn(Optional.of(key("*")), Optional.empty());
+        when(apiKeyRepository.deactivate(KEY)).thenReturn(1);
+        assertTrue(service.validateApiKey(KEY, "10.0.0.1"));
+
+        service.deactivateKey(KEY);
+
+        verify(apiKeyRepository, never()).save(any());
+        assertFalse(service.validateApiKey(KEY, "10.0.0.1"));
+        verify(apiKeyRepository, times(2)).findByApiKeyAndActiveTrue(KEY);
+    }
+
+    @Test
+    @DisplayName("Новый whitelist действует со следующего запроса, некорректный отклоняется")
+    void updateIpWhitelistInvalidatesCache() {
+        when(apiKeyRepository.findByApiKeyAndActiveTrue(KEY))
+                .thenReturn(Optional.of(key("*")), Optional.of(key("10.0.0.0/8")));
+        when(apiKeyRepository.updateIpWhitelist(KEY, "10.0.0.0/8")).thenReturn(1);
+        assertTrue(service.validateApiKey(KEY, "192.168.1.10"));
+
+        service.updateIpWhitelist(KEY, "10.0.0.0/8");
+
+        assertFalse(service.validateApiKey(KEY, "192.168.1.10"));
+        assertTrue(service.validateApiKey(KEY, "10.20.30.40"));
+        assertThrows(IllegalArgumentException.class, () -> service.updateIpWhitelist(KEY, "10.0.0.0/99"));
+        verify(apiKeyRepository, times(1)).updateIpWhitelist(anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("После коммита ключ сбрасывается повторно (строка могла быть закэширована до коммита)")
+    void updateRateLimitInvalidatesAgainAfterCommit() {
+        ApiKey limited = key("*");
+        limited.setRateLimitPerMinute(5);
+        when(apiKeyRepository.findByApiKeyAndActiveTrue(KEY))
+                .thenReturn(Optional.of(key("*")), Optional.of(limited));
+        when(apiKeyRepository.updateRateLimit(KEY, 5)).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.updateRateLimit(KEY, 5);
+        // Параллельный запрос до коммита кэширует ключ
+        service.getActiveKey(KEY);
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        service.getActiveKey(KEY);
+
+        verify(apiKeyRepository, times(2)).findByApiKeyAndActiveTrue(KEY);
+        assertEquals(5, service.getActiveKey(KEY).orElseThrow().rateLimitPerMinute());
+    }
+
+    @Test
+    @DisplayName("Истекший ключ и IP вне whitelist отклоняются без учета использования")
+    void expiredKeyAndForeignIpRejected() {
+        ApiKey expired = key("*");
+        expired.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        when(apiKeyRepository.findByApiKeyAndActiveTrue("expired")).thenReturn(Optional.of(expired));
+        when(apiKeyRepository.findByApiKeyAndActiveTrue(KEY)).thenReturn(Optional.of(key("10.1.0.0/16")));
+
+        assertFalse(service.validateApiKey("expired", "10.1.2.3"));
+        assertFalse(service.validateApiKey(KEY, "10.2.0.1"));
+
+        verifyNoInteractions(usageTracker);
+    }
+
+    private static ApiKey key(String ipWhitelist) {
+        return ApiKey.builder()
+                .apiKey(KEY)
+                .systemName("Ward monitors")
+                .active(true)
+                .createdAt(LocalDateTime.now())
+                .ipWhitelist(ipWhitelist)
+                .rateLimitPerMinute(100)
+                .usageCount(0L)
+                .build();
+    }
+}
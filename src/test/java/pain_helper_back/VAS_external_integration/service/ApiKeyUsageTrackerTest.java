@@ -0,0 +1,90 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты ApiKeyUsageTracker (JdbcTemplate - мок).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Использования копятся в памяти и записываются одним batch с приращением по каждому ключу
+ * - После записи счетчики обнулены, пустой flush не обращается к БД
+ * - При ошибке записи приращения возвращаются в счетчики и пишутся следующим flush
+ */
+@ExtendWith(MockitoExtension.class)
+class ApiKeyUsageTrackerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Captor
+    private ArgumentCaptor<List<Object[]>> batchCaptor;
+
+    private ApiKeyUsageTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new ApiKeyUsageTracker(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("flush пишет приращения всех ключей одним batch и обнуляет счетчики")
+    void flushWritesDeltasInOneBatch() {
+        long before = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            tracker.recordUsage("key-a");
+        }
+        tracker.recordUsage("key-b");
+        assertEquals(3, tracker.getPendingUsage("key-a"));
+
+        tracker.flush();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), batchCaptor.capture());
+        List<Object[]> updates = batchCaptor.getValue().stream()
+                .sorted(Comparator.comparing(update -> (String) update[2]))
+                .toList();
+        assertEquals(2, updates.size());
+        assertEquals(3L, updates.get(0)[0]);
+        assertEquals("key-a", updates.get(0)[2]);
+        assertEquals(1L, updates.get(1)[0]);
+        assertTrue(((Timestamp) updates.get(0)[1]).getTime() >= before);
+        assertEquals(0, tracker.getPendingUsage("key-a"));
+
+        tracker.flush();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Ошибка записи не теряет приращения")
+    void failedFlushKeepsDeltas() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database unavailable"))
+                .thenReturn(new int[]{1});
+        tracker.recordUsage("key-a");
+        tracker.recordUsage("key-a");
+
+        tracker.flush();
+        assertEquals(2, tracker.getPendingUsage("key-a"));
+
+        tracker.recordUsage("key-a");
+        tracker.flush();
+
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batchCaptor.capture());
+        assertEquals(3L, batchCaptor.getValue().get(0)[0]);
+        assertEquals(0, tracker.getPendingUsage("key-a"));
+    }
+}
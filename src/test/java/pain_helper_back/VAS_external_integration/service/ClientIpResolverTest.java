@@ -0,0 +1,70 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import pain_helper_back.VAS_external_integration.config.VasRateLimitConfig;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты ClientIpResolver.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Без доверенных proxy X-Forwarded-For игнорируется (подмена заголовка не меняет адрес)
+ * - От недоверенного адреса X-Forwarded-For игнорируется
+ * - За доверенным proxy клиент - крайний справа адрес цепочки, не являющийся доверенным proxy
+ * - Некорректный список доверенных proxy - ошибка конфигурации
+ */
+class ClientIpResolverTest {
+
+    @Test
+    @DisplayName("Без доверенных proxy используется адрес соединения")
+    void ignoresForwardedForWithoutTrustedProxies() {
+        ClientIpResolver resolver = resolver("");
+
+        assertEquals("203.0.113.7", resolver.resolve(request("203.0.113.7", "10.9.9.9")));
+    }
+
+    @Test
+    @DisplayName("X-Forwarded-For от недоверенного адреса игнорируется")
+    void ignoresForwardedForFromUntrustedPeer() {
+        ClientIpResolver resolver = resolver("10.0.0.0/24");
+
+        assertEquals("203.0.113.7", resolver.resolve(request("203.0.113.7", "198.51.100.1")));
+    }
+
+    @Test
+    @DisplayName("За доверенным proxy клиент - крайний справа недоверенный адрес")
+    void usesRightmostUntrustedHopBehindTrustedProxy() {
+        ClientIpResolver resolver = resolver("10.0.0.0/24, 192.168.5.1");
+
+        assertEquals("198.51.100.1", resolver.resolve(request("10.0.0.5", "198.51.100.1")));
+        // Клиент подставил свой X-Forwarded-For: значение слева от реального адреса не используется
+        assertEquals("198.51.100.1", resolver.resolve(request("10.0.0.5", "1.2.3.4, 198.51.100.1, 192.168.5.1")));
+        assertEquals("10.0.0.5", resolver.resolve(request("10.0.0.5", null)));
+        // Вся цепочка из доверенных proxy - самый дальний из них
+        assertEquals("10.0.0.9", resolver.resolve(request("10.0.0.5", "10.0.0.9, 192.168.5.1")));
+    }
+
+    @Test
+    @DisplayName("Некорректный список доверенных proxy отклоняется при старте")
+    void rejectsInvalidTrustedProxies() {
+        assertThrows(IllegalArgumentException.class, () -> resolver("10.0.0.0/24, proxy.local"));
+    }
+
+    private static ClientIpResolver resolver(String trustedProxies) {
+        VasRateLimitConfig config = new VasRateLimitConfig();
+        config.setTrustedProxies(trustedProxies);
+        return new ClientIpResolver(config);
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,104 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordResponseDTO;
+import pain_helper_back.common.patients.entity.Patient;
+import pain_helper_back.common.patients.entity.Vas;
+import pain_helper_back.common.patients.repository.PatientRepository;
+import pain_helper_back.common.patients.repository.RecommendationRepository;
+import pain_helper_back.common.patients.repository.VasRepository;
+import pain_helper_back.nurse.service.NurseService;
+import pain_helper_back.pain_escalation_tracking.service.PainEscalationService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/*
+ * Тесты фильтра location в ExternalVasIntegrationService.getVasRecords на H2
+ * (репозитории настоящие, остальные зависимости - моки).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Локация сравнивается по префиксу: "Ward A" находит "Ward A" и "Ward A, Bed 12", но не "Old Ward A"
+ * - Спецсимволы LIKE в фильтре экранируются
+ * - Префиксный LIKE использует индекс idx_vas_location
+ */
+@DataJpaTest
+class ExternalVasRecordsQueryTest {
+
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private VasRepository vasRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private ExternalVasIntegrationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ExternalVasIntegrationService(patientRepository, vasRepository, mock(NurseService.class),
+                mock(ApplicationEventPublisher.class), mock(PainEscalationService.class),
+                mock(RecommendationRepository.class), mock(VasStatisticsService.class),
+                mock(VasDeduplicationService.class), mock(VasStreamService.class));
+
+        Patient patient = new Patient();
+        patient.setMrn("MRN-1");
+        patient.setFirstName("Anna");
+        patient.setLastName("Petrova");
+        entityManager.persist(patient);
+        for (String location : List.of("Ward A", "Ward A, Bed 12", "Old Ward A", "Ward B", "Ward_A%")) {
+            Vas vas = new Vas();
+            vas.setPatient(patient);
+            vas.setVasLevel(5);
+            vas.setLocation(location);
+            vas.setRecordedBy("EXTERNAL_MONITOR-1");
+            entityManager.persist(vas);
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Фильтр location сравнивает начало локации")
+    void filtersByLocationPrefix() {
+        assertEquals(List.of("Ward A", "Ward A, Bed 12"), locations("Ward A"));
+        assertEquals(List.of("Ward A, Bed 12"), locations(" Ward A, "));
+        assertEquals(2, service.countVasRecords(null, "Ward A", null, null, null));
+    }
+
+    @Test
+    @DisplayName("Символы '_' и '%' в фильтре не являются шаблоном LIKE")
+    void escapesLikeWildcards() {
+        assertEquals(List.of("Ward_A%"), locations("Ward_A%"));
+        assertEquals(List.of(), locations("W%A"));
+    }
+
+    @Test
+    @DisplayName("Префиксный LIKE использует индекс idx_vas_location, поиск по подстроке - нет")
+    void prefixLikeUsesLocationIndex() {
+        String prefixPlan = explain("SELECT vas_id FROM vas WHERE location LIKE 'Ward A%'");
+        String containsPlan = explain("SELECT vas_id FROM vas WHERE location LIKE '%Ward A%'");
+
+        assertTrue(prefixPlan.contains("IDX_VAS_LOCATION"), prefixPlan);
+        assertFalse(containsPlan.contains("IDX_VAS_LOCATION: LOCATION"), containsPlan);
+    }
+
+    private List<String> locations(String filter) {
+        return service.getVasRecords(null, filter, null, null, null, 0, 50).getContent().stream()
+                .map(ExternalVasRecordResponseDTO::getLocation)
+                .sorted()
+                .toList();
+    }
+
+    private String explain(String sql) {
+        Object plan = entityManager.getEntityManager().createNativeQuery("EXPLAIN " + sql).getSingleResult();
+        return plan.toString().replace("\"", "").toUpperCase();
+    }
+}
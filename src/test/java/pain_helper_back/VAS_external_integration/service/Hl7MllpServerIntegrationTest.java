@@ -0,0 +1,283 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import pain_helper_back.VAS_external_integration.config.Hl7MllpConfig;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.parser.Hl7VasParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/*
+ * Интеграционные тесты Hl7MllpServer: реальный TCP сервер на свободном порту
+ * и локальный MLLP клиент. Ingest pipeline заменен mock объектом.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - ACK (MSA|AA) со ссылкой на MSH-10 исходного сообщения
+ * - NAK (MSA|AE) для неразбираемого сообщения, соединение остается открытым
+ * - MSA|AR при переполненной очереди ingest
+ * - Кадры, пришедшие частями и несколько кадров в одной записи
+ * - Много одновременных долгоживущих соединений
+ * - Соединения с адресов вне vas.mllp.allowed-sources закрываются
+ */
+@Slf4j
+class Hl7MllpServerIntegrationTest {
+
+    private Hl7MllpServer server;
+    private VasIngestPipeline ingestPipeline;
+    private Level previousLogLevel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Глушим только сервер, чтобы собственный лог теста оставался виден
+        Logger serverLogger = (Logger) LoggerFactory.getLogger(Hl7MllpServer.class);
+        previousLogLevel = serverLogger.getLevel();
+        serverLogger.setLevel(Level.ERROR);
+
+        ingestPipeline = mock(VasIngestPipeline.class);
+        when(ingestPipeline.submit(any())).thenReturn(Optional.of("tracking-id"));
+
+        server = startServer(config());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+        ((Logger) LoggerFactory.getLogger(Hl7MllpServer.class)).setLevel(previousLogLevel);
+    }
+
+    @Test
+    @DisplayName("По умолчанию сервер слушает только loopback")
+    void shouldBindToLoopbackByDefault() {
+        assertEquals("127.0.0.1", new Hl7MllpConfig().getBindAddress());
+    }
+
+    @Test
+    @DisplayName("Должен закрыть соединение с адреса вне allowed-sources, не читая сообщений")
+    void shouldRefuseConnectionFromUnlistedSource() throws Exception {
+        Hl7MllpConfig config = config();
+        config.setAllowedSources("10.0.0.0/8, 192.168.10.15");
+        Hl7MllpServer restricted = startServer(config);
+        try (MllpClient client = new MllpClient(restricted.getLocalPort())) {
+            assertNull(client.readFrame());
+            assertEquals(1, restricted.getConnectionsRefused());
+            assertEquals(0, restricted.getOpenConnections());
+        } finally {
+            restricted.stop();
+        }
+        verifyNoInteractions(ingestPipeline);
+    }
+
+    @Test
+    @DisplayName("Некорректная запись allowed-sources - ошибка конфигурации")
+    void shouldRejectInvalidAllowedSources() {
+        Hl7MllpConfig config = config();
+        config.setAllowedSources("10.0.0.0/8, ward-monitor");
+        assertThrows(IllegalArgumentException.class,
+                () -> new Hl7MllpServer(config, new Hl7VasParser(), ingestPipeline));
+    }
+
+    @Test
+    @DisplayName("Должен ответить ACK и передать запись в ingest pipeline")
+    void shouldAcknowledgeValidMessage() throws Exception {
+        try (MllpClient client = new MllpClient(server.getLocalPort())) {
+            client.send(hl7Message("MSG001", "EMR-12345678", 7));
+            String ack = client.readFrame();
+
+            assertTrue(ack.startsWith("MSH|^~\\&|PMA|HOSPITAL|VAS_MONITOR|WARD_A|"), ack);
+            assertTrue(ack.contains("\rMSA|AA|MSG001\r"), ack);
+        }
+        verify(ingestPipeline).submit(argThat((ExternalVasRecordRequestDTO record) ->
+                "EMR-12345678".equals(record.getPatientMrn())
+                        && record.getVasLevel() == 7
+                        && "HL7_MLLP".equals(record.getSource())));
+    }
+
+    @Test
+    @DisplayName("Должен ответить NAK на невалидное сообщение и продолжить работу соединения")
+    void shouldRejectInvalidMessageAndKeepConnection() throws Exception {
+        try (MllpClient client = new MllpClient(server.getLocalPort())) {
+            client.send(hl7Message("MSG002", "EMR-12345678", 42));
+            assertTrue(client.readFrame().contains("\rMSA|AE|MSG002|"));
+
+            client.send(hl7Message("MSG003", "EMR-12345678", 3));
+            assertTrue(client.readFrame().contains("\rMSA|AA|MSG003\r"));
+        }
+    }
+
+    @Test
+    @DisplayName("Должен ответить AR при переполненной очереди ingest")
+    void shouldRejectWhenIngestQueueIsFull() throws Exception {
+        when(ingestPipeline.submit(any())).thenReturn(Optional.empty());
+        try (MllpClient client = new MllpClient(server.getLocalPort())) {
+            client.send(hl7Message("MSG004", "EMR-12345678", 5));
+            assertTrue(client.readFrame().contains("\rMSA|AR|MSG004|"));
+        }
+    }
+
+    @Test
+    @DisplayName("Должен собирать кадры, пришедшие частями, и несколько кадров в одной записи")
+    void shouldHandleSplitAndCoalescedFrames() throws Exception {
+        try (MllpClient client = new MllpClient(server.getLocalPort())) {
+            byte[] first = frame(hl7Message("MSG005", "EMR-1", 1));
+            client.writeRaw(java.util.Arrays.copyOfRange(first, 0, 20));
+            Thread.sleep(50);
+            client.writeRaw(java.util.Arrays.copyOfRange(first, 20, first.length));
+            assertTrue(client.readFrame().contains("MSA|AA|MSG005"));
+
+            ByteArrayOutputStream both = new ByteArrayOutputStream();
+            both.write(frame(hl7Message("MSG006", "EMR-2", 2)));
+            both.write(frame(hl7Message("MSG007", "EMR-3", 3)));
+            client.writeRaw(both.toByteArray());
+            assertTrue(client.readFrame().contains("MSA|AA|MSG006"));
+            assertTrue(client.readFrame().contains("MSA|AA|MSG007"));
+        }
+    }
+
+    @Test
+    @DisplayName("Должен закрыть соединение при слишком длинном сообщении")
+    void shouldCloseConnectionOnOversizedMessage() throws Exception {
+        try (MllpClient client = new MllpClient(server.getLocalPort())) {
+            client.send("MSH|" + "X".repeat(5000));
+            assertTrue(client.readFrame().contains("MSA|AE||Message too large"));
+            assertNull(client.readFrame());
+        }
+    }
+
+    @Test
+    @DisplayName("Должен обслуживать много одновременных соединений")
+    void shouldServeManyConcurrentConnections() throws Exception {
+        int connections = 50;
+        int messagesPerConnection = 200;
+        ExecutorService clients = Executors.newFixedThreadPool(connections);
+        AtomicInteger acks = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int connectionId = c;
+            futures.add(clients.submit(() -> {
+                try (MllpClient client = new MllpClient(server.getLocalPort())) {
+                    for (int m = 0; m < messagesPerConnection; m++) {
+                        String controlId = "C" + connectionId + "-" + m;
+                        client.send(hl7Message(controlId, "EMR-" + connectionId, m % 11));
+                        if (client.readFrame().contains("MSA|AA|" + controlId + "\r")) {
+                            acks.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        clients.shutdown();
+
+        int total = connections * messagesPerConnection;
+        log.info("HL7 MLLP: {} messages over {} connections in {} ms ({} msg/s)",
+                total, connections, elapsedMs, total * 1000L / elapsedMs);
+        assertEquals(total, acks.get());
+        verify(ingestPipeline, times(total)).submit(any());
+    }
+
+    private static Hl7MllpConfig config() {
+        Hl7MllpConfig config = new Hl7MllpConfig();
+        config.setEnabled(true);
+        config.setPort(0);
+        config.setMaxMessageBytes(4096);
+        return config;
+    }
+
+    private Hl7MllpServer startServer(Hl7MllpConfig config) throws IOException {
+        Hl7MllpServer started = new Hl7MllpServer(config, new Hl7VasParser(), ingestPipeline);
+        started.start();
+        return started;
+    }
+
+    private static String hl7Message(String controlId, String mrn, int vasLevel) {
+        return "MSH|^~\\&|VAS_MONITOR|WARD_A|PMA|HOSPITAL|20251020153000||ORU^R01|" + controlId + "|P|2.5\r"
+                + "PID|1||" + mrn + "^^^MRN||DOE^JOHN||19800515|M\r"
+                + "OBR|1||VAS001|VAS^Visual Analog Scale^LOCAL|||20251020153000\r"
+                + "OBX|1|NM|VAS^Pain Level^LOCAL||" + vasLevel + "|points|0-10|N|||F\r";
+    }
+
+    private static byte[] frame(String message) {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        byte[] framed = new byte[payload.length + 3];
+        framed[0] = Hl7MllpServer.START_BLOCK;
+        System.arraycopy(payload, 0, framed, 1, payload.length);
+        framed[framed.length - 2] = Hl7MllpServer.END_BLOCK;
+        framed[framed.length - 1] = Hl7MllpServer.CARRIAGE_RETURN;
+        return framed;
+    }
+
+    /*
+     * Минимальный блокирующий MLLP клиент
+     */
+    private static final class MllpClient implements AutoCloseable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final InputStream in;
+
+        private MllpClient(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setSoTimeout(10_000);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = socket.getInputStream();
+        }
+
+        private void send(String message) throws IOException {
+            writeRaw(frame(message));
+        }
+
+        private void writeRaw(byte[] bytes) throws IOException {
+            out.write(bytes);
+            out.flush();
+        }
+
+        /*
+         * @return содержимое следующего кадра или null, если сервер закрыл соединение
+         */
+        private String readFrame() throws IOException {
+            int b;
+            while ((b = in.read()) != Hl7MllpServer.START_BLOCK) {
+                if (b < 0) return null;
+            }
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            while ((b = in.read()) != Hl7MllpServer.END_BLOCK) {
+                if (b < 0) return null;
+                message.write(b);
+            }
+            assertEquals(Hl7MllpServer.CARRIAGE_RETURN, in.read());
+            return message.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
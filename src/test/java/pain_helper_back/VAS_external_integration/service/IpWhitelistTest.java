@@ -0,0 +1,108 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для IpWhitelist.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - "*" и пустой whitelist разрешают любой адрес
+ * - Отдельные адреса и CIDR блоки IPv4 / IPv6, включая сокращенную запись IPv6
+ * - IPv4-mapped IPv6 адрес клиента совпадает с IPv4 блоком
+ * - Некорректные записи пропускаются при компиляции и отклоняются validate()
+ * - Проверка адреса не создает объектов
+ */
+class IpWhitelistTest {
+
+    @Test
+    @DisplayName("Должен разрешать любой адрес для пустого whitelist и '*'")
+    void shouldAllowAllForWildcard() {
+        assertTrue(IpWhitelist.compile(null).matches("10.0.0.1"));
+        assertTrue(IpWhitelist.compile(" ").matches("10.0.0.1"));
+        assertTrue(IpWhitelist.compile("*").matches("2001:db8::1"));
+        assertTrue(IpWhitelist.compile("10.0.0.1, *").matches("192.168.0.1"));
+    }
+
+    @Test
+    @DisplayName("Должен проверять отдельные IPv4 адреса и CIDR блоки")
+    void shouldMatchIpv4AddressesAndBlocks() {
+        IpWhitelist whitelist = IpWhitelist.compile("192.168.1.100, 10.20.0.0/16,172.16.5.7/32");
+
+        assertTrue(whitelist.matches("192.168.1.100"));
+        assertFalse(whitelist.matches("192.168.1.101"));
+        assertTrue(whitelist.matches("10.20.0.1"));
+        assertTrue(whitelist.matches("10.20.255.255"));
+        assertFalse(whitelist.matches("10.21.0.1"));
+        assertTrue(whitelist.matches("172.16.5.7"));
+        assertFalse(whitelist.matches("172.16.5.8"));
+        assertFalse(whitelist.matches("unknown"));
+        assertFalse(whitelist.matches(null));
+    }
+
+    @Test
+    @DisplayName("Должен проверять IPv6 адреса в любой текстовой записи")
+    void shouldMatchIpv6AddressesAndBlocks() {
+        IpWhitelist whitelist = IpWhitelist.compile("2001:db8::/32, ::1, fe80::1");
+
+        assertTrue(whitelist.matches("2001:db8:0:0:0:0:0:42"));
+        assertTrue(whitelist.matches("2001:DB8:ffff::1"));
+        assertFalse(whitelist.matches("2001:db9::1"));
+        assertTrue(whitelist.matches("0:0:0:0:0:0:0:1"));
+        assertTrue(whitelist.matches("[::1]"));
+        assertTrue(whitelist.matches("fe80::1%eth0"));
+        assertFalse(whitelist.matches("::2"));
+    }
+
+    @Test
+    @DisplayName("Должен сопоставлять IPv4-mapped IPv6 адрес с IPv4 блоком")
+    void shouldMatchIpv4MappedAddress() {
+        IpWhitelist whitelist = IpWhitelist.compile("10.0.0.0/8");
+
+        assertTrue(whitelist.matches("::ffff:10.1.2.3"));
+        assertTrue(whitelist.matches("::ffff:a01:203"));
+        assertFalse(whitelist.matches("::10.1.2.3"));
+    }
+
+    @Test
+    @DisplayName("Должен пропускать некорректные записи и отклонять их в validate()")
+    void shouldHandleInvalidEntries() {
+        IpWhitelist whitelist = IpWhitelist.compile("localhost, 10.0.0.256, 10.0.0.1/33, 1:2:3, 192.168.0.1");
+
+        assertTrue(whitelist.matches("192.168.0.1"));
+        assertFalse(whitelist.matches("10.0.0.1"));
+        assertFalse(IpWhitelist.compile("localhost").matches("127.0.0.1"));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> IpWhitelist.validate("10.0.0.0/8, 1::2::3, 10.0.0.1/x"));
+        assertTrue(error.getMessage().contains("1::2::3"));
+        assertTrue(error.getMessage().contains("10.0.0.1/x"));
+        assertDoesNotThrow(() -> IpWhitelist.validate("*, 10.0.0.0/8, 2001:db8::/32, ::ffff:1.2.3.4"));
+    }
+
+    @Test
+    @DisplayName("Должен проверять адрес без создания объектов")
+    void shouldMatchWithoutAllocation() {
+        IpWhitelist whitelist = IpWhitelist.compile("10.20.0.0/16, 192.168.1.0/24, 2001:db8::/32");
+        String[] clients = {"10.20.3.4", "192.168.1.77", "2001:db8::7", "fe80::1"};
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        int matched = 0;
+        for (int i = 0; i < 200_000; i++) {
+            if (whitelist.matches(clients[i & 3])) matched++;
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            if (whitelist.matches(clients[i & 3])) matched++;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(225_000, matched);
+        assertTrue(allocated < 1024, "Allocated " + allocated + " bytes in 100000 lookups");
+    }
+}
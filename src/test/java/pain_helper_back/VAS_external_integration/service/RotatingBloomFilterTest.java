@@ -0,0 +1,82 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для RotatingBloomFilter.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Размер фильтра и число хэш-функций по ожидаемому числу элементов и доле ложных срабатываний
+ * - Нет ложноотрицательных ответов в текущем и предыдущем поколении
+ * - Элемент забывается через две ротации
+ * - Доля ложных срабатываний при расчетном заполнении близка к целевой
+ */
+class RotatingBloomFilterTest {
+
+    @Test
+    @DisplayName("Должен рассчитать размер и число хэш-функций")
+    void shouldSizeFilter() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000_000, 0.001);
+
+        assertEquals(14_377_600, filter.getBitsPerGeneration());
+        assertEquals(10, filter.getHashFunctions());
+        assertEquals(2 * 14_377_600 / 8, filter.getMemoryBytes());
+    }
+
+    @Test
+    @DisplayName("Должен находить элементы текущего и предыдущего поколения и забывать их через две ротации")
+    void shouldRememberForTwoGenerations() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(10_000, 0.001);
+        SplittableRandom random = new SplittableRandom(7);
+        long[][] items = new long[5_000][2];
+        for (long[] item : items) {
+            item[0] = random.nextLong();
+            item[1] = random.nextLong();
+            filter.put(item[0], item[1]);
+        }
+        for (long[] item : items) {
+            assertTrue(filter.put(item[0], item[1]), "Повтор в текущем поколении");
+        }
+
+        filter.rotate();
+        assertEquals(0, filter.getCurrentInsertions());
+        for (long[] item : items) {
+            assertTrue(filter.mightContain(item[0], item[1]), "Элемент предыдущего поколения");
+        }
+
+        filter.rotate();
+        int remembered = 0;
+        for (long[] item : items) {
+            if (filter.mightContain(item[0], item[1])) remembered++;
+        }
+        assertEquals(0, remembered);
+    }
+
+    @Test
+    @DisplayName("Должен держать долю ложных срабатываний около целевой при расчетном заполнении")
+    void shouldKeepFalsePositiveRateNearTarget() {
+        int expected = 100_000;
+        RotatingBloomFilter filter = new RotatingBloomFilter(expected, 0.01);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < expected; i++) {
+            filter.put(random.nextLong(), random.nextLong());
+        }
+        // Элементы, все биты которых уже были выставлены, не считаются добавленными
+        assertTrue(filter.getCurrentInsertions() > expected * 0.98);
+
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(random.nextLong(), random.nextLong())) falsePositives++;
+        }
+        double observed = (double) falsePositives / probes;
+
+        assertTrue(observed < 0.015, "Observed false positive rate " + observed);
+        assertEquals(0.01, filter.getEstimatedFalsePositiveRate(), 0.002);
+    }
+}
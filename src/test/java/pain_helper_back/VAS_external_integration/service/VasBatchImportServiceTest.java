@@ -0,0 +1,190 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pain_helper_back.VAS_external_integration.config.VasImportConfig;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.parser.CsvVasParser;
+import pain_helper_back.VAS_external_integration.parser.FhirVasParser;
+import pain_helper_back.VAS_external_integration.parser.XmlVasParser;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты потокового CSV импорта в VasBatchImportService (сохранение заменено моком
+ * ExternalVasIntegrationService, рекомендации выполняются в вызывающем потоке).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Валидные строки сохраняются чанками по vas.import.chunk-size, ошибки строк попадают в отчет
+ * - Ошибка одного чанка отклоняет только его строки, следующие чанки сохраняются
+ * - Рекомендации запрашиваются после коммита для пациентов с VAS >= 4, по одной на MRN в чанке
+ * - Файл читается по мере сохранения чанков, а не целиком до первого коммита
+ * - Прогресс импорта доступен по importId
+ */
+@ExtendWith(MockitoExtension.class)
+class VasBatchImportServiceTest {
+
+    @Mock
+    private ExternalVasIntegrationService integrationService;
+
+    private final List<List<String>> persistedChunks = new ArrayList<>();
+    private VasImportConfig config;
+    private VasBatchImportService service;
+
+    @BeforeEach
+    void setUp() {
+        config = new VasImportConfig();
+        config.setChunkSize(2);
+        Executor sameThread = Runnable::run;
+        service = new VasBatchImportService(new CsvVasParser(), new XmlVasParser(),
+                new FhirVasParser(new ObjectMapper()), integrationService, config, sameThread);
+    }
+
+    @Test
+    @DisplayName("Должен сохранять валидные строки чанками и отчитываться об ошибках строк")
+    void shouldCommitChunksAndReportRowErrors() throws Exception {
+        persistAll();
+        String csv = """
+                PatientMRN,VASLevel
+                EMR-1,2
+                EMR-2,bad
+                EMR-3,5
+                EMR-4,7
+                EMR-4,8
+                """;
+
+        Map<String, Object> result = service.importBatch("imp-1", "text/csv", new StringReader(csv));
+
+        assertEquals(List.of(List.of("EMR-1", "EMR-3"), List.of("EMR-4", "EMR-4")), persistedChunks);
+        assertEquals(5, result.get("total"));
+        assertEquals(4, result.get("success"));
+        assertEquals(1, result.get("failed"));
+        assertEquals(2, result.get("chunks"));
+        assertEquals("partial_success", result.get("status"));
+        assertEquals(List.of("Line 3: Invalid integer value: bad"), result.get("errors"));
+        verify(integrationService, times(1)).generateRecommendationIfNoPending("EMR-3");
+        verify(integrationService, times(1)).generateRecommendationIfNoPending("EMR-4");
+        verify(integrationService, never()).generateRecommendationIfNoPending("EMR-1");
+
+        assertEquals("COMPLETED", service.getProgress("imp-1").orElseThrow().getStatus());
+        assertEquals(5, service.getProgress("imp-1").orElseThrow().getRowsRead());
+    }
+
+    @Test
+    @DisplayName("Ошибка чанка отклоняет только его строки, импорт продолжается")
+    void shouldRejectOnlyFailedChunk() throws Exception {
+        when(integrationService.persistIngestBatch(anyList()))
+                .thenThrow(new IllegalStateException("connection reset"))
+                .thenAnswer(invocation -> created(invocation.getArgument(0)));
+        String csv = "PatientMRN,VASLevel\nEMR-1,1\nEMR-2,1\nEMR-3,1\n";
+
+        Map<String, Object> result = service.importBatch("imp-2", "text/csv", new StringReader(csv));
+
+        assertEquals(1, result.get("success"));
+        assertEquals(2, result.get("failed"));
+        assertEquals(1, result.get("chunks"));
+        assertEquals(List.of("Line 2: connection reset (MRN: EMR-1)", "Line 3: connection reset (MRN: EMR-2)"),
+                result.get("errors"));
+        assertEquals("COMPLETED", service.getProgress("imp-2").orElseThrow().getStatus());
+    }
+
+    @Test
+    @DisplayName("Запись без пациента и дубликат не считаются созданными")
+    void shouldReportMissingPatientAndDuplicate() throws Exception {
+        when(integrationService.persistIngestBatch(anyList())).thenReturn(List.of(
+                new ExternalVasIntegrationService.IngestResult(null, false),
+                new ExternalVasIntegrationService.IngestResult(42L, true)));
+
+        Map<String, Object> result = service.importBatch("imp-3", null,
+                new StringReader("PatientMRN,VASLevel\nUNKNOWN,9\nEMR-1,9\n"));
+
+        assertEquals(0, result.get("success"));
+        assertEquals(1, result.get("duplicates"));
+        assertEquals(List.of("Line 2: Patient not found (MRN: UNKNOWN)"), result.get("errors"));
+        verify(integrationService, never()).generateRecommendationIfNoPending(anyString());
+    }
+
+    @Test
+    @DisplayName("Первый чанк сохраняется, когда прочитана лишь малая часть файла")
+    void shouldStreamInsteadOfBufferingWholeFile() throws Exception {
+        config.setChunkSize(100);
+        int totalRows = 50_000;
+        GeneratedCsv source = new GeneratedCsv(totalRows);
+        List<Integer> rowsGeneratedAtCommit = new ArrayList<>();
+        when(integrationService.persistIngestBatch(anyList())).thenAnswer(invocation -> {
+            rowsGeneratedAtCommit.add(source.rowsGenerated);
+            return created(invocation.getArgument(0));
+        });
+
+        Map<String, Object> result = service.importBatch("imp-4", "text/csv", source);
+
+        assertEquals(totalRows, result.get("success"));
+        assertEquals(totalRows / 100, rowsGeneratedAtCommit.size());
+        // Впереди текущего чанка только буфер BufferedReader (8192 символа)
+        assertTrue(rowsGeneratedAtCommit.get(0) < 1_000, "rows read before first commit: " + rowsGeneratedAtCommit.get(0));
+        assertEquals(1_000, ((List<?>) result.get("createdVasIds")).size());
+        assertEquals(true, result.get("createdVasIdsTruncated"));
+    }
+
+    private void persistAll() {
+        when(integrationService.persistIngestBatch(anyList())).thenAnswer(invocation -> {
+            List<ExternalVasRecordRequestDTO> records = invocation.getArgument(0);
+            persistedChunks.add(records.stream().map(ExternalVasRecordRequestDTO::getPatientMrn).toList());
+            return created(records);
+        });
+    }
+
+    private static List<ExternalVasIntegrationService.IngestResult> created(List<ExternalVasRecordRequestDTO> records) {
+        return IntStream.range(0, records.size())
+                .mapToObj(i -> new ExternalVasIntegrationService.IngestResult((long) i + 1, false))
+                .toList();
+    }
+
+    /*
+     * CSV, строки которого генерируются по мере чтения (файл целиком в памяти не существует)
+     */
+    private static final class GeneratedCsv extends Reader {
+        private final int totalRows;
+        private int rowsGenerated;
+        private String pending = "PatientMRN,VASLevel\n";
+        private int position;
+
+        private GeneratedCsv(int totalRows) {
+            this.totalRows = totalRows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == pending.length()) {
+                if (rowsGenerated == totalRows) {
+                    return -1;
+                }
+                rowsGenerated++;
+                pending = "EMR-" + rowsGenerated + "," + (rowsGenerated % 4) + "\n";
+                position = 0;
+            }
+            int count = Math.min(length, pending.length() - position);
+            pending.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import pain_helper_back.VAS_external_integration.config.VasIngestConfig;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.dto.VasIngestStatsDTO;
+import pain_helper_back.VAS_external_integration.service.ExternalVasIntegrationService.IngestResult;
+import pain_helper_back.enums.VasIngestStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты для VasIngestPipeline (ExternalVasIntegrationService заменен моком).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Накопившиеся записи сохраняются микро-батчами не больше batchSize
+ * - Переполнение очереди: submit() возвращает пустой Optional и считается в rejected
+ * - Статусы PERSISTED / DUPLICATE / FAILED, ошибка батча помечает все его записи
+ * - Повтор батча после конфликта уникального ключа
+ * - Одна рекомендация на пациента за батч
+ * - Остановка дочищает очередь
+ *
+ * Нагрузочный прогон (пропускная способность и p99 enqueue-to-commit) включается
+ * -Dvas.ingest.load=true, объем - -Dvas.ingest.load.readings, время коммита батча - -Dvas.ingest.load.commit-ms.
+ */
+@Slf4j
+@Timeout(30)
+class VasIngestPipelineTest {
+
+    private ExternalVasIntegrationService integrationService;
+    private VasIngestConfig config;
+    private VasIngestPipeline pipeline;
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        integrationService = mock(ExternalVasIntegrationService.class);
+        config = new VasIngestConfig();
+        config.setWorkerCount(1);
+        config.setBatchSize(10);
+        config.setPollTimeoutMs(20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseFirstBatch.countDown();
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Записи, накопившиеся за время коммита, сохраняются батчами не больше batchSize")
+    void drainsQueueInMicroBatches() throws Exception {
+        persistHoldingFirstBatch();
+        start();
+
+        String first = submit("MRN-0", 2);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        List<String> rest = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            rest.add(submit("MRN-" + i, 2));
+        }
+        releaseFirstBatch.countDown();
+
+        awaitStatus(rest.get(rest.size() - 1), VasIngestStatus.PERSISTED);
+        assertEquals(List.of(1, 10, 10, 5), batchSizes);
+        assertEquals(VasIngestStatus.PERSISTED, status(first));
+        VasIngestStatsDTO stats = pipeline.getStats();
+        assertEquals(26, stats.getPersisted());
+        assertEquals(4, stats.getBatches());
+    }
+
+    @Test
+    @DisplayName("Переполнение очереди: запись отклоняется без ожидания")
+    void rejectsWhenQueueIsFull() throws Exception {
+        config.setQueueCapacity(2);
+        persistHoldingFirstBatch();
+        start();
+
+        submit("MRN-0", 2);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        String queued1 = submit("MRN-1", 2);
+        String queued2 = submit("MRN-2", 2);
+        Optional<String> overflow = pipeline.submit(record("MRN-3", 2));
+
+        assertTrue(overflow.isEmpty());
+        assertEquals(1, pipeline.getStats().getRejected());
+        assertEquals(2, pipeline.getStats().getQueueDepth());
+        assertEquals(VasIngestStatus.QUEUED, status(queued1));
+
+        releaseFirstBatch.countDown();
+        awaitStatus(queued2, VasIngestStatus.PERSISTED);
+        assertTrue(pipeline.submit(record("MRN-4", 2)).isPresent());
+    }
+
+    @Test
+    @DisplayName("Статусы: сохранена, дубликат, пациент не найден")
+    void marksEachReadingStatus() {
+        when(integrationService.persistIngestBatch(anyList())).thenAnswer(invocation -> {
+            List<ExternalVasRecordRequestDTO> records = invocation.getArgument(0);
+            List<IngestResult> results = new ArrayList<>();
+            for (ExternalVasRecordRequestDTO record : records) {
+                switch (record.getPatientMrn()) {
+                    case "MRN-DUP" -> results.add(new IngestResult(7L, true));
+                    case "MRN-UNKNOWN" -> results.add(new IngestResult(null, false));
+                    default -> results.add(new IngestResult(1L, false));
+                }
+            }
+            return results;
+        });
+        start();
+
+        String persisted = submit("MRN-1", 2);
+        String duplicate = submit("MRN-DUP", 2);
+        String unknown = submit("MRN-UNKNOWN", 2);
+
+        awaitStatus(persisted, VasIngestStatus.PERSISTED);
+        awaitStatus(duplicate, VasIngestStatus.DUPLICATE);
+        awaitStatus(unknown, VasIngestStatus.FAILED);
+        assertEquals(7L, pipeline.getStatus(duplicate).orElseThrow().getVasId());
+        assertEquals("Patient not found with MRN: MRN-UNKNOWN", pipeline.getStatus(unknown).orElseThrow().getErrorMessage());
+        VasIngestStatsDTO stats = pipeline.getStats();
+        assertEquals(1, stats.getPersisted());
+        assertEquals(1, stats.getDuplicates());
+        assertEquals(1, stats.getFailed());
+    }
+
+    @Test
+    @DisplayName("Ошибка сохранения батча помечает все его записи FAILED, обработчик продолжает работу")
+    void failedBatchMarksAllReadings() {
+        when(integrationService.persistIngestBatch(anyList()))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenAnswer(invocation -> persistedResults(invocation.getArgument(0)));
+        start();
+
+        String failedReading = submit("MRN-1", 2);
+        awaitStatus(failedReading, VasIngestStatus.FAILED);
+        assertEquals("database unavailable", pipeline.getStatus(failedReading).orElseThrow().getErrorMessage());
+
+        String next = submit("MRN-2", 2);
+        awaitStatus(next, VasIngestStatus.PERSISTED);
+        assertEquals(1, pipeline.getStats().getFailed());
+    }
+
+    @Test
+    @DisplayName("Конфликт уникального ключа: батч сохраняется повторно")
+    void retriesBatchAfterConcurrentDuplicate() {
+        when(integrationService.persistIngestBatch(anyList()))
+                .thenThrow(new DataIntegrityViolationException("dedup_key"))
+                .thenAnswer(invocation -> persistedResults(invocation.getArgument(0)));
+        start();
+
+        String reading = submit("MRN-1", 2);
+
+        awaitStatus(reading, VasIngestStatus.PERSISTED);
+        verify(integrationService, times(2)).persistIngestBatch(anyList());
+    }
+
+    @Test
+    @DisplayName("Рекомендация генерируется один раз на пациента за батч и только для VAS >= 4")
+    void generatesOneRecommendationPerPatientPerBatch() throws Exception {
+        persistHoldingFirstBatch();
+        start();
+
+        submit("MRN-0", 2);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        submit("MRN-HIGH", 6);
+        submit("MRN-HIGH", 8);
+        String last = submit("MRN-LOW", 3);
+        releaseFirstBatch.countDown();
+
+        awaitStatus(last, VasIngestStatus.PERSISTED);
+        verify(integrationService, times(1)).generateRecommendationIfNoPending("MRN-HIGH");
+        verify(integrationService, never()).generateRecommendationIfNoPending("MRN-LOW");
+        verify(integrationService, never()).generateRecommendationIfNoPending("MRN-0");
+    }
+
+    @Test
+    @DisplayName("Остановка дочищает очередь и отклоняет новые записи")
+    void stopDrainsQueue() throws Exception {
+        persistHoldingFirstBatch();
+        start();
+
+        submit("MRN-0", 2);
+        assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        String queued = submit("MRN-1", 2);
+        releaseFirstBatch.countDown();
+        pipeline.stop();
+
+        assertEquals(VasIngestStatus.PERSISTED, status(queued));
+        assertTrue(pipeline.submit(record("MRN-2", 2)).isEmpty());
+    }
+
+    @Test
+    @Timeout(600)
+    @EnabledIfSystemProperty(named = "vas.ingest.load", matches = "true")
+    @DisplayName("Нагрузка: пропускная способность и задержка enqueue-to-commit")
+    void loadHarness() throws Exception {
+        int readings = Integer.getInteger("vas.ingest.load.readings", 200_000);
+        long commitMicros = TimeUnit.MILLISECONDS.toMicros(Long.getLong("vas.ingest.load.commit-ms", 5));
+        config.setWorkerCount(2);
+        config.setBatchSize(100);
+        config.setQueueCapacity(10_000);
+        AtomicLong vasIds = new AtomicLong();
+        // Коммит батча - фиксированная задержка, как транзакция с одним flush
+        when(integrationService.persistIngestBatch(anyList())).thenAnswer(invocation -> {
+            TimeUnit.MICROSECONDS.sleep(commitMicros);
+            List<ExternalVasRecordRequestDTO> records = invocation.getArgument(0);
+            return records.stream().map(record -> new IngestResult(vasIds.incrementAndGet(), false)).toList();
+        });
+        start();
+
+        long startNanos = System.nanoTime();
+        long retries = 0;
+        for (int i = 0; i < readings; i++) {
+            // Клиент при 503 повторяет запрос
+            while (pipeline.submit(record("MRN-" + (i % 1_000), 2)).isEmpty()) {
+                retries++;
+                Thread.onSpinWait();
+            }
+        }
+        await(() -> pipeline.getStats().getPersisted() == readings, TimeUnit.MINUTES.toMillis(5));
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        VasIngestStatsDTO stats = pipeline.getStats();
+        log.info("VAS ingest load: {} readings in {} ms, {} readings/s, avg batch {}, p50 {} ms, p99 {} ms, max {} ms, rejected submits {}",
+                readings, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                String.format("%.0f", readings / (elapsedNanos / 1e9)),
+                String.format("%.1f", stats.getAverageBatchSize()),
+                stats.getLatencyP50Ms(), stats.getLatencyP99Ms(), stats.getLatencyMaxMs(), retries);
+        assertEquals(readings, stats.getPersisted());
+        assertEquals(0, stats.getFailed());
+    }
+
+    private void start() {
+        pipeline = new VasIngestPipeline(integrationService, config, Runnable::run);
+        pipeline.start();
+    }
+
+    /*
+     * Первый батч ждет releaseFirstBatch: остальные записи за это время копятся в очереди
+     */
+    private void persistHoldingFirstBatch() {
+        when(integrationService.persistIngestBatch(anyList())).thenAnswer(invocation -> {
+            List<ExternalVasRecordRequestDTO> records = invocation.getArgument(0);
+            batchSizes.add(records.size());
+            if (batchSizes.size() == 1) {
+                firstBatchStarted.countDown();
+                assertTrue(releaseFirstBatch.await(10, TimeUnit.SECONDS));
+            }
+            return persistedResults(records);
+        });
+    }
+
+    private static List<IngestResult> persistedResults(List<ExternalVasRecordRequestDTO> records) {
+        List<IngestResult> results = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            results.add(new IngestResult((long) i + 1, false));
+        }
+        return results;
+    }
+
+    private String submit(String mrn, int vasLevel) {
+        return pipeline.submit(record(mrn, vasLevel)).orElseThrow();
+    }
+
+    private VasIngestStatus status(String trackingId) {
+        return pipeline.getStatus(trackingId).orElseThrow().getStatus();
+    }
+
+    private void awaitStatus(String trackingId, VasIngestStatus expected) {
+        await(() -> status(trackingId) == expected, 5_000);
+        assertEquals(expected, status(trackingId));
+    }
+
+    private static void await(BooleanSupplier condition, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static ExternalVasRecordRequestDTO record(String mrn, int vasLevel) {
+        return ExternalVasRecordRequestDTO.builder()
+                .patientMrn(mrn)
+                .vasLevel(vasLevel)
+                .deviceId("MONITOR-001")
+                .location("Ward A")
+                .build();
+    }
+}
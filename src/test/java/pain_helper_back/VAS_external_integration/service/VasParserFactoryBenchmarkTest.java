@@ -0,0 +1,141 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import pain_helper_back.VAS_external_integration.dto.ExternalVasRecordRequestDTO;
+import pain_helper_back.VAS_external_integration.parser.*;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Микро-бенчмарк определения формата и парсинга в VasParserFactory.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Каждый образец (HL7, CSV, JSON, XML, FHIR) определяется без Content-Type и с ним
+ * - Для каждого образца в лог пишется среднее время parse() (определение формата + парсинг)
+ *
+ * Итераций немного, чтобы тест оставался быстрым в обычном прогоне `mvn test`;
+ * для более точных замеров увеличьте -Dvas.parser.benchmark.iterations.
+ */
+@Slf4j
+class VasParserFactoryBenchmarkTest {
+    private static final int ITERATIONS = Integer.getInteger("vas.parser.benchmark.iterations", 2_000);
+
+    private static final String HL7 = "MSH|^~\\&|VAS_MONITOR|WARD_A|PMA|HOSPITAL|20251020153000||ORU^R01|MSG001|P|2.5\r"
+            + "PID|1||EMR-12345678^^^MRN||DOE^JOHN||19800515|M\r"
+            + "OBR|1||VAS001|VAS^Visual Analog Scale^LOCAL|||20251020153000\r"
+            + "OBX|1|NM|VAS^Pain Level^LOCAL||7|points|0-10|N|||F";
+
+    private static final String CSV = "PatientMRN,VASLevel,DeviceID,Location,Timestamp,Notes,Source\n"
+            + "EMR-12345678,7,MONITOR-001,Ward A,2025-10-20T15:30:00,Sharp pain,VAS_MONITOR\n";
+
+    private static final String JSON = "{\"patientMrn\":\"EMR-12345678\",\"vasLevel\":7,"
+            + "\"deviceId\":\"MONITOR-001\",\"location\":\"Ward A\",\"timestamp\":\"2025-10-20T15:30:00\"}";
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<VASRecord><PatientMRN>EMR-12345678</PatientMRN><VASLevel>7</VASLevel>"
+            + "<DeviceID>MONITOR-001</DeviceID><Location>Ward A</Location>"
+            + "<Timestamp>2025-10-20T15:30:00</Timestamp></VASRecord>";
+
+    private static final String FHIR = "{\"resourceType\":\"Observation\",\"status\":\"final\","
+            + "\"code\":{\"coding\":[{\"system\":\"http://loinc.org\",\"code\":\"38208-5\"}]},"
+            + "\"subject\":{\"reference\":\"Patient/EMR-12345678\"},\"valueInteger\":7,"
+            + "\"effectiveDateTime\":\"2025-10-20T15:30:00Z\",\"device\":{\"display\":\"VAS Monitor Ward A\"}}";
+
+    // Парсеры и фабрика логируют каждую запись на INFO/WARN - в замере это был бы шум
+    private static final List<String> QUIET_LOGGERS = List.of(
+            "pain_helper_back.VAS_external_integration.parser", VasParserFactory.class.getName());
+
+    private static VasParserFactory factory;
+    private static final Map<String, Level> previousLogLevels = new HashMap<>();
+
+    @BeforeAll
+    static void setUp() {
+        for (String name : QUIET_LOGGERS) {
+            Logger logger = (Logger) LoggerFactory.getLogger(name);
+            previousLogLevels.put(name, logger.getLevel());
+            logger.setLevel(Level.ERROR);
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        factory = new VasParserFactory(List.of(
+                new Hl7VasParser(),
+                new CsvVasParser(),
+                new JsonVasParser(objectMapper),
+                new XmlVasParser(),
+                new FhirVasParser(objectMapper)
+        ), objectMapper);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        previousLogLevels.forEach((name, level) -> ((Logger) LoggerFactory.getLogger(name)).setLevel(level));
+    }
+
+    @Test
+    @DisplayName("Формат определяется по содержимому без Content-Type")
+    void shouldDetectFormatBySniffing() throws Exception {
+        for (Map.Entry<ExternalVasRecordRequestDTO.DataFormat, String> sample : samples().entrySet()) {
+            ExternalVasRecordRequestDTO result = factory.parse(null, sample.getValue());
+            assertEquals(sample.getKey(), result.getFormat());
+            assertEquals("EMR-12345678", result.getPatientMrn());
+            assertEquals(7, result.getVasLevel());
+        }
+    }
+
+    @Test
+    @DisplayName("FHIR с Content-Type application/json определяется по resourceType")
+    void shouldDetectFhirSentAsPlainJson() throws Exception {
+        ExternalVasRecordRequestDTO result = factory.parse("application/json", FHIR);
+        assertEquals(ExternalVasRecordRequestDTO.DataFormat.FHIR, result.getFormat());
+    }
+
+    @Test
+    @DisplayName("Неизвестный формат отклоняется")
+    void shouldRejectUnknownFormat() {
+        assertThrows(VasFormatParser.ParseException.class, () -> factory.parse("text/plain", "pain=7"));
+        assertThrows(VasFormatParser.ParseException.class, () -> factory.parse(null, "{ broken"));
+    }
+
+    @Test
+    @DisplayName("Бенчмарк: определение формата + парсинг для каждого образца")
+    void benchmarkDetectAndParse() throws Exception {
+        log.info("VasParserFactory benchmark, {} iterations per sample", ITERATIONS);
+        for (Map.Entry<ExternalVasRecordRequestDTO.DataFormat, String> sample : samples().entrySet()) {
+            String payload = sample.getValue();
+            // Прогрев JIT
+            for (int i = 0; i < ITERATIONS; i++) {
+                factory.parse(null, payload);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                factory.parse(null, payload);
+            }
+            long elapsed = System.nanoTime() - start;
+            log.info("  {} {} us/op", String.format("%-7s", sample.getKey()),
+                    String.format("%8.2f", (double) elapsed / ITERATIONS / 1_000));
+        }
+    }
+
+    private static Map<ExternalVasRecordRequestDTO.DataFormat, String> samples() {
+        Map<ExternalVasRecordRequestDTO.DataFormat, String> samples = new LinkedHashMap<>();
+        samples.put(ExternalVasRecordRequestDTO.DataFormat.HL7_V2, HL7);
+        samples.put(ExternalVasRecordRequestDTO.DataFormat.CSV, CSV);
+        samples.put(ExternalVasRecordRequestDTO.DataFormat.JSON, JSON);
+        samples.put(ExternalVasRecordRequestDTO.DataFormat.XML, XML);
+        samples.put(ExternalVasRecordRequestDTO.DataFormat.FHIR, FHIR);
+        return samples;
+    }
+}
@@ -0,0 +1,133 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pain_helper_back.VAS_external_integration.config.VasRateLimitConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для VasRateLimiter.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Ровно `лимит` разрешений при одновременных запросах из многих потоков
+ * - Равномерное пополнение токенов со временем
+ * - Retry-After и оставшиеся токены
+ * - Независимость bucket разных ключей и удаление простаивающих bucket
+ */
+class VasRateLimiterConcurrencyTest {
+
+    private static final int THREADS = 32;
+
+    private final AtomicLong nanoTime = new AtomicLong(1_000_000_000L);
+    private VasRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        VasRateLimitConfig config = new VasRateLimitConfig();
+        config.setIdleEvictionSeconds(300);
+        rateLimiter = new VasRateLimiter(config, nanoTime::get);
+    }
+
+    @Test
+    @DisplayName("Должен разрешить ровно лимит запросов при одновременном доступе из многих потоков")
+    void shouldAllowExactlyLimitUnderContention() throws Exception {
+        int limit = 600;
+        int attemptsPerThread = 500;
+
+        int allowed = hammer("key:shared", limit, attemptsPerThread);
+
+        assertEquals(limit, allowed);
+        assertFalse(rateLimiter.tryAcquire("key:shared", limit).allowed());
+    }
+
+    @Test
+    @DisplayName("Должен пополнять токены равномерно со временем")
+    void shouldRefillProportionallyToElapsedTime() throws Exception {
+        int limit = 600; // 10 токенов в секунду
+        assertEquals(limit, hammer("key:refill", limit, 100));
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(3));
+
+        assertEquals(30, hammer("key:refill", limit, 100));
+    }
+
+    @Test
+    @DisplayName("Должен вернуть Retry-After и оставшиеся токены")
+    void shouldReportRetryAfterAndRemaining() {
+        int limit = 2; // 1 токен в 30 секунд
+
+        VasRateLimiter.RateLimitDecision first = rateLimiter.tryAcquire("key:small", limit);
+        VasRateLimiter.RateLimitDecision second = rateLimiter.tryAcquire("key:small", limit);
+        VasRateLimiter.RateLimitDecision third = rateLimiter.tryAcquire("key:small", limit);
+
+        assertTrue(first.allowed());
+        assertEquals(1, first.remaining());
+        assertTrue(second.allowed());
+        assertEquals(0, second.remaining());
+        assertFalse(third.allowed());
+        assertEquals(30, third.retryAfterSeconds());
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertTrue(rateLimiter.tryAcquire("key:small", limit).allowed());
+    }
+
+    @Test
+    @DisplayName("Должен вести независимые bucket и удалять простаивающие")
+    void shouldKeepBucketsIndependentAndEvictIdle() throws Exception {
+        assertEquals(60, hammer("key:a", 60, 10));
+        assertEquals(120, hammer("key:b", 120, 10));
+        assertTrue(rateLimiter.tryAcquire("key:c", 0).allowed(), "Лимит 0 - без ограничения");
+        assertEquals(2, rateLimiter.getActiveBucketCount());
+
+        // Исчерпанный bucket пополняется за 60 секунд, затем простаивает дольше 300 секунд
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(200));
+        rateLimiter.evictIdleBuckets();
+        assertEquals(2, rateLimiter.getActiveBucketCount());
+
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(161));
+        rateLimiter.evictIdleBuckets();
+
+        assertEquals(0, rateLimiter.getActiveBucketCount());
+        assertEquals(60, hammer("key:a", 60, 10));
+    }
+
+    /*
+     * Одновременные запросы из THREADS потоков, старт по общему сигналу
+     *
+     * @return число разрешенных запросов
+     */
+    private int hammer(String bucketKey, int limit, int attemptsPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger allowed = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        if (rateLimiter.tryAcquire(bucketKey, limit).allowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return allowed.get();
+    }
+}
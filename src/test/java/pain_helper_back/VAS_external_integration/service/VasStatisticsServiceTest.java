@@ -0,0 +1,220 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.VAS_external_integration.config.VasStatsConfig;
+import pain_helper_back.VAS_external_integration.dto.VasMonitorStatsDTO;
+import pain_helper_back.VAS_external_integration.entity.VasStatsBucket;
+import pain_helper_back.VAS_external_integration.repository.VasStatsBucketRepository;
+import pain_helper_back.common.patients.entity.Vas;
+import pain_helper_back.common.patients.repository.VasRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты VasStatisticsService (репозитории - моки).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Записи накапливаются в часовых bucket по источнику и локации, статистика дня суммирует bucket
+ * - В транзакции запись учитывается только в afterCommit
+ * - Записи до границы восстановления не учитываются повторно, до восстановления статистика считается в БД
+ * - flush пишет только изменившиеся bucket абсолютными значениями, при ошибке повторяет запись
+ * - Очистка удаляет строки старше persisted-retention-days
+ */
+@ExtendWith(MockitoExtension.class)
+class VasStatisticsServiceTest {
+
+    @Mock
+    private VasRepository vasRepository;
+    @Mock
+    private VasStatsBucketRepository bucketRepository;
+    @Captor
+    private ArgumentCaptor<List<VasStatsBucket>> rowsCaptor;
+
+    private VasStatsConfig config;
+    private VasStatisticsService service;
+
+    @BeforeEach
+    void setUp() {
+        config = new VasStatsConfig();
+        service = new VasStatisticsService(vasRepository, bucketRepository, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Записи суммируются по bucket источника и локации")
+    void accumulatesHourlyBuckets() {
+        service.initialize();
+        LocalDateTime now = LocalDateTime.now();
+
+        service.recordAfterCommit(List.of(
+                vas("EXTERNAL_HL7", "Ward A", 8, now),
+                vas("EXTERNAL_HL7", "Ward A", 4, now),
+                vas("EXTERNAL_CSV", null, 2, now),
+                vas("EXTERNAL_CSV", "Ward B", 9, now)));
+
+        VasMonitorStatsDTO stats = service.getTodayStatistics();
+        assertEquals(4, stats.getTotalRecordsToday());
+        assertEquals(5.8, stats.getAverageVas());
+        assertEquals(2, stats.getHighPainAlerts());
+        assertEquals(2, stats.getActiveDevices());
+        assertEquals(Map.of("HL7", 2L, "CSV", 2L), stats.getRecordsByDevice());
+        assertEquals(Map.of("Ward A", 2L, "Ward B", 1L, "UNKNOWN", 1L), stats.getRecordsByLocation());
+        verify(vasRepository, times(1)).aggregateExternalByHour(any(), any());
+    }
+
+    @Test
+    @DisplayName("В транзакции запись учитывается только после коммита")
+    void countsOnlyAfterCommit() {
+        service.initialize();
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.recordAfterCommit(List.of(vas("EXTERNAL_HL7", "Ward A", 6, LocalDateTime.now())));
+
+        assertEquals(0, service.getTodayStatistics().getTotalRecordsToday());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(1, service.getTodayStatistics().getTotalRecordsToday());
+    }
+
+    @Test
+    @DisplayName("Запись до границы восстановления уже учтена запросом к таблице vas")
+    void ignoresRecordsBeforeRebuildCutoff() {
+        LocalDateTime beforeRebuild = LocalDateTime.now().minusSeconds(1);
+        service.initialize();
+
+        service.recordAfterCommit(List.of(vas("EXTERNAL_HL7", "Ward A", 6, beforeRebuild)));
+
+        assertEquals(0, service.getTodayStatistics().getTotalRecordsToday());
+    }
+
+    @Test
+    @DisplayName("До восстановления статистика считается агрегатным запросом")
+    void aggregatesInDatabaseBeforeRebuild() {
+        VasRepository.HourlyVasAggregate row = mock(VasRepository.HourlyVasAggregate.class);
+        when(row.getDay()).thenReturn(LocalDate.now());
+        when(row.getHour()).thenReturn(0);
+        when(row.getRecordedBy()).thenReturn("EXTERNAL_FHIR");
+        when(row.getLocation()).thenReturn("ICU");
+        when(row.getRecordCount()).thenReturn(3L);
+        when(row.getVasSum()).thenReturn(21L);
+        when(row.getHighPainCount()).thenReturn(2L);
+        when(vasRepository.aggregateExternalByHour(any(), any())).thenReturn(List.of(row));
+
+        VasMonitorStatsDTO stats = service.getTodayStatistics();
+
+        assertEquals(3, stats.getTotalRecordsToday());
+        assertEquals(7.0, stats.getAverageVas());
+        assertEquals(Map.of("FHIR", 3L), stats.getRecordsByDevice());
+        service.flush();
+        verifyNoInteractions(bucketRepository);
+    }
+
+    @Test
+    @DisplayName("flush пишет только изменившиеся bucket и обновляет существующие строки")
+    void flushPersistsDirtyBuckets() {
+        service.initialize();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime hour = now.truncatedTo(ChronoUnit.HOURS);
+        VasStatsBucket existing = VasStatsBucket.builder()
+                .id(7L).bucketStart(hour).source("HL7").location("Ward A").recordCount(1).build();
+        when(bucketRepository.findByBucketStartIn(any())).thenReturn(List.of(existing));
+        service.recordAfterCommit(List.of(
+                vas("EXTERNAL_HL7", "Ward A", 8, now),
+                vas("EXTERNAL_HL7", "Ward A", 2, now),
+                vas("EXTERNAL_CSV", "Ward B", 3, now)));
+
+        service.flush();
+        service.flush();
+
+        verify(bucketRepository, times(1)).saveAll(rowsCaptor.capture());
+        List<VasStatsBucket> rows = rowsCaptor.getValue().stream()
+                .sorted(Comparator.comparing(VasStatsBucket::getSource))
+                .toList();
+        assertEquals(2, rows.size());
+        assertEquals("CSV", rows.get(0).getSource());
+        assertNull(rows.get(0).getId());
+        assertEquals(1, rows.get(0).getRecordCount());
+        assertSame(existing, rows.get(1));
+        assertEquals(2, existing.getRecordCount());
+        assertEquals(10, existing.getVasSum());
+        assertEquals(1, existing.getHighPainCount());
+        assertEquals(hour, existing.getBucketStart());
+        assertNotNull(existing.getUpdatedAt());
+    }
+
+    @Test
+    @DisplayName("Ошибка flush оставляет bucket измененными до следующей попытки")
+    void flushRetriesAfterFailure() {
+        service.initialize();
+        when(bucketRepository.saveAll(anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database unavailable"))
+                .thenReturn(List.of());
+        service.recordAfterCommit(List.of(vas("EXTERNAL_HL7", "Ward A", 5, LocalDateTime.now())));
+
+        service.flush();
+        service.flush();
+        service.flush();
+
+        verify(bucketRepository, times(2)).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("При старте сохраненные bucket загружаются, остальные часы пересчитываются")
+    void initializeRestoresPersistedAndRecalculatedBuckets() {
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        when(bucketRepository.findLastUpdatedAt()).thenReturn(LocalDateTime.now());
+        when(bucketRepository.findByBucketStartGreaterThanEqualAndBucketStartLessThan(any(), any()))
+                .thenReturn(List.of(VasStatsBucket.builder().bucketStart(hour).source("HL7").location("Ward A")
+                        .recordCount(4).vasSum(20).highPainCount(1).build()));
+
+        service.initialize();
+        service.flush();
+
+        assertEquals(4, service.getTodayStatistics().getTotalRecordsToday());
+        // Загруженные из vas_stats_buckets значения не пишутся обратно
+        verify(bucketRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Очистка удаляет строки старше persisted-retention-days")
+    void purgesExpiredBuckets() {
+        config.setPersistedRetentionDays(30);
+
+        service.purgeExpiredBuckets();
+
+        verify(bucketRepository).deleteOlderThan(LocalDate.now().minusDays(30).atStartOfDay());
+    }
+
+    private static Vas vas(String recordedBy, String location, int vasLevel, LocalDateTime createdAt) {
+        Vas vas = new Vas();
+        vas.setRecordedBy(recordedBy);
+        vas.setLocation(location);
+        vas.setVasLevel(vasLevel);
+        vas.setCreatedAt(createdAt);
+        return vas;
+    }
+}
@@ -0,0 +1,225 @@
+package pain_helper_back.VAS_external_integration.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pain_helper_back.VAS_external_integration.config.VasStreamConfig;
+import pain_helper_back.VAS_external_integration.dto.VasStreamFrameDTO;
+import pain_helper_back.VAS_external_integration.dto.VasStreamReadingDTO;
+import pain_helper_back.common.patients.entity.Patient;
+import pain_helper_back.common.patients.entity.Vas;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты VasStreamService (SimpMessagingTemplate - мок).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Записи пациента за окно склеиваются в последнюю, в кадре - число склеенных записей
+ * - Один кадр на общий топик и по кадру на отделение, пустое окно не отправляется
+ * - Кадр отправляется раз в vas.stream.frame-interval-ms (по умолчанию 250 мс)
+ * - В транзакции запись попадает в поток только после коммита
+ * - Имя отделения в топике (ward slug)
+ */
+@ExtendWith(MockitoExtension.class)
+class VasStreamServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 10, 18, 9, 0);
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    private VasStreamConfig config;
+    private VasStreamService service;
+
+    @BeforeEach
+    void setUp() {
+        config = new VasStreamConfig();
+        service = new VasStreamService(messagingTemplate, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Записи пациента за окно склеиваются в последнюю по времени записи")
+    void mergesPendingReadingsPerPatient() {
+        service.publishAfterCommit(List.of(
+                vas(3L, "MRN-1", 5, "Ward A", T0.plusSeconds(2)),
+                vas(1L, "MRN-1", 9, "Ward A", T0),
+                vas(2L, "MRN-2", 4, "ICU 2", T0)));
+        service.publishAfterCommit(List.of(vas(4L, "MRN-1", 6, "Ward A", T0.plusSeconds(1))));
+
+        service.flushFrame();
+
+        Map<String, VasStreamFrameDTO> frames = sentFrames(3);
+        VasStreamFrameDTO all = frames.get(VasStreamService.STREAM_TOPIC);
+        assertEquals(1L, all.getSequence());
+        assertNull(all.getWard());
+        assertEquals(4, all.getReadingsReceived());
+        List<VasStreamReadingDTO> readings = all.getReadings().stream()
+                .sorted(Comparator.comparing(VasStreamReadingDTO::getPatientMrn))
+                .toList();
+        assertEquals(2, readings.size());
+        assertEquals(3L, readings.get(0).getVasId());
+        assertEquals(5, readings.get(0).getVasLevel());
+        assertEquals(3, readings.get(0).getCoalescedReadings());
+        assertEquals("HL7", readings.get(0).getSource());
+        assertEquals(1, readings.get(1).getCoalescedReadings());
+    }
+
+    @Test
+    @DisplayName("Кадр на общий топик и по кадру на отделение")
+    void sendsWardFrames() {
+        service.publishAfterCommit(List.of(
+                vas(1L, "MRN-1", 5, "Ward A", T0),
+                vas(2L, "MRN-2", 4, "Ward A, Bed 12", T0),
+                vas(3L, "MRN-3", 7, "ICU 2 Bed 5", T0),
+                vas(4L, "MRN-4", 2, null, T0)));
+
+        service.flushFrame();
+
+        Map<String, VasStreamFrameDTO> frames = sentFrames(4);
+        VasStreamFrameDTO wardA = frames.get(VasStreamService.STREAM_TOPIC + "/ward-a");
+        assertEquals("ward-a", wardA.getWard());
+        assertEquals(2, wardA.getReadings().size());
+        assertEquals(2, wardA.getReadingsReceived());
+        assertEquals(1, frames.get(VasStreamService.STREAM_TOPIC + "/icu-2").getReadings().size());
+        assertEquals(1, frames.get(VasStreamService.STREAM_TOPIC + "/unknown").getReadings().size());
+        // Все кадры одного окна имеют один номер
+        frames.values().forEach(frame -> assertEquals(1L, frame.getSequence()));
+    }
+
+    @Test
+    @DisplayName("Без ward-topics отправляется только общий кадр")
+    void wardTopicsCanBeDisabled() {
+        config.setWardTopics(false);
+        service.publishAfterCommit(List.of(vas(1L, "MRN-1", 5, "Ward A", T0)));
+
+        service.flushFrame();
+
+        verify(messagingTemplate, times(1)).convertAndSend(eq(VasStreamService.STREAM_TOPIC), any(Object.class));
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    @Test
+    @DisplayName("Пустое окно не отправляется, запись после кадра уходит в следующий кадр")
+    void sendsOneFramePerNonEmptyWindow() {
+        config.setWardTopics(false);
+        service.flushFrame();
+        verifyNoInteractions(messagingTemplate);
+
+        service.publishAfterCommit(List.of(vas(1L, "MRN-1", 5, "Ward A", T0)));
+        service.flushFrame();
+        service.flushFrame();
+        service.publishAfterCommit(List.of(vas(2L, "MRN-1", 6, "Ward A", T0.plusMinutes(1))));
+        service.flushFrame();
+
+        ArgumentCaptor<VasStreamFrameDTO> frames = ArgumentCaptor.forClass(VasStreamFrameDTO.class);
+        verify(messagingTemplate, times(2)).convertAndSend(eq(VasStreamService.STREAM_TOPIC), frames.capture());
+        assertEquals(1L, frames.getAllValues().get(0).getSequence());
+        assertEquals(2L, frames.getAllValues().get(1).getSequence());
+        assertEquals(1, frames.getAllValues().get(1).getReadings().get(0).getCoalescedReadings());
+        assertEquals(2L, frames.getAllValues().get(1).getReadings().get(0).getVasId());
+    }
+
+    @Test
+    @DisplayName("Кадр отправляется с периодом vas.stream.frame-interval-ms, по умолчанию 250 мс")
+    void flushIntervalDefaultsTo250Ms() throws Exception {
+        Scheduled scheduled = VasStreamService.class.getMethod("flushFrame").getAnnotation(Scheduled.class);
+
+        assertEquals("${vas.stream.frame-interval-ms:250}", scheduled.fixedRateString());
+        assertEquals(250, new VasStreamConfig().getFrameIntervalMs());
+    }
+
+    @Test
+    @DisplayName("В транзакции запись попадает в поток только после коммита")
+    void enqueuesOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.publishAfterCommit(List.of(vas(1L, "MRN-1", 5, "Ward A", T0)));
+
+        service.flushFrame();
+        verifyNoInteractions(messagingTemplate);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        service.flushFrame();
+        verify(messagingTemplate).convertAndSend(eq(VasStreamService.STREAM_TOPIC), any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Ошибка отправки не прерывает планировщик, выключенный поток ничего не копит")
+    void sendFailureAndDisabledStream() {
+        config.setWardTopics(false);
+        doThrow(new MessagingException("broker unavailable"))
+                .when(messagingTemplate).convertAndSend(eq(VasStreamService.STREAM_TOPIC), any(Object.class));
+        service.publishAfterCommit(List.of(vas(1L, "MRN-1", 5, "Ward A", T0)));
+
+        assertDoesNotThrow(service::flushFrame);
+
+        config.setEnabled(false);
+        service.publishAfterCommit(List.of(vas(2L, "MRN-2", 5, "Ward A", T0)));
+        service.flushFrame();
+        verify(messagingTemplate, times(1)).convertAndSend(eq(VasStreamService.STREAM_TOPIC), any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Имя отделения: локация без койки, нижний регистр, прочие символы - '-'")
+    void wardSlug() {
+        assertEquals("ward-a", VasStreamService.wardOf("Ward A"));
+        assertEquals("ward-a", VasStreamService.wardOf("Ward A, Bed 12"));
+        assertEquals("ward-a", VasStreamService.wardOf("ward a bed 3"));
+        assertEquals("icu-2", VasStreamService.wardOf("  ICU #2 / Bed 5 "));
+        assertEquals("er-room-5", VasStreamService.wardOf("ER-Room-5"));
+        assertEquals("bedford-wing", VasStreamService.wardOf("Bedford Wing"));
+        assertEquals("отделение-3", VasStreamService.wardOf("Отделение 3"));
+        assertEquals("unknown", VasStreamService.wardOf(null));
+        assertEquals("unknown", VasStreamService.wardOf("  "));
+        assertEquals("unknown", VasStreamService.wardOf("---"));
+    }
+
+    private Map<String, VasStreamFrameDTO> sentFrames(int expected) {
+        ArgumentCaptor<String> topics = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<VasStreamFrameDTO> frames = ArgumentCaptor.forClass(VasStreamFrameDTO.class);
+        verify(messagingTemplate, times(expected)).convertAndSend(topics.capture(), frames.capture());
+        Map<String, VasStreamFrameDTO> byTopic = new HashMap<>();
+        for (int i = 0; i < expected; i++) {
+            byTopic.put(topics.getAllValues().get(i), frames.getAllValues().get(i));
+        }
+        return byTopic;
+    }
+
+    private static Vas vas(Long id, String mrn, int vasLevel, String location, LocalDateTime recordedAt) {
+        Patient patient = new Patient();
+        patient.setMrn(mrn);
+        Vas vas = new Vas();
+        vas.setId(id);
+        vas.setPatient(patient);
+        vas.setVasLevel(vasLevel);
+        vas.setLocation(location);
+        vas.setRecordedBy("EXTERNAL_HL7");
+        vas.setRecordedAt(recordedAt);
+        vas.setCreatedAt(recordedAt);
+        return vas;
+    }
+}
@@ -0,0 +1,170 @@
+package pain_helper_back.analytics.aspect;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pain_helper_back.analytics.config.LoggingAspectConfig;
+import pain_helper_back.analytics.entity.LogEntry;
+import pain_helper_back.analytics.writer.LogEntryWriter;
+import pain_helper_back.enums.ServiceLogLevel;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты для LoggingAspect.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Сэмплирование INFO-записей; ошибки и медленные вызовы сохраняются всегда
+ * - Настройки пакета по самому длинному префиксу, фильтр по уровню
+ * - Аргументы не форматируются для пропущенных записей, длина полей ограничена
+ * - Отключенное логирование не трогает очередь записи
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LoggingAspect Tests")
+class LoggingAspectTest {
+
+    @Mock
+    private LogEntryWriter logEntryWriter;
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+    @Mock
+    private Signature signature;
+
+    private LoggingAspectConfig config;
+    private LoggingAspect aspect;
+
+    @BeforeEach
+    void setUp() {
+        config = new LoggingAspectConfig();
+        config.setSampleRate(0.0);
+        aspect = new LoggingAspect(config, logEntryWriter);
+        lenient().when(joinPoint.getSignature()).thenReturn(signature);
+        lenient().when(signature.getName()).thenReturn("createPatient");
+        lenient().when(signature.toShortString()).thenReturn("NurseService.createPatient(..)");
+        lenient().when(joinPoint.getTarget()).thenReturn(new NurseService());
+    }
+
+    @Test
+    @DisplayName("INFO пропускается сэмплированием, аргументы не форматируются")
+    void skipsSampledOutInfo() throws Throwable {
+        when(joinPoint.proceed()).thenReturn("ok");
+
+        assertEquals("ok", aspect.logServiceMethod(joinPoint));
+
+        verify(logEntryWriter, never()).append(any());
+        verify(joinPoint, never()).getArgs();
+        assertEquals(1, aspect.getStats().getSkipped());
+    }
+
+    @Test
+    @DisplayName("Ошибка сохраняется при нулевой доле сэмплирования, исключение пробрасывается")
+    void keepsErrorsRegardlessOfSampling() throws Throwable {
+        config.setMaxErrorLength(50);
+        when(joinPoint.proceed()).thenThrow(new IllegalStateException("x".repeat(200)));
+
+        assertThrows(IllegalStateException.class, () -> aspect.logServiceMethod(joinPoint));
+
+        LogEntry entry = captureEntry();
+        assertEquals("ERROR", entry.getLevel());
+        assertFalse(entry.getSuccess());
+        assertEquals(53, entry.getErrorMessage().length());
+        assertEquals(53, entry.getErrorStackTrace().length());
+        assertEquals(1.0, entry.getSampleRate());
+    }
+
+    @Test
+    @DisplayName("Медленный вызов сохраняется как WARN при нулевой доле сэмплирования")
+    void keepsSlowCalls() throws Throwable {
+        config.setSlowThresholdMs(-1);
+        when(joinPoint.proceed()).thenReturn(null);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{"000001", 7});
+
+        aspect.logServiceMethod(joinPoint);
+
+        LogEntry entry = captureEntry();
+        assertEquals("WARN", entry.getLevel());
+        assertEquals("NurseService", entry.getClassName());
+        assertEquals("nurse", entry.getModule());
+        assertEquals("[\"000001\", 7]", entry.getArguments());
+    }
+
+    @Test
+    @DisplayName("Действуют настройки самого длинного совпавшего префикса пакета")
+    void longestPackagePrefixWins() throws Throwable {
+        config.getPackages().put("pain_helper_back", packageLogging(null, 0.0));
+        config.getPackages().put("pain_helper_back.analytics.aspect", packageLogging(null, 1.0));
+        config.getPackages().put("pain_helper_back.analytics.asp", packageLogging(null, 0.0)); // Не граница пакета
+        when(joinPoint.proceed()).thenReturn(null);
+        when(joinPoint.getArgs()).thenReturn(new Object[0]);
+
+        aspect.logServiceMethod(joinPoint);
+
+        LogEntry entry = captureEntry();
+        assertEquals("INFO", entry.getLevel());
+        assertEquals(1.0, entry.getSampleRate());
+    }
+
+    @Test
+    @DisplayName("Уровень пакета ERROR отбрасывает медленные вызовы, но не ошибки")
+    void packageLevelFiltersWarn() throws Throwable {
+        config.setSlowThresholdMs(-1);
+        config.getPackages().put("pain_helper_back.analytics", packageLogging(ServiceLogLevel.ERROR, null));
+        when(joinPoint.proceed()).thenReturn(null).thenThrow(new IllegalArgumentException("bad"));
+        when(joinPoint.getArgs()).thenReturn(new Object[0]);
+
+        aspect.logServiceMethod(joinPoint);
+        verify(logEntryWriter, never()).append(any());
+
+        assertThrows(IllegalArgumentException.class, () -> aspect.logServiceMethod(joinPoint));
+        assertEquals("ERROR", captureEntry().getLevel());
+    }
+
+    @Test
+    @DisplayName("Строка аргументов ограничена maxArgumentsLength")
+    void truncatesArguments() throws Throwable {
+        config.setSampleRate(1.0);
+        config.setMaxArgumentsLength(40);
+        when(joinPoint.proceed()).thenReturn(null);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{"a".repeat(90), "b".repeat(90), "c".repeat(90)});
+
+        aspect.logServiceMethod(joinPoint);
+
+        assertEquals(43, captureEntry().getArguments().length());
+    }
+
+    @Test
+    @DisplayName("Отключенное логирование только вызывает метод")
+    void disabledLoggingOnlyProceeds() throws Throwable {
+        config.setEnabled(false);
+        when(joinPoint.proceed()).thenReturn("ok");
+
+        assertEquals("ok", aspect.logServiceMethod(joinPoint));
+
+        verifyNoInteractions(logEntryWriter);
+        assertEquals(0, aspect.getStats().getIntercepted());
+    }
+
+    private LogEntry captureEntry() {
+        ArgumentCaptor<LogEntry> captor = ArgumentCaptor.forClass(LogEntry.class);
+        verify(logEntryWriter).append(captor.capture());
+        return captor.getValue();
+    }
+
+    private static LoggingAspectConfig.PackageLogging packageLogging(ServiceLogLevel level, Double sampleRate) {
+        LoggingAspectConfig.PackageLogging packageLogging = new LoggingAspectConfig.PackageLogging();
+        packageLogging.setLevel(level);
+        packageLogging.setSampleRate(sampleRate);
+        return packageLogging;
+    }
+
+    private static class NurseService {
+    }
+}
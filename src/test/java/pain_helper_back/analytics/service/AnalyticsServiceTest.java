@@ -0,0 +1,170 @@
+package pain_helper_back.analytics.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import pain_helper_back.analytics.dto.EventStatsDTO;
+import pain_helper_back.analytics.dto.PatientStatsDTO;
+import pain_helper_back.analytics.dto.PerformanceStatsDTO;
+import pain_helper_back.analytics.dto.UserActivityDTO;
+import pain_helper_back.analytics.entity.AnalyticsEvent;
+import pain_helper_back.analytics.repository.AnalyticsEventRepository;
+import pain_helper_back.analytics.repository.LogEntryRepository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты для AnalyticsService (MongoDB заменена моком MongoTemplate).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Статистика считается одним aggregation pipeline, документы событий не загружаются
+ * - Первая стадия - $match по периоду (индекс timestamp)
+ * - Строки $facet/$group переводятся в DTO, пустые результаты - в нули
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AnalyticsService Tests")
+class AnalyticsServiceTest {
+
+    @Mock
+    private AnalyticsEventRepository analyticsEventRepository;
+    @Mock
+    private LogEntryRepository logEntryRepository;
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private AnalyticsService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AnalyticsService(analyticsEventRepository, logEntryRepository, mongoTemplate);
+    }
+
+    @Test
+    @DisplayName("Статистика событий: $match по периоду и группы из $facet")
+    void eventStatsFromFacets() {
+        returns(new Document("total", List.of(new Document("count", 5)))
+                .append("byType", List.of(row("VAS_RECORDED", 3), row("USER_LOGIN_SUCCESS", 2L)))
+                .append("byRole", List.of(row("NURSE", 4)))
+                .append("byStatus", List.of()));
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 0, 0);
+        LocalDateTime end = start.plusDays(1);
+
+        EventStatsDTO stats = service.getEventStats(start, end);
+
+        assertEquals(5L, stats.getTotalEvents());
+        assertEquals(Map.of("VAS_RECORDED", 3L, "USER_LOGIN_SUCCESS", 2L), stats.getEventsByType());
+        assertEquals(Map.of("NURSE", 4L), stats.getEventsByRole());
+        assertTrue(stats.getEventsByStatus().isEmpty());
+
+        Document match = pipeline().get(0).get("$match", Document.class);
+        Document timestamp = match.get("timestamp", Document.class);
+        assertEquals(start, timestamp.get("$gt"));
+        assertEquals(end, timestamp.get("$lt"));
+        verifyNoInteractions(analyticsEventRepository);
+    }
+
+    @Test
+    @DisplayName("Активность пользователя: одна строка $group, без событий - UNKNOWN")
+    void userActivityFromGroup() {
+        LocalDateTime lastActivity = LocalDateTime.of(2026, 3, 5, 10, 30);
+        returns(new Document("totalActions", 7)
+                .append("userRole", "DOCTOR")
+                .append("lastActivity", Date.from(lastActivity.atZone(ZoneId.systemDefault()).toInstant()))
+                .append("loginCount", 3)
+                .append("failedLoginCount", 1));
+
+        UserActivityDTO activity = service.getUserActivity("doc-1", null, null);
+
+        assertEquals("DOCTOR", activity.getUserRole());
+        assertEquals(7L, activity.getTotalActions());
+        assertEquals(lastActivity, activity.getLastActivity());
+        assertEquals(3L, activity.getLoginCount());
+        assertEquals(1L, activity.getFailedLoginCount());
+        assertEquals("doc-1", pipeline().get(0).get("$match", Document.class).get("userId"));
+
+        returnsNothing();
+        UserActivityDTO unknown = service.getUserActivity("nobody", null, null);
+        assertEquals("UNKNOWN", unknown.getUserRole());
+        assertEquals(0L, unknown.getTotalActions());
+        assertNull(unknown.getLastActivity());
+    }
+
+    @Test
+    @DisplayName("Статистика производительности: рекомендации и эскалации по типу события")
+    void performanceStatsFromFacets() {
+        returns(new Document("recommendations", List.of(row("RECOMMENDATION_APPROVED", 6), row("RECOMMENDATION_REJECTED", 2)))
+                .append("recommendationTime", List.of(new Document("_id", null).append("average", 120.5)))
+                .append("escalations", List.of(
+                        row("ESCALATION_CREATED", 4),
+                        row("ESCALATION_RESOLVED", 3).append("average", 60_000.0))));
+
+        PerformanceStatsDTO stats = service.getPerformanceStats(null, null);
+
+        assertEquals(8L, stats.getTotalRecommendations());
+        assertEquals(6L, stats.getApprovedRecommendations());
+        assertEquals(2L, stats.getRejectedRecommendations());
+        assertEquals(120.5, stats.getAverageProcessingTimeMs());
+        assertEquals(4L, stats.getTotalEscalations());
+        assertEquals(3L, stats.getResolvedEscalations());
+        assertEquals(60_000.0, stats.getAverageEscalationResolutionTimeMs());
+    }
+
+    @Test
+    @DisplayName("Статистика пациентов: возрастные группы из строк по возрасту, пустой VAS - нули")
+    void patientStatsFromFacets() {
+        returns(new Document("patients", List.of(new Document("count", 4)))
+                .append("byGender", List.of(row("MALE", 3), row("FEMALE", 1)))
+                .append("byAge", List.of(row(20, 1), row(25, 2), row(80, 1), row(null, 1)))
+                .append("vas", List.of()));
+
+        PatientStatsDTO stats = service.getPatientsStats(null, null);
+
+        assertEquals(4L, stats.getTotalPatients());
+        assertEquals(Map.of("MALE", 3L, "FEMALE", 1L), stats.getPatientsByGender());
+        assertEquals(Map.of("18-29", 3L, "75+", 1L, "UNKNOWN", 1L), stats.getPatientsByAgeGroup());
+        assertEquals(0L, stats.getTotalVasRecords());
+        assertEquals(0L, stats.getCriticalVasRecords());
+        assertEquals(0.0, stats.getAverageVasLevel());
+
+        Document match = pipeline().get(0).get("$match", Document.class);
+        assertEquals(List.of("PATIENT_REGISTERED", "VAS_RECORDED"),
+                match.get("eventType", Document.class).get("$in"));
+    }
+
+    private void returns(Document result) {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(AnalyticsEvent.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(result), new Document()));
+    }
+
+    private void returnsNothing() {
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(AnalyticsEvent.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(), new Document()));
+    }
+
+    private List<Document> pipeline() {
+        ArgumentCaptor<Aggregation> captor = ArgumentCaptor.forClass(Aggregation.class);
+        verify(mongoTemplate, atLeastOnce()).aggregate(captor.capture(), eq(AnalyticsEvent.class), eq(Document.class));
+        return captor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+    }
+
+    private static Document row(Object id, Number count) {
+        return new Document("_id", id).append("count", count);
+    }
+}
@@ -0,0 +1,257 @@
+package pain_helper_back.analytics.writer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pain_helper_back.analytics.config.AnalyticsWriterConfig;
+import pain_helper_back.analytics.entity.AnalyticsEvent;
+import pain_helper_back.enums.AnalyticsOverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для AnalyticsEventWriter (MongoDB заменена хранилищем в памяти).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Запись полного пакета сразу и неполного - по интервалу
+ * - Политики переполнения DROP_NEWEST, DROP_OLDEST, BLOCK
+ * - Учет ошибок записи
+ * - Параллельные добавления без потерь и дозапись буфера при остановке
+ */
+@DisplayName("AnalyticsEventWriter Tests")
+class AnalyticsEventWriterTest {
+
+    private AnalyticsWriterConfig config;
+    private InMemorySink sink;
+    private AnalyticsEventWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        config = new AnalyticsWriterConfig();
+        config.setFlushIntervalMs(60_000);
+        sink = new InMemorySink();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.release.countDown();
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Полный пакет пишется сразу, не дожидаясь интервала")
+    void flushesFullBatchImmediately() {
+        config.setBatchSize(10);
+        start();
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(writer.append(event(i)));
+        }
+
+        awaitCondition(() -> sink.stored.size() == 10);
+        assertEquals(1, writer.getStats().getFlushes());
+        assertEquals(10.0, writer.getStats().getAverageBatchSize());
+    }
+
+    @Test
+    @DisplayName("Неполный пакет пишется по интервалу")
+    void flushesPartialBatchOnInterval() {
+        config.setFlushIntervalMs(50);
+        start();
+
+        writer.append(event(1));
+        writer.append(event(2));
+
+        awaitCondition(() -> sink.stored.size() == 2);
+        assertEquals(0, writer.getStats().getBufferDepth());
+    }
+
+    @Test
+    @DisplayName("DROP_NEWEST: при заполненном буфере новое событие отбрасывается")
+    void dropsNewestWhenFull() throws Exception {
+        fillWhileSinkBlocked(AnalyticsOverflowPolicy.DROP_NEWEST);
+
+        assertFalse(writer.append(event(100)));
+        assertEquals(1, writer.getStats().getDropped());
+
+        sink.release.countDown();
+        writer.stop();
+        assertEquals(List.of("0", "1", "2", "3", "4", "5"), storedIds());
+    }
+
+    @Test
+    @DisplayName("DROP_OLDEST: при заполненном буфере вытесняется самое старое событие")
+    void dropsOldestWhenFull() throws Exception {
+        fillWhileSinkBlocked(AnalyticsOverflowPolicy.DROP_OLDEST);
+
+        assertTrue(writer.append(event(100)));
+        assertEquals(1, writer.getStats().getDropped());
+        assertEquals(5, writer.getStats().getBufferDepth());
+
+        sink.release.countDown();
+        writer.stop();
+        assertEquals(List.of("0", "2", "3", "4", "5", "100"), storedIds());
+    }
+
+    @Test
+    @DisplayName("BLOCK: ожидание места ограничено таймаутом, освободившееся место занимается")
+    void blocksUntilSpaceOrTimeout() throws Exception {
+        config.setBlockTimeoutMs(30);
+        fillWhileSinkBlocked(AnalyticsOverflowPolicy.BLOCK);
+
+        long start = System.nanoTime();
+        assertFalse(writer.append(event(100)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+
+        config.setBlockTimeoutMs(5_000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> blocked = executor.submit(() -> writer.append(event(101)));
+            Thread.sleep(50);
+            assertFalse(blocked.isDone());
+            sink.release.countDown();
+            assertTrue(blocked.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        writer.stop();
+        assertTrue(storedIds().contains("101"));
+        assertFalse(storedIds().contains("100"));
+    }
+
+    @Test
+    @DisplayName("Ошибка записи учитывается, поток записи продолжает работу")
+    void countsFailedWrites() {
+        config.setBatchSize(3);
+        sink.failuresLeft = 1;
+        start();
+
+        for (int i = 0; i < 6; i++) {
+            writer.append(event(i));
+        }
+
+        awaitCondition(() -> writer.getStats().getWritten() == 3);
+        assertEquals(3, writer.getStats().getFailed());
+        assertEquals(2, writer.getStats().getFlushes());
+    }
+
+    @Test
+    @DisplayName("Параллельные добавления без потерь, остановка дописывает буфер")
+    void concurrentAppendsAreNotLost() throws Exception {
+        config.setBatchSize(100);
+        start();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        assertTrue(writer.append(event(thread * 1000 + i)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        writer.stop();
+
+        assertEquals(8000, sink.stored.size());
+        assertEquals(8000, writer.getStats().getWritten());
+        assertEquals(0, writer.getStats().getBufferDepth());
+        assertFalse(writer.append(event(-1)));
+    }
+
+    /*
+     * Буфер на 5 событий заполнен, поток записи заблокирован в хранилище на событии "0"
+     */
+    private void fillWhileSinkBlocked(AnalyticsOverflowPolicy policy) throws InterruptedException {
+        config.setOverflowPolicy(policy);
+        config.setBufferCapacity(5);
+        config.setBatchSize(1);
+        sink.blocking = true;
+        start();
+
+        writer.append(event(0));
+        assertTrue(sink.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(writer.append(event(i)));
+        }
+        assertEquals(5, writer.getStats().getBufferDepth());
+    }
+
+    private void start() {
+        writer = new AnalyticsEventWriter(config, sink);
+        writer.start();
+    }
+
+    private List<String> storedIds() {
+        synchronized (sink.stored) {
+            return sink.stored.stream().map(AnalyticsEvent::getId).toList();
+        }
+    }
+
+    private static AnalyticsEvent event(int id) {
+        return AnalyticsEvent.builder().id(String.valueOf(id)).eventType("VAS_RECORDED").build();
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 5 seconds");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /*
+     * Хранилище в памяти вместо MongoDB
+     */
+    private static final class InMemorySink implements AnalyticsEventSink {
+        private final List<AnalyticsEvent> stored = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean blocking;
+        private volatile int failuresLeft;
+
+        @Override
+        public int insertUnordered(List<AnalyticsEvent> events) {
+            if (blocking) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("MongoDB unavailable");
+            }
+            stored.addAll(events);
+            return events.size();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package pain_helper_back.common.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для LatencySamples.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Перцентили (nearest-rank) и максимум по накопленным значениям, 0 без значений
+ * - Кольцевой буфер: новые значения вытесняют самые старые
+ */
+class LatencySamplesTest {
+
+    @Test
+    @DisplayName("Перцентили и максимум по накопленным значениям")
+    void percentilesOfRecordedValues() {
+        LatencySamples samples = new LatencySamples();
+        for (long value = 100; value >= 1; value--) {
+            samples.record(value);
+        }
+
+        LatencySamples.Snapshot snapshot = samples.snapshot();
+
+        assertEquals(50L, snapshot.percentile(0.50));
+        assertEquals(99L, snapshot.percentile(0.99));
+        assertEquals(1L, snapshot.percentile(0.0));
+        assertEquals(100L, snapshot.max());
+    }
+
+    @Test
+    @DisplayName("Без значений перцентили и максимум равны 0")
+    void emptySnapshot() {
+        LatencySamples.Snapshot snapshot = new LatencySamples().snapshot();
+
+        assertEquals(0L, snapshot.percentile(0.99));
+        assertEquals(0L, snapshot.max());
+    }
+
+    @Test
+    @DisplayName("При заполнении буфера учитываются только последние значения")
+    void keepsOnlyLatestValues() {
+        LatencySamples samples = new LatencySamples(4);
+        for (long value = 1; value <= 6; value++) {
+            samples.record(value * 10);
+        }
+
+        LatencySamples.Snapshot snapshot = samples.snapshot();
+
+        assertArrayEquals(new long[]{30, 40, 50, 60}, snapshot.sorted());
+        assertEquals(60L, snapshot.max());
+    }
+}
@@ -6,8 +6,10 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 import pain_helper_back.common.patients.entity.Emr;
 import pain_helper_back.common.patients.repository.EmrRepository;
+import pain_helper_back.emr_recalculation.service.EmrRecalculationService;
 import pain_helper_back.enums.EmrSourceType;
 import pain_helper_back.external_emr_integration_service.client.HapiFhirClient;
 import pain_helper_back.external_emr_integration_service.dto.EmrChangeAlertDTO;
@@ -15,6 +17,8 @@ import pain_helper_back.external_emr_integration_service.dto.EmrSyncResultDTO;
 import pain_helper_back.external_emr_integration_service.dto.FhirObservationDTO;
 import pain_helper_back.external_emr_integration_service.entity.EmrMapping;
 import pain_helper_back.external_emr_integration_service.repository.EmrMappingRepository;
+import pain_helper_back.patient_locking.PatientWriteLocks;
+import pain_helper_back.patient_locking.config.PatientWriteLockConfig;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -57,6 +61,12 @@ class EmrSyncSchedulerTest {
     @Mock
     private EmailNotificationService emailNotificationService;
 
+    @Mock
+    private EmrRecalculationService emrRecalculationService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private EmrSyncScheduler scheduler;
 
     @BeforeEach
@@ -66,7 +76,9 @@ class EmrSyncSchedulerTest {
                 emrRepository,
                 hapiFhirClient,
                 changeDetectionService,
-                webSocketNotificationService
+                webSocketNotificationService,
+                emrRecalculationService,
+                new PatientWriteLocks(new PatientWriteLockConfig(), transactionManager)
         );
     }
 
@@ -0,0 +1,130 @@
+package pain_helper_back.pain_escalation_tracking.listener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import pain_helper_back.analytics.event.VasRecordedEvent;
+import pain_helper_back.common.patients.entity.Patient;
+import pain_helper_back.common.patients.entity.Vas;
+import pain_helper_back.common.patients.repository.PatientRepository;
+import pain_helper_back.common.patients.repository.VasRepository;
+import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.enums.EscalationStatus;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+import pain_helper_back.pain_escalation_tracking.entity.PainEscalation;
+import pain_helper_back.pain_escalation_tracking.repository.PainEscalationRepository;
+import pain_helper_back.pain_escalation_tracking.service.EscalationThrottle;
+import pain_helper_back.pain_escalation_tracking.service.PainEscalationNotificationService;
+import pain_helper_back.pain_escalation_tracking.service.PainEscalationServiceImpl;
+import pain_helper_back.pain_escalation_tracking.service.VasWindowCache;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/*
+ * Тесты PainEscalationEventListener на H2 с настоящими транзакциями
+ * (сервис эскалаций, окно VAS и EscalationThrottle настоящие, уведомления - мок).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - VasRecordedEvent обрабатывается после коммита, эскалация сохраняется в собственной транзакции
+ * - После отката записи VAS эскалация не создается и уведомление не отправляется
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({PainEscalationEventListener.class, PainEscalationServiceImpl.class, VasWindowCache.class,
+        EscalationThrottle.class, PainEscalationConfig.class})
+class PainEscalationEventListenerTest {
+
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private VasRepository vasRepository;
+    @Autowired
+    private PainEscalationRepository painEscalationRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @MockitoBean
+    private PainEscalationNotificationService notificationService;
+
+    @AfterEach
+    void tearDown() {
+        painEscalationRepository.deleteAll();
+        vasRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Эскалация после коммита записи VAS сохраняется в БД")
+    void persistsEscalationAfterCommit() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Patient patient = patient("MRN-1");
+            vas(patient, 2, LocalDateTime.now().minusHours(1));
+            Vas current = vas(patient, 8, LocalDateTime.now());
+            publish("MRN-1", current);
+            // До коммита слушатель не вызывается
+            assertEquals(0, painEscalationRepository.count());
+        });
+
+        List<PainEscalation> escalations = painEscalationRepository.findAll();
+        assertEquals(1, escalations.size());
+        PainEscalation escalation = escalations.get(0);
+        assertEquals(EscalationStatus.PENDING, escalation.getStatus());
+        assertEquals(EscalationPriority.CRITICAL, escalation.getPriority());
+        assertEquals(2, escalation.getPreviousVas());
+        assertEquals(8, escalation.getCurrentVas());
+        assertEquals(6, escalation.getVasChange());
+        verify(notificationService).sendEscalationNotification(any(PainEscalation.class));
+    }
+
+    @Test
+    @DisplayName("После отката записи VAS эскалация не создается")
+    void ignoresRolledBackRecord() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Patient patient = patient("MRN-2");
+            vas(patient, 2, LocalDateTime.now().minusHours(1));
+            publish("MRN-2", vas(patient, 8, LocalDateTime.now()));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, painEscalationRepository.count());
+        verify(notificationService, never()).sendEscalationNotification(any());
+    }
+
+    private Patient patient(String mrn) {
+        Patient patient = new Patient();
+        patient.setMrn(mrn);
+        patient.setFirstName("Anna");
+        patient.setLastName("Petrova");
+        patient.setIsActive(true);
+        return patientRepository.save(patient);
+    }
+
+    private Vas vas(Patient patient, int painLevel, LocalDateTime recordedAt) {
+        Vas vas = new Vas();
+        vas.setPatient(patient);
+        vas.setPainLevel(painLevel);
+        vas.setRecordedAt(recordedAt);
+        return vasRepository.save(vas);
+    }
+
+    private void publish(String mrn, Vas vas) {
+        eventPublisher.publishEvent(new VasRecordedEvent(this, vas.getId(), mrn, "nurse_id", vas.getRecordedAt(),
+                vas.getPainLevel(), null, vas.getPainLevel() >= 8, "INTERNAL", null));
+    }
+}
@@ -0,0 +1,178 @@
+package pain_helper_back.pain_escalation_tracking.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import pain_helper_back.common.patients.entity.Patient;
+import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.enums.EscalationStatus;
+import pain_helper_back.pain_escalation_tracking.entity.PainEscalation;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты запросов PainEscalationRepository на H2.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Незакрытые эскалации пациента по статусам
+ * - Список активных эскалаций: только открытые статусы, новые первыми, постранично, данные пациента из JOIN
+ * - Счетчики по статусу и приоритету за период
+ * - Медиана времени решения (percentile_cont) для нечетного и четного числа строк, null без решенных
+ * - Строки без статуса: default PENDING в БД и заполнение NULL статуса
+ */
+@DataJpaTest
+class PainEscalationRepositoryTest {
+
+    private static final Set<EscalationStatus> OPEN = EnumSet.of(EscalationStatus.PENDING, EscalationStatus.IN_REVIEW);
+
+    @Autowired
+    private PainEscalationRepository repository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private LocalDateTime now;
+    private Patient first;
+    private Patient second;
+
+    @BeforeEach
+    void setUp() {
+        now = LocalDateTime.now();
+        first = patient("MRN-1", "Anna", "Petrova");
+        second = patient("MRN-2", "Ivan", "Sidorov");
+    }
+
+    @Test
+    @DisplayName("Незакрытые эскалации пациента выбираются по статусам")
+    void findsOpenEscalationsOfPatient() {
+        PainEscalation pending = escalation(first, EscalationStatus.PENDING, EscalationPriority.HIGH, now, null);
+        PainEscalation inReview = escalation(first, EscalationStatus.IN_REVIEW, EscalationPriority.LOW, now, null);
+        escalation(first, EscalationStatus.RESOLVED, EscalationPriority.LOW, now, 60L);
+        escalation(second, EscalationStatus.PENDING, EscalationPriority.LOW, now, null);
+
+        List<PainEscalation> open = repository.findByPatientIdAndStatusIn(first.getId(), OPEN);
+
+        assertEquals(Set.of(pending.getId(), inReview.getId()),
+                Set.copyOf(open.stream().map(PainEscalation::getId).toList()));
+    }
+
+    @Test
+    @DisplayName("Активные эскалации: открытые статусы, новые первыми, постранично")
+    void findsActiveNewestFirst() {
+        PainEscalation oldest = escalation(first, EscalationStatus.PENDING, EscalationPriority.MEDIUM, now.minusHours(3), null);
+        PainEscalation middle = escalation(second, EscalationStatus.IN_REVIEW, EscalationPriority.HIGH, now.minusHours(2), null);
+        PainEscalation newest = escalation(first, EscalationStatus.PENDING, EscalationPriority.CRITICAL, now.minusHours(1), null);
+        escalation(second, EscalationStatus.RESOLVED, EscalationPriority.HIGH, now, 30L);
+
+        List<PainEscalationRepository.ActiveEscalationView> firstPage = repository.findActive(OPEN, PageRequest.of(0, 2));
+        List<PainEscalationRepository.ActiveEscalationView> secondPage = repository.findActive(OPEN, PageRequest.of(1, 2));
+
+        assertEquals(List.of(newest.getId(), middle.getId()),
+                firstPage.stream().map(PainEscalationRepository.ActiveEscalationView::getId).toList());
+        assertEquals(List.of(oldest.getId()),
+                secondPage.stream().map(PainEscalationRepository.ActiveEscalationView::getId).toList());
+        PainEscalationRepository.ActiveEscalationView view = firstPage.get(1);
+        assertEquals("MRN-2", view.getPatientMrn());
+        assertEquals("Ivan", view.getFirstName());
+        assertEquals("Sidorov", view.getLastName());
+        assertEquals(EscalationPriority.HIGH, view.getPriority());
+        assertEquals(EscalationStatus.IN_REVIEW, view.getStatus());
+        assertEquals(4, view.getPreviousVas());
+        assertEquals(7, view.getCurrentVas());
+        assertEquals(3, view.getVasChange());
+        assertEquals(3, repository.countByStatusIn(OPEN));
+    }
+
+    @Test
+    @DisplayName("Счетчики по статусу и приоритету учитывают только эскалации периода")
+    void countsByStatusAndPrioritySince() {
+        escalation(first, EscalationStatus.PENDING, EscalationPriority.HIGH, now.minusHours(1), null);
+        escalation(first, EscalationStatus.RESOLVED, EscalationPriority.HIGH, now.minusHours(2), 600L);
+        escalation(second, EscalationStatus.RESOLVED, EscalationPriority.CRITICAL, now.minusHours(3), 60L);
+        escalation(second, EscalationStatus.REJECTED, EscalationPriority.LOW, now.minusDays(2), 30L);
+
+        LocalDateTime from = now.minusHours(24);
+        Map<EscalationStatus, Long> byStatus = new HashMap<>();
+        repository.countByStatusSince(from).forEach(row -> byStatus.put(row.getStatus(), row.getTotal()));
+        Map<EscalationPriority, Long> byPriority = new HashMap<>();
+        repository.countByPrioritySince(from).forEach(row -> byPriority.put(row.getPriority(), row.getTotal()));
+
+        assertEquals(Map.of(EscalationStatus.PENDING, 1L, EscalationStatus.RESOLVED, 2L), byStatus);
+        assertEquals(Map.of(EscalationPriority.HIGH, 2L, EscalationPriority.CRITICAL, 1L), byPriority);
+    }
+
+    @Test
+    @DisplayName("Медиана времени решения: percentile_cont по решенным эскалациям периода")
+    void medianResolutionSeconds() {
+        LocalDateTime from = now.minusHours(24);
+        escalation(first, EscalationStatus.PENDING, EscalationPriority.LOW, now.minusHours(1), null);
+        assertNull(repository.findMedianResolutionSecondsSince(from));
+
+        escalation(first, EscalationStatus.RESOLVED, EscalationPriority.LOW, now.minusHours(2), 60L);
+        escalation(first, EscalationStatus.RESOLVED, EscalationPriority.LOW, now.minusHours(3), 600L);
+        escalation(second, EscalationStatus.REJECTED, EscalationPriority.LOW, now.minusHours(4), 120L);
+        // Вне периода: не влияет на медиану
+        escalation(second, EscalationStatus.RESOLVED, EscalationPriority.LOW, now.minusDays(3), 100_000L);
+        assertEquals(120.0, repository.findMedianResolutionSecondsSince(from));
+
+        escalation(second, EscalationStatus.RESOLVED, EscalationPriority.LOW, now.minusHours(5), 300L);
+        // Четное число строк: среднее двух средних значений (120 и 300)
+        assertEquals(210.0, repository.findMedianResolutionSecondsSince(from));
+    }
+
+    @Test
+    @DisplayName("Строка без статуса получает PENDING: default колонки и заполнение NULL")
+    void missingStatusBecomesPending() {
+        entityManager.getEntityManager().createNativeQuery(
+                        "INSERT INTO pain_escalations (patient_patient_id, previous_vas, current_vas, vas_change, created_at) " +
+                                "VALUES (?, 4, 7, 3, ?)")
+                .setParameter(1, first.getId())
+                .setParameter(2, now)
+                .executeUpdate();
+        PainEscalation withoutStatus = escalation(second, null, EscalationPriority.HIGH, now, null);
+        assertEquals(1, repository.countByStatusIn(OPEN));
+
+        assertEquals(1, repository.fillMissingStatus(EscalationStatus.PENDING));
+        entityManager.clear();
+
+        assertEquals(EscalationStatus.PENDING, repository.findById(withoutStatus.getId()).orElseThrow().getStatus());
+        assertEquals(2, repository.countByStatusIn(OPEN));
+        assertEquals(2, repository.findActive(OPEN, PageRequest.of(0, 10)).size());
+    }
+
+    private Patient patient(String mrn, String firstName, String lastName) {
+        Patient patient = new Patient();
+        patient.setMrn(mrn);
+        patient.setFirstName(firstName);
+        patient.setLastName(lastName);
+        patient.setIsActive(true);
+        return entityManager.persist(patient);
+    }
+
+    private PainEscalation escalation(Patient patient, EscalationStatus status, EscalationPriority priority,
+                                      LocalDateTime createdAt, Long resolutionSeconds) {
+        PainEscalation escalation = new PainEscalation();
+        escalation.setPatient(patient);
+        escalation.setStatus(status);
+        escalation.setPriority(priority);
+        escalation.setPreviousVas(4);
+        escalation.setCurrentVas(7);
+        escalation.setVasChange(3);
+        escalation.setCreatedAt(createdAt);
+        escalation.setResolutionSeconds(resolutionSeconds);
+        if (resolutionSeconds != null) {
+            escalation.setResolvedAt(createdAt.plusSeconds(resolutionSeconds));
+        }
+        return entityManager.persistAndFlush(escalation);
+    }
+}
@@ -0,0 +1,180 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+import pain_helper_back.pain_escalation_tracking.entity.DoseAdministration;
+import pain_helper_back.pain_escalation_tracking.repository.DoseAdministrationRepository;
+import pain_helper_back.pain_escalation_tracking.repository.PainEscalationRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static pain_helper_back.pain_escalation_tracking.service.EscalationThrottle.ThrottleDecision.Action.*;
+
+/*
+ * Тесты для EscalationThrottle.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Не больше maxEscalationsPerPeriod эскалаций за скользящий период
+ * - Объединение с открытой эскалацией при росте приоритета
+ * - Одна эскалация в интервале minDoseIntervalHours после дозы
+ * - Освобождение места в окне, если эскалация не сохранена
+ * - Прогрев счетчиков из БД один раз на пациента, статистика и очистка
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EscalationThrottle Tests")
+class EscalationThrottleTest {
+
+    private static final String MRN = "000001";
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 8, 0);
+
+    @Mock
+    private PainEscalationRepository painEscalationRepository;
+
+    @Mock
+    private DoseAdministrationRepository doseAdministrationRepository;
+
+    private final AtomicReference<LocalDateTime> now = new AtomicReference<>(T0);
+    private EscalationThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        PainEscalationConfig config = new PainEscalationConfig();
+        config.setMaxEscalationsPerPeriod(2);
+        config.setEscalationPeriodHours(6);
+        config.setMinDoseIntervalHours(4);
+        throttle = new EscalationThrottle(config, painEscalationRepository, doseAdministrationRepository, now::get);
+    }
+
+    @Test
+    @DisplayName("Должен подавлять эскалации сверх лимита и пропускать после сдвига окна")
+    void shouldLimitEscalationsPerSlidingPeriod() {
+        noHistory();
+
+        assertEquals(ESCALATE, escalate(1L, EscalationPriority.MEDIUM));
+        now.set(T0.plusHours(2));
+        assertEquals(ESCALATE, escalate(2L, EscalationPriority.MEDIUM));
+        now.set(T0.plusHours(3));
+        assertEquals(SUPPRESS, throttle.tryAcquire(MRN, EscalationPriority.MEDIUM).action());
+
+        // Первая эскалация вышла из 6-часового окна
+        now.set(T0.plusHours(6).plusMinutes(1));
+        assertEquals(ESCALATE, throttle.tryAcquire(MRN, EscalationPriority.MEDIUM).action());
+
+        assertEquals(3, throttle.getStats().getAllowedEscalations());
+        assertEquals(1, throttle.getStats().getSuppressedEscalations());
+        verify(painEscalationRepository, times(1)).findByPatientMrnAndCreatedAtAfterOrderByCreatedAtAsc(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("Должен объединять с открытой эскалацией только при росте приоритета")
+    void shouldMergeOnPriorityIncrease() {
+        noHistory();
+        escalate(1L, EscalationPriority.MEDIUM);
+        escalate(2L, EscalationPriority.MEDIUM);
+
+        EscalationThrottle.ThrottleDecision critical = throttle.tryAcquire(MRN, EscalationPriority.CRITICAL);
+        assertEquals(MERGE, critical.action());
+        assertEquals(2L, critical.escalationId());
+
+        assertEquals(SUPPRESS, throttle.tryAcquire(MRN, EscalationPriority.CRITICAL).action());
+        assertEquals(1, throttle.getStats().getMergedEscalations());
+    }
+
+    @Test
+    @DisplayName("Должен освобождать зарезервированное место, если эскалация не сохранена")
+    void shouldReleaseReservationOfUnsavedEscalation() {
+        noHistory();
+        assertEquals(ESCALATE, escalate(1L, EscalationPriority.MEDIUM));
+
+        now.set(T0.plusHours(1));
+        EscalationThrottle.ThrottleDecision failed = throttle.tryAcquire(MRN, EscalationPriority.MEDIUM);
+        assertEquals(ESCALATE, failed.action());
+        throttle.release(MRN, failed);
+        throttle.release(MRN, failed);
+
+        // Место свободно, открытой остается эскалация 1
+        now.set(T0.plusHours(2));
+        assertEquals(ESCALATE, escalate(2L, EscalationPriority.MEDIUM));
+        assertEquals(SUPPRESS, throttle.tryAcquire(MRN, EscalationPriority.MEDIUM).action());
+        assertEquals(2, throttle.getStats().getAllowedEscalations());
+    }
+
+    @Test
+    @DisplayName("Должен пропускать одну эскалацию в интервале после дозы")
+    void shouldGateByDoseInterval() {
+        DoseAdministration dose = new DoseAdministration();
+        dose.setAdministeredAt(T0.minusHours(1));
+        when(painEscalationRepository.findByPatientMrnAndCreatedAtAfterOrderByCreatedAtAsc(anyString(), any()))
+                .thenReturn(List.of());
+        when(doseAdministrationRepository.findTopByPatientMrnOrderByAdministeredAtDesc(MRN))
+                .thenReturn(Optional.of(dose));
+
+        assertEquals(ESCALATE, escalate(1L, EscalationPriority.MEDIUM));
+        now.set(T0.plusHours(1));
+        assertEquals(SUPPRESS, throttle.tryAcquire(MRN, EscalationPriority.MEDIUM).action());
+        assertEquals(1, throttle.getStats().getSuppressedByDoseInterval());
+
+        // Интервал после дозы истек - снова действует только лимит за период
+        now.set(T0.plusHours(3).plusMinutes(1));
+        assertEquals(ESCALATE, throttle.tryAcquire(MRN, EscalationPriority.MEDIUM).action());
+
+        // Новая доза открывает новый интервал
+        throttle.opened(MRN, 2L, EscalationPriority.MEDIUM, now.get());
+        throttle.recordDose(MRN, now.get().plusMinutes(5));
+        now.set(now.get().plusHours(7));
+        throttle.recordDose(MRN, now.get());
+        assertEquals(ESCALATE, escalate(3L, EscalationPriority.MEDIUM));
+        assertEquals(SUPPRESS, throttle.tryAcquire(MRN, EscalationPriority.MEDIUM).action());
+    }
+
+    @Test
+    @DisplayName("Должен учитывать эскалации из БД и удалять неактивных пациентов")
+    void shouldWarmFromDatabaseAndEvictIdle() {
+        PainEscalationRepository.EscalationView stored = mock(PainEscalationRepository.EscalationView.class);
+        when(stored.getId()).thenReturn(7L);
+        when(stored.getCreatedAt()).thenReturn(T0.minusHours(1));
+        when(stored.getPriority()).thenReturn(EscalationPriority.HIGH);
+        when(painEscalationRepository.findByPatientMrnAndCreatedAtAfterOrderByCreatedAtAsc(anyString(), any()))
+                .thenReturn(List.of(stored, stored));
+        when(doseAdministrationRepository.findTopByPatientMrnOrderByAdministeredAtDesc(MRN))
+                .thenReturn(Optional.empty());
+
+        assertEquals(SUPPRESS, throttle.tryAcquire(MRN, EscalationPriority.HIGH).action());
+        assertEquals(7L, throttle.tryAcquire(MRN, EscalationPriority.CRITICAL).escalationId());
+
+        throttle.evictIdlePatients();
+        assertEquals(1, throttle.getStats().getTrackedPatients());
+
+        now.set(T0.plusHours(6));
+        throttle.evictIdlePatients();
+        assertEquals(0, throttle.getStats().getTrackedPatients());
+    }
+
+    private EscalationThrottle.ThrottleDecision.Action escalate(Long escalationId, EscalationPriority priority) {
+        EscalationThrottle.ThrottleDecision decision = throttle.tryAcquire(MRN, priority);
+        if (decision.action() == ESCALATE) {
+            throttle.opened(MRN, escalationId, priority, now.get());
+        }
+        return decision.action();
+    }
+
+    private void noHistory() {
+        when(painEscalationRepository.findByPatientMrnAndCreatedAtAfterOrderByCreatedAtAsc(anyString(), any()))
+                .thenReturn(List.of());
+        when(doseAdministrationRepository.findTopByPatientMrnOrderByAdministeredAtDesc(MRN))
+                .thenReturn(Optional.empty());
+    }
+}
@@ -0,0 +1,107 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для HierarchicalTimingWheel.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Срабатывание точно на тике дедлайна на всех уровнях (с осыпанием старших уровней)
+ * - Дедлайны дальше горизонта колеса
+ * - Отмена таймера и повторная отмена
+ * - Наступивший дедлайн не планируется
+ */
+@DisplayName("HierarchicalTimingWheel Tests")
+class HierarchicalTimingWheelTest {
+
+    @Test
+    @DisplayName("Таймеры всех уровней срабатывают точно на своем тике")
+    void firesAtExactTickAcrossLevels() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(4, 3, 5);
+        long[] deadlines = {6, 15, 16, 21, 37, 255, 256, 261, 1000, 4100};
+        for (long deadline : deadlines) {
+            assertNotNull(wheel.schedule(deadline, deadline));
+        }
+        assertEquals(deadlines.length, wheel.size());
+
+        List<Long> fired = new ArrayList<>();
+        for (long tick = 6; tick <= 5000; tick++) {
+            for (Long deadline : wheel.advance(tick)) {
+                assertEquals(tick, deadline);
+                fired.add(deadline);
+            }
+        }
+        assertEquals(List.of(6L, 15L, 16L, 21L, 37L, 255L, 256L, 261L, 1000L, 4100L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("Продвижение на много тиков сразу возвращает таймеры в порядке дедлайнов")
+    void advanceManyTicksReturnsInDeadlineOrder() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(3, 3, 0);
+        Random random = new Random(42);
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            long deadline = 1 + random.nextInt(600);
+            wheel.schedule(deadline, deadline);
+            expected.add(deadline);
+        }
+        expected.sort(Long::compare);
+
+        List<Long> fired = new ArrayList<>();
+        fired.addAll(wheel.advance(300));
+        assertTrue(fired.stream().allMatch(deadline -> deadline <= 300));
+        fired.addAll(wheel.advance(700));
+
+        assertEquals(expected, fired);
+        assertEquals(700, wheel.getCurrentTick());
+    }
+
+    @Test
+    @DisplayName("Дедлайн за горизонтом колеса срабатывает вовремя")
+    void deadlineBeyondHorizon() {
+        // Горизонт 2^(2*2) - 1 = 15 тиков
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(2, 2, 0);
+        wheel.schedule(50, "far");
+
+        assertTrue(wheel.advance(49).isEmpty());
+        assertEquals(List.of("far"), wheel.advance(50));
+    }
+
+    @Test
+    @DisplayName("Отмененный таймер не срабатывает")
+    void cancelledTimerDoesNotFire() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(4, 2, 0);
+        HierarchicalTimingWheel.Timer<String> first = wheel.schedule(100, "first");
+        HierarchicalTimingWheel.Timer<String> second = wheel.schedule(100, "second");
+        wheel.schedule(100, "third");
+
+        assertTrue(wheel.cancel(second));
+        assertFalse(wheel.cancel(second));
+        assertEquals(2, wheel.size());
+
+        List<String> fired = wheel.advance(100);
+        assertEquals(2, fired.size());
+        assertTrue(fired.containsAll(List.of("first", "third")));
+        assertFalse(wheel.cancel(first));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    @DisplayName("Наступивший дедлайн не планируется")
+    void pastDeadlineReturnsNull() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(4, 2, 10);
+
+        assertNull(wheel.schedule(10, "now"));
+        assertNull(wheel.schedule(3, "past"));
+        assertEquals(0, wheel.size());
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<>(0, 2, 0));
+    }
+}
@@ -0,0 +1,169 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import pain_helper_back.common.patients.entity.Patient;
+import pain_helper_back.common.patients.repository.PatientRepository;
+import pain_helper_back.enums.EscalationPriority;
+import pain_helper_back.enums.EscalationStatus;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+import pain_helper_back.pain_escalation_tracking.dto.EscalationInfoDTO;
+import pain_helper_back.pain_escalation_tracking.dto.PainEscalationStatisticsDTO;
+import pain_helper_back.pain_escalation_tracking.entity.PainEscalation;
+import pain_helper_back.pain_escalation_tracking.repository.PainEscalationRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты жизненного цикла и дашборда эскалаций PainEscalationServiceImpl на H2
+ * (репозитории настоящие, уведомления, окно VAS и EscalationThrottle - моки).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - resolveOpenEscalations закрывает только открытые эскалации пациента, записывает время решения
+ *   и освобождает лимит EscalationThrottle
+ * - getActiveEscalations: открытые эскалации, новые первыми, имя пациента, ограничение страницы
+ * - getEscalationStatistics: счетчики по статусу и приоритету, активные, медиана времени решения в минутах
+ */
+@DataJpaTest
+class PainEscalationServiceImplTest {
+
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private PainEscalationRepository painEscalationRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private EscalationThrottle escalationThrottle;
+    private PainEscalationServiceImpl service;
+    private LocalDateTime now;
+    private Patient patient;
+    private Patient otherPatient;
+
+    @BeforeEach
+    void setUp() {
+        escalationThrottle = mock(EscalationThrottle.class);
+        service = new PainEscalationServiceImpl(patientRepository, painEscalationRepository, new PainEscalationConfig(),
+                mock(PainEscalationNotificationService.class), mock(VasWindowCache.class), escalationThrottle);
+        now = LocalDateTime.now();
+        patient = patient("MRN-1", "Anna", "Petrova");
+        otherPatient = patient("MRN-2", "Ivan", "Sidorov");
+    }
+
+    @Test
+    @DisplayName("resolveOpenEscalations закрывает открытые эскалации пациента и освобождает лимит")
+    void resolveOpenEscalationsClosesOnlyOpenOnes() {
+        PainEscalation pending = escalation(patient, EscalationStatus.PENDING, EscalationPriority.HIGH, now.minusMinutes(10));
+        PainEscalation inReview = escalation(patient, EscalationStatus.IN_REVIEW, EscalationPriority.MEDIUM, now.minusMinutes(30));
+        PainEscalation rejected = escalation(patient, EscalationStatus.REJECTED, EscalationPriority.LOW, now.minusHours(5));
+        PainEscalation otherPending = escalation(otherPatient, EscalationStatus.PENDING, EscalationPriority.HIGH, now);
+
+        service.resolveOpenEscalations(patient.getId(), "MRN-1", EscalationStatus.RESOLVED, "anesthesiologist-1");
+        entityManager.flush();
+        entityManager.clear();
+
+        PainEscalation resolved = painEscalationRepository.findById(pending.getId()).orElseThrow();
+        assertEquals(EscalationStatus.RESOLVED, resolved.getStatus());
+        assertEquals("anesthesiologist-1", resolved.getResolvedBy());
+        assertNotNull(resolved.getResolvedAt());
+        assertTrue(resolved.getResolutionSeconds() >= 600 && resolved.getResolutionSeconds() < 660,
+                "resolutionSeconds=" + resolved.getResolutionSeconds());
+        assertEquals(EscalationStatus.RESOLVED, painEscalationRepository.findById(inReview.getId()).orElseThrow().getStatus());
+        assertEquals(EscalationStatus.REJECTED, painEscalationRepository.findById(rejected.getId()).orElseThrow().getStatus());
+        assertNull(painEscalationRepository.findById(rejected.getId()).orElseThrow().getResolvedBy());
+        assertEquals(EscalationStatus.PENDING, painEscalationRepository.findById(otherPending.getId()).orElseThrow().getStatus());
+        verify(escalationThrottle).resolved("MRN-1");
+    }
+
+    @Test
+    @DisplayName("getActiveEscalations: открытые эскалации, новые первыми, с именем пациента")
+    void activeEscalationsNewestFirst() {
+        escalation(patient, EscalationStatus.PENDING, EscalationPriority.MEDIUM, now.minusHours(2));
+        PainEscalation newest = escalation(otherPatient, EscalationStatus.IN_REVIEW, EscalationPriority.CRITICAL, now.minusMinutes(5));
+        escalation(patient, EscalationStatus.RESOLVED, EscalationPriority.HIGH, now);
+
+        List<EscalationInfoDTO> active = service.getActiveEscalations(0, 50);
+        List<EscalationInfoDTO> limited = service.getActiveEscalations(-1, 0);
+
+        assertEquals(2, active.size());
+        EscalationInfoDTO first = active.get(0);
+        assertEquals(newest.getId(), first.getEscalationId());
+        assertEquals("MRN-2", first.getPatientMrn());
+        assertEquals("Ivan Sidorov", first.getPatientName());
+        assertEquals("CRITICAL", first.getPriority());
+        assertEquals("IN_REVIEW", first.getStatus());
+        assertEquals(3, first.getVasChange());
+        // Отрицательная страница и нулевой размер приводятся к первой странице из одной строки
+        assertEquals(List.of(newest.getId()), limited.stream().map(EscalationInfoDTO::getEscalationId).toList());
+    }
+
+    @Test
+    @DisplayName("getEscalationStatistics: счетчики за период, активные и медиана решения в минутах")
+    void statisticsCountsAndMedian() {
+        escalation(patient, EscalationStatus.PENDING, EscalationPriority.HIGH, now.minusHours(1));
+        resolvedEscalation(patient, EscalationPriority.HIGH, now.minusHours(2), 120L);
+        resolvedEscalation(otherPatient, EscalationPriority.CRITICAL, now.minusHours(3), 600L);
+        resolvedEscalation(otherPatient, EscalationPriority.LOW, now.minusHours(4), 1_800L);
+        // Вне периода: в счетчики и медиану не входит, но активные считаются без периода
+        escalation(otherPatient, EscalationStatus.IN_REVIEW, EscalationPriority.LOW, now.minusDays(3));
+
+        PainEscalationStatisticsDTO stats = service.getEscalationStatistics(24);
+
+        assertEquals(4L, stats.getTotalEscalations());
+        assertEquals(Map.of("PENDING", 1L, "RESOLVED", 3L), stats.getEscalationsByStatus());
+        assertEquals(Map.of("HIGH", 2L, "CRITICAL", 1L, "LOW", 1L), stats.getEscalationsByPriority());
+        assertEquals(2L, stats.getActiveEscalations());
+        assertEquals(10.0, stats.getMedianResolutionMinutes());
+        assertFalse(stats.getFrom().isAfter(now.minusHours(24).plusSeconds(5)));
+    }
+
+    @Test
+    @DisplayName("getEscalationStatistics без решенных эскалаций: медиана null")
+    void statisticsWithoutResolvedEscalations() {
+        escalation(patient, EscalationStatus.PENDING, EscalationPriority.HIGH, now.minusHours(1));
+
+        PainEscalationStatisticsDTO stats = service.getEscalationStatistics(24);
+
+        assertEquals(1L, stats.getTotalEscalations());
+        assertNull(stats.getMedianResolutionMinutes());
+    }
+
+    private Patient patient(String mrn, String firstName, String lastName) {
+        Patient created = new Patient();
+        created.setMrn(mrn);
+        created.setFirstName(firstName);
+        created.setLastName(lastName);
+        created.setIsActive(true);
+        return entityManager.persist(created);
+    }
+
+    private PainEscalation escalation(Patient owner, EscalationStatus status, EscalationPriority priority,
+                                      LocalDateTime createdAt) {
+        PainEscalation escalation = new PainEscalation();
+        escalation.setPatient(owner);
+        escalation.setStatus(status);
+        escalation.setPriority(priority);
+        escalation.setPreviousVas(4);
+        escalation.setCurrentVas(7);
+        escalation.setVasChange(3);
+        escalation.setCreatedAt(createdAt);
+        return entityManager.persistAndFlush(escalation);
+    }
+
+    private void resolvedEscalation(Patient owner, EscalationPriority priority, LocalDateTime createdAt,
+                                    long resolutionSeconds) {
+        PainEscalation escalation = escalation(owner, EscalationStatus.RESOLVED, priority, createdAt);
+        escalation.setResolvedAt(createdAt.plusSeconds(resolutionSeconds));
+        escalation.setResolutionSeconds(resolutionSeconds);
+        entityManager.persistAndFlush(escalation);
+    }
+}
@@ -0,0 +1,141 @@
+package pain_helper_back.pain_escalation_tracking.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import pain_helper_back.common.patients.repository.VasRepository;
+import pain_helper_back.pain_escalation_tracking.config.PainEscalationConfig;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты для VasWindowCache.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Ленивый прогрев окна одним запросом и порядок записей по времени
+ * - Добавление новых записей без обращения к БД, вытеснение старейшей при заполнении окна
+ * - Записи не по порядку и повторная доставка одной записи
+ * - Сброс окна и ограничение числа пациентов
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("VasWindowCache Tests")
+class VasWindowCacheTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 8, 0);
+
+    @Mock
+    private VasRepository vasRepository;
+
+    private VasWindowCache cache;
+
+    @BeforeEach
+    void setUp() {
+        PainEscalationConfig config = new PainEscalationConfig();
+        config.setTrendAnalysisPeriodHours(1);
+        config.setWindowReadingsPerHour(4); // окно на 4 записи
+        config.setWindowCacheMaxPatients(2);
+        cache = new VasWindowCache(vasRepository, config);
+    }
+
+    @Test
+    @DisplayName("Должен прогревать окно одним запросом и возвращать записи по возрастанию времени")
+    void shouldWarmWindowOnce() {
+        // БД возвращает последние записи по убыванию времени
+        when(vasRepository.findRecentReadings(eq("000001"), any(Pageable.class)))
+                .thenReturn(List.of(reading(3L, 5, 30), reading(2L, 4, 20), reading(1L, 2, 10)));
+
+        VasWindowCache.Readings first = cache.getReadings("000001");
+        VasWindowCache.Readings second = cache.getReadings("000001");
+
+        assertArrayEquals(new int[]{2, 4, 5}, first.painLevels());
+        assertArrayEquals(first.painLevels(), second.painLevels());
+        assertEquals(T0.plusMinutes(30), second.recordedAt()[2]);
+        verify(vasRepository, times(1)).findRecentReadings(eq("000001"), any(Pageable.class));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("Должен добавлять записи в прогретое окно и вытеснять старейшую")
+    void shouldAppendAndEvictOldest() {
+        when(vasRepository.findRecentReadings(eq("000001"), any(Pageable.class)))
+                .thenReturn(List.of(reading(2L, 3, 20), reading(1L, 2, 10)));
+        cache.getReadings("000001");
+
+        cache.record("000001", 3L, 4, T0.plusMinutes(30));
+        cache.record("000001", 4L, 6, T0.plusMinutes(40));
+        cache.record("000001", 5L, 8, T0.plusMinutes(50));
+
+        VasWindowCache.Readings readings = cache.getReadings("000001");
+        assertArrayEquals(new int[]{3, 4, 6, 8}, readings.painLevels());
+        verify(vasRepository, times(1)).findRecentReadings(eq("000001"), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Должен упорядочивать записи не по порядку и игнорировать повторы")
+    void shouldOrderOutOfOrderAndSkipDuplicates() {
+        when(vasRepository.findRecentReadings(eq("000001"), any(Pageable.class)))
+                .thenReturn(List.of(reading(3L, 6, 30), reading(1L, 2, 10)));
+        cache.getReadings("000001");
+
+        cache.record("000001", 2L, 4, T0.plusMinutes(20)); // пришла позже записи 3
+        cache.record("000001", 3L, 6, T0.plusMinutes(30)); // повторная доставка
+        cache.record("000001", 4L, 1, T0.plusMinutes(20)); // то же время - порядок по ID
+
+        assertArrayEquals(new int[]{2, 4, 1, 6}, cache.getReadings("000001").painLevels());
+
+        // Окно заполнено: запись старше всех не попадает в окно
+        cache.record("000001", 5L, 9, T0);
+        assertArrayEquals(new int[]{2, 4, 1, 6}, cache.getReadings("000001").painLevels());
+    }
+
+    @Test
+    @DisplayName("Должен игнорировать записи для пациента без окна и сбрасывать окно")
+    void shouldInvalidateAndBoundPatients() {
+        when(vasRepository.findRecentReadings(any(), any(Pageable.class)))
+                .thenReturn(List.of(reading(1L, 2, 10)));
+
+        cache.record("000001", 7L, 9, T0.plusMinutes(40)); // окна нет - ничего не делаем
+        assertArrayEquals(new int[]{2}, cache.getReadings("000001").painLevels());
+
+        cache.invalidateAfterCommit("000001");
+        cache.getReadings("000001");
+        cache.getReadings("000002");
+        cache.getReadings("000003"); // вытесняет 000001 (не больше 2 пациентов)
+        cache.getReadings("000001");
+
+        verify(vasRepository, times(3)).findRecentReadings(eq("000001"), any(Pageable.class));
+    }
+
+    private static VasRepository.VasReadingView reading(Long id, int painLevel, int minutes) {
+        return new Reading(id, painLevel, T0.plusMinutes(minutes));
+    }
+
+    private record Reading(Long id, Integer painLevel, LocalDateTime recordedAt)
+            implements VasRepository.VasReadingView {
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Integer getPainLevel() {
+            return painLevel;
+        }
+
+        @Override
+        public LocalDateTime getRecordedAt() {
+            return recordedAt;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package pain_helper_back.patient_locking;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import pain_helper_back.patient_locking.config.PatientWriteLockConfig;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для PatientWriteLocks.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Записи одного пациента не пересекаются (нет потерянных обновлений)
+ * - Разные пациенты выполняются параллельно; под нагрузкой все разные пациенты одновременно внутри блокировок
+ * - Таймаут ожидания блокировки
+ * - Повтор операции после конфликта @Version
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PatientWriteLocks Tests")
+class PatientWriteLocksTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PatientWriteLockConfig config;
+    private PatientWriteLocks locks;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        config = new PatientWriteLockConfig();
+        config.setTimeoutMs(5_000);
+        locks = new PatientWriteLocks(config, transactionManager);
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @Test
+    @DisplayName("Записи одного пациента выполняются по одной")
+    void serializesSamePatient() throws Exception {
+        int[] counter = {0};
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    locks.inNewTransaction("000001", () -> {
+                        maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                        counter[0]++; // Не атомарно: без блокировки обновления терялись бы
+                        inside.decrementAndGet();
+                        return null;
+                    });
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(4000, counter[0]);
+        assertEquals(1, maxInside.get());
+        assertEquals(4000, locks.getStats().getAcquisitions());
+    }
+
+    @Test
+    @DisplayName("Разные пациенты не блокируют друг друга")
+    void differentPatientsRunInParallel() throws Exception {
+        String first = "000001";
+        String second = secondPatientOnOtherStripe(first);
+        CountDownLatch firstInside = new CountDownLatch(1);
+        CountDownLatch secondInside = new CountDownLatch(1);
+
+        Future<Boolean> holder = executor.submit(() -> locks.inNewTransaction(first, () -> {
+            firstInside.countDown();
+            return await(secondInside); // Держит блокировку, пока второй пациент не войдет
+        }));
+        assertTrue(firstInside.await(5, TimeUnit.SECONDS));
+        locks.inNewTransaction(second, () -> {
+            secondInside.countDown();
+            return null;
+        });
+
+        assertTrue(holder.get(5, TimeUnit.SECONDS));
+        assertEquals(0, locks.getStats().getContendedAcquisitions());
+    }
+
+    @Test
+    @DisplayName("Под нагрузкой все разные пациенты одновременно внутри своих блокировок")
+    void differentPatientsAllInsideAtOnce() throws Exception {
+        List<String> patients = patientsOnDistinctStripes(8);
+        // Каждый держит блокировку, пока не войдут все: завершится, только если записи не ждут друг друга
+        CountDownLatch allInside = new CountDownLatch(patients.size());
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (String mrn : patients) {
+            futures.add(executor.submit(() -> locks.inNewTransaction(mrn, () -> {
+                allInside.countDown();
+                return await(allInside);
+            })));
+        }
+
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS), "patients on different stripes waited for each other");
+        }
+        assertEquals(0, locks.getStats().getContendedAcquisitions());
+    }
+
+    @Test
+    @DisplayName("Ожидание блокировки ограничено таймаутом")
+    void timesOutWhenPatientBusy() throws Exception {
+        config.setTimeoutMs(50);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Boolean> holder = executor.submit(() -> locks.inNewTransaction("000001", () -> {
+            holding.countDown();
+            return await(release);
+        }));
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+
+        assertThrows(PatientLockTimeoutException.class,
+                () -> locks.inNewTransaction("000001", () -> null));
+        release.countDown();
+
+        assertTrue(holder.get(5, TimeUnit.SECONDS));
+        assertEquals(1, locks.getStats().getTimeouts());
+    }
+
+    @Test
+    @DisplayName("Конфликт @Version - операция повторяется, после лимита повторов ошибка пробрасывается")
+    void retriesOptimisticLockConflicts() throws Throwable {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = locks.execute("000001", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Patient", 1L);
+            }
+            return "saved";
+        });
+
+        assertEquals("saved", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, locks.getStats().getOptimisticRetries());
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> locks.execute("000001", () -> {
+            throw new ObjectOptimisticLockingFailureException("Patient", 1L);
+        }));
+    }
+
+    private List<String> patientsOnDistinctStripes(int count) {
+        List<String> patients = new ArrayList<>();
+        Set<Integer> usedStripes = new HashSet<>();
+        for (int i = 1; patients.size() < count; i++) {
+            String candidate = String.format("%06d", i);
+            if (usedStripes.add(locks.stripeOf(candidate))) {
+                patients.add(candidate);
+            }
+        }
+        return patients;
+    }
+
+    private String secondPatientOnOtherStripe(String first) {
+        for (int i = 2; ; i++) {
+            String candidate = String.format("%06d", i);
+            if (locks.stripeOf(candidate) != locks.stripeOf(first)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package pain_helper_back.performance_SLA_monitoring.aspect;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.aspectj.MethodInvocationProceedingJoinPoint;
+import org.springframework.aop.framework.ReflectiveMethodInvocation;
+import pain_helper_back.performance_SLA_monitoring.config.PerformanceMetricsConfig;
+import pain_helper_back.performance_SLA_monitoring.config.PerformanceSlaConfig;
+import pain_helper_back.performance_SLA_monitoring.metrics.OperationHistograms;
+import pain_helper_back.performance_SLA_monitoring.metrics.OperationHistograms.OperationRecorder;
+import pain_helper_back.performance_SLA_monitoring.metrics.OperationInterval;
+import pain_helper_back.performance_SLA_monitoring.metrics.SlaViolationWriter;
+import pain_helper_back.performance_SLA_monitoring.repository.PerformanceMetricRepository;
+import pain_helper_back.performance_SLA_monitoring.repository.PerformanceSnapshotRepository;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/*
+ * Микро-бенчмарк накладных расходов PerformanceMonitoringAspect на вызов.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Имя операции определяется так же, как раньше (по цепочке правил и по умолчанию)
+ * - Цепочка правил выполняется один раз на метод, кэш и цепочка дают одну и ту же операцию
+ * - В лог пишется время определения операции на вызов из кэша и без кэша (цепочка правил + поиск
+ *   гистограммы по имени, как до кэша): для метода из цепочки правил и для метода с именем
+ *   по умолчанию (вся цепочка проверок)
+ *
+ * Точка соединения - настоящий MethodInvocationProceedingJoinPoint Spring AOP, как в прокси.
+ * Для более точных замеров увеличьте -Dperformance.aspect.benchmark.iterations.
+ */
+@Slf4j
+class PerformanceMonitoringAspectBenchmarkTest {
+
+    private static final int ITERATIONS = Integer.getInteger("performance.aspect.benchmark.iterations", 200_000);
+
+    private OperationHistograms histograms;
+    private PerformanceMonitoringAspect aspect;
+    private final RecommendationController target = new RecommendationController();
+    private long resolutions;
+
+    @BeforeEach
+    void setUp() {
+        PerformanceSlaConfig slaConfig = new PerformanceSlaConfig();
+        histograms = new OperationHistograms(new PerformanceMetricsConfig(), slaConfig,
+                mock(PerformanceSnapshotRepository.class));
+        SlaViolationWriter violationWriter = new SlaViolationWriter(new PerformanceMetricsConfig(),
+                mock(PerformanceMetricRepository.class));
+        aspect = new PerformanceMonitoringAspect(histograms, violationWriter, slaConfig);
+    }
+
+    @Test
+    @DisplayName("Имя операции: правило по имени метода и имя по умолчанию")
+    void resolvesOperationNames() throws Throwable {
+        aspect.monitorControllerMethods(joinPoint("approveRecommendation", 42L));
+        aspect.monitorControllerMethods(joinPoint("getDashboard"));
+        aspect.monitorControllerMethods(joinPoint("getDashboard"));
+
+        List<OperationInterval> intervals = histograms.intervals(LocalDateTime.now().minusSeconds(5), LocalDateTime.now().plusSeconds(1));
+        assertEquals(1, count(intervals, "recommendation.approve"));
+        assertEquals(2, count(intervals, "recommendationcontroller.getDashboard"));
+        assertEquals(1000, single(intervals, "recommendation.approve").getSlaThresholdMs());
+        assertEquals(5000, single(intervals, "recommendationcontroller.getDashboard").getSlaThresholdMs());
+    }
+
+    @Test
+    @DisplayName("Имя операции определяется один раз на метод, а не на каждый вызов")
+    void resolvesOperationOncePerMethod() throws Throwable {
+        PerformanceMonitoringAspect spied = spy(aspect);
+        for (int i = 0; i < 100; i++) {
+            spied.monitorControllerMethods(joinPoint("approveRecommendation", 42L));
+            spied.monitorControllerMethods(joinPoint("getDashboard"));
+        }
+
+        verify(spied, times(2)).extractOperationName(any());
+        List<OperationInterval> intervals = histograms.intervals(LocalDateTime.now().minusSeconds(5), LocalDateTime.now().plusSeconds(1));
+        assertEquals(100, count(intervals, "recommendation.approve"));
+        assertEquals(100, count(intervals, "recommendationcontroller.getDashboard"));
+    }
+
+    @Test
+    @DisplayName("Бенчмарк: определение операции на вызов - из кэша и по цепочке правил (как до кэша)")
+    void benchmarkCachedVersusUncachedResolution() throws Throwable {
+        log.info("PerformanceMonitoringAspect operation resolution benchmark, {} iterations", ITERATIONS);
+        for (String methodName : List.of("approveRecommendation", "getDashboard")) {
+            Object[] args = methodName.equals("getDashboard") ? new Object[0] : new Object[]{42L};
+            ProceedingJoinPoint joinPoint = joinPoint(methodName, args);
+
+            // До кэша: строки имени и поиск гистограммы по имени на каждом вызове
+            OperationRecorder uncached = histograms.recorder(aspect.extractOperationName(joinPoint));
+            OperationRecorder cached = aspect.resolveOperation(joinPoint);
+            assertSame(uncached, cached, "cached and uncached resolution must yield the same operation");
+
+            // Прогрев JIT
+            long uncachedNanos = 0;
+            long cachedNanos = 0;
+            for (int round = 0; round < 2; round++) {
+                uncachedNanos = measure(() -> consume(histograms.recorder(aspect.extractOperationName(joinPoint))));
+                cachedNanos = measure(() -> consume(aspect.resolveOperation(joinPoint)));
+            }
+            log.info("  {} uncached {} ns/op, cached {} ns/op",
+                    String.format("%-22s", methodName),
+                    String.format("%7.1f", (double) uncachedNanos / ITERATIONS),
+                    String.format("%7.1f", (double) cachedNanos / ITERATIONS));
+        }
+    }
+
+    // Результат используется, чтобы JIT не выбросил измеряемый вызов
+    private void consume(OperationRecorder operation) {
+        if (operation != null) {
+            resolutions++;
+        }
+    }
+
+    private long measure(Call call) throws Throwable {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private ProceedingJoinPoint joinPoint(String methodName, Object... args) throws Exception {
+        return new MethodInvocationProceedingJoinPoint(invocation(methodName, args));
+    }
+
+    private ProxyMethodInvocation invocation(String methodName, Object[] args) throws Exception {
+        Class<?>[] parameterTypes = args.length == 0 ? new Class<?>[0] : new Class<?>[]{Long.class};
+        Method method = RecommendationController.class.getMethod(methodName, parameterTypes);
+        return new Invocation(target, method, args);
+    }
+
+    private static long count(List<OperationInterval> intervals, String operationName) {
+        return intervals.stream()
+                .filter(interval -> interval.getOperationName().equals(operationName))
+                .mapToLong(OperationInterval::getCount)
+                .sum();
+    }
+
+    private static OperationInterval single(List<OperationInterval> intervals, String operationName) {
+        return intervals.stream()
+                .filter(interval -> interval.getOperationName().equals(operationName))
+                .findFirst().orElseThrow();
+    }
+
+    @FunctionalInterface
+    private interface Call {
+        void run() throws Throwable;
+    }
+
+    /*
+     * Вызов без перехватчиков: proceed() сразу вызывает целевой метод
+     */
+    private static final class Invocation extends ReflectiveMethodInvocation {
+        private Invocation(Object target, Method method, Object[] args) {
+            super(target, target, method, args, target.getClass(), List.of());
+        }
+
+        @Override
+        public MethodInvocation invocableClone() {
+            return this;
+        }
+    }
+
+    public static class RecommendationController {
+        public String approveRecommendation(Long id) {
+            return "approved";
+        }
+
+        public String getDashboard() {
+            return "dashboard";
+        }
+    }
+}
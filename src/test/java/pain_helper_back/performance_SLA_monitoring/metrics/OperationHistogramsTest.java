@@ -0,0 +1,169 @@
+package pain_helper_back.performance_SLA_monitoring.metrics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pain_helper_back.performance_SLA_monitoring.config.PerformanceMetricsConfig;
+import pain_helper_back.performance_SLA_monitoring.config.PerformanceSlaConfig;
+import pain_helper_back.performance_SLA_monitoring.entity.PerformanceSnapshot;
+import pain_helper_back.performance_SLA_monitoring.repository.PerformanceSnapshotRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/*
+ * Тесты для OperationHistograms.
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Запись вызовов: число, ошибки, нарушения SLA, перцентили текущего интервала
+ * - Снимок интервала: документ на операцию в MongoDB, интервал остается в памяти
+ * - Период старше истории в памяти читается из MongoDB (гистограмма восстанавливается)
+ * - Параллельная запись во время снимков без потерь
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OperationHistograms Tests")
+class OperationHistogramsTest {
+
+    @Mock
+    private PerformanceSnapshotRepository snapshotRepository;
+
+    private PerformanceMetricsConfig config;
+    private OperationHistograms histograms;
+
+    @BeforeEach
+    void setUp() {
+        config = new PerformanceMetricsConfig();
+        histograms = new OperationHistograms(config, new PerformanceSlaConfig(), snapshotRepository);
+    }
+
+    @Test
+    @DisplayName("Текущий интервал: число вызовов, ошибки, нарушения SLA и перцентили")
+    void recordsCurrentInterval() {
+        for (int i = 1; i <= 100; i++) {
+            histograms.record("vas.create", i * 1000L, false);     // 1..100 мс
+        }
+        assertTrue(histograms.record("vas.create", 1_500_000L, true)); // SLA vas.create = 1000 мс
+        assertFalse(histograms.record("vas.create", 1_000_900L, false)); // 1000 мс - на пороге, не нарушение
+
+        OperationInterval interval = single(histograms.intervals(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusSeconds(1)));
+        assertEquals("vas.create", interval.getOperationName());
+        assertEquals(102, interval.getCount());
+        assertEquals(1, interval.getErrorCount());
+        assertEquals(1, interval.getSlaViolationCount());
+        assertEquals(1000, interval.getSlaThresholdMs());
+        assertEquals(50, interval.getLatencyMicros().getValueAtPercentile(50) / 1000, 1);
+        verify(snapshotRepository, never()).insert(anyList());
+    }
+
+    @Test
+    @DisplayName("Снимок: документ на операцию в MongoDB, интервал остается в памяти")
+    void snapshotPersistsAndKeepsHistory() {
+        histograms.record("vas.create", 2_000L, false);
+        histograms.record("vas.create", 4_000L, true);
+        histograms.record("emr.sync", 10_000L, false);
+
+        histograms.snapshot();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PerformanceSnapshot>> captor = ArgumentCaptor.forClass(List.class);
+        verify(snapshotRepository).insert(captor.capture());
+        PerformanceSnapshot vas = captor.getValue().stream()
+                .filter(snapshot -> snapshot.getOperationName().equals("vas.create"))
+                .findFirst().orElseThrow();
+        assertEquals(2, vas.getCount());
+        assertEquals(1, vas.getErrorCount());
+        assertEquals(4.0, vas.getMaxMs(), 0.05);
+        assertNotNull(vas.getHistogram());
+
+        // Новый интервал начинается с нуля, завершенный читается из памяти
+        histograms.record("vas.create", 3_000L, false);
+        List<OperationInterval> intervals = histograms.intervals(LocalDateTime.now().minusSeconds(5), LocalDateTime.now().plusSeconds(1));
+        assertEquals(4, intervals.stream().mapToLong(OperationInterval::getCount).sum());
+        assertEquals(1, intervals.stream().mapToLong(OperationInterval::getErrorCount).sum());
+
+        histograms.snapshot();
+        histograms.snapshot(); // Пустой интервал в MongoDB не пишется
+        verify(snapshotRepository, times(2)).insert(anyList());
+    }
+
+    @Test
+    @DisplayName("Период старше истории в памяти читается из MongoDB")
+    void loadsOlderPeriodFromMongo() {
+        histograms.record("vas.create", 7_000L, false);
+        histograms.snapshot();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PerformanceSnapshot>> captor = ArgumentCaptor.forClass(List.class);
+        verify(snapshotRepository).insert(captor.capture());
+        when(snapshotRepository.findOverlapping(any(), any())).thenReturn(captor.getValue());
+
+        // Без истории в памяти: все завершенные интервалы уходят за горизонт
+        config.setHistoryHours(0);
+        histograms.snapshot();
+
+        OperationInterval interval = single(histograms.intervals(LocalDateTime.now().minusHours(1), LocalDateTime.now().plusSeconds(1)));
+        assertEquals(1, interval.getCount());
+        assertEquals(7, interval.getLatencyMicros().getMaxValue() / 1000);
+    }
+
+    @Test
+    @DisplayName("Ошибка MongoDB не теряет интервал в памяти")
+    void survivesMongoFailure() {
+        when(snapshotRepository.insert(anyList())).thenThrow(new IllegalStateException("MongoDB unavailable"));
+        histograms.record("vas.create", 1_000L, false);
+
+        histograms.snapshot();
+
+        assertEquals(1, single(histograms.intervals(LocalDateTime.now().minusSeconds(5), LocalDateTime.now().plusSeconds(1))).getCount());
+    }
+
+    @Test
+    @Timeout(60)
+    @DisplayName("Параллельная запись во время снимков без потерь")
+    void concurrentRecordingDuringSnapshots() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                String operation = "operation." + (t % 2);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        histograms.record(operation, i % 5_000, i % 100 == 0);
+                    }
+                }));
+            }
+            while (futures.stream().anyMatch(future -> !future.isDone())) {
+                histograms.snapshot();
+                histograms.intervals(LocalDateTime.now().minusSeconds(5), LocalDateTime.now().plusSeconds(1));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<OperationInterval> intervals = histograms.intervals(LocalDateTime.now().minusMinutes(1), LocalDateTime.now().plusSeconds(1));
+        assertEquals(160_000, intervals.stream().mapToLong(OperationInterval::getCount).sum());
+        assertEquals(1_600, intervals.stream().mapToLong(OperationInterval::getErrorCount).sum());
+    }
+
+    private static OperationInterval single(List<OperationInterval> intervals) {
+        assertEquals(1, intervals.size());
+        return intervals.get(0);
+    }
+}
@@ -0,0 +1,198 @@
+package pain_helper_back.startup.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import pain_helper_back.enums.StartupInitializerStatus;
+import pain_helper_back.startup.StartupInitializer;
+import pain_helper_back.startup.config.StartupConfig;
+import pain_helper_back.startup.dto.InitializerTimingDTO;
+import pain_helper_back.startup.dto.StartupTimingReportDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Тесты для StartupInitializerRunner (инициализаторы - заглушки).
+ *
+ * ПРОВЕРЯЕМАЯ ФУНКЦИОНАЛЬНОСТЬ:
+ * - Топологический порядок, циклы, неизвестные зависимости и дубликаты имен
+ * - Инициализатор стартует после завершения зависимостей, независимые выполняются параллельно
+ * - Ошибка инициализатора: зависящие от него SKIPPED, независимые выполняются, старт прерывается
+ * - Превышение timeoutSeconds: незавершенные инициализаторы в отчете не COMPLETED, зависящие SKIPPED
+ */
+@Timeout(30)
+class StartupInitializerRunnerTest {
+
+    private final List<String> completed = Collections.synchronizedList(new ArrayList<>());
+    private StartupConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new StartupConfig();
+        config.setPoolSize(2);
+        config.setTimeoutSeconds(10);
+    }
+
+    @Test
+    @DisplayName("Зависимости идут раньше зависящих независимо от порядка бинов")
+    void ordersDependenciesFirst() {
+        List<StartupInitializer> initializers = List.of(
+                stub("report", Set.of("protocols", "icd")),
+                stub("icd", Set.of("dictionary")),
+                stub("protocols", Set.of("dictionary")),
+                stub("dictionary", Set.of()));
+
+        List<String> order = StartupInitializerRunner.topologicalOrder(StartupInitializerRunner.indexByName(initializers));
+
+        assertEquals(4, order.size());
+        assertEquals("dictionary", order.get(0));
+        assertEquals("report", order.get(3));
+    }
+
+    @Test
+    @DisplayName("Цикл в зависимостях - ошибка конфигурации с именами инициализаторов цикла")
+    void rejectsCycle() {
+        Map<String, StartupInitializer> byName = StartupInitializerRunner.indexByName(List.of(
+                stub("a", Set.of("b")),
+                stub("b", Set.of("a")),
+                stub("independent", Set.of())));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> StartupInitializerRunner.topologicalOrder(byName));
+        assertEquals("Cyclic startup initializer dependencies: [a, b]", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Неизвестная зависимость и повтор имени отклоняются")
+    void rejectsUnknownDependencyAndDuplicateName() {
+        assertThrows(IllegalStateException.class, () -> StartupInitializerRunner.indexByName(List.of(
+                stub("a", Set.of("missing")))));
+        assertThrows(IllegalStateException.class, () -> StartupInitializerRunner.indexByName(List.of(
+                stub("a", Set.of()), stub("a", Set.of()))));
+    }
+
+    @Test
+    @DisplayName("Зависящий стартует после зависимостей, независимые выполняются параллельно")
+    void runsIndependentInParallelAndDependentsAfter() {
+        // Каждый из двух ждет, пока стартует другой: завершатся, только если выполняются одновременно
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        StartupInitializerRunner runner = runner(
+                stub("left", Set.of(), () -> rendezvous(bothStarted)),
+                stub("right", Set.of(), () -> rendezvous(bothStarted)),
+                stub("joined", Set.of("left", "right"), () -> {
+                    assertTrue(completed.containsAll(List.of("left", "right")));
+                }));
+
+        runner.run(null);
+
+        StartupTimingReportDTO report = runner.getLastReport();
+        assertTrue(report.getSuccessful());
+        assertEquals("joined", completed.get(2));
+        assertEquals(StartupInitializerStatus.COMPLETED, status(report, "joined"));
+    }
+
+    @Test
+    @DisplayName("Ошибка: зависящие SKIPPED, независимые выполняются, старт прерывается")
+    void failurePropagatesToDependents() {
+        StartupInitializerRunner runner = runner(
+                stub("protocols", Set.of(), () -> {
+                    throw new IllegalArgumentException("protocol sheet missing");
+                }),
+                stub("extractor", Set.of("protocols")),
+                stub("extractorCache", Set.of("extractor")),
+                stub("admin", Set.of()));
+
+        assertThrows(IllegalStateException.class, () -> runner.run(null));
+
+        StartupTimingReportDTO report = runner.getLastReport();
+        assertFalse(report.getSuccessful());
+        InitializerTimingDTO failed = timing(report, "protocols");
+        assertEquals(StartupInitializerStatus.FAILED, failed.getStatus());
+        assertEquals("protocol sheet missing", failed.getErrorMessage());
+        assertEquals(StartupInitializerStatus.SKIPPED, status(report, "extractor"));
+        assertEquals(StartupInitializerStatus.SKIPPED, status(report, "extractorCache"));
+        assertEquals(StartupInitializerStatus.COMPLETED, status(report, "admin"));
+        assertEquals(List.of("admin"), completed);
+    }
+
+    @Test
+    @DisplayName("Превышение времени ожидания: зависящие SKIPPED, старт прерывается")
+    void timeoutSkipsUnfinishedInitializers() {
+        config.setTimeoutSeconds(1);
+        CountDownLatch never = new CountDownLatch(1);
+        StartupInitializerRunner runner = runner(
+                stub("slow", Set.of(), never::await),
+                stub("afterSlow", Set.of("slow")),
+                stub("fast", Set.of()));
+
+        try {
+            assertThrows(IllegalStateException.class, () -> runner.run(null));
+        } finally {
+            never.countDown();
+        }
+
+        StartupTimingReportDTO report = runner.getLastReport();
+        assertFalse(report.getSuccessful());
+        assertNotEquals(StartupInitializerStatus.COMPLETED, status(report, "slow"));
+        assertEquals(StartupInitializerStatus.SKIPPED, status(report, "afterSlow"));
+        assertEquals(StartupInitializerStatus.COMPLETED, status(report, "fast"));
+    }
+
+    private StartupInitializerRunner runner(StartupInitializer... initializers) {
+        return new StartupInitializerRunner(List.of(initializers), config);
+    }
+
+    private static void rendezvous(CountDownLatch latch) throws InterruptedException {
+        latch.countDown();
+        assertTrue(latch.await(5, TimeUnit.SECONDS), "independent initializers did not run concurrently");
+    }
+
+    private static StartupInitializerStatus status(StartupTimingReportDTO report, String name) {
+        return timing(report, name).getStatus();
+    }
+
+    private static InitializerTimingDTO timing(StartupTimingReportDTO report, String name) {
+        return report.getInitializers().stream()
+                .filter(t -> t.getName().equals(name))
+                .findFirst().orElseThrow();
+    }
+
+    private StartupInitializer stub(String name, Set<String> dependsOn) {
+        return stub(name, dependsOn, () -> {
+        });
+    }
+
+    private StartupInitializer stub(String name, Set<String> dependsOn, Work work) {
+        return new StartupInitializer() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Set<String> getDependsOn() {
+                return dependsOn;
+            }
+
+            @Override
+            public void initialize() throws Exception {
+                work.run();
+                completed.add(name);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Work {
+        void run() throws Exception;
+    }
+}